@@ -322,6 +322,22 @@ public final class QueryProto {
        * </pre>
        */
       QUERY_RECOVER(7, 3),
+      /**
+       * <code>QUERY_CLEANUP = 10;</code>
+       *
+       * <pre>
+       * the query finished, master -&gt; worker
+       * </pre>
+       */
+      QUERY_CLEANUP(8, 10),
+      /**
+       * <code>QUERY_RESEND = 11;</code>
+       *
+       * <pre>
+       * the worker lacks the plan template, worker -&gt; master
+       * </pre>
+       */
+      QUERY_RESEND(9, 11),
       ;
 
       /**
@@ -388,6 +404,22 @@ public final class QueryProto {
        * </pre>
        */
       public static final int QUERY_RECOVER_VALUE = 3;
+      /**
+       * <code>QUERY_CLEANUP = 10;</code>
+       *
+       * <pre>
+       * the query finished, master -&gt; worker
+       * </pre>
+       */
+      public static final int QUERY_CLEANUP_VALUE = 10;
+      /**
+       * <code>QUERY_RESEND = 11;</code>
+       *
+       * <pre>
+       * the worker lacks the plan template, worker -&gt; master
+       * </pre>
+       */
+      public static final int QUERY_RESEND_VALUE = 11;
 
 
       public final int getNumber() { return value; }
@@ -402,6 +434,8 @@ public final class QueryProto {
           case 2: return QUERY_READY_TO_EXECUTE;
           case 6: return QUERY_COMPLETE;
           case 3: return QUERY_RECOVER;
+          case 10: return QUERY_CLEANUP;
+          case 11: return QUERY_RESEND;
           default: return null;
         }
       }
@@ -3104,20 +3138,21 @@ public final class QueryProto {
       descriptor;
   static {
     java.lang.String[] descriptorData = {
-      "\n\013query.proto\"\313\002\n\014QueryMessage\022\020\n\010query_" +
+      "\n\013query.proto\"\360\002\n\014QueryMessage\022\020\n\010query_" +
       "id\030\001 \002(\004\022\023\n\013subquery_id\030\002 \002(\004\022 \n\004type\030\003 " +
       "\002(\0162\022.QueryMessage.Type\022\"\n\014query_report\030" +
       "\004 \001(\0132\014.QueryReport\022\025\n\005query\030\005 \001(\0132\006.Que" +
-      "ry\022\021\n\tworker_id\030\006 \001(\005\"\243\001\n\004Type\022\024\n\020QUERY_" +
+      "ry\022\021\n\tworker_id\030\006 \001(\005\"\310\001\n\004Type\022\024\n\020QUERY_" +
       "DISTRIBUTE\020\000\022\017\n\013QUERY_START\020\001\022\017\n\013QUERY_P" +
       "AUSE\020\007\022\020\n\014QUERY_RESUME\020\010\022\016\n\nQUERY_KILL\020\t" +
       "\022\032\n\026QUERY_READY_TO_EXECUTE\020\002\022\022\n\016QUERY_CO" +
-      "MPLETE\020\006\022\021\n\rQUERY_RECOVER\020\003\"\026\n\005Query\022\r\n\005" +
-      "query\030\001 \002(\014\"a\n\013QueryReport\022\017\n\007success\030\001 ",
-      "\002(\010\0222\n\024execution_statistics\030\002 \002(\0132\024.Exec" +
-      "utionStatistics\022\r\n\005cause\030\003 \001(\014\"%\n\023Execut" +
-      "ionStatistics\022\016\n\006elapse\030\002 \002(\004B1\n#edu.was" +
-      "hington.escience.myria.protoB\nQueryProto"
+      "MPLETE\020\006\022\021\n\rQUERY_RECOVER\020\003\022\021\n\rQUERY_CLE" +
+      "ANUP\020\n\022\020\n\014QUERY_RESEND\020\013\"\026\n\005Query\022\r\n\005que",
+      "ry\030\001 \002(\014\"a\n\013QueryReport\022\017\n\007success\030\001 \002(\010" +
+      "\0222\n\024execution_statistics\030\002 \002(\0132\024.Executi" +
+      "onStatistics\022\r\n\005cause\030\003 \001(\014\"%\n\023Execution" +
+      "Statistics\022\016\n\006elapse\030\002 \002(\004B1\n#edu.washin" +
+      "gton.escience.myria.protoB\nQueryProto"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
       new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
@@ -13,7 +13,7 @@ from google.protobuf import descriptor_pb2
 DESCRIPTOR = _descriptor.FileDescriptor(
   name='query.proto',
   package='',
-  serialized_pb='\n\x0bquery.proto\"\xcb\x02\n\x0cQueryMessage\x12\x10\n\x08query_id\x18\x01 \x02(\x04\x12\x13\n\x0bsubquery_id\x18\x02 \x02(\x04\x12 \n\x04type\x18\x03 \x02(\x0e\x32\x12.QueryMessage.Type\x12\"\n\x0cquery_report\x18\x04 \x01(\x0b\x32\x0c.QueryReport\x12\x15\n\x05query\x18\x05 \x01(\x0b\x32\x06.Query\x12\x11\n\tworker_id\x18\x06 \x01(\x05\"\xa3\x01\n\x04Type\x12\x14\n\x10QUERY_DISTRIBUTE\x10\x00\x12\x0f\n\x0bQUERY_START\x10\x01\x12\x0f\n\x0bQUERY_PAUSE\x10\x07\x12\x10\n\x0cQUERY_RESUME\x10\x08\x12\x0e\n\nQUERY_KILL\x10\t\x12\x1a\n\x16QUERY_READY_TO_EXECUTE\x10\x02\x12\x12\n\x0eQUERY_COMPLETE\x10\x06\x12\x11\n\rQUERY_RECOVER\x10\x03\"\x16\n\x05Query\x12\r\n\x05query\x18\x01 \x02(\x0c\"a\n\x0bQueryReport\x12\x0f\n\x07success\x18\x01 \x02(\x08\x12\x32\n\x14\x65xecution_statistics\x18\x02 \x02(\x0b\x32\x14.ExecutionStatistics\x12\r\n\x05\x63\x61use\x18\x03 \x01(\x0c\"%\n\x13\x45xecutionStatistics\x12\x0e\n\x06\x65lapse\x18\x02 \x02(\x04\x42\x31\n#edu.washington.escience.myria.protoB\nQueryProto')
+  serialized_pb='\n\x0bquery.proto\"\xf0\x02\n\x0cQueryMessage\x12\x10\n\x08query_id\x18\x01 \x02(\x04\x12\x13\n\x0bsubquery_id\x18\x02 \x02(\x04\x12 \n\x04type\x18\x03 \x02(\x0e\x32\x12.QueryMessage.Type\x12\"\n\x0cquery_report\x18\x04 \x01(\x0b\x32\x0c.QueryReport\x12\x15\n\x05query\x18\x05 \x01(\x0b\x32\x06.Query\x12\x11\n\tworker_id\x18\x06 \x01(\x05\"\xc8\x01\n\x04Type\x12\x14\n\x10QUERY_DISTRIBUTE\x10\x00\x12\x0f\n\x0bQUERY_START\x10\x01\x12\x0f\n\x0bQUERY_PAUSE\x10\x07\x12\x10\n\x0cQUERY_RESUME\x10\x08\x12\x0e\n\nQUERY_KILL\x10\t\x12\x1a\n\x16QUERY_READY_TO_EXECUTE\x10\x02\x12\x12\n\x0eQUERY_COMPLETE\x10\x06\x12\x11\n\rQUERY_RECOVER\x10\x03\x12\x11\n\rQUERY_CLEANUP\x10\n\x12\x10\n\x0cQUERY_RESEND\x10\x0b\"\x16\n\x05Query\x12\r\n\x05query\x18\x01 \x02(\x0c\"a\n\x0bQueryReport\x12\x0f\n\x07success\x18\x01 \x02(\x08\x12\x32\n\x14\x65xecution_statistics\x18\x02 \x02(\x0b\x32\x14.ExecutionStatistics\x12\r\n\x05\x63\x61use\x18\x03 \x01(\x0c\"%\n\x13\x45xecutionStatistics\x12\x0e\n\x06\x65lapse\x18\x02 \x02(\x04\x42\x31\n#edu.washington.escience.myria.protoB\nQueryProto')
 
 
 
@@ -55,11 +55,19 @@ _QUERYMESSAGE_TYPE = _descriptor.EnumDescriptor(
       name='QUERY_RECOVER', index=7, number=3,
       options=None,
       type=None),
+    _descriptor.EnumValueDescriptor(
+      name='QUERY_CLEANUP', index=8, number=10,
+      options=None,
+      type=None),
+    _descriptor.EnumValueDescriptor(
+      name='QUERY_RESEND', index=9, number=11,
+      options=None,
+      type=None),
   ],
   containing_type=None,
   options=None,
   serialized_start=184,
-  serialized_end=347,
+  serialized_end=384,
 )
 
 
@@ -123,7 +131,7 @@ _QUERYMESSAGE = _descriptor.Descriptor(
   is_extendable=False,
   extension_ranges=[],
   serialized_start=16,
-  serialized_end=347,
+  serialized_end=384,
 )
 
 
@@ -150,8 +158,8 @@ _QUERY = _descriptor.Descriptor(
   options=None,
   is_extendable=False,
   extension_ranges=[],
-  serialized_start=349,
-  serialized_end=371,
+  serialized_start=386,
+  serialized_end=408,
 )
 
 
@@ -192,8 +200,8 @@ _QUERYREPORT = _descriptor.Descriptor(
   options=None,
   is_extendable=False,
   extension_ranges=[],
-  serialized_start=373,
-  serialized_end=470,
+  serialized_start=410,
+  serialized_end=507,
 )
 
 
@@ -220,8 +228,8 @@ _EXECUTIONSTATISTICS = _descriptor.Descriptor(
   options=None,
   is_extendable=False,
   extension_ranges=[],
-  serialized_start=472,
-  serialized_end=509,
+  serialized_start=509,
+  serialized_end=546,
 )
 
 _QUERYMESSAGE.fields_by_name['type'].enum_type = _QUERYMESSAGE_TYPE
@@ -6,16 +6,28 @@ import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Objects;
 
 import com.google.common.io.LittleEndianDataInputStream;
 
+import edu.washington.escience.myria.column.BooleanColumn;
+import edu.washington.escience.myria.column.Column;
+import edu.washington.escience.myria.column.DoubleColumn;
+import edu.washington.escience.myria.column.FloatColumn;
+import edu.washington.escience.myria.column.IntArrayColumn;
+import edu.washington.escience.myria.column.LongColumn;
+import edu.washington.escience.myria.io.FixedWidthRecordReader;
 import edu.washington.escience.myria.storage.TupleBatch;
 import edu.washington.escience.myria.storage.TupleBatchBuffer;
 import edu.washington.escience.myria.storage.TupleUtils;
 
 /**
- *
+ * Reads tuples of the given schema from a binary file. If every column has a fixed width, whole batches of rows are read
+ * at a time and decoded a column at a time; otherwise the file is read a field at a time.
  */
 public class BinaryTupleReader implements TupleReader {
   /** Required for Java serialization. */
@@ -28,6 +40,8 @@ public class BinaryTupleReader implements TupleReader {
   private final boolean isLittleEndian;
   /** Data input to read data from the bin file. */
   private transient DataInput dataInput;
+  /** Reads whole rows at a time if every column has a fixed width, null otherwise. */
+  private transient FixedWidthRecordReader recordReader;
 
   /**
    * Construct a new BinaryTupleReader object that reads the given binary file and creates tuples from the file data
@@ -54,6 +68,20 @@ public class BinaryTupleReader implements TupleReader {
   @Override
   public void open(final InputStream stream) throws IOException, DbException {
     buffer = new TupleBatchBuffer(schema);
+    int rowSize = 0;
+    for (Type type : schema.getColumnTypes()) {
+      int width = fixedWidth(type);
+      if (width < 0) {
+        rowSize = -1;
+        break;
+      }
+      rowSize += width;
+    }
+    if (rowSize > 0) {
+      ByteOrder order = isLittleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+      recordReader = FixedWidthRecordReader.ofStream(stream, rowSize, -1, order);
+      return;
+    }
     InputStream inputStream = new BufferedInputStream(stream);
 
     if (isLittleEndian) {
@@ -68,8 +96,85 @@ public class BinaryTupleReader implements TupleReader {
     return schema;
   }
 
+  /**
+   * @param type a column type.
+   * @return the number of bytes a value of the type takes in the bin file, or -1 if values do not have a fixed width.
+   */
+  private static int fixedWidth(final Type type) {
+    switch (type) {
+      case BOOLEAN_TYPE:
+        return 1;
+      case INT_TYPE:
+      case FLOAT_TYPE:
+        return Integer.BYTES;
+      case LONG_TYPE:
+      case DOUBLE_TYPE:
+        return Long.BYTES;
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Read a batch of rows whose columns all have a fixed width, decoding them a column at a time.
+   *
+   * @return the rows, or null if there are no more rows.
+   * @throws DbException if the data ends in the middle of a row.
+   */
+  private TupleBatch readFixedWidthTuples() throws DbException {
+    int numTuples;
+    try {
+      numTuples = recordReader.nextBatch(buffer.getBatchSize());
+    } catch (EOFException e) {
+      throw new DbException("Ran out of binary data in the middle of a row", e);
+    } catch (IOException e) {
+      throw new DbException(e);
+    }
+    if (numTuples == 0) {
+      return null;
+    }
+    List<Column<?>> columns = new ArrayList<>(schema.numColumns());
+    int offset = 0;
+    for (Type type : schema.getColumnTypes()) {
+      switch (type) {
+        case BOOLEAN_TYPE:
+          BitSet booleans = new BitSet(numTuples);
+          recordReader.getBooleans(offset, booleans);
+          columns.add(new BooleanColumn(booleans, numTuples));
+          break;
+        case DOUBLE_TYPE:
+          double[] doubles = new double[numTuples];
+          recordReader.getDoubles(offset, doubles);
+          columns.add(new DoubleColumn(doubles, numTuples));
+          break;
+        case FLOAT_TYPE:
+          float[] floats = new float[numTuples];
+          recordReader.getFloats(offset, floats);
+          columns.add(new FloatColumn(floats, numTuples));
+          break;
+        case INT_TYPE:
+          int[] ints = new int[numTuples];
+          recordReader.getInts(offset, ints);
+          columns.add(new IntArrayColumn(ints, numTuples));
+          break;
+        case LONG_TYPE:
+          long[] longs = new long[numTuples];
+          recordReader.getLongs(offset, longs);
+          columns.add(new LongColumn(longs, numTuples));
+          break;
+        default:
+          throw new IllegalStateException("not a fixed width type: " + type);
+      }
+      offset += fixedWidth(type);
+    }
+    return new TupleBatch(schema, columns, numTuples);
+  }
+
   @Override
   public TupleBatch readTuples() throws IOException, DbException {
+    if (recordReader != null) {
+      return readFixedWidthTuples();
+    }
     boolean building = false;
     try {
 
@@ -118,6 +223,7 @@ public class BinaryTupleReader implements TupleReader {
 
   @Override
   public void close() throws IOException {
+    recordReader = null;
     while (buffer.numTuples() > 0) {
       buffer.popAny();
     }
@@ -0,0 +1,723 @@
+package edu.washington.escience.myria;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A byte-level CSV tokenizer. It scans a large byte buffer for delimiters, quotes and line ends, records where each field
+ * of a record starts and ends without copying it, and parses numbers straight from the bytes. Only fields with escaped
+ * characters are copied.
+ *
+ * Quoting and escaping follow the commons-csv format <code>CSVFormat.newFormat(delimiter).withQuote(quote)
+ * .withEscape(escape)</code> that the CSV readers used before: a field that starts with the quote character ends at the
+ * next quote that is not doubled; the escape character, if any, escapes the next character both in and out of quotes;
+ * and <code>\n</code>, <code>\r</code> and <code>\r\n</code> all end a record. The delimiter, quote and escape characters
+ * must be ASCII, so that they never occur inside a multi-byte UTF-8 character.
+ *
+ * The tokenizer can look one record ahead with {@link #hasNextRecord()}, keeping the current record valid.
+ */
+public final class CsvTokenizer {
+
+  /** The message of the exception thrown when the stream ends inside a quoted field. */
+  public static final String TRUNCATED_QUOTE_MESSAGE =
+      "EOF reached before encapsulated token finished";
+
+  /** The initial size of the byte buffer. */
+  private static final int BUFFER_SIZE = 1 << 20;
+  /** The maximum number of significant digits of a double parsed without going through a String. */
+  private static final int MAX_DOUBLE_DIGITS = 15;
+  /** The maximum power of 10 of a double parsed without going through a String. */
+  private static final int MAX_DOUBLE_POW10 = 22;
+  /** The maximum number of significant digits of a float parsed without going through a String. */
+  private static final int MAX_FLOAT_DIGITS = 7;
+  /** The maximum power of 10 of a float parsed without going through a String. */
+  private static final int MAX_FLOAT_POW10 = 10;
+  /** The maximum number of digits of a long parsed without checking for overflow. */
+  private static final int MAX_LONG_DIGITS = 18;
+  /** Powers of 10 that are exact doubles. */
+  private static final double[] DOUBLE_POW10 = new double[MAX_DOUBLE_POW10 + 1];
+  /** Powers of 10 that are exact floats. */
+  private static final float[] FLOAT_POW10 = new float[MAX_FLOAT_POW10 + 1];
+
+  static {
+    DOUBLE_POW10[0] = 1;
+    for (int i = 1; i < DOUBLE_POW10.length; ++i) {
+      DOUBLE_POW10[i] = DOUBLE_POW10[i - 1] * 10;
+    }
+    FLOAT_POW10[0] = 1;
+    for (int i = 1; i < FLOAT_POW10.length; ++i) {
+      FLOAT_POW10[i] = FLOAT_POW10[i - 1] * 10;
+    }
+  }
+
+  /** The value of {@link #escape} if there is no escape character, which is never equal to a byte. */
+  private static final int NO_ESCAPE = 1 << 8;
+  /** Returned by {@link #parseRecord} if the buffer ends before the record does. */
+  private static final int NEED_MORE = -1;
+  /** Returned by {@link #parseRecord} if there is no record before the end of the stream. */
+  private static final int NO_RECORD = -2;
+
+  /**
+   * The fields of one record.
+   */
+  private static final class Record {
+    /** The position of the first byte of the record in the buffer. */
+    private int start;
+    /** The number of fields. */
+    private int numFields;
+    /** The position of the first byte of each field. */
+    private int[] starts = new int[16];
+    /** The position after the last byte of each field. */
+    private int[] ends = new int[16];
+    /** If each field is stored in {@link #scratch} rather than in the buffer. */
+    private boolean[] inScratch = new boolean[16];
+    /** The fields that had to be unescaped. */
+    private byte[] scratch = new byte[64];
+    /** The number of bytes of scratch in use. */
+    private int scratchLength;
+
+    /**
+     * Forget all the fields.
+     *
+     * @param recordStart the position of the first byte of the record in the buffer.
+     */
+    private void clear(final int recordStart) {
+      start = recordStart;
+      numFields = 0;
+      scratchLength = 0;
+    }
+
+    /**
+     * Add a field.
+     *
+     * @param fieldStart the position of the first byte of the field.
+     * @param fieldEnd the position after the last byte of the field.
+     * @param fieldInScratch if the field is stored in scratch.
+     */
+    private void addField(final int fieldStart, final int fieldEnd, final boolean fieldInScratch) {
+      if (numFields == starts.length) {
+        starts = Arrays.copyOf(starts, numFields * 2);
+        ends = Arrays.copyOf(ends, numFields * 2);
+        inScratch = Arrays.copyOf(inScratch, numFields * 2);
+      }
+      starts[numFields] = fieldStart;
+      ends[numFields] = fieldEnd;
+      inScratch[numFields] = fieldInScratch;
+      numFields++;
+    }
+
+    /**
+     * Append bytes to scratch.
+     *
+     * @param src the bytes.
+     * @param from the position of the first byte to append.
+     * @param to the position after the last byte to append.
+     */
+    private void appendScratch(final byte[] src, final int from, final int to) {
+      int length = to - from;
+      if (scratchLength + length > scratch.length) {
+        scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, scratchLength + length));
+      }
+      System.arraycopy(src, from, scratch, scratchLength, length);
+      scratchLength += length;
+    }
+
+    /**
+     * Append one byte to scratch.
+     *
+     * @param b the byte.
+     */
+    private void appendScratch(final byte b) {
+      if (scratchLength == scratch.length) {
+        scratch = Arrays.copyOf(scratch, scratch.length * 2);
+      }
+      scratch[scratchLength++] = b;
+    }
+
+    /**
+     * Move the fields stored in the buffer after the buffer was compacted.
+     *
+     * @param shift the number of bytes the buffer was shifted left by.
+     */
+    private void shift(final int shift) {
+      start -= shift;
+      for (int i = 0; i < numFields; ++i) {
+        if (!inScratch[i]) {
+          starts[i] -= shift;
+          ends[i] -= shift;
+        }
+      }
+    }
+  }
+
+  /** The stream being tokenized. */
+  private final InputStream input;
+  /** The field delimiter. */
+  private final byte delimiter;
+  /** The quote character. */
+  private final byte quote;
+  /** The escape character, or {@link #NO_ESCAPE} if there is none. */
+  private final int escape;
+  /** The bytes read from the stream. */
+  private byte[] buffer;
+  /** The number of valid bytes in the buffer. */
+  private int limit;
+  /** The position in the stream of the first byte of the buffer. */
+  private long bufferPosition;
+  /** The position in the buffer where the next record starts. */
+  private int position;
+  /** If the whole stream has been read into the buffer. */
+  private boolean endOfStream;
+  /** If the tokenizer has been closed. */
+  private boolean closed;
+  /** The current record. */
+  private Record current;
+  /** The next record, if {@link #hasNextRecord()} found it. */
+  private Record next;
+  /** If {@link #next} holds the next record. */
+  private boolean hasNext;
+  /** If the current record is valid. */
+  private boolean hasCurrent;
+  /** If the number parsed by {@link #parseSimpleDecimal} is negative. */
+  private boolean decimalNegative;
+  /** The mantissa of the number parsed by {@link #parseSimpleDecimal}. */
+  private long decimalMantissa;
+  /** The power of 10 of the number parsed by {@link #parseSimpleDecimal}. */
+  private int decimalPow10;
+
+  /**
+   * @param input the stream to tokenize, UTF-8 encoded.
+   * @param delimiter the field delimiter.
+   * @param quote the quote character.
+   * @param escape the escape character, or null if there is none.
+   */
+  public CsvTokenizer(
+      final InputStream input, final char delimiter, final char quote, final Character escape) {
+    this.input = Objects.requireNonNull(input, "input");
+    this.delimiter = toAsciiByte(delimiter, "delimiter");
+    this.quote = toAsciiByte(quote, "quote");
+    this.escape = escape == null ? NO_ESCAPE : toAsciiByte(escape, "escape");
+    buffer = new byte[BUFFER_SIZE];
+    current = new Record();
+    next = new Record();
+  }
+
+  /**
+   * @param c a character.
+   * @param name the name of the character, for error messages.
+   * @return the character as a byte.
+   */
+  private static byte toAsciiByte(final char c, final String name) {
+    Preconditions.checkArgument(c < 0x80, "the %s character must be ASCII, not %s", name, c);
+    return (byte) c;
+  }
+
+  /**
+   * Move to the next record.
+   *
+   * @return false if there are no more records.
+   * @throws IOException if the stream cannot be read or the next record is malformed.
+   */
+  public boolean nextRecord() throws IOException {
+    if (!hasNext) {
+      /* The current record does not need to be kept while parsing the next one. */
+      hasCurrent = false;
+      if (!hasNextRecord()) {
+        return false;
+      }
+    }
+    Record tmp = current;
+    current = next;
+    next = tmp;
+    hasNext = false;
+    hasCurrent = true;
+    return true;
+  }
+
+  /**
+   * Parse the next record if it has not been parsed yet, keeping the current record.
+   *
+   * @return if there is a next record.
+   * @throws IOException if the stream cannot be read or the next record is malformed, e.g. the stream ends inside a
+   *           quoted field.
+   */
+  public boolean hasNextRecord() throws IOException {
+    if (hasNext) {
+      return true;
+    }
+    if (closed) {
+      return false;
+    }
+    while (true) {
+      int end = parseRecord(next, position);
+      if (end == NO_RECORD) {
+        return false;
+      } else if (end != NEED_MORE) {
+        position = end;
+        hasNext = true;
+        return true;
+      }
+      fill();
+    }
+  }
+
+  /**
+   * Keep the bytes of the current record and those after it, and read more of the stream.
+   *
+   * @throws IOException if the stream cannot be read.
+   */
+  private void fill() throws IOException {
+    int keepFrom = hasCurrent ? Math.min(current.start, position) : position;
+    if (keepFrom > 0) {
+      System.arraycopy(buffer, keepFrom, buffer, 0, limit - keepFrom);
+      limit -= keepFrom;
+      position -= keepFrom;
+      bufferPosition += keepFrom;
+      if (hasCurrent) {
+        current.shift(keepFrom);
+      }
+    }
+    if (limit == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    int read = input.read(buffer, limit, buffer.length - limit);
+    if (read < 0) {
+      endOfStream = true;
+    } else {
+      limit += read;
+    }
+  }
+
+  /**
+   * @param b a byte.
+   * @return if the byte ends a line.
+   */
+  private static boolean isEndOfLine(final byte b) {
+    return b == '\n' || b == '\r';
+  }
+
+  /**
+   * Parse one record.
+   *
+   * @param record where the fields are stored.
+   * @param start the position in the buffer where the record starts.
+   * @return the position after the record, {@link #NEED_MORE} if the buffer ends before the record does and the stream
+   *         has more bytes, or {@link #NO_RECORD} if the stream ends at the start.
+   * @throws IOException if the record is malformed.
+   */
+  private int parseRecord(final Record record, final int start) throws IOException {
+    record.clear(start);
+    int p = start;
+    if (p == limit) {
+      return endOfStream ? NO_RECORD : NEED_MORE;
+    }
+    final byte[] buf = buffer;
+    while (true) {
+      /* At the start of a field. */
+      if (p == limit) {
+        if (!endOfStream) {
+          return NEED_MORE;
+        }
+        /* The stream ends right after a delimiter. */
+        record.addField(p, p, false);
+        return p;
+      }
+      byte b = buf[p];
+      int fieldStart;
+      int fieldEnd;
+      boolean fieldInScratch = false;
+      if (b == quote) {
+        /* A quoted field is always copied to scratch, without its quotes. */
+        fieldInScratch = true;
+        fieldStart = record.scratchLength;
+        int segment = ++p;
+        while (true) {
+          if (p == limit) {
+            if (!endOfStream) {
+              return NEED_MORE;
+            }
+            throw new IOException(TRUNCATED_QUOTE_MESSAGE);
+          }
+          b = buf[p];
+          if (b == quote) {
+            if (p + 1 == limit && !endOfStream) {
+              return NEED_MORE;
+            }
+            if (p + 1 < limit && buf[p + 1] == quote) {
+              /* A doubled quote is a literal quote. */
+              record.appendScratch(buf, segment, p + 1);
+              p += 2;
+              segment = p;
+              continue;
+            }
+            record.appendScratch(buf, segment, p);
+            p++;
+            break;
+          } else if (b == escape) {
+            if (p + 1 == limit) {
+              if (!endOfStream) {
+                return NEED_MORE;
+              }
+              throw new IOException("EOF whilst processing escape sequence");
+            }
+            record.appendScratch(buf, segment, p);
+            appendEscaped(record, buf[p + 1]);
+            p += 2;
+            segment = p;
+          } else {
+            p++;
+          }
+        }
+        fieldEnd = record.scratchLength;
+        /* Only whitespace may follow the closing quote. */
+        while (p < limit) {
+          b = buf[p];
+          if (b == delimiter || isEndOfLine(b)) {
+            break;
+          } else if (!Character.isWhitespace((char) b)) {
+            throw new IOException("invalid char between encapsulated token and delimiter");
+          }
+          p++;
+        }
+      } else {
+        fieldStart = p;
+        int segment = p;
+        while (p < limit) {
+          b = buf[p];
+          if (b == delimiter || isEndOfLine(b)) {
+            break;
+          } else if (b == escape) {
+            if (p + 1 == limit) {
+              if (!endOfStream) {
+                return NEED_MORE;
+              }
+              throw new IOException("EOF whilst processing escape sequence");
+            }
+            if (!fieldInScratch) {
+              fieldInScratch = true;
+              fieldStart = record.scratchLength;
+            }
+            record.appendScratch(buf, segment, p);
+            appendEscaped(record, buf[p + 1]);
+            p += 2;
+            segment = p;
+          } else {
+            p++;
+          }
+        }
+        if (fieldInScratch) {
+          record.appendScratch(buf, segment, p);
+          fieldEnd = record.scratchLength;
+        } else {
+          fieldEnd = p;
+        }
+      }
+      if (p == limit) {
+        if (!endOfStream) {
+          return NEED_MORE;
+        }
+        record.addField(fieldStart, fieldEnd, fieldInScratch);
+        return p;
+      }
+      record.addField(fieldStart, fieldEnd, fieldInScratch);
+      b = buf[p++];
+      if (b == '\r') {
+        if (p == limit && !endOfStream) {
+          return NEED_MORE;
+        }
+        if (p < limit && buf[p] == '\n') {
+          p++;
+        }
+        return p;
+      } else if (b == '\n') {
+        return p;
+      }
+      /* A delimiter: parse the next field. */
+    }
+  }
+
+  /**
+   * Append the character escaped by the escape character, with the same rules as commons-csv.
+   *
+   * @param record the record being parsed.
+   * @param b the character after the escape character.
+   */
+  private void appendEscaped(final Record record, final byte b) {
+    switch (b) {
+      case 'r':
+        record.appendScratch((byte) '\r');
+        break;
+      case 'n':
+        record.appendScratch((byte) '\n');
+        break;
+      case 't':
+        record.appendScratch((byte) '\t');
+        break;
+      case 'b':
+        record.appendScratch((byte) '\b');
+        break;
+      case 'f':
+        record.appendScratch((byte) '\f');
+        break;
+      case '\r':
+      case '\n':
+      case '\t':
+      case '\b':
+      case '\f':
+        record.appendScratch(b);
+        break;
+      default:
+        if (b == delimiter || b == quote || b == escape) {
+          record.appendScratch(b);
+        } else {
+          /* Not an escape sequence: keep both characters. */
+          record.appendScratch((byte) escape);
+          record.appendScratch(b);
+        }
+    }
+  }
+
+  /**
+   * @return the position in the stream of the first byte of the current record.
+   */
+  public long getRecordPosition() {
+    Preconditions.checkState(hasCurrent, "no current record");
+    return bufferPosition + current.start;
+  }
+
+  /**
+   * @return the number of fields of the current record.
+   */
+  public int numFields() {
+    Preconditions.checkState(hasCurrent, "no current record");
+    return current.numFields;
+  }
+
+  /**
+   * @param field a field of the current record.
+   * @return the bytes the field is stored in.
+   */
+  private byte[] bytesOf(final int field) {
+    return current.inScratch[field] ? current.scratch : buffer;
+  }
+
+  /**
+   * @param field a field of the current record.
+   * @return the field as a String.
+   */
+  public String getString(final int field) {
+    Preconditions.checkElementIndex(field, numFields(), "field");
+    int start = current.starts[field];
+    return new String(bytesOf(field), start, current.ends[field] - start, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param bytes the bytes of a field.
+   * @param start the position of the first byte of the field.
+   * @param end the position after the last byte of the field.
+   * @return if the field is an optional sign followed by at most {@link #MAX_LONG_DIGITS} digits.
+   */
+  private static boolean isShortInteger(final byte[] bytes, final int start, final int end) {
+    int p = start;
+    if (p < end && (bytes[p] == '-' || bytes[p] == '+')) {
+      p++;
+    }
+    if (p == end || end - p > MAX_LONG_DIGITS) {
+      return false;
+    }
+    for (; p < end; ++p) {
+      if (bytes[p] < '0' || bytes[p] > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param bytes the bytes of a field that {@link #isShortInteger} accepts.
+   * @param start the position of the first byte of the field.
+   * @param end the position after the last byte of the field.
+   * @return the value of the field.
+   */
+  private static long parseShortInteger(final byte[] bytes, final int start, final int end) {
+    int p = start;
+    boolean negative = bytes[p] == '-';
+    if (negative || bytes[p] == '+') {
+      p++;
+    }
+    long value = 0;
+    for (; p < end; ++p) {
+      value = value * 10 + (bytes[p] - '0');
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * @param field a field of the current record.
+   * @return the field parsed like {@link Long#parseLong(String)}.
+   * @throws NumberFormatException if the field is not a long.
+   */
+  public long getLong(final int field) {
+    Preconditions.checkElementIndex(field, numFields(), "field");
+    byte[] bytes = bytesOf(field);
+    int start = current.starts[field];
+    int end = current.ends[field];
+    if (isShortInteger(bytes, start, end)) {
+      return parseShortInteger(bytes, start, end);
+    }
+    return Long.parseLong(getString(field));
+  }
+
+  /**
+   * @param field a field of the current record.
+   * @return the field parsed like {@link Integer#parseInt(String)}.
+   * @throws NumberFormatException if the field is not an int.
+   */
+  public int getInt(final int field) {
+    Preconditions.checkElementIndex(field, numFields(), "field");
+    byte[] bytes = bytesOf(field);
+    int start = current.starts[field];
+    int end = current.ends[field];
+    if (isShortInteger(bytes, start, end)) {
+      long value = parseShortInteger(bytes, start, end);
+      if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+        return (int) value;
+      }
+    }
+    return Integer.parseInt(getString(field));
+  }
+
+  /**
+   * Parse a decimal number of the form <code>[sign]digits[.digits][(e|E)[sign]digits]</code> whose mantissa and power of
+   * 10 are small enough that the result is correctly rounded by a single multiplication or division.
+   *
+   * @param field a field of the current record.
+   * @param maxDigits the maximum number of significant digits.
+   * @param maxPow10 the maximum absolute value of the power of 10.
+   * @return if the field is of this form, in which case its sign, mantissa and power of 10 are stored in
+   *         {@link #decimalNegative}, {@link #decimalMantissa} and {@link #decimalPow10}.
+   */
+  private boolean parseSimpleDecimal(final int field, final int maxDigits, final int maxPow10) {
+    byte[] bytes = bytesOf(field);
+    int p = current.starts[field];
+    int end = current.ends[field];
+    boolean negative = false;
+    if (p < end && (bytes[p] == '-' || bytes[p] == '+')) {
+      negative = bytes[p] == '-';
+      p++;
+    }
+    long mantissa = 0;
+    int numDigits = 0;
+    int significantDigits = 0;
+    int pow10 = 0;
+    boolean seenPoint = false;
+    for (; p < end; ++p) {
+      byte b = bytes[p];
+      if (b >= '0' && b <= '9') {
+        numDigits++;
+        if (mantissa != 0 || b != '0') {
+          if (++significantDigits > maxDigits) {
+            return false;
+          }
+        }
+        mantissa = mantissa * 10 + (b - '0');
+        if (seenPoint) {
+          pow10--;
+        }
+      } else if (b == '.' && !seenPoint) {
+        seenPoint = true;
+      } else {
+        break;
+      }
+    }
+    if (numDigits == 0) {
+      return false;
+    }
+    if (p < end) {
+      if (bytes[p] != 'e' && bytes[p] != 'E') {
+        return false;
+      }
+      p++;
+      boolean negativeExponent = false;
+      if (p < end && (bytes[p] == '-' || bytes[p] == '+')) {
+        negativeExponent = bytes[p] == '-';
+        p++;
+      }
+      if (p == end || end - p > 3) {
+        return false;
+      }
+      int exponent = 0;
+      for (; p < end; ++p) {
+        if (bytes[p] < '0' || bytes[p] > '9') {
+          return false;
+        }
+        exponent = exponent * 10 + (bytes[p] - '0');
+      }
+      pow10 += negativeExponent ? -exponent : exponent;
+    }
+    if (Math.abs(pow10) > maxPow10) {
+      return false;
+    }
+    decimalNegative = negative;
+    decimalMantissa = mantissa;
+    decimalPow10 = pow10;
+    return true;
+  }
+
+  /**
+   * @param field a field of the current record.
+   * @return the field parsed like {@link Double#parseDouble(String)}.
+   * @throws NumberFormatException if the field is not a double.
+   */
+  public double getDouble(final int field) {
+    Preconditions.checkElementIndex(field, numFields(), "field");
+    if (!parseSimpleDecimal(field, MAX_DOUBLE_DIGITS, MAX_DOUBLE_POW10)) {
+      return Double.parseDouble(getString(field));
+    }
+    double value = decimalMantissa;
+    value =
+        decimalPow10 < 0 ? value / DOUBLE_POW10[-decimalPow10] : value * DOUBLE_POW10[decimalPow10];
+    return decimalNegative ? -value : value;
+  }
+
+  /**
+   * @param field a field of the current record.
+   * @return the field parsed like {@link Float#parseFloat(String)}.
+   * @throws NumberFormatException if the field is not a float.
+   */
+  public float getFloat(final int field) {
+    Preconditions.checkElementIndex(field, numFields(), "field");
+    if (!parseSimpleDecimal(field, MAX_FLOAT_DIGITS, MAX_FLOAT_POW10)) {
+      return Float.parseFloat(getString(field));
+    }
+    float value = decimalMantissa;
+    value =
+        decimalPow10 < 0 ? value / FLOAT_POW10[-decimalPow10] : value * FLOAT_POW10[decimalPow10];
+    return decimalNegative ? -value : value;
+  }
+
+  /**
+   * @return if the tokenizer has been closed.
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Close the tokenizer and the stream.
+   *
+   * @throws IOException if the stream cannot be closed.
+   */
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      hasNext = false;
+      input.close();
+    }
+  }
+}
@@ -3,17 +3,12 @@
  */
 package edu.washington.escience.myria;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.Iterator;
 
 import javax.annotation.Nullable;
 
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.lang.BooleanUtils;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -41,10 +36,8 @@ public class CsvTupleReader implements TupleReader {
   @JsonProperty("skip")
   private final Integer numberOfSkippedLines;
 
-  /** Scanner used to parse the file. */
-  private transient CSVParser parser = null;
-  /** Iterator over CSV records. */
-  private transient Iterator<CSVRecord> iterator = null;
+  /** Tokenizer used to parse the file. */
+  private transient CsvTokenizer tokenizer = null;
   /** Holds the tuples that are ready for release. */
   private transient TupleBatchBuffer buffer;
   /** Which line of the file the scanner is currently on. */
@@ -86,13 +79,13 @@ public class CsvTupleReader implements TupleReader {
   public void open(final InputStream stream) throws IOException, DbException {
     buffer = new TupleBatchBuffer(schema);
     try {
-      parser =
-          new CSVParser(
-              new BufferedReader(new InputStreamReader(stream)),
-              CSVFormat.newFormat(delimiter).withQuote(quote).withEscape(escape));
-      iterator = parser.iterator();
+      tokenizer = new CsvTokenizer(stream, delimiter, quote, escape);
       for (int i = 0; i < numberOfSkippedLines; i++) {
-        iterator.next();
+        if (!tokenizer.nextRecord()) {
+          /* the input is shorter than the skipped lines, so it has no tuples. */
+          tokenizer.close();
+          break;
+        }
       }
     } catch (IOException e) {
       throw new DbException(e);
@@ -108,34 +101,33 @@ public class CsvTupleReader implements TupleReader {
 
     while ((buffer.numTuples() < buffer.getBatchSize())) {
       lineNumber++;
-      if (parser.isClosed()) {
+      if (tokenizer.isClosed()) {
         break;
       }
       try {
-        if (!iterator.hasNext()) {
-          parser.close();
+        if (!tokenizer.nextRecord()) {
+          tokenizer.close();
           break;
         }
-      } catch (final RuntimeException e) {
+      } catch (final IOException e) {
         throw new DbException("Error parsing row " + lineNumber, e);
       }
-      CSVRecord record = iterator.next();
 
-      if (record.size() != schema.numColumns()) {
+      if (tokenizer.numFields() != schema.numColumns()) {
         throw new DbException(
             "Error parsing row "
                 + lineNumber
                 + ": Found "
-                + record.size()
+                + tokenizer.numFields()
                 + " column(s) but expected "
                 + schema.numColumns()
                 + " column(s).");
       }
       for (int column = 0; column < schema.numColumns(); ++column) {
-        String cell = record.get(column);
         try {
           switch (schema.getColumnType(column)) {
             case BOOLEAN_TYPE:
+              String cell = tokenizer.getString(column);
               if (Floats.tryParse(cell) != null) {
                 buffer.putBoolean(column, Floats.tryParse(cell) != 0);
               } else if (BooleanUtils.toBoolean(cell)) {
@@ -143,22 +135,22 @@ public class CsvTupleReader implements TupleReader {
               }
               break;
             case DOUBLE_TYPE:
-              buffer.putDouble(column, Double.parseDouble(cell));
+              buffer.putDouble(column, tokenizer.getDouble(column));
               break;
             case FLOAT_TYPE:
-              buffer.putFloat(column, Float.parseFloat(cell));
+              buffer.putFloat(column, tokenizer.getFloat(column));
               break;
             case INT_TYPE:
-              buffer.putInt(column, Integer.parseInt(cell));
+              buffer.putInt(column, tokenizer.getInt(column));
               break;
             case LONG_TYPE:
-              buffer.putLong(column, Long.parseLong(cell));
+              buffer.putLong(column, tokenizer.getLong(column));
               break;
             case STRING_TYPE:
-              buffer.putString(column, cell);
+              buffer.putString(column, tokenizer.getString(column));
               break;
             case DATETIME_TYPE:
-              buffer.putDateTime(column, DateTimeUtils.parse(cell));
+              buffer.putDateTime(column, DateTimeUtils.parse(tokenizer.getString(column)));
               break;
             case BLOB_TYPE:
               throw new DbException("Reading BLOB type from csv file is not supported!");
@@ -172,7 +164,7 @@ public class CsvTupleReader implements TupleReader {
                   + ", expected type: "
                   + schema.getColumnType(column)
                   + ", scanned value: "
-                  + cell,
+                  + tokenizer.getString(column),
               e);
         }
       }
@@ -205,7 +197,7 @@ public class CsvTupleReader implements TupleReader {
 
   @Override
   public void close() throws IOException {
-    parser = null;
+    tokenizer = null;
     while (buffer.numTuples() > 0) {
       buffer.popAny();
     }
@@ -74,6 +74,40 @@ public final class MyriaConstants {
    */
   public static final String EXEC_ENV_VAR_PROFILING_MODE = "profiling_mode";
 
+  /**
+   * The worker-local store of temporary relations, see
+   * {@link edu.washington.escience.myria.storage.TempRelationStore}.
+   */
+  public static final String EXEC_ENV_VAR_TEMP_RELATION_STORE = "tempRelationStore";
+
+  /**
+   * The fraction of the heap of a worker that may hold temporary relations in memory.
+   */
+  public static final double TEMP_RELATION_STORE_HEAP_FRACTION = 0.25;
+
+  /**
+   * The worker-wide registry of shared hash indexes, see
+   * {@link edu.washington.escience.myria.storage.HashIndexRegistry}.
+   */
+  public static final String EXEC_ENV_VAR_HASH_INDEX_REGISTRY = "hashIndexRegistry";
+
+  /**
+   * The fraction of the heap of a worker that may hold shared hash indexes.
+   */
+  public static final double HASH_INDEX_REGISTRY_HEAP_FRACTION = 0.1;
+
+  /**
+   * The number of tuples of a stored relation whose keys an
+   * {@link edu.washington.escience.myria.operator.IndexLookupJoin} caches, counting one for a key with no matches.
+   */
+  public static final int INDEX_LOOKUP_CACHE_TUPLES = 1 << 17;
+
+  /**
+   * The number of plan templates that each worker caches, see
+   * {@link edu.washington.escience.myria.parallel.PlanTemplate}.
+   */
+  public static final int PLAN_TEMPLATE_CACHE_SIZE = 64;
+
   /** Time interval between two heartbeats. */
   public static final int HEARTBEAT_INTERVAL = 1000;
 
@@ -159,6 +193,11 @@ public final class MyriaConstants {
    */
   public static final String STORAGE_SYSTEM_POSTGRESQL = "postgresql";
 
+  /**
+   * Native columnar storage.
+   */
+  public static final String STORAGE_SYSTEM_COLUMNAR = "columnar";
+
   /** Worker config file name. */
   public static final String WORKER_CONFIG_FILE = "worker.cfg";
 
@@ -205,6 +244,18 @@ public final class MyriaConstants {
   /** Default size of a TupleBatch. */
   public static final int TUPLE_BATCH_DEFAULT_SIZE = 10 * 1000;
 
+  /**
+   * A {@link edu.washington.escience.myria.operator.network.Producer} coalesces consecutive small batches sent to a
+   * remote worker into frames of up to {@link #TUPLE_BATCH_DEFAULT_SIZE} tuples or this many bytes. 1 MB.
+   */
+  public static final int PRODUCER_COALESCE_BYTES = 1 * MB;
+
+  /** The longest time a Producer holds small batches back to coalesce them, in milliseconds. */
+  public static final long PRODUCER_COALESCE_DELAY_MS = 10;
+
+  /** The most unused column buffers of each type and size a worker keeps for reuse. */
+  public static final int COLUMN_BUFFER_POOL_SIZE = 64;
+
   /**
    * The relation that stores profiling information about which operators executed when.
    */
@@ -406,6 +457,12 @@ public final class MyriaConstants {
 
   /** Byte overlap range for parallel ingest. **/
   public static final long PARALLEL_INGEST_BYTE_OVERLAP = 16 * KB;
+
+  /** Default number of byte ranges each worker reads concurrently during parallel ingest. */
+  public static final int PARALLEL_INGEST_RANGES_PER_WORKER = 4;
+
+  /** Minimum number of bytes per byte range for parallel ingest - 32MB. */
+  public static final long PARALLEL_INGEST_MINIMUM_RANGE_SIZE = 32 * MB;
   /**
    * Flatmapid column name
    */
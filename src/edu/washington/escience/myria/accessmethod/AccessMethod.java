@@ -4,6 +4,7 @@
 package edu.washington.escience.myria.accessmethod;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -15,6 +16,8 @@ import edu.washington.escience.myria.DbException;
 import edu.washington.escience.myria.MyriaConstants;
 import edu.washington.escience.myria.RelationKey;
 import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.column.Column;
+import edu.washington.escience.myria.column.builder.ColumnBuilder;
 import edu.washington.escience.myria.storage.TupleBatch;
 
 /**
@@ -40,6 +43,8 @@ public abstract class AccessMethod {
     switch (dbms) {
       case MyriaConstants.STORAGE_SYSTEM_SQLITE:
         return new SQLiteAccessMethod((SQLiteInfo) connectionInfo, readOnly);
+      case MyriaConstants.STORAGE_SYSTEM_COLUMNAR:
+        return new ColumnarAccessMethod((ColumnarInfo) connectionInfo, readOnly);
       case MyriaConstants.STORAGE_SYSTEM_MONETDB:
       case MyriaConstants.STORAGE_SYSTEM_MYSQL:
       case MyriaConstants.STORAGE_SYSTEM_POSTGRESQL:
@@ -88,6 +93,37 @@ public abstract class AccessMethod {
   public abstract Iterator<TupleBatch> tupleBatchIteratorFromQuery(
       final String queryString, final Schema schema) throws DbException;
 
+  /**
+   * Looks up the tuples of a stored relation whose key column equals any of the given keys, with one statement for all
+   * the keys, so an index on the key column turns the lookup into index seeks.
+   *
+   * @param relationKey the relation.
+   * @param schema the schema of the relation.
+   * @param keyColumn the key column of the relation.
+   * @param keys the distinct keys, as returned by {@link edu.washington.escience.myria.storage.ReadableTable#getObject}
+   *          for the type of the key column.
+   * @return the matching tuples.
+   * @throws DbException if there is an error getting tuples.
+   */
+  public abstract List<TupleBatch> tupleBatchLookup(
+      final RelationKey relationKey, final Schema schema, final int keyColumn, final List<?> keys)
+      throws DbException;
+
+  /**
+   * @param schema the schema of the tuples.
+   * @param columnBuilders the builders of the columns of the tuples.
+   * @param numTuples the number of tuples.
+   * @return the batch of the built columns.
+   */
+  static TupleBatch buildBatch(
+      final Schema schema, final List<ColumnBuilder<?>> columnBuilders, final int numTuples) {
+    List<Column<?>> columns = new ArrayList<Column<?>>(columnBuilders.size());
+    for (ColumnBuilder<?> cb : columnBuilders) {
+      columns.add(cb.build());
+    }
+    return new TupleBatch(schema, columns, numTuples);
+  }
+
   /**
    * Executes a DDL command.
    *
@@ -116,8 +152,10 @@ public abstract class AccessMethod {
    * @param schema the relation schema
    * @param relationKey the relation name
    * @return the insert statement string
+   * @throws DbException if the database does not use SQL statements.
    */
-  public abstract String insertStatementFromSchema(Schema schema, RelationKey relationKey);
+  public abstract String insertStatementFromSchema(Schema schema, RelationKey relationKey)
+      throws DbException;
 
   /**
    * Generates the create table statement string for a relation in the database.
@@ -125,9 +163,10 @@ public abstract class AccessMethod {
    * @param schema the relation schema
    * @param relationKey the relation name
    * @return the create table statement string
+   * @throws DbException if the database does not use SQL statements.
    */
   public abstract String createIfNotExistsStatementFromSchema(
-      Schema schema, RelationKey relationKey);
+      Schema schema, RelationKey relationKey) throws DbException;
 
   /**
    * Creates a table in the database, if it does not already exist.
@@ -0,0 +1,408 @@
+package edu.washington.escience.myria.accessmethod;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.RelationKey;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.api.MyriaJsonMapperProvider;
+import edu.washington.escience.myria.storage.TupleBatch;
+
+/**
+ * Access method for the native columnar storage, which stores each relation as compressed column chunks with zone
+ * maps in its own directory, in the format described by {@link ColumnarFormat}. Exposes data as TupleBatches.
+ *
+ * There is no SQL engine: the only queries supported are <code>SELECT * FROM relation</code>, optionally with a
+ * <code>WHERE</code> clause made of range comparisons between numeric columns and numbers joined by <code>AND</code>.
+ * Indexes are not built; the zone maps let scans skip the chunks that cannot match such a clause.
+ *
+ * Inserting, scanning, dropping and renaming relations are supported. Key lookups, views and SQL commands are not:
+ * {@link edu.washington.escience.myria.operator.IndexLookupJoin}, {@link
+ * edu.washington.escience.myria.operator.DbCreateView} and {@link edu.washington.escience.myria.operator.DbExecute}
+ * reject the columnar storage when they are initialized, and the methods behind them throw a {@link DbException}.
+ */
+public final class ColumnarAccessMethod extends AccessMethod {
+
+  /** The logger for this class. */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ColumnarAccessMethod.class);
+  /** The queries that can be run. */
+  private static final Pattern QUERY =
+      Pattern.compile(
+          "\\s*SELECT\\s+\\*\\s+FROM\\s+\"([^\"]+)\"(?:\\s+WHERE\\s+(.+?))?\\s*;?\\s*",
+          Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  /** The conjunctions of a WHERE clause. */
+  private static final Pattern AND = Pattern.compile("\\s+AND\\s+", Pattern.CASE_INSENSITIVE);
+  /** A comparison in a WHERE clause. */
+  private static final Pattern COMPARISON =
+      Pattern.compile("\\s*[\\[\"]?(\\w+)[\\]\"]?\\s*(<=|>=|=|<|>)\\s*([-+.\\dEe]+)\\s*");
+  /** Serializes the appends to each relation, keyed by the directory of the relation. */
+  private static final ConcurrentMap<Path, Object> APPEND_LOCKS = new ConcurrentHashMap<>();
+
+  /** The connection information. **/
+  private ColumnarInfo columnarInfo;
+  /** Flag that identifies the connection type (read-only or not). **/
+  private Boolean readOnly;
+  /** The data files being appended to, by relation. */
+  private final Map<RelationKey, FileChannel> dataFiles = new HashMap<>();
+  /** The index files being appended to, by relation. */
+  private final Map<RelationKey, FileChannel> indexFiles = new HashMap<>();
+
+  /**
+   * The constructor. Creates an object and opens the storage directory.
+   *
+   * @param columnarInfo connection information
+   * @param readOnly whether read-only connection or not
+   * @throws DbException if there is an error opening the storage directory.
+   */
+  public ColumnarAccessMethod(final ColumnarInfo columnarInfo, final Boolean readOnly)
+      throws DbException {
+    Objects.requireNonNull(columnarInfo);
+    connect(columnarInfo, readOnly);
+  }
+
+  @Override
+  void connect(final ConnectionInfo connectionInfo, final Boolean readOnly) throws DbException {
+    Objects.requireNonNull(connectionInfo);
+    columnarInfo = (ColumnarInfo) connectionInfo;
+    this.readOnly = readOnly;
+    if (!readOnly) {
+      try {
+        Files.createDirectories(Paths.get(columnarInfo.getDirectory()));
+      } catch (IOException e) {
+        throw new DbException("Could not create directory " + columnarInfo.getDirectory(), e);
+      }
+    }
+  }
+
+  @Override
+  void setReadOnly(final Boolean readOnly) throws DbException {
+    this.readOnly = readOnly;
+  }
+
+  /**
+   * @param relationKey a relation.
+   * @return the directory of the relation.
+   */
+  private Path relationDirectory(final RelationKey relationKey) {
+    return Paths.get(columnarInfo.getDirectory(), relationKey.toString());
+  }
+
+  /**
+   * @param relationKey a relation.
+   * @return the schema of the relation.
+   * @throws DbException if the relation does not exist.
+   */
+  private Schema readSchema(final RelationKey relationKey) throws DbException {
+    Path file = relationDirectory(relationKey).resolve(ColumnarFormat.SCHEMA_FILE);
+    if (!Files.exists(file)) {
+      throw new DbException("Relation " + relationKey + " does not exist");
+    }
+    try {
+      return MyriaJsonMapperProvider.getMapper().readValue(file.toFile(), Schema.class);
+    } catch (IOException e) {
+      throw new DbException("Error reading the schema of " + relationKey, e);
+    }
+  }
+
+  @Override
+  public void tupleBatchInsert(final RelationKey relationKey, final TupleBatch tupleBatch)
+      throws DbException {
+    Objects.requireNonNull(relationKey);
+    Objects.requireNonNull(tupleBatch);
+    if (readOnly) {
+      throw new DbException("Cannot insert into " + relationKey + " with a read-only connection");
+    }
+    if (tupleBatch.numTuples() == 0) {
+      return;
+    }
+    try {
+      ColumnarFormat.EncodedChunk chunk = ColumnarFormat.encode(tupleBatch);
+      FileChannel data = dataFiles.get(relationKey);
+      if (data == null) {
+        Path directory = relationDirectory(relationKey);
+        if (!Files.exists(directory.resolve(ColumnarFormat.SCHEMA_FILE))) {
+          throw new DbException("Relation " + relationKey + " does not exist");
+        }
+        data =
+            FileChannel.open(directory.resolve(ColumnarFormat.DATA_FILE), StandardOpenOption.WRITE);
+        dataFiles.put(relationKey, data);
+        indexFiles.put(
+            relationKey,
+            FileChannel.open(
+                directory.resolve(ColumnarFormat.INDEX_FILE), StandardOpenOption.WRITE));
+      }
+      FileChannel index = indexFiles.get(relationKey);
+      /* The data is written before the index entry, so readers only see complete chunks. */
+      synchronized (appendLock(relationKey)) {
+        long offset = data.size();
+        writeFully(data, ByteBuffer.wrap(chunk.data), offset);
+        writeFully(index, chunk.indexEntry(offset), index.size());
+      }
+    } catch (IOException e) {
+      throw new DbException("Error inserting into " + relationKey, e);
+    }
+  }
+
+  /**
+   * @param relationKey a relation.
+   * @return the lock that serializes the appends to the relation.
+   */
+  private Object appendLock(final RelationKey relationKey) {
+    Path directory = relationDirectory(relationKey).toAbsolutePath().normalize();
+    APPEND_LOCKS.putIfAbsent(directory, new Object());
+    return APPEND_LOCKS.get(directory);
+  }
+
+  /**
+   * @param channel a file.
+   * @param buffer the bytes to write.
+   * @param position the position of the bytes in the file.
+   * @throws IOException if there is an error writing.
+   */
+  private static void writeFully(final FileChannel channel, final ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  @Override
+  public Iterator<TupleBatch> tupleBatchIteratorFromQuery(
+      final String queryString, final Schema schema) throws DbException {
+    Matcher query = QUERY.matcher(queryString);
+    if (!query.matches()) {
+      throw new DbException(
+          "The columnar storage only supports SELECT * FROM relation [WHERE column op number [AND ...]], not "
+              + queryString);
+    }
+    String[] name = query.group(1).split(":");
+    if (name.length != 3) {
+      throw new DbException("Invalid relation name " + query.group(1));
+    }
+    RelationKey relationKey = RelationKey.of(name[0], name[1], name[2]);
+    Schema stored = readSchema(relationKey);
+    if (!stored.getColumnTypes().equals(schema.getColumnTypes())) {
+      throw new DbException(
+          "Relation " + relationKey + " has schema " + stored + ", not " + schema);
+    }
+    List<ColumnarRange> ranges = new ArrayList<>();
+    if (query.group(2) != null) {
+      for (String conjunct : AND.split(query.group(2))) {
+        Matcher comparison = COMPARISON.matcher(conjunct);
+        if (!comparison.matches()) {
+          throw new DbException("Unsupported predicate " + conjunct);
+        }
+        int column = stored.columnNameToIndex(comparison.group(1));
+        try {
+          ranges.add(
+              new ColumnarRange(
+                  column, stored.getColumnType(column), comparison.group(2), comparison.group(3)));
+        } catch (IllegalArgumentException e) {
+          throw new DbException("Unsupported predicate " + conjunct, e);
+        }
+      }
+    }
+    return new ColumnarTupleBatchIterator(relationDirectory(relationKey), schema, ranges);
+  }
+
+  @Override
+  public List<TupleBatch> tupleBatchLookup(
+      final RelationKey relationKey, final Schema schema, final int keyColumn, final List<?> keys)
+      throws DbException {
+    throw new DbException("the columnar storage has no indexes to look up keys in");
+  }
+
+  @Override
+  void execute(final String ddlCommand) throws DbException {
+    throw new DbException("the columnar storage does not execute SQL commands");
+  }
+
+  @Override
+  public void close() throws DbException {
+    try {
+      for (FileChannel channel : dataFiles.values()) {
+        channel.close();
+      }
+      for (FileChannel channel : indexFiles.values()) {
+        channel.close();
+      }
+    } catch (IOException e) {
+      throw new DbException(e);
+    } finally {
+      dataFiles.clear();
+      indexFiles.clear();
+    }
+  }
+
+  /**
+   * Stops appending to a relation that is about to be dropped or renamed.
+   *
+   * @param relationKey the relation.
+   * @throws IOException if there is an error closing its files.
+   */
+  private void closeFiles(final RelationKey relationKey) throws IOException {
+    FileChannel data = dataFiles.remove(relationKey);
+    if (data != null) {
+      data.close();
+    }
+    FileChannel index = indexFiles.remove(relationKey);
+    if (index != null) {
+      index.close();
+    }
+  }
+
+  @Override
+  public String insertStatementFromSchema(final Schema schema, final RelationKey relationKey)
+      throws DbException {
+    throw new DbException("the columnar storage does not use SQL statements");
+  }
+
+  @Override
+  public String createIfNotExistsStatementFromSchema(
+      final Schema schema, final RelationKey relationKey) throws DbException {
+    throw new DbException("the columnar storage does not use SQL statements");
+  }
+
+  @Override
+  public void createTableIfNotExists(final RelationKey relationKey, final Schema schema)
+      throws DbException {
+    Objects.requireNonNull(relationKey);
+    Objects.requireNonNull(schema);
+    Path directory = relationDirectory(relationKey);
+    synchronized (appendLock(relationKey)) {
+      if (Files.exists(directory.resolve(ColumnarFormat.SCHEMA_FILE))) {
+        return;
+      }
+      try {
+        Files.createDirectories(directory);
+        Files.createFile(directory.resolve(ColumnarFormat.DATA_FILE));
+        Files.createFile(directory.resolve(ColumnarFormat.INDEX_FILE));
+        /* The schema is written last, it marks the relation as created. */
+        ObjectMapper mapper = MyriaJsonMapperProvider.getMapper();
+        Path tempSchema = directory.resolve(ColumnarFormat.SCHEMA_FILE + ".tmp");
+        mapper.writeValue(tempSchema.toFile(), schema);
+        Files.move(
+            tempSchema,
+            directory.resolve(ColumnarFormat.SCHEMA_FILE),
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        throw new DbException("Error creating " + relationKey, e);
+      }
+    }
+  }
+
+  @Override
+  public void dropAndRenameTables(final RelationKey oldRelation, final RelationKey newRelation)
+      throws DbException {
+    dropTableIfExists(oldRelation);
+    try {
+      closeFiles(newRelation);
+      Files.move(
+          relationDirectory(newRelation),
+          relationDirectory(oldRelation),
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new DbException("Error renaming " + newRelation + " to " + oldRelation, e);
+    }
+  }
+
+  @Override
+  public void dropTableIfExists(final RelationKey relationKey) throws DbException {
+    Path directory = relationDirectory(relationKey);
+    try {
+      closeFiles(relationKey);
+      if (!Files.exists(directory)) {
+        return;
+      }
+      Files.walkFileTree(
+          directory,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+                throws IOException {
+              Files.delete(file);
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException e)
+                throws IOException {
+              if (e != null) {
+                throw e;
+              }
+              Files.delete(dir);
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    } catch (IOException e) {
+      throw new DbException("Error dropping " + relationKey, e);
+    }
+  }
+
+  @Override
+  public void dropTableIfExistsCascade(final RelationKey relationKey) throws DbException {
+    /* There are no views that could depend on a relation. */
+    dropTableIfExists(relationKey);
+  }
+
+  @Override
+  public void createIndexes(
+      final RelationKey relationKey, final Schema schema, final List<List<IndexRef>> indexes)
+      throws DbException {
+    Objects.requireNonNull(indexes);
+    if (!indexes.isEmpty()) {
+      LOGGER.warn(
+          "The columnar storage does not build indexes, scans of {} will use zone maps instead",
+          relationKey);
+    }
+  }
+
+  @Override
+  public void createIndexIfNotExists(
+      final RelationKey relationKey, final Schema schema, final List<IndexRef> index)
+      throws DbException {
+    createIndexes(relationKey, schema, Collections.singletonList(index));
+  }
+
+  @Override
+  public void createView(final String viewName, final String viewDefinition) throws DbException {
+    throw new DbException("create view is not supported in the columnar storage");
+  }
+
+  @Override
+  public void createMaterializedView(final String viewName, final String viewDefinition)
+      throws DbException {
+    throw new DbException("create materialized view is not supported in the columnar storage");
+  }
+
+  @Override
+  public void runCommand(final String command) throws DbException {
+    throw new DbException("execute sql command is not supported in the columnar storage");
+  }
+}
@@ -0,0 +1,561 @@
+package edu.washington.escience.myria.accessmethod;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.column.BlobColumn;
+import edu.washington.escience.myria.column.BooleanColumn;
+import edu.washington.escience.myria.column.Column;
+import edu.washington.escience.myria.column.DateTimeColumn;
+import edu.washington.escience.myria.column.DoubleColumn;
+import edu.washington.escience.myria.column.FloatColumn;
+import edu.washington.escience.myria.column.IntArrayColumn;
+import edu.washington.escience.myria.column.LongColumn;
+import edu.washington.escience.myria.column.StringArrayColumn;
+import edu.washington.escience.myria.storage.TupleBatch;
+
+/**
+ * The on-disk format of the native columnar storage.
+ *
+ * A relation is a directory holding its schema, a data file and an index file. Every inserted {@link TupleBatch} is
+ * appended to the data file as one chunk, which holds one block per column, and is described by one fixed-size entry
+ * of the index file: the offset of the chunk, its number of tuples, and the length and the zone map (minimum and
+ * maximum value) of each of its blocks.
+ *
+ * Integral and datetime columns are stored as bit-packed offsets from the minimum of the chunk. Strings are
+ * dictionary-encoded when a chunk has few distinct values. Floating point columns and booleans are stored as is.
+ */
+final class ColumnarFormat {
+  /** Utility classes cannot be constructed. */
+  private ColumnarFormat() {}
+
+  /** The name of the file holding the schema of a relation. */
+  static final String SCHEMA_FILE = "schema.json";
+  /** The name of the file holding the chunks of a relation. */
+  static final String DATA_FILE = "data";
+  /** The name of the file holding the index entries of a relation. */
+  static final String INDEX_FILE = "index";
+
+  /** The size of the part of an index entry that describes the whole chunk: its offset and number of tuples. */
+  private static final int CHUNK_HEADER_SIZE = Long.BYTES + Integer.BYTES;
+  /** The size of the part of an index entry that describes a block: length, zone map flag, minimum and maximum. */
+  private static final int BLOCK_HEADER_SIZE = Integer.BYTES + 1 + 2 * Long.BYTES;
+
+  /** A string block holding the strings themselves. */
+  private static final byte STRINGS_PLAIN = 0;
+  /** A string block holding a dictionary and the codes of the strings. */
+  private static final byte STRINGS_DICTIONARY = 1;
+  /** Strings are dictionary-encoded when there are at most this fraction of distinct values in a chunk. */
+  private static final int DICTIONARY_MAX_DISTINCT_FRACTION = 4;
+
+  /**
+   * @param schema the schema of a relation.
+   * @return the size of an index entry of the relation.
+   */
+  static int indexEntrySize(final Schema schema) {
+    return CHUNK_HEADER_SIZE + schema.numColumns() * BLOCK_HEADER_SIZE;
+  }
+
+  /**
+   * @param type a column type.
+   * @return true if the blocks of the type have a zone map of longs.
+   */
+  static boolean isIntegral(final Type type) {
+    return type == Type.INT_TYPE || type == Type.LONG_TYPE || type == Type.DATETIME_TYPE;
+  }
+
+  /**
+   * @param type a column type.
+   * @return true if the blocks of the type have a zone map of doubles.
+   */
+  static boolean isFloating(final Type type) {
+    return type == Type.FLOAT_TYPE || type == Type.DOUBLE_TYPE;
+  }
+
+  /** An encoded chunk and its index entry. */
+  static final class EncodedChunk {
+    /** The blocks of the chunk. */
+    final byte[] data;
+    /** The index entry of the chunk, with the offset left to be filled in. */
+    final ByteBuffer indexEntry;
+
+    /**
+     * @param data the blocks of the chunk.
+     * @param indexEntry the index entry of the chunk.
+     */
+    private EncodedChunk(final byte[] data, final ByteBuffer indexEntry) {
+      this.data = data;
+      this.indexEntry = indexEntry;
+    }
+
+    /**
+     * @param offset the offset of the chunk in the data file.
+     * @return the index entry of the chunk, ready to be written.
+     */
+    ByteBuffer indexEntry(final long offset) {
+      indexEntry.putLong(0, offset);
+      indexEntry.rewind();
+      return indexEntry;
+    }
+  }
+
+  /** The index entry of a chunk. */
+  static final class ChunkEntry {
+    /** The offset of the chunk in the data file. */
+    final long offset;
+    /** The number of tuples in the chunk. */
+    final int numTuples;
+    /** The length of each block. */
+    final int[] lengths;
+    /** Whether each block has a zone map. */
+    final boolean[] hasZoneMap;
+    /** The minimum of each block, as a long or the bits of a double depending on the column type. */
+    final long[] min;
+    /** The maximum of each block, as a long or the bits of a double depending on the column type. */
+    final long[] max;
+
+    /**
+     * Reads an index entry.
+     *
+     * @param index the index file, positioned at the entry.
+     * @param numColumns the number of columns of the relation.
+     */
+    ChunkEntry(final ByteBuffer index, final int numColumns) {
+      offset = index.getLong();
+      numTuples = index.getInt();
+      lengths = new int[numColumns];
+      hasZoneMap = new boolean[numColumns];
+      min = new long[numColumns];
+      max = new long[numColumns];
+      for (int i = 0; i < numColumns; ++i) {
+        lengths[i] = index.getInt();
+        hasZoneMap[i] = index.get() != 0;
+        min[i] = index.getLong();
+        max[i] = index.getLong();
+      }
+    }
+
+    /**
+     * @return the total length of the blocks of the chunk.
+     */
+    long length() {
+      long ret = 0;
+      for (int length : lengths) {
+        ret += length;
+      }
+      return ret;
+    }
+  }
+
+  /**
+   * Encodes a batch of tuples as a chunk.
+   *
+   * @param tb the tuples.
+   * @return the encoded chunk.
+   * @throws IOException if there is an error encoding the tuples.
+   */
+  static EncodedChunk encode(final TupleBatch tb) throws IOException {
+    final Schema schema = tb.getSchema();
+    final int n = tb.numTuples();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    ByteBuffer entry = ByteBuffer.allocate(indexEntrySize(schema));
+    entry.putLong(0L).putInt(n);
+    for (int column = 0; column < schema.numColumns(); ++column) {
+      final int start = out.size();
+      final Type type = schema.getColumnType(column);
+      boolean hasZoneMap = false;
+      long min = 0;
+      long max = 0;
+      switch (type) {
+        case INT_TYPE:
+        case LONG_TYPE:
+        case DATETIME_TYPE:
+          {
+            long[] values = new long[n];
+            for (int row = 0; row < n; ++row) {
+              values[row] = getIntegral(tb, type, column, row);
+            }
+            if (n > 0) {
+              hasZoneMap = true;
+              min = Long.MAX_VALUE;
+              max = Long.MIN_VALUE;
+              for (long v : values) {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+              }
+            }
+            writePacked(out, values, min, max);
+            break;
+          }
+        case FLOAT_TYPE:
+        case DOUBLE_TYPE:
+          {
+            double lo = Double.POSITIVE_INFINITY;
+            double hi = Double.NEGATIVE_INFINITY;
+            for (int row = 0; row < n; ++row) {
+              double v;
+              if (type == Type.FLOAT_TYPE) {
+                float f = tb.getFloat(column, row);
+                out.writeFloat(f);
+                v = f;
+              } else {
+                v = tb.getDouble(column, row);
+                out.writeDouble(v);
+              }
+              /* NaN never satisfies a range predicate, so it does not need to be in the zone map. */
+              if (!Double.isNaN(v)) {
+                lo = Math.min(lo, v);
+                hi = Math.max(hi, v);
+              }
+            }
+            if (n > 0) {
+              hasZoneMap = true;
+              min = Double.doubleToRawLongBits(lo);
+              max = Double.doubleToRawLongBits(hi);
+            }
+            break;
+          }
+        case BOOLEAN_TYPE:
+          {
+            BitSet bits = new BitSet(n);
+            for (int row = 0; row < n; ++row) {
+              bits.set(row, tb.getBoolean(column, row));
+            }
+            long[] words = bits.toLongArray();
+            for (int i = 0; i < (n + Long.SIZE - 1) / Long.SIZE; ++i) {
+              out.writeLong(i < words.length ? words[i] : 0L);
+            }
+            break;
+          }
+        case STRING_TYPE:
+          writeStrings(out, tb, column);
+          break;
+        case BLOB_TYPE:
+          {
+            byte[][] blobs = new byte[n][];
+            for (int row = 0; row < n; ++row) {
+              ByteBuffer blob = tb.getBlob(column, row).duplicate();
+              blob.rewind();
+              blobs[row] = new byte[blob.remaining()];
+              blob.get(blobs[row]);
+            }
+            writeByteArrays(out, blobs);
+            break;
+          }
+        default:
+          throw new UnsupportedOperationException("Type " + type + " is not supported");
+      }
+      entry.putInt(out.size() - start).put((byte) (hasZoneMap ? 1 : 0)).putLong(min).putLong(max);
+    }
+    out.flush();
+    return new EncodedChunk(bytes.toByteArray(), entry);
+  }
+
+  /**
+   * @param tb the tuples.
+   * @param type the type of the column, integral or datetime.
+   * @param column the column.
+   * @param row the row.
+   * @return the value as a long.
+   */
+  private static long getIntegral(
+      final TupleBatch tb, final Type type, final int column, final int row) {
+    switch (type) {
+      case INT_TYPE:
+        return tb.getInt(column, row);
+      case LONG_TYPE:
+        return tb.getLong(column, row);
+      default:
+        return tb.getDateTime(column, row).getMillis();
+    }
+  }
+
+  /**
+   * Writes the strings of a column, dictionary-encoded if there are few distinct values.
+   *
+   * @param out the output.
+   * @param tb the tuples.
+   * @param column the column.
+   * @throws IOException if there is an error writing.
+   */
+  private static void writeStrings(
+      final DataOutputStream out, final TupleBatch tb, final int column) throws IOException {
+    final int n = tb.numTuples();
+    Map<String, Integer> dictionary = new HashMap<>();
+    List<String> distinct = new ArrayList<>();
+    long[] codes = new long[n];
+    for (int row = 0; row < n; ++row) {
+      String s = tb.getString(column, row);
+      Integer code = dictionary.get(s);
+      if (code == null) {
+        code = distinct.size();
+        dictionary.put(s, code);
+        distinct.add(s);
+      }
+      codes[row] = code;
+    }
+    final boolean useDictionary = distinct.size() * DICTIONARY_MAX_DISTINCT_FRACTION <= n;
+    final List<String> strings;
+    if (useDictionary) {
+      strings = distinct;
+    } else {
+      strings = new ArrayList<>(n);
+      for (int row = 0; row < n; ++row) {
+        strings.add(tb.getString(column, row));
+      }
+    }
+    byte[][] encoded = new byte[strings.size()][];
+    for (int i = 0; i < encoded.length; ++i) {
+      encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+    }
+    out.writeByte(useDictionary ? STRINGS_DICTIONARY : STRINGS_PLAIN);
+    if (useDictionary) {
+      out.writeInt(encoded.length);
+      writeByteArrays(out, encoded);
+      writePacked(out, codes, 0, Math.max(0, encoded.length - 1));
+    } else {
+      writeByteArrays(out, encoded);
+    }
+  }
+
+  /**
+   * Writes byte arrays as their packed lengths followed by their bytes.
+   *
+   * @param out the output.
+   * @param arrays the byte arrays.
+   * @throws IOException if there is an error writing.
+   */
+  private static void writeByteArrays(final DataOutputStream out, final byte[][] arrays)
+      throws IOException {
+    long[] lengths = new long[arrays.length];
+    long maxLength = 0;
+    for (int i = 0; i < arrays.length; ++i) {
+      lengths[i] = arrays[i].length;
+      maxLength = Math.max(maxLength, lengths[i]);
+    }
+    writePacked(out, lengths, 0, maxLength);
+    for (byte[] array : arrays) {
+      out.write(array);
+    }
+  }
+
+  /**
+   * Writes values as a base followed by the offsets from the base, each in the least number of bits that fits them all.
+   *
+   * @param out the output.
+   * @param values the values.
+   * @param min the minimum of the values, used as the base.
+   * @param max the maximum of the values.
+   * @throws IOException if there is an error writing.
+   */
+  private static void writePacked(
+      final DataOutputStream out, final long[] values, final long min, final long max)
+      throws IOException {
+    /* The difference may overflow, but as an unsigned number it is always right. */
+    final int bitWidth = Long.SIZE - Long.numberOfLeadingZeros(max - min);
+    out.writeByte(bitWidth);
+    out.writeLong(min);
+    if (bitWidth == 0) {
+      return;
+    }
+    long[] words = new long[numWords(values.length, bitWidth)];
+    for (int i = 0; i < values.length; ++i) {
+      final long delta = values[i] - min;
+      final long bitPos = (long) i * bitWidth;
+      final int word = (int) (bitPos >>> 6);
+      final int shift = (int) (bitPos & 63);
+      words[word] |= delta << shift;
+      if (shift + bitWidth > Long.SIZE) {
+        words[word + 1] |= delta >>> (Long.SIZE - shift);
+      }
+    }
+    for (long word : words) {
+      out.writeLong(word);
+    }
+  }
+
+  /**
+   * @param numValues the number of values.
+   * @param bitWidth the number of bits per value.
+   * @return the number of words needed to pack the values.
+   */
+  private static int numWords(final int numValues, final int bitWidth) {
+    return (int) (((long) numValues * bitWidth + Long.SIZE - 1) / Long.SIZE);
+  }
+
+  /**
+   * Reads packed values.
+   *
+   * @param in the input, positioned at the values.
+   * @param values the array the values are stored in.
+   * @param n the number of values.
+   */
+  private static void readPacked(final ByteBuffer in, final long[] values, final int n) {
+    final int bitWidth = in.get();
+    final long base = in.getLong();
+    if (bitWidth == 0) {
+      for (int i = 0; i < n; ++i) {
+        values[i] = base;
+      }
+      return;
+    }
+    final long mask = bitWidth == Long.SIZE ? -1L : (1L << bitWidth) - 1;
+    final int start = in.position();
+    for (int i = 0; i < n; ++i) {
+      final long bitPos = (long) i * bitWidth;
+      final int word = start + (int) (bitPos >>> 6) * Long.BYTES;
+      final int shift = (int) (bitPos & 63);
+      long delta = in.getLong(word) >>> shift;
+      if (shift + bitWidth > Long.SIZE) {
+        delta |= in.getLong(word + Long.BYTES) << (Long.SIZE - shift);
+      }
+      values[i] = base + (delta & mask);
+    }
+    in.position(start + numWords(n, bitWidth) * Long.BYTES);
+  }
+
+  /**
+   * Reads byte arrays written by {@link #writeByteArrays}.
+   *
+   * @param in the input, positioned at the byte arrays.
+   * @param n the number of byte arrays.
+   * @return the lengths of the arrays; the bytes follow the current position of the input.
+   */
+  private static long[] readLengths(final ByteBuffer in, final int n) {
+    long[] lengths = new long[n];
+    readPacked(in, lengths, n);
+    return lengths;
+  }
+
+  /**
+   * Decodes a chunk.
+   *
+   * @param chunk the blocks of the chunk.
+   * @param entry the index entry of the chunk.
+   * @param schema the schema of the relation.
+   * @return the columns of the chunk.
+   */
+  static List<Column<?>> decode(
+      final ByteBuffer chunk, final ChunkEntry entry, final Schema schema) {
+    final int n = entry.numTuples;
+    List<Column<?>> columns = new ArrayList<>(schema.numColumns());
+    int blockStart = chunk.position();
+    for (int column = 0; column < schema.numColumns(); ++column) {
+      chunk.position(blockStart);
+      final Type type = schema.getColumnType(column);
+      switch (type) {
+        case INT_TYPE:
+          {
+            long[] values = new long[n];
+            readPacked(chunk, values, n);
+            int[] ints = new int[n];
+            for (int i = 0; i < n; ++i) {
+              ints[i] = (int) values[i];
+            }
+            columns.add(new IntArrayColumn(ints, n));
+            break;
+          }
+        case LONG_TYPE:
+          {
+            long[] values = new long[n];
+            readPacked(chunk, values, n);
+            columns.add(new LongColumn(values, n));
+            break;
+          }
+        case DATETIME_TYPE:
+          {
+            long[] values = new long[n];
+            readPacked(chunk, values, n);
+            DateTime[] dates = new DateTime[n];
+            for (int i = 0; i < n; ++i) {
+              dates[i] = new DateTime(values[i]);
+            }
+            columns.add(new DateTimeColumn(dates, n));
+            break;
+          }
+        case FLOAT_TYPE:
+          {
+            float[] values = new float[n];
+            chunk.asFloatBuffer().get(values);
+            columns.add(new FloatColumn(values, n));
+            break;
+          }
+        case DOUBLE_TYPE:
+          {
+            double[] values = new double[n];
+            chunk.asDoubleBuffer().get(values);
+            columns.add(new DoubleColumn(values, n));
+            break;
+          }
+        case BOOLEAN_TYPE:
+          {
+            long[] words = new long[(n + Long.SIZE - 1) / Long.SIZE];
+            chunk.asLongBuffer().get(words);
+            columns.add(new BooleanColumn(BitSet.valueOf(words), n));
+            break;
+          }
+        case STRING_TYPE:
+          columns.add(new StringArrayColumn(readStrings(chunk, n), n));
+          break;
+        case BLOB_TYPE:
+          {
+            long[] lengths = readLengths(chunk, n);
+            ByteBuffer[] blobs = new ByteBuffer[n];
+            for (int i = 0; i < n; ++i) {
+              byte[] blob = new byte[(int) lengths[i]];
+              chunk.get(blob);
+              blobs[i] = ByteBuffer.wrap(blob);
+            }
+            columns.add(new BlobColumn(blobs, n));
+            break;
+          }
+        default:
+          throw new UnsupportedOperationException("Type " + type + " is not supported");
+      }
+      blockStart += entry.lengths[column];
+    }
+    return columns;
+  }
+
+  /**
+   * Reads strings written by {@link #writeStrings}.
+   *
+   * @param in the input, positioned at the strings.
+   * @param n the number of strings.
+   * @return the strings.
+   */
+  private static String[] readStrings(final ByteBuffer in, final int n) {
+    final boolean useDictionary = in.get() == STRINGS_DICTIONARY;
+    final int numStrings = useDictionary ? in.getInt() : n;
+    long[] lengths = readLengths(in, numStrings);
+    String[] strings = new String[numStrings];
+    for (int i = 0; i < numStrings; ++i) {
+      byte[] bytes = new byte[(int) lengths[i]];
+      in.get(bytes);
+      strings[i] = new String(bytes, StandardCharsets.UTF_8);
+    }
+    if (!useDictionary) {
+      return strings;
+    }
+    long[] codes = new long[n];
+    readPacked(in, codes, n);
+    String[] ret = new String[n];
+    for (int i = 0; i < n; ++i) {
+      ret[i] = strings[(int) codes[i]];
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,55 @@
+package edu.washington.escience.myria.accessmethod;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import edu.washington.escience.myria.MyriaConstants;
+
+/**
+ * Holds the info for the native columnar storage: the directory that holds one subdirectory per relation.
+ */
+public final class ColumnarInfo extends ConnectionInfo implements Serializable {
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+  /** The directory holding the relations. */
+  @JsonProperty private final String directory;
+
+  /**
+   * This is not really unused, it's used automagically by Jackson deserialization.
+   */
+  private ColumnarInfo() {
+    directory = null;
+  }
+
+  /**
+   * Private constructor.
+   *
+   * @param directory the directory holding the relations.
+   */
+  private ColumnarInfo(final String directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Creates a new ColumnarInfo object.
+   *
+   * @param directory the directory holding the relations.
+   * @return a new ColumnarInfo containing this information.
+   */
+  public static ColumnarInfo of(final String directory) {
+    return new ColumnarInfo(directory);
+  }
+
+  /**
+   * @return the directory holding the relations.
+   */
+  public String getDirectory() {
+    return directory;
+  }
+
+  @Override
+  public String getDbms() {
+    return MyriaConstants.STORAGE_SYSTEM_COLUMNAR;
+  }
+}
@@ -0,0 +1,175 @@
+package edu.washington.escience.myria.accessmethod;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.storage.TupleBatch;
+
+/**
+ * A range predicate on a numeric column of a relation in the native columnar storage, e.g. <code>x &lt; 5</code>. A
+ * range is checked against the zone map of a chunk to skip chunks that cannot hold a matching tuple, and against every
+ * tuple of the chunks that are read.
+ */
+final class ColumnarRange {
+  /** The column. */
+  private final int column;
+  /** The type of the column. */
+  private final Type type;
+  /** The inclusive lower bound of an integral column. */
+  private final long longLo;
+  /** The inclusive upper bound of an integral column. */
+  private final long longHi;
+  /** The lower bound of a floating point column. */
+  private final double doubleLo;
+  /** The upper bound of a floating point column. */
+  private final double doubleHi;
+  /** If the lower bound of a floating point column is inclusive. */
+  private final boolean loInclusive;
+  /** If the upper bound of a floating point column is inclusive. */
+  private final boolean hiInclusive;
+  /** If no value of an integral column is in the range. */
+  private final boolean empty;
+
+  /** The smallest long, as a decimal. */
+  private static final BigDecimal MIN_LONG = BigDecimal.valueOf(Long.MIN_VALUE);
+  /** The largest long, as a decimal. */
+  private static final BigDecimal MAX_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+
+  /**
+   * @param column the column.
+   * @param type the type of the column, which must be numeric.
+   * @param op the comparison, one of <code>=, &lt;, &lt;=, &gt;, &gt;=</code>.
+   * @param literal the number the column is compared to.
+   * @throws NumberFormatException if the literal is not a number.
+   * @throws IllegalArgumentException if the type or the comparison is not supported.
+   */
+  ColumnarRange(final int column, final Type type, final String op, final String literal) {
+    this.column = column;
+    this.type = type;
+    BigDecimal value = new BigDecimal(literal);
+    if (type == Type.INT_TYPE || type == Type.LONG_TYPE) {
+      BigDecimal lo = MIN_LONG;
+      BigDecimal hi = MAX_LONG;
+      BigDecimal floor = value.setScale(0, RoundingMode.FLOOR);
+      BigDecimal ceiling = value.setScale(0, RoundingMode.CEILING);
+      switch (op) {
+        case "=":
+          lo = ceiling;
+          hi = floor;
+          break;
+        case "<":
+          hi = ceiling.subtract(BigDecimal.ONE);
+          break;
+        case "<=":
+          hi = floor;
+          break;
+        case ">":
+          lo = floor.add(BigDecimal.ONE);
+          break;
+        case ">=":
+          lo = ceiling;
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported comparison " + op);
+      }
+      empty = lo.compareTo(hi) > 0 || lo.compareTo(MAX_LONG) > 0 || hi.compareTo(MIN_LONG) < 0;
+      longLo = lo.max(MIN_LONG).longValue();
+      longHi = hi.min(MAX_LONG).longValue();
+      doubleLo = 0;
+      doubleHi = 0;
+      loInclusive = true;
+      hiInclusive = true;
+    } else if (type == Type.FLOAT_TYPE || type == Type.DOUBLE_TYPE) {
+      double v = value.doubleValue();
+      empty = false;
+      longLo = 0;
+      longHi = 0;
+      switch (op) {
+        case "=":
+          doubleLo = v;
+          doubleHi = v;
+          loInclusive = true;
+          hiInclusive = true;
+          break;
+        case "<":
+        case "<=":
+          doubleLo = Double.NEGATIVE_INFINITY;
+          doubleHi = v;
+          loInclusive = true;
+          hiInclusive = op.equals("<=");
+          break;
+        case ">":
+        case ">=":
+          doubleLo = v;
+          doubleHi = Double.POSITIVE_INFINITY;
+          loInclusive = op.equals(">=");
+          hiInclusive = true;
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported comparison " + op);
+      }
+    } else {
+      throw new IllegalArgumentException("Range predicates on " + type + " are not supported");
+    }
+  }
+
+  /**
+   * @return true if this is a range on an integral column.
+   */
+  private boolean isIntegral() {
+    return type == Type.INT_TYPE || type == Type.LONG_TYPE;
+  }
+
+  /**
+   * @param v a value of an integral column.
+   * @return true if the value is in this range.
+   */
+  private boolean contains(final long v) {
+    return !empty && longLo <= v && v <= longHi;
+  }
+
+  /**
+   * @param v a value of a floating point column.
+   * @return true if the value is in this range.
+   */
+  private boolean contains(final double v) {
+    return (loInclusive ? v >= doubleLo : v > doubleLo)
+        && (hiInclusive ? v <= doubleHi : v < doubleHi);
+  }
+
+  /**
+   * @param entry the index entry of a chunk.
+   * @return false if no tuple of the chunk can be in this range.
+   */
+  boolean mayMatch(final ColumnarFormat.ChunkEntry entry) {
+    if (!entry.hasZoneMap[column]) {
+      return true;
+    }
+    if (isIntegral()) {
+      return !empty && entry.min[column] <= longHi && entry.max[column] >= longLo;
+    }
+    final double min = Double.longBitsToDouble(entry.min[column]);
+    final double max = Double.longBitsToDouble(entry.max[column]);
+    return (hiInclusive ? min <= doubleHi : min < doubleHi)
+        && (loInclusive ? max >= doubleLo : max > doubleLo);
+  }
+
+  /**
+   * @param tb a batch of tuples.
+   * @param row a row of the batch.
+   * @return true if the value of the column in the row is in this range.
+   */
+  boolean matches(final TupleBatch tb, final int row) {
+    switch (type) {
+      case INT_TYPE:
+        return contains(tb.getInt(column, row));
+      case LONG_TYPE:
+        return contains(tb.getLong(column, row));
+      case FLOAT_TYPE:
+        return contains(tb.getFloat(column, row));
+      default:
+        return contains(tb.getDouble(column, row));
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package edu.washington.escience.myria.accessmethod;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.storage.TupleBatch;
+
+/**
+ * Reads the chunks of a relation in the native columnar storage as TupleBatches. Chunks are memory-mapped one at a
+ * time; chunks whose zone maps rule out every tuple of a range predicate are not read at all, and the tuples of the
+ * chunks that are read are filtered by the predicates.
+ *
+ * The chunks that are read are the ones that were complete when the iterator was created.
+ */
+public class ColumnarTupleBatchIterator implements Iterator<TupleBatch> {
+  /** The data file of the relation. */
+  private final FileChannel data;
+  /** The Schema of the TupleBatches returned by this Iterator. */
+  private final Schema schema;
+  /** The range predicates. */
+  private final List<ColumnarRange> ranges;
+  /** The index entries of the chunks. */
+  private final ByteBuffer index;
+  /** The number of index entries. */
+  private final int numChunks;
+  /** The next chunk to read. */
+  private int nextChunk;
+  /** The next TupleBatch to return, null if it has not been read yet. */
+  private TupleBatch next;
+
+  /**
+   * @param relationDirectory the directory of the relation.
+   * @param schema the Schema of the TupleBatches returned by this Iterator.
+   * @param ranges the range predicates that the returned tuples satisfy.
+   * @throws DbException if the relation cannot be read.
+   */
+  ColumnarTupleBatchIterator(
+      final Path relationDirectory, final Schema schema, final List<ColumnarRange> ranges)
+      throws DbException {
+    this.schema = schema;
+    this.ranges = ImmutableList.copyOf(ranges);
+    try (FileChannel indexChannel =
+        FileChannel.open(
+            relationDirectory.resolve(ColumnarFormat.INDEX_FILE), StandardOpenOption.READ)) {
+      final int entrySize = ColumnarFormat.indexEntrySize(schema);
+      numChunks = (int) (indexChannel.size() / entrySize);
+      index = ByteBuffer.allocate(numChunks * entrySize);
+      while (index.hasRemaining() && indexChannel.read(index) >= 0) {}
+      index.flip();
+      data =
+          FileChannel.open(
+              relationDirectory.resolve(ColumnarFormat.DATA_FILE), StandardOpenOption.READ);
+    } catch (IOException e) {
+      throw new DbException("Error reading " + relationDirectory, e);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    try {
+      while (next == null && nextChunk < numChunks) {
+        next = readChunk(new ColumnarFormat.ChunkEntry(index, schema.numColumns()));
+        ++nextChunk;
+      }
+      if (next == null) {
+        data.close();
+        return false;
+      }
+      return true;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @param entry the index entry of a chunk.
+   * @return the tuples of the chunk that satisfy the range predicates, null if there are none.
+   * @throws IOException if the chunk cannot be read.
+   */
+  private TupleBatch readChunk(final ColumnarFormat.ChunkEntry entry) throws IOException {
+    if (entry.numTuples == 0) {
+      return null;
+    }
+    for (ColumnarRange range : ranges) {
+      if (!range.mayMatch(entry)) {
+        return null;
+      }
+    }
+    ByteBuffer chunk = data.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.length());
+    TupleBatch tb =
+        new TupleBatch(schema, ColumnarFormat.decode(chunk, entry, schema), entry.numTuples);
+    if (ranges.isEmpty()) {
+      return tb;
+    }
+    BitSet keep = new BitSet(tb.numTuples());
+    for (int row = 0; row < tb.numTuples(); ++row) {
+      boolean matches = true;
+      for (ColumnarRange range : ranges) {
+        if (!range.matches(tb, row)) {
+          matches = false;
+          break;
+        }
+      }
+      keep.set(row, matches);
+    }
+    if (keep.isEmpty()) {
+      return null;
+    }
+    return tb.filter(keep);
+  }
+
+  @Override
+  public TupleBatch next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    TupleBatch ret = next;
+    next = null;
+    return ret;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("ColumnarTupleBatchIterator.remove()");
+  }
+}
@@ -35,6 +35,8 @@ public abstract class ConnectionInfo {
       switch (dbms) {
         case MyriaConstants.STORAGE_SYSTEM_SQLITE:
           return mapper.readValue(jsonConnInfo, SQLiteInfo.class);
+        case MyriaConstants.STORAGE_SYSTEM_COLUMNAR:
+          return mapper.readValue(jsonConnInfo, ColumnarInfo.class);
         case MyriaConstants.STORAGE_SYSTEM_MONETDB:
         case MyriaConstants.STORAGE_SYSTEM_MYSQL:
         case MyriaConstants.STORAGE_SYSTEM_POSTGRESQL:
@@ -96,6 +98,11 @@ public abstract class ConnectionInfo {
             SQLiteInfo.of(Paths.get(dirName, "workers", workerId + "", "data.db").toString());
         result = sqliteInfo.toJson();
         break;
+      case MyriaConstants.STORAGE_SYSTEM_COLUMNAR:
+        ColumnarInfo columnarInfo =
+            ColumnarInfo.of(Paths.get(dirName, "workers", workerId + "", "columnar").toString());
+        result = columnarInfo.toJson();
+        break;
       case MyriaConstants.STORAGE_SYSTEM_MONETDB:
         // TODO: Allow using the parameters to create the connection info.
         // Now it is hardcoded to use a specific connection info, which allows only one
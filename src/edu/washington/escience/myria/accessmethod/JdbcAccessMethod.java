@@ -14,6 +14,7 @@ import java.util.List;
 import java.util.Objects;
 
 import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
 import org.postgresql.PGConnection;
 import org.postgresql.PGStatement;
 import org.postgresql.copy.CopyIn;
@@ -34,6 +35,7 @@ import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.TupleWriter;
 import edu.washington.escience.myria.Type;
 import edu.washington.escience.myria.column.Column;
+import edu.washington.escience.myria.column.builder.ColumnBufferPool;
 import edu.washington.escience.myria.column.builder.ColumnBuilder;
 import edu.washington.escience.myria.column.builder.ColumnFactory;
 import edu.washington.escience.myria.storage.TupleBatch;
@@ -260,6 +262,103 @@ public final class JdbcAccessMethod extends AccessMethod {
     }
   }
 
+  @Override
+  public List<TupleBatch> tupleBatchLookup(
+      final RelationKey relationKey, final Schema schema, final int keyColumn, final List<?> keys)
+      throws DbException {
+    Objects.requireNonNull(jdbcConnection, "jdbcConnection");
+    final List<TupleBatch> ret = new ArrayList<>();
+    if (keys.isEmpty()) {
+      return ret;
+    }
+    final boolean postgres = jdbcInfo.getDbms().equals(MyriaConstants.STORAGE_SYSTEM_POSTGRESQL);
+    final StringBuilder sql =
+        new StringBuilder("SELECT * FROM ")
+            .append(quote(relationKey))
+            .append(" WHERE ")
+            .append(quote(schema.getColumnName(keyColumn)));
+    if (postgres) {
+      /* One array parameter, so PostgreSQL sees the same statement for any number of keys. */
+      sql.append(" = ANY(?)");
+    } else {
+      sql.append(" IN (").append(StringUtils.repeat("?", ",", keys.size())).append(')');
+    }
+    try (PreparedStatement statement = jdbcConnection.prepareStatement(sql.toString())) {
+      if (postgres) {
+        final Object[] values = new Object[keys.size()];
+        for (int i = 0; i < values.length; ++i) {
+          values[i] = jdbcValue(keys.get(i));
+        }
+        statement.setArray(
+            1,
+            jdbcConnection.createArrayOf(
+                postgresArrayElementType(schema.getColumnType(keyColumn)), values));
+      } else {
+        for (int i = 0; i < keys.size(); ++i) {
+          statement.setObject(i + 1, jdbcValue(keys.get(i)));
+        }
+      }
+      try (ResultSet resultSet = statement.executeQuery()) {
+        final int batchSize = TupleUtils.getBatchSize(schema);
+        List<ColumnBuilder<?>> columnBuilders = ColumnFactory.allocateColumns(schema);
+        int numTuples = 0;
+        while (resultSet.next()) {
+          for (int colIdx = 0; colIdx < schema.numColumns(); ++colIdx) {
+            /* Warning: JDBC is 1-indexed */
+            columnBuilders.get(colIdx).appendFromJdbc(resultSet, colIdx + 1);
+          }
+          if (++numTuples == batchSize) {
+            ret.add(buildBatch(schema, columnBuilders, numTuples));
+            columnBuilders = ColumnFactory.allocateColumns(schema);
+            numTuples = 0;
+          }
+        }
+        if (numTuples > 0) {
+          ret.add(buildBatch(schema, columnBuilders, numTuples));
+        }
+      }
+    } catch (final SQLException e) {
+      throw ErrorUtils.mergeSQLException(e);
+    }
+    return ret;
+  }
+
+  /**
+   * @param value a value as returned by {@link edu.washington.escience.myria.storage.ReadableTable#getObject}.
+   * @return the value to bind to a JDBC statement parameter.
+   */
+  private static Object jdbcValue(final Object value) {
+    if (value instanceof DateTime) {
+      return new Timestamp(((DateTime) value).getMillis());
+    }
+    return value;
+  }
+
+  /**
+   * @param type a Myria column type.
+   * @return the name of the PostgreSQL type of the elements of an array of values of the given type.
+   */
+  private static String postgresArrayElementType(final Type type) {
+    switch (type) {
+      case BOOLEAN_TYPE:
+        return "bool";
+      case DOUBLE_TYPE:
+        return "float8";
+      case FLOAT_TYPE:
+        return "float4";
+      case INT_TYPE:
+        return "int4";
+      case LONG_TYPE:
+        return "int8";
+      case STRING_TYPE:
+        return "text";
+      case DATETIME_TYPE:
+        return "timestamp";
+      default:
+        throw new UnsupportedOperationException("Cannot look up keys of type " + type);
+    }
+  }
+
   @Override
   public void close() throws DbException {
     /* Close the db connection. */
@@ -768,7 +867,8 @@ class JdbcTupleBatchIterator implements Iterator<TupleBatch> {
       return null;
     }
     final int numFields = schema.numColumns();
-    final List<ColumnBuilder<?>> columnBuilders = ColumnFactory.allocateColumns(schema);
+    final ColumnBufferPool.Lease lease = ColumnBufferPool.lease();
+    final List<ColumnBuilder<?>> columnBuilders = ColumnFactory.allocateColumns(schema, lease);
     int numTuples = 0;
     int batchSize = TupleUtils.getBatchSize(schema);
     for (numTuples = 0; numTuples < batchSize; ++numTuples) {
@@ -790,8 +890,9 @@ class JdbcTupleBatchIterator implements Iterator<TupleBatch> {
         columns.add(cb.build());
       }
 
-      return new TupleBatch(schema, columns, numTuples);
+      return new TupleBatch(schema, columns, numTuples, lease);
     } else {
+      lease.release();
       return null;
     }
   }
@@ -2,6 +2,7 @@ package edu.washington.escience.myria.accessmethod;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -10,6 +11,7 @@ import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,7 +27,10 @@ import edu.washington.escience.myria.MyriaConstants;
 import edu.washington.escience.myria.RelationKey;
 import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.column.builder.ColumnBuilder;
+import edu.washington.escience.myria.column.builder.ColumnFactory;
 import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleUtils;
 
 /**
  * Access method for a SQLite database. Exposes data as TupleBatches.
@@ -276,6 +281,80 @@ public final class SQLiteAccessMethod extends AccessMethod {
     return new SQLiteTupleBatchIterator(statement, sqliteConnection, schema);
   }
 
+  @Override
+  public List<TupleBatch> tupleBatchLookup(
+      final RelationKey relationKey, final Schema schema, final int keyColumn, final List<?> keys)
+      throws DbException {
+    Objects.requireNonNull(sqliteConnection);
+    final List<TupleBatch> ret = new ArrayList<>();
+    if (keys.isEmpty()) {
+      return ret;
+    }
+    final Type keyType = schema.getColumnType(keyColumn);
+    SQLiteStatement statement = null;
+    try {
+      /* SQLite has no array parameters, so the prepared statement is run once for each key. */
+      statement =
+          sqliteConnection.prepare(
+              "SELECT * FROM "
+                  + relationKey.toString(MyriaConstants.STORAGE_SYSTEM_SQLITE)
+                  + " WHERE ["
+                  + schema.getColumnName(keyColumn)
+                  + "] = ?");
+      final int batchSize = TupleUtils.getBatchSize(schema);
+      List<ColumnBuilder<?>> columnBuilders = ColumnFactory.allocateColumns(schema);
+      int numTuples = 0;
+      for (Object key : keys) {
+        switch (keyType) {
+          case BOOLEAN_TYPE:
+            /* In SQLite, booleans are integers represented as 0 (false) or 1 (true). */
+            statement.bind(1, (Boolean) key ? 1 : 0);
+            break;
+          case DATETIME_TYPE:
+            statement.bind(1, ((DateTime) key).getMillis());
+            break;
+          case DOUBLE_TYPE:
+          case FLOAT_TYPE:
+            statement.bind(1, ((Number) key).doubleValue());
+            break;
+          case INT_TYPE:
+            statement.bind(1, (Integer) key);
+            break;
+          case LONG_TYPE:
+            statement.bind(1, (Long) key);
+            break;
+          case STRING_TYPE:
+            statement.bind(1, (String) key);
+            break;
+          default:
+            throw new UnsupportedOperationException("Cannot look up keys of type " + keyType);
+        }
+        while (statement.step()) {
+          for (int column = 0; column < schema.numColumns(); ++column) {
+            columnBuilders.get(column).appendFromSQLite(statement, column);
+          }
+          if (++numTuples == batchSize) {
+            ret.add(buildBatch(schema, columnBuilders, numTuples));
+            columnBuilders = ColumnFactory.allocateColumns(schema);
+            numTuples = 0;
+          }
+        }
+        statement.reset();
+      }
+      if (numTuples > 0) {
+        ret.add(buildBatch(schema, columnBuilders, numTuples));
+      }
+    } catch (final SQLiteException e) {
+      LOGGER.error(e.getMessage(), e);
+      throw new DbException(e);
+    } finally {
+      if (statement != null && !statement.isDisposed()) {
+        statement.dispose();
+      }
+    }
+    return ret;
+  }
+
   @Override
   public void execute(final String ddlCommand) throws DbException {
     Objects.requireNonNull(sqliteQueue);
@@ -17,6 +17,7 @@ import com.almworks.sqlite4java.SQLiteStatement;
 
 import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.column.Column;
+import edu.washington.escience.myria.column.builder.ColumnBufferPool;
 import edu.washington.escience.myria.column.builder.ColumnBuilder;
 import edu.washington.escience.myria.column.builder.ColumnFactory;
 import edu.washington.escience.myria.storage.TupleBatch;
@@ -76,7 +77,8 @@ public class SQLiteTupleBatchIterator implements Iterator<TupleBatch> {
 
     /* Allocate TupleBatch parameters */
     final int numFields = schema.numColumns();
-    final List<ColumnBuilder<?>> columnBuilders = ColumnFactory.allocateColumns(schema);
+    final ColumnBufferPool.Lease lease = ColumnBufferPool.lease();
+    final List<ColumnBuilder<?>> columnBuilders = ColumnFactory.allocateColumns(schema, lease);
 
     /**
      * Loop through resultSet, adding one row at a time. Stop when numTuples hits BATCH_SIZE or there are no more
@@ -101,7 +103,7 @@ public class SQLiteTupleBatchIterator implements Iterator<TupleBatch> {
       columns.add(cb.build());
     }
 
-    return new TupleBatch(schema, columns, numTuples);
+    return new TupleBatch(schema, columns, numTuples, lease);
   }
 
   @Override
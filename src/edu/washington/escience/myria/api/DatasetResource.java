@@ -591,7 +591,7 @@ public final class DatasetResource {
   }
 
   /**
-   * Ingests a dataset from S3 in parallel
+   * Ingests a dataset in parallel, each worker reading byte ranges of the file directly from its source.
    *
    * @param dataset the dataset to be ingested.
    * @return the created dataset resource.
@@ -613,8 +613,9 @@ public final class DatasetResource {
             dataset.quote,
             dataset.escape,
             dataset.numberOfSkippedLines,
-            dataset.s3Source,
+            dataset.source,
             dataset.workers,
+            dataset.rangesPerWorker,
             dataset.distributeFunction);
 
     /* In the response, tell the client the path to the relation. */
@@ -0,0 +1,22 @@
+package edu.washington.escience.myria.api.encoding;
+
+import com.google.common.base.MoreObjects;
+
+import edu.washington.escience.myria.api.encoding.QueryConstruct.ConstructArgs;
+import edu.washington.escience.myria.operator.BloomFilterBuild;
+
+public class BloomFilterBuildEncoding extends UnaryOperatorEncoding<BloomFilterBuild> {
+
+  @Required public int[] argColumns;
+  @Required public Long expectedNumKeys;
+  public Double falsePositiveProbability;
+
+  @Override
+  public BloomFilterBuild construct(final ConstructArgs args) {
+    return new BloomFilterBuild(
+        null,
+        argColumns,
+        expectedNumKeys,
+        MoreObjects.firstNonNull(falsePositiveProbability, 0.01));
+  }
+}
@@ -1,16 +1,20 @@
 package edu.washington.escience.myria.api.encoding;
 
+import java.io.IOException;
 import java.util.Set;
 
+import javax.ws.rs.core.Response.Status;
+
 import edu.washington.escience.myria.CsvTupleReader;
+import edu.washington.escience.myria.api.MyriaApiException;
 import edu.washington.escience.myria.api.encoding.QueryConstruct.ConstructArgs;
-import edu.washington.escience.myria.io.AmazonS3Source;
+import edu.washington.escience.myria.io.RangedDataSource;
 import edu.washington.escience.myria.operator.CSVFragmentTupleSource;
 
 public class CSVFragmentTupleSourceEncoding extends LeafOperatorEncoding<CSVFragmentTupleSource> {
 
   @Required public CsvTupleReader reader;
-  @Required public AmazonS3Source source;
+  @Required public RangedDataSource source;
 
   public Set<Integer> workers;
 
@@ -22,8 +26,13 @@ public class CSVFragmentTupleSourceEncoding extends LeafOperatorEncoding<CSVFrag
     }
 
     /* Find workers */
-    int[] workersArray =
-        args.getServer().parallelIngestComputeNumWorkers(source.getFileSize(), workers);
+    int[] workersArray;
+    try {
+      workersArray =
+          args.getServer().parallelIngestComputeNumWorkers(source.getFileSize(), workers);
+    } catch (IOException e) {
+      throw new MyriaApiException(Status.BAD_REQUEST, e);
+    }
 
     return new CSVFragmentTupleSource(
         source,
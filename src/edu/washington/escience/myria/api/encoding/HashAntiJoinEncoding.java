@@ -0,0 +1,19 @@
+package edu.washington.escience.myria.api.encoding;
+
+import edu.washington.escience.myria.api.encoding.QueryConstruct.ConstructArgs;
+import edu.washington.escience.myria.operator.HashAntiJoin;
+
+/**
+ *
+ * Encoding for {@link HashAntiJoin}.
+ *
+ */
+public class HashAntiJoinEncoding extends BinaryOperatorEncoding<HashAntiJoin> {
+  @Required public int[] argColumns1;
+  @Required public int[] argColumns2;
+
+  @Override
+  public HashAntiJoin construct(ConstructArgs args) {
+    return new HashAntiJoin(null, null, argColumns1, argColumns2);
+  }
+}
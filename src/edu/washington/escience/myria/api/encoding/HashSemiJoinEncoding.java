@@ -0,0 +1,19 @@
+package edu.washington.escience.myria.api.encoding;
+
+import edu.washington.escience.myria.api.encoding.QueryConstruct.ConstructArgs;
+import edu.washington.escience.myria.operator.HashSemiJoin;
+
+/**
+ *
+ * Encoding for {@link HashSemiJoin}.
+ *
+ */
+public class HashSemiJoinEncoding extends BinaryOperatorEncoding<HashSemiJoin> {
+  @Required public int[] argColumns1;
+  @Required public int[] argColumns2;
+
+  @Override
+  public HashSemiJoin construct(ConstructArgs args) {
+    return new HashSemiJoin(null, null, argColumns1, argColumns2);
+  }
+}
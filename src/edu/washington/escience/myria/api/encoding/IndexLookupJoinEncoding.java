@@ -0,0 +1,54 @@
+package edu.washington.escience.myria.api.encoding;
+
+import java.util.List;
+
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.base.Preconditions;
+
+import edu.washington.escience.myria.RelationKey;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.api.MyriaApiException;
+import edu.washington.escience.myria.api.encoding.QueryConstruct.ConstructArgs;
+import edu.washington.escience.myria.coordinator.CatalogException;
+import edu.washington.escience.myria.operator.IndexLookupJoin;
+import edu.washington.escience.myria.parallel.Server;
+
+/**
+ *
+ * Encoding for {@link IndexLookupJoin}.
+ *
+ */
+public class IndexLookupJoinEncoding extends UnaryOperatorEncoding<IndexLookupJoin> {
+  public List<String> argColumnNames;
+  /** The key column of the child. */
+  @Required public Integer argChildColumn;
+  /** The stored relation whose tuples are looked up. */
+  @Required public RelationKey relationKey;
+  /** The key column of the stored relation. */
+  @Required public Integer argRelationColumn;
+  @Required public int[] argSelect1;
+  @Required public int[] argSelect2;
+
+  @Override
+  public IndexLookupJoin construct(ConstructArgs args) {
+    Schema schema;
+    Server server = args.getServer();
+    try {
+      schema = server.getSchema(relationKey);
+    } catch (final CatalogException e) {
+      throw new MyriaApiException(Status.INTERNAL_SERVER_ERROR, e);
+    }
+    Preconditions.checkArgument(
+        schema != null, "Specified relation %s does not exist.", relationKey);
+    return new IndexLookupJoin(
+        argColumnNames,
+        null,
+        argChildColumn,
+        relationKey,
+        schema,
+        argRelationColumn,
+        argSelect1,
+        argSelect2);
+  }
+}
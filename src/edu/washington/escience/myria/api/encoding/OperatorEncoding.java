@@ -21,6 +21,8 @@ import edu.washington.escience.myria.operator.Operator;
 @JsonSubTypes({
   @Type(name = "Aggregate", value = AggregateEncoding.class),
   @Type(name = "Apply", value = ApplyEncoding.class),
+  @Type(name = "BloomFilterBuild", value = BloomFilterBuildEncoding.class),
+  @Type(name = "BloomFilterProbe", value = BloomFilterProbeEncoding.class),
   @Type(name = "BroadcastConsumer", value = BroadcastConsumerEncoding.class),
   @Type(name = "BroadcastProducer", value = BroadcastProducerEncoding.class),
   @Type(name = "CatalogScan", value = CatalogScanEncoding.class),
@@ -41,9 +43,12 @@ import edu.washington.escience.myria.operator.Operator;
   @Type(name = "EmptySink", value = EmptySinkEncoding.class),
   @Type(name = "EOSController", value = EOSControllerEncoding.class),
   @Type(name = "Filter", value = FilterEncoding.class),
+  @Type(name = "HashAntiJoin", value = HashAntiJoinEncoding.class),
+  @Type(name = "HashSemiJoin", value = HashSemiJoinEncoding.class),
   @Type(name = "HyperCubeShuffleProducer", value = HyperCubeShuffleProducerEncoding.class),
   @Type(name = "HyperCubeShuffleConsumer", value = HyperCubeShuffleConsumerEncoding.class),
   @Type(name = "IDBController", value = IDBControllerEncoding.class),
+  @Type(name = "IndexLookupJoin", value = IndexLookupJoinEncoding.class),
   @Type(name = "InMemoryOrderBy", value = InMemoryOrderByEncoding.class),
   @Type(name = "LeapFrogJoin", value = LeapFrogJoinEncoding.class),
   @Type(name = "Limit", value = LimitEncoding.class),
@@ -69,6 +74,7 @@ import edu.washington.escience.myria.operator.Operator;
   @Type(name = "TempInsert", value = TempInsertEncoding.class),
   @Type(name = "TempTableScan", value = TempTableScanEncoding.class),
   @Type(name = "TipsyFileScan", value = TipsyFileScanEncoding.class),
+  @Type(name = "TopK", value = TopKEncoding.class),
   @Type(name = "TupleSink", value = TupleSinkEncoding.class),
   @Type(name = "TupleSource", value = TupleSourceEncoding.class),
   @Type(name = "UnionAll", value = UnionAllEncoding.class)
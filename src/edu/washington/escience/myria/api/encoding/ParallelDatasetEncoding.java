@@ -5,9 +5,13 @@ package edu.washington.escience.myria.api.encoding;
 
 import java.util.Set;
 
+import javax.ws.rs.core.Response.Status;
+
 import edu.washington.escience.myria.RelationKey;
 import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.api.MyriaApiException;
 import edu.washington.escience.myria.io.AmazonS3Source;
+import edu.washington.escience.myria.io.RangedDataSource;
 import edu.washington.escience.myria.operator.network.distribute.DistributeFunction;
 import edu.washington.escience.myria.operator.network.distribute.RoundRobinDistributeFunction;
 
@@ -17,11 +21,30 @@ import edu.washington.escience.myria.operator.network.distribute.RoundRobinDistr
 public class ParallelDatasetEncoding extends MyriaApiEncoding {
   @Required public RelationKey relationKey;
   @Required public Schema schema;
-  @Required public AmazonS3Source s3Source;
+  /** The source of the file, any source that supports reading byte ranges. */
+  public RangedDataSource source;
+  /** The source of the file if it is on S3, for clients that predate {@link #source}. */
+  public AmazonS3Source s3Source;
   public Character delimiter;
   public Character escape;
   public Integer numberOfSkippedLines;
   public Character quote;
   public Set<Integer> workers;
+  /** The number of byte ranges each worker reads concurrently, null for the default. */
+  public Integer rangesPerWorker;
   public DistributeFunction distributeFunction = new RoundRobinDistributeFunction();
+
+  @Override
+  protected void validateExtra() throws MyriaApiException {
+    if ((source == null) == (s3Source == null)) {
+      throw new MyriaApiException(
+          Status.BAD_REQUEST, "exactly one of source and s3Source must be specified");
+    }
+    if (source == null) {
+      source = s3Source;
+    }
+    if (rangesPerWorker != null && rangesPerWorker < 1) {
+      throw new MyriaApiException(Status.BAD_REQUEST, "rangesPerWorker must be positive");
+    }
+  }
 }
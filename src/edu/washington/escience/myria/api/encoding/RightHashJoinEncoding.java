@@ -16,10 +16,12 @@ public class RightHashJoinEncoding extends BinaryOperatorEncoding<RightHashJoin>
   @Required public int[] argColumns2;
   @Required public int[] argSelect1;
   @Required public int[] argSelect2;
+  /** The name of the version of the relation of the right child, to share its index, or null not to. */
+  public String sharedRight;
 
   @Override
   public RightHashJoin construct(ConstructArgs args) {
     return new RightHashJoin(
-        argColumnNames, null, null, argColumns1, argColumns2, argSelect1, argSelect2);
+        argColumnNames, null, null, argColumns1, argColumns2, argSelect1, argSelect2, sharedRight);
   }
 }
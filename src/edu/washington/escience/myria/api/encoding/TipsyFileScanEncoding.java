@@ -1,5 +1,10 @@
 package edu.washington.escience.myria.api.encoding;
 
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.primitives.Ints;
+
 import edu.washington.escience.myria.api.encoding.QueryConstruct.ConstructArgs;
 import edu.washington.escience.myria.operator.TipsyFileScan;
 
@@ -7,9 +12,12 @@ public class TipsyFileScanEncoding extends LeafOperatorEncoding<TipsyFileScan> {
   @Required public String tipsyFilename;
   @Required public String grpFilename;
   @Required public String iorderFilename;
+  /** If set, these workers each read a disjoint range of the particles. */
+  public Set<Integer> workers;
 
   @Override
   public TipsyFileScan construct(ConstructArgs args) {
-    return new TipsyFileScan(tipsyFilename, iorderFilename, grpFilename);
+    int[] workerIds = workers == null ? null : Ints.toArray(ImmutableSortedSet.copyOf(workers));
+    return new TipsyFileScan(tipsyFilename, iorderFilename, grpFilename, workerIds);
   }
 }
@@ -0,0 +1,33 @@
+package edu.washington.escience.myria.api.encoding;
+
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.primitives.Ints;
+
+import edu.washington.escience.myria.api.MyriaApiException;
+import edu.washington.escience.myria.api.encoding.QueryConstruct.ConstructArgs;
+import edu.washington.escience.myria.operator.TopK;
+
+public class TopKEncoding extends UnaryOperatorEncoding<TopK> {
+
+  @Required public int[] argSortColumns;
+  @Required public boolean[] argAscending;
+  @Required public Long argLimit;
+
+  @Override
+  public TopK construct(final ConstructArgs args) throws MyriaApiException {
+    return new TopK(null, argSortColumns, argAscending, Ints.checkedCast(argLimit));
+  }
+
+  @Override
+  protected void validateExtra() {
+    if (argSortColumns.length != argAscending.length) {
+      throw new MyriaApiException(
+          Status.BAD_REQUEST, "sort columns number should be equal to ascending orders number!");
+    }
+    if (argLimit < 0 || argLimit > Integer.MAX_VALUE) {
+      throw new MyriaApiException(
+          Status.BAD_REQUEST, "limit must be between 0 and " + Integer.MAX_VALUE);
+    }
+  }
+}
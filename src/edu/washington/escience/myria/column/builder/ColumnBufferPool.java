@@ -0,0 +1,157 @@
+package edu.washington.escience.myria.column.builder;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Preconditions;
+
+import edu.washington.escience.myria.MyriaConstants;
+
+/**
+ * A pool of the primitive arrays numeric columns are built on, shared by all the operators of a worker, so that the
+ * arrays of batches that have been fully consumed, e.g., serialized to another worker, are reused for new batches
+ * instead of becoming garbage.
+ *
+ * Arrays are borrowed through a {@link Lease}, which is reference counted: whoever holds a batch built on the arrays
+ * holds a reference, and the arrays go back to the pool when the last reference is released. A lease whose references
+ * are never all released just leaves its arrays to the garbage collector.
+ */
+public final class ColumnBufferPool {
+
+  /** The unused arrays, by their class and length. */
+  private static final ConcurrentMap<Class<?>, ConcurrentMap<Integer, Shelf>> SHELVES =
+      new ConcurrentHashMap<>();
+
+  /** Unused arrays of one class and length. */
+  private static final class Shelf {
+    /** The arrays. */
+    private final Queue<Object> arrays = new ConcurrentLinkedQueue<>();
+    /** The number of arrays, which the size of the queue does not give in constant time. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @return an unused array, or null if there is none.
+     */
+    private Object take() {
+      final Object array = arrays.poll();
+      if (array != null) {
+        size.decrementAndGet();
+      }
+      return array;
+    }
+
+    /**
+     * @param array an array that is no longer used, which is dropped if the shelf is full.
+     */
+    private void put(final Object array) {
+      if (size.incrementAndGet() > MyriaConstants.COLUMN_BUFFER_POOL_SIZE) {
+        size.decrementAndGet();
+        return;
+      }
+      arrays.add(array);
+    }
+  }
+
+  /**
+   * @param arrayClass the class of the arrays.
+   * @param length the length of the arrays.
+   * @return the shelf of unused arrays of the given class and length.
+   */
+  private static Shelf shelf(final Class<?> arrayClass, final int length) {
+    return SHELVES
+        .computeIfAbsent(arrayClass, c -> new ConcurrentHashMap<>())
+        .computeIfAbsent(length, l -> new Shelf());
+  }
+
+  /**
+   * @return a new lease, holding one reference.
+   */
+  public static Lease lease() {
+    return new Lease();
+  }
+
+  /** The arrays borrowed for the columns of a batch, returned to the pool once nobody references them. */
+  public static final class Lease {
+    /** The arrays borrowed. */
+    private final List<Object> arrays = new ArrayList<>();
+    /** The number of references. */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /** Only {@link ColumnBufferPool#lease()} creates leases. */
+    private Lease() {}
+
+    /**
+     * @param arrayClass the class of the array.
+     * @param length the length of the array.
+     * @return an array from the pool, or a new one if the pool has none.
+     */
+    private Object borrow(final Class<?> arrayClass, final int length) {
+      Object array = shelf(arrayClass, length).take();
+      if (array == null) {
+        array = Array.newInstance(arrayClass.getComponentType(), length);
+      }
+      arrays.add(array);
+      return array;
+    }
+
+    /**
+     * @param length the length of the array.
+     * @return an int array from the pool. Its content is undefined.
+     */
+    int[] ints(final int length) {
+      return (int[]) borrow(int[].class, length);
+    }
+
+    /**
+     * @param length the length of the array.
+     * @return a long array from the pool. Its content is undefined.
+     */
+    long[] longs(final int length) {
+      return (long[]) borrow(long[].class, length);
+    }
+
+    /**
+     * @param length the length of the array.
+     * @return a float array from the pool. Its content is undefined.
+     */
+    float[] floats(final int length) {
+      return (float[]) borrow(float[].class, length);
+    }
+
+    /**
+     * @param length the length of the array.
+     * @return a double array from the pool. Its content is undefined.
+     */
+    double[] doubles(final int length) {
+      return (double[]) borrow(double[].class, length);
+    }
+
+    /** Adds a reference. */
+    public void retain() {
+      Preconditions.checkState(references.getAndIncrement() > 0, "The lease was already returned");
+    }
+
+    /** Drops a reference, and returns the arrays to the pool if it was the last one. */
+    public void release() {
+      final int remaining = references.decrementAndGet();
+      Preconditions.checkState(remaining >= 0, "The lease was already returned");
+      if (remaining == 0) {
+        for (Object array : arrays) {
+          shelf(array.getClass(), Array.getLength(array)).put(array);
+        }
+        arrays.clear();
+      }
+    }
+  }
+
+  /** Inaccessible. */
+  private ColumnBufferPool() {
+    throw new AssertionError();
+  }
+}
@@ -70,6 +70,50 @@ public final class ColumnFactory {
     return columns;
   }
 
+  /**
+   * Allocate a ColumnBuilder for the specified Myria type, on an array borrowed from the {@link ColumnBufferPool} if
+   * the type is numeric.
+   *
+   * @param type the Myria type of the returned Builder.
+   * @param size the size of the column.
+   * @param lease the lease the array is borrowed through.
+   * @return a ColumnBuilder for the specified Myria type.
+   */
+  public static ColumnBuilder<?> allocateColumn(
+      final Type type, final int size, final ColumnBufferPool.Lease lease) {
+    switch (type) {
+      case DOUBLE_TYPE:
+        return new DoubleColumnBuilder(lease.doubles(size));
+      case FLOAT_TYPE:
+        return new FloatColumnBuilder(lease.floats(size));
+      case INT_TYPE:
+        return new IntColumnBuilder(lease.ints(size));
+      case LONG_TYPE:
+        return new LongColumnBuilder(lease.longs(size));
+      default:
+        return allocateColumn(type, size);
+    }
+  }
+
+  /**
+   * Allocates an array of Columns to match the given Schema, on arrays borrowed from the {@link ColumnBufferPool}. The
+   * batch built from the columns holds the lease, see {@link edu.washington.escience.myria.storage.TupleBatch#release}.
+   *
+   * @param schema the Schema
+   * @param lease the lease the arrays are borrowed through.
+   * @return the list of Columns
+   */
+  public static List<ColumnBuilder<?>> allocateColumns(
+      final Schema schema, final ColumnBufferPool.Lease lease) {
+    final int size = TupleUtils.getBatchSize(schema);
+    final ArrayList<ColumnBuilder<?>> columns =
+        new ArrayList<ColumnBuilder<?>>(schema.numColumns());
+    for (Type type : schema.getColumnTypes()) {
+      columns.add(allocateColumn(type, size, lease));
+    }
+    return columns;
+  }
+
   /**
    * Deserializes a ColumnMessage into the appropriate Column.
    *
@@ -36,6 +36,15 @@ public final class DoubleColumnBuilder extends ColumnBuilder<Double> {
     data = DoubleBuffer.allocate(size);
   }
 
+  /**
+   * Constructs an empty column on the given array, e.g., one borrowed from a {@link ColumnBufferPool}.
+   *
+   * @param data the array, whose length is the capacity.
+   */
+  DoubleColumnBuilder(final double[] data) {
+    this(DoubleBuffer.wrap(data));
+  }
+
   /**
    * copy.
    *
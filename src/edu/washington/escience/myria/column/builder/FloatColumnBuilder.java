@@ -36,6 +36,15 @@ public final class FloatColumnBuilder extends ColumnBuilder<Float> {
     data = FloatBuffer.allocate(size);
   }
 
+  /**
+   * Constructs an empty column on the given array, e.g., one borrowed from a {@link ColumnBufferPool}.
+   *
+   * @param data the array, whose length is the capacity.
+   */
+  FloatColumnBuilder(final float[] data) {
+    this(FloatBuffer.wrap(data));
+  }
+
   /**
    * copy.
    *
@@ -37,6 +37,15 @@ public final class IntColumnBuilder extends ColumnBuilder<Integer> {
     data = IntBuffer.allocate(size);
   }
 
+  /**
+   * Constructs an empty column on the given array, e.g., one borrowed from a {@link ColumnBufferPool}.
+   *
+   * @param data the array, whose length is the capacity.
+   */
+  IntColumnBuilder(final int[] data) {
+    this(IntBuffer.wrap(data));
+  }
+
   /**
    * copy.
    *
@@ -36,6 +36,15 @@ public final class LongColumnBuilder extends ColumnBuilder<Long> {
     data = LongBuffer.allocate(size);
   }
 
+  /**
+   * Constructs an empty column on the given array, e.g., one borrowed from a {@link ColumnBufferPool}.
+   *
+   * @param data the array, whose length is the capacity.
+   */
+  LongColumnBuilder(final long[] data) {
+    this(LongBuffer.wrap(data));
+  }
+
   /**
    * copy.
    *
@@ -0,0 +1,50 @@
+package edu.washington.escience.myria.expression;
+
+import com.google.common.base.Preconditions;
+
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.expression.evaluate.ExpressionOperatorParameter;
+import edu.washington.escience.myria.util.HyperLogLog;
+
+/**
+ * Estimate the number of distinct values of a HyperLogLog sketch, e.g., the result of a HLL_SKETCH aggregate.
+ */
+public class ApproxCountDistinctExpression extends UnaryExpression {
+  /***/
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * This is not really unused, it's used automagically by Jackson deserialization.
+   */
+  @SuppressWarnings("unused")
+  private ApproxCountDistinctExpression() {
+    super();
+  }
+
+  /**
+   * Estimate the number of distinct values of a sketch.
+   *
+   * @param operand the sketch.
+   */
+  public ApproxCountDistinctExpression(final ExpressionOperator operand) {
+    super(operand);
+  }
+
+  @Override
+  public Type getOutputType(final ExpressionOperatorParameter parameters) {
+    Type operandType = getOperand().getOutputType(parameters);
+    Preconditions.checkArgument(
+        operandType == Type.BLOB_TYPE,
+        "%s cannot handle operand [%s] of Type %s",
+        getClass().getSimpleName(),
+        getOperand(),
+        operandType);
+    return Type.LONG_TYPE;
+  }
+
+  @Override
+  public String getJavaString(final ExpressionOperatorParameter parameters) {
+    return getFunctionCallUnaryString(
+        HyperLogLog.class.getCanonicalName() + ".estimate", parameters);
+  }
+}
@@ -0,0 +1,57 @@
+package edu.washington.escience.myria.expression;
+
+import com.google.common.base.Preconditions;
+
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.expression.evaluate.ExpressionOperatorParameter;
+import edu.washington.escience.myria.util.QuantileSketch;
+
+/**
+ * Estimate a quantile, between 0 and 1, of the values of a quantile sketch, e.g., the result of a QUANTILE_SKETCH
+ * aggregate. Always evaluates to a double.
+ */
+public class ApproxQuantileExpression extends BinaryExpression {
+  /***/
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * This is not really unused, it's used automagically by Jackson deserialization.
+   */
+  @SuppressWarnings("unused")
+  private ApproxQuantileExpression() {}
+
+  /**
+   * Estimate a quantile of the values of a sketch.
+   *
+   * @param left the sketch.
+   * @param right the quantile.
+   */
+  public ApproxQuantileExpression(final ExpressionOperator left, final ExpressionOperator right) {
+    super(left, right);
+  }
+
+  @Override
+  public Type getOutputType(final ExpressionOperatorParameter parameters) {
+    Type leftType = getLeft().getOutputType(parameters);
+    Type rightType = getRight().getOutputType(parameters);
+    Preconditions.checkArgument(
+        leftType == Type.BLOB_TYPE,
+        "%s cannot handle left operand [%s] of Type %s",
+        getClass().getSimpleName(),
+        getLeft(),
+        leftType);
+    Preconditions.checkArgument(
+        rightType == Type.DOUBLE_TYPE || rightType == Type.FLOAT_TYPE,
+        "%s cannot handle right operand [%s] of Type %s",
+        getClass().getSimpleName(),
+        getRight(),
+        rightType);
+    return Type.DOUBLE_TYPE;
+  }
+
+  @Override
+  public String getJavaString(final ExpressionOperatorParameter parameters) {
+    return getFunctionCallBinaryString(
+        QuantileSketch.class.getCanonicalName() + ".quantile", parameters);
+  }
+}
@@ -19,6 +19,10 @@ public abstract class BinaryExpression extends ExpressionOperator {
   /***/
   private static final long serialVersionUID = 1L;
 
+  /** Turns the Java string of the right operand of LIKE into a regular expression. */
+  private static final String LIKE_PATTERN =
+      ".toLowerCase().replace(\".\", \"\\\\.\").replace(\"?\", \".\").replace(\"%\", \".*\")";
+
   /** The left child. */
   @JsonProperty private final ExpressionOperator left;
   /** The right child. */
@@ -72,9 +76,9 @@ public abstract class BinaryExpression extends ExpressionOperator {
   protected final String getInfixBinaryString(
       final String infix, final ExpressionOperatorParameter parameters) {
     return new StringBuilder("(")
-        .append(getLeft().getJavaString(parameters))
+        .append(getLeft().getJavaStringOrReplacement(parameters))
         .append(infix)
-        .append(getRight().getJavaString(parameters))
+        .append(getRight().getJavaStringOrReplacement(parameters))
         .append(')')
         .toString();
   }
@@ -90,19 +94,35 @@ public abstract class BinaryExpression extends ExpressionOperator {
   protected final String getObjectComparisonString(
       final SimplePredicate.Op op, final ExpressionOperatorParameter parameters) {
     if (op == SimplePredicate.Op.LIKE) {
+      if (getRight().isRowInvariant()) {
+        /* Compile the pattern once rather than in String.matches for every row. */
+        String pattern =
+            parameters.hoist(
+                java.util.regex.Pattern.class,
+                new StringBuilder("java.util.regex.Pattern.compile(")
+                    .append(getRight().getJavaStringOrReplacement(parameters))
+                    .append(LIKE_PATTERN)
+                    .append(')')
+                    .toString());
+        return new StringBuilder("(")
+            .append(pattern)
+            .append(".matcher(")
+            .append(getLeft().getJavaStringOrReplacement(parameters))
+            .append(".toLowerCase()).matches())")
+            .toString();
+      }
       return new StringBuilder("(")
-          .append(getLeft().getJavaString(parameters))
+          .append(getLeft().getJavaStringOrReplacement(parameters))
           .append(".toLowerCase().matches(")
-          .append(getRight().getJavaString(parameters))
-          .append(
-              ".toLowerCase().replace(\".\", \"\\.\").replace(\"?\", \".\").replace(\"%\", \".*\")")
+          .append(getRight().getJavaStringOrReplacement(parameters))
+          .append(LIKE_PATTERN)
           .append("))")
           .toString();
     } else
       return new StringBuilder("(")
-          .append(getLeft().getJavaString(parameters))
+          .append(getLeft().getJavaStringOrReplacement(parameters))
           .append(".compareTo(")
-          .append(getRight().getJavaString(parameters))
+          .append(getRight().getJavaStringOrReplacement(parameters))
           .append(')')
           .append(op.toJavaString())
           .append(0)
@@ -122,9 +142,9 @@ public abstract class BinaryExpression extends ExpressionOperator {
       final String functionName, final ExpressionOperatorParameter parameters) {
     return new StringBuilder(functionName)
         .append('(')
-        .append(getLeft().getJavaString(parameters))
+        .append(getLeft().getJavaStringOrReplacement(parameters))
         .append(',')
-        .append(getRight().getJavaString(parameters))
+        .append(getRight().getJavaStringOrReplacement(parameters))
         .append(')')
         .toString();
   }
@@ -140,7 +160,7 @@ public abstract class BinaryExpression extends ExpressionOperator {
       final String functionName, final ExpressionOperatorParameter parameters) {
     return new StringBuilder(functionName)
         .append('(')
-        .append(getLeft().getJavaString(parameters))
+        .append(getLeft().getJavaStringOrReplacement(parameters))
         .append(')')
         .toString();
   }
@@ -159,7 +179,7 @@ public abstract class BinaryExpression extends ExpressionOperator {
       final String additionalParameter) {
     return new StringBuilder(functionName)
         .append('(')
-        .append(getLeft().getJavaString(parameters))
+        .append(getLeft().getJavaStringOrReplacement(parameters))
         .append(",")
         .append(additionalParameter)
         .append(')')
@@ -38,7 +38,7 @@ public class BitsetExpression extends UnaryExpression {
   public String getJavaString(final ExpressionOperatorParameter parameters) {
     return new StringBuilder()
         .append("ByteBuffer bb = (")
-        .append(getOperand().getJavaString(parameters))
+        .append(getOperand().getJavaStringOrReplacement(parameters))
         .append(");\n")
         .append("java.util.BitSet bs = java.util.BitSet.valueOf(bb);\n")
         .append("int bits_len = bb.capacity() * 8;\n")
@@ -54,7 +54,7 @@ public class BitsetExpression extends UnaryExpression {
   public String getJavaExpressionWithAppend(final ExpressionOperatorParameter parameters) {
     return new StringBuilder()
         .append("ByteBuffer bb = (")
-        .append(getOperand().getJavaString(parameters))
+        .append(getOperand().getJavaStringOrReplacement(parameters))
         .append(");\n")
         .append("java.util.BitSet bs = java.util.BitSet.valueOf(bb);\n")
         .append("int bits_len = bb.capacity() * 8;\n")
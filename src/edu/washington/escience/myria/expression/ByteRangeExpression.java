@@ -57,11 +57,11 @@ public class ByteRangeExpression extends NAryExpression {
   public String getJavaString(final ExpressionOperatorParameter parameters) {
     return new StringBuilder("edu.washington.escience.myria.util.MyriaUtils.byteRange")
         .append("(")
-        .append(getChildren().get(0).getJavaString(parameters))
+        .append(getChildren().get(0).getJavaStringOrReplacement(parameters))
         .append(",")
-        .append(getChildren().get(1).getJavaString(parameters))
+        .append(getChildren().get(1).getJavaStringOrReplacement(parameters))
         .append(",")
-        .append(getChildren().get(2).getJavaString(parameters))
+        .append(getChildren().get(2).getJavaStringOrReplacement(parameters))
         .append(")")
         .toString();
   }
@@ -206,7 +206,7 @@ public class CastExpression extends BinaryExpression {
         .append("((")
         .append(targetType)
         .append(")(")
-        .append(getLeft().getJavaString(parameters))
+        .append(getLeft().getJavaStringOrReplacement(parameters))
         .append("))")
         .toString();
   }
@@ -218,7 +218,7 @@ public class CastExpression extends BinaryExpression {
 
     /* Trivial casts are, of course, allowed. See also #626. */
     if (castFrom == castTo) {
-      return getLeft().getJavaString(parameters);
+      return getLeft().getJavaStringOrReplacement(parameters);
     }
 
     switch (getCastType(castFrom, castTo)) {
@@ -73,11 +73,11 @@ public class ConditionalExpression extends NAryExpression {
   @Override
   public String getJavaString(final ExpressionOperatorParameter parameters) {
     return new StringBuilder("(")
-        .append(getChild(0).getJavaString(parameters))
+        .append(getChild(0).getJavaStringOrReplacement(parameters))
         .append("?")
-        .append(getChild(1).getJavaString(parameters))
+        .append(getChild(1).getJavaStringOrReplacement(parameters))
         .append(":")
-        .append(getChild(2).getJavaString(parameters))
+        .append(getChild(2).getJavaStringOrReplacement(parameters))
         .append(")")
         .toString();
   }
@@ -119,11 +119,17 @@ public class ConstantExpression extends ZeroaryExpression {
       case FLOAT_TYPE:
       case INT_TYPE:
       case LONG_TYPE:
+        /* Parenthesize negative values so that, e.g., a - -1 does not become a--1. */
+        if (value.startsWith("-")) {
+          return "(" + value + ")";
+        }
         return value;
       case DATETIME_TYPE:
         throw new UnsupportedOperationException("using constant value of type DateTime");
       case BLOB_TYPE:
-        return "ByteBuffer.wrap(Base64.getDecoder().decode(\"" + value + "\"))";
+        return "ByteBuffer.wrap("
+            + parameters.hoist(byte[].class, "Base64.getDecoder().decode(\"" + value + "\")")
+            + ")";
       case STRING_TYPE:
         return '\"' + StringEscapeUtils.escapeJava(value) + '\"';
     }
@@ -36,9 +36,9 @@ public class DivideExpression extends BinaryExpression {
   @Override
   public String getJavaString(final ExpressionOperatorParameter parameters) {
     return new StringBuilder("(((double)")
-        .append(getLeft().getJavaString(parameters))
+        .append(getLeft().getJavaStringOrReplacement(parameters))
         .append(")/")
-        .append(getRight().getJavaString(parameters))
+        .append(getRight().getJavaStringOrReplacement(parameters))
         .append(')')
         .toString();
   }
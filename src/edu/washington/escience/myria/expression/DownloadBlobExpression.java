@@ -32,7 +32,7 @@ public class DownloadBlobExpression extends UnaryExpression {
   @Override
   public String getJavaString(final ExpressionOperatorParameter parameters) {
     return new StringBuilder("edu.washington.escience.myria.util.MyriaUtils.getBlob(")
-        .append(getOperand().getJavaString(parameters))
+        .append(getOperand().getJavaStringOrReplacement(parameters))
         .append(")")
         .toString();
   }
@@ -97,7 +97,7 @@ public class Expression implements Serializable {
    */
   public String getJavaExpression(final ExpressionOperatorParameter parameters) {
     if (javaExpression == null) {
-      return rootExpressionOperator.getJavaString(parameters);
+      return rootExpressionOperator.getJavaStringOrReplacement(parameters);
     }
     return javaExpression;
   }
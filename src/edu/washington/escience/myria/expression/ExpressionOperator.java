@@ -29,6 +29,7 @@ import edu.washington.escience.myria.expression.evaluate.ExpressionOperatorParam
   @Type(name = "WORKERID", value = WorkerIdExpression.class),
   /* Unary */
   @Type(name = "ABS", value = AbsExpression.class),
+  @Type(name = "APPROXCOUNTDISTINCT", value = ApproxCountDistinctExpression.class),
   @Type(name = "BITSET", value = BitsetExpression.class),
   @Type(name = "CAST", value = CastExpression.class),
   @Type(name = "CEIL", value = CeilExpression.class),
@@ -48,6 +49,7 @@ import edu.washington.escience.myria.expression.evaluate.ExpressionOperatorParam
   @Type(name = "UPPER", value = ToUpperCaseExpression.class),
   /* Binary */
   @Type(name = "AND", value = AndExpression.class),
+  @Type(name = "APPROXQUANTILE", value = ApproxQuantileExpression.class),
   @Type(name = "CONCAT", value = ConcatExpression.class),
   @Type(name = "DIVIDE", value = DivideExpression.class),
   @Type(name = "EQ", value = EqualsExpression.class),
@@ -93,6 +95,21 @@ public abstract class ExpressionOperator implements Serializable {
    */
   public abstract String getJavaString(final ExpressionOperatorParameter parameters);
 
+  /**
+   * Operators call this method rather than {@link #getJavaString} on their children, so that the parameters can
+   * replace a subtree, e.g., by a folded constant or by a column holding a shared subexpression.
+   *
+   * @param parameters parameters that are needed to create the java expression
+   * @return the Java string that replaces this subtree, if any, or else the entire tree represented as an expression.
+   */
+  public final String getJavaStringOrReplacement(final ExpressionOperatorParameter parameters) {
+    String replacement = parameters.getReplacement(this);
+    if (replacement != null) {
+      return replacement;
+    }
+    return getJavaString(parameters);
+  }
+
   /**
    * @param parameters parameters that are needed to create the java expression
    * @return Java code to efficiently append results to an output column
@@ -108,6 +125,23 @@ public abstract class ExpressionOperator implements Serializable {
     return false;
   }
 
+  /**
+   * @return if this expression evaluates to the same value for every row, i.e., it has no variable, state or random.
+   */
+  public boolean isRowInvariant() {
+    if (this instanceof VariableExpression
+        || this instanceof StateExpression
+        || this instanceof RandomExpression) {
+      return false;
+    }
+    for (ExpressionOperator child : getChildren()) {
+      if (!child.isRowInvariant()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * @return all children
    */
@@ -54,7 +54,7 @@ public class HashMd5Expression extends UnaryExpression {
       return getFunctionCallUnaryString("Hashing.md5().hashInt", parameters).concat(".asLong()");
     } else {
       return new StringBuilder("Hashing.md5().hashString(")
-          .append(getOperand().getJavaString(parameters))
+          .append(getOperand().getJavaStringOrReplacement(parameters))
           .append(", Charset.defaultCharset()).asLong()")
           .toString();
     }
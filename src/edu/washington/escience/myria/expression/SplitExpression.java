@@ -36,11 +36,16 @@ public class SplitExpression extends BinaryExpression {
 
   @Override
   public String getJavaString(final ExpressionOperatorParameter parameters) {
-    return new StringBuilder("java.util.regex.Pattern.compile(")
-        .append(getRight().getJavaString(parameters))
-        .append(")")
+    String pattern =
+        "java.util.regex.Pattern.compile("
+            + getRight().getJavaStringOrReplacement(parameters)
+            + ")";
+    if (getRight().isRowInvariant()) {
+      pattern = parameters.hoist(java.util.regex.Pattern.class, pattern);
+    }
+    return new StringBuilder(pattern)
         .append(".split(")
-        .append(getLeft().getJavaString(parameters))
+        .append(getLeft().getJavaStringOrReplacement(parameters))
         .append(", -1)")
         .toString();
   }
@@ -61,7 +61,7 @@ public abstract class UnaryExpression extends ExpressionOperator {
       final String functionName, final ExpressionOperatorParameter parameters) {
     return new StringBuilder(functionName)
         .append('(')
-        .append(operand.getJavaString(parameters))
+        .append(operand.getJavaStringOrReplacement(parameters))
         .append(')')
         .toString();
   }
@@ -76,7 +76,9 @@ public abstract class UnaryExpression extends ExpressionOperator {
    */
   protected final String getDotFunctionCallUnaryString(
       final String functionName, final ExpressionOperatorParameter parameters) {
-    return new StringBuilder(operand.getJavaString(parameters)).append(functionName).toString();
+    return new StringBuilder(operand.getJavaStringOrReplacement(parameters))
+        .append(functionName)
+        .toString();
   }
 
   /**
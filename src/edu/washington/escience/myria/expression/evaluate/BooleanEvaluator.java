@@ -41,6 +41,17 @@ public class BooleanEvaluator extends Evaluator {
    */
   @Override
   public void compile() throws DbException {
+    final HoistedValues hoistedValues = new HoistedValues();
+    final String java =
+        getExpression().getJavaExpression(getParameters().withHoistedValues(hoistedValues));
+    if (!hoistedValues.isEmpty()) {
+      evaluator =
+          hoistedValues.newInstance(
+              BooleanEvalInterface.class,
+              new String[] {Expression.INPUT, Expression.INPUTROW},
+              "return " + java + ";");
+      return;
+    }
     try {
       IExpressionEvaluator se =
           CompilerFactoryFactory.getDefaultCompilerFactory().newExpressionEvaluator();
@@ -50,7 +61,7 @@ public class BooleanEvaluator extends Evaluator {
       evaluator =
           (BooleanEvalInterface)
               se.createFastEvaluator(
-                  getJavaExpressionWithAppend(),
+                  java,
                   BooleanEvalInterface.class,
                   new String[] {Expression.INPUT, Expression.INPUTROW});
     } catch (Exception e) {
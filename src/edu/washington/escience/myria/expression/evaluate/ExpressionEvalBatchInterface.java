@@ -0,0 +1,27 @@
+package edu.washington.escience.myria.expression.evaluate;
+
+import javax.annotation.Nonnull;
+
+import edu.washington.escience.myria.column.builder.WritableColumn;
+import edu.washington.escience.myria.storage.ReadableTable;
+import edu.washington.escience.myria.storage.Tuple;
+
+/**
+ * Interface that evaluates the expressions of a {@link edu.washington.escience.myria.operator.StatefulApply} over an
+ * entire input TupleBatch at a time, see {@link StatefulBatchEvaluator}.
+ */
+public interface ExpressionEvalBatchInterface extends ExpressionEvalInterface {
+  /**
+   * Updates the state with each row of the input in turn, and appends the values of the expressions that read the
+   * updated state to the result columns.
+   *
+   * @param input the input tuple batch
+   * @param state the state before the first row of the input
+   * @param results the columns storing the values of the expressions, one per row of the input
+   * @return the state after the last row of the input
+   */
+  Tuple evaluate(
+      @Nonnull final ReadableTable input,
+      @Nonnull final Tuple state,
+      @Nonnull final WritableColumn[] results);
+}
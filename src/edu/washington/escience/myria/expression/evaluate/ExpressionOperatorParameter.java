@@ -1,6 +1,12 @@
 package edu.washington.escience.myria.expression.evaluate;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
 import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.expression.ExpressionOperator;
 import edu.washington.escience.myria.functions.PythonFunctionRegistrar;
 
 /**
@@ -15,6 +21,10 @@ public class ExpressionOperatorParameter {
   private Integer workerID = null;
   /** Python function registrar. */
   private PythonFunctionRegistrar pyFuncReg = null;
+  /** The Java strings that replace subtrees of the expression, e.g., folded constants. */
+  private ImmutableMap<ExpressionOperator, String> replacements = ImmutableMap.of();
+  /** Where row-invariant values are hoisted to, or null if they are computed inline. */
+  private HoistedValues hoistedValues = null;
 
   /**
    * Simple constructor.
@@ -119,4 +129,66 @@ public class ExpressionOperatorParameter {
   public PythonFunctionRegistrar getPythonFunctionRegistrar() {
     return pyFuncReg;
   }
+
+  /**
+   * @param other the parameters to copy.
+   * @param schema the input schema of the copy.
+   */
+  private ExpressionOperatorParameter(
+      final ExpressionOperatorParameter other, final Schema schema) {
+    this.schema = schema;
+    stateSchema = other.stateSchema;
+    workerID = other.workerID;
+    pyFuncReg = other.pyFuncReg;
+    replacements = other.replacements;
+    hoistedValues = other.hoistedValues;
+  }
+
+  /**
+   * @param newSchema the input schema, which extends the current one if some replacements refer to new columns.
+   * @param newReplacements the Java strings that replace subtrees of the expression, in addition to the current ones.
+   * @return a copy of these parameters with the given input schema and replacements.
+   */
+  public ExpressionOperatorParameter withReplacements(
+      final Schema newSchema, final Map<ExpressionOperator, String> newReplacements) {
+    ExpressionOperatorParameter copy = new ExpressionOperatorParameter(this, newSchema);
+    Map<ExpressionOperator, String> merged = new LinkedHashMap<>(replacements);
+    merged.putAll(newReplacements);
+    copy.replacements = ImmutableMap.copyOf(merged);
+    return copy;
+  }
+
+  /**
+   * @param values where row-invariant values are hoisted to.
+   * @return a copy of these parameters that hoists row-invariant values to the given ones.
+   */
+  public ExpressionOperatorParameter withHoistedValues(final HoistedValues values) {
+    ExpressionOperatorParameter copy = new ExpressionOperatorParameter(this, schema);
+    copy.hoistedValues = values;
+    return copy;
+  }
+
+  /**
+   * @param operator a subtree of the expression.
+   * @return the Java string that replaces the subtree, or null.
+   */
+  public String getReplacement(final ExpressionOperator operator) {
+    if (replacements.isEmpty()) {
+      return null;
+    }
+    return replacements.get(operator);
+  }
+
+  /**
+   * @param type the type of a row-invariant value.
+   * @param initializer the Java expression that computes the value.
+   * @return the Java expression to use for the value: a field of the generated class if values are hoisted, or else
+   *         the initializer itself.
+   */
+  public String hoist(final Class<?> type, final String initializer) {
+    if (hoistedValues == null) {
+      return initializer;
+    }
+    return hoistedValues.hoist(type, initializer);
+  }
 }
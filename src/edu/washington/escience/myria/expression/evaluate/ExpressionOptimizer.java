@@ -0,0 +1,258 @@
+package edu.washington.escience.myria.expression.evaluate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.janino.ExpressionEvaluator;
+
+import edu.washington.escience.myria.MyriaConstants;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.expression.AndExpression;
+import edu.washington.escience.myria.expression.ConditionalExpression;
+import edu.washington.escience.myria.expression.ConstantExpression;
+import edu.washington.escience.myria.expression.DownloadBlobExpression;
+import edu.washington.escience.myria.expression.Expression;
+import edu.washington.escience.myria.expression.ExpressionOperator;
+import edu.washington.escience.myria.expression.OrExpression;
+import edu.washington.escience.myria.expression.PyUDFExpression;
+import edu.washington.escience.myria.expression.RandomExpression;
+
+/**
+ * Optimizes the expressions of an operator before their Java code is generated. Constant subtrees are folded into
+ * literals, and the subtrees that the expressions share are found so that the operator can compute each of them once
+ * per row, see {@link edu.washington.escience.myria.operator.Apply}. The trees themselves are left unchanged: the
+ * results are replacements of subtrees in the {@link ExpressionOperatorParameter}.
+ */
+public final class ExpressionOptimizer {
+  /** Utility class cannot be constructed. */
+  private ExpressionOptimizer() {}
+
+  /**
+   * Folds the maximal constant subtrees of the expressions, i.e., evaluates them once and replaces them by literals.
+   * Subtrees whose evaluation fails are left to fail at run time, if they are evaluated at all.
+   *
+   * @param expressions the expressions.
+   * @param parameters the parameters of the expressions.
+   * @return the parameters with the folded subtrees replaced by literals.
+   */
+  public static ExpressionOperatorParameter foldConstants(
+      final List<Expression> expressions, final ExpressionOperatorParameter parameters) {
+    final Map<ExpressionOperator, String> folded = new LinkedHashMap<>();
+    for (Expression expression : expressions) {
+      fold(expression.getRootExpressionOperator(), parameters, folded);
+    }
+    if (folded.isEmpty()) {
+      return parameters;
+    }
+    return parameters.withReplacements(parameters.getSchema(), folded);
+  }
+
+  /**
+   * @param op a subtree.
+   * @param parameters the parameters of the expressions.
+   * @param folded the literals of the folded subtrees.
+   */
+  private static void fold(
+      final ExpressionOperator op,
+      final ExpressionOperatorParameter parameters,
+      final Map<ExpressionOperator, String> folded) {
+    if (op.getChildren().isEmpty() || folded.containsKey(op)) {
+      return;
+    }
+    if (op.isRowInvariant()
+        && !op.hasArrayOutputType()
+        && !contains(op, DownloadBlobExpression.class)
+        && !contains(op, PyUDFExpression.class)) {
+      final String literal = evaluate(op, parameters);
+      if (literal != null) {
+        folded.put(op, literal);
+        return;
+      }
+    }
+    for (ExpressionOperator child : op.getChildren()) {
+      fold(child, parameters, folded);
+    }
+  }
+
+  /**
+   * @param op a constant subtree.
+   * @param parameters the parameters of the expressions.
+   * @return the Java literal of the value of the subtree, or null if it has none.
+   */
+  private static String evaluate(
+      final ExpressionOperator op, final ExpressionOperatorParameter parameters) {
+    final Object value;
+    final Type type;
+    try {
+      type = op.getOutputType(parameters);
+      final ExpressionEvaluator evaluator = new ExpressionEvaluator();
+      evaluator.setParameters(new String[] {}, new Class<?>[] {});
+      evaluator.setDefaultImports(MyriaConstants.DEFAULT_JANINO_IMPORTS);
+      evaluator.setExpressionType(type.toJavaType());
+      evaluator.cook(op.getJavaString(parameters));
+      value = evaluator.evaluate(new Object[] {});
+    } catch (Exception e) {
+      return null;
+    }
+    if (value == null) {
+      return null;
+    }
+
+    final ConstantExpression constant;
+    switch (type) {
+      case BOOLEAN_TYPE:
+        constant = new ConstantExpression((Boolean) value);
+        break;
+      case INT_TYPE:
+        constant = new ConstantExpression((Integer) value);
+        break;
+      case LONG_TYPE:
+        constant = new ConstantExpression((Long) value);
+        break;
+      case FLOAT_TYPE:
+        if (!Float.isFinite((Float) value)) {
+          return null;
+        }
+        constant = new ConstantExpression((Float) value);
+        break;
+      case DOUBLE_TYPE:
+        if (!Double.isFinite((Double) value)) {
+          return null;
+        }
+        constant = new ConstantExpression((Double) value);
+        break;
+      case STRING_TYPE:
+        constant = new ConstantExpression((String) value);
+        break;
+      default:
+        return null;
+    }
+    return constant.getJavaString(parameters);
+  }
+
+  /**
+   * Finds the subtrees that are worth computing once per row for all the expressions: those that occur more than once,
+   * and at least once where they are always evaluated, i.e., not in a branch of a conditional or in the right operand
+   * of AND or OR, so that computing them for every row neither fails nor computes more than the expressions already
+   * do. Only the outermost of nested shared subtrees are found, unless the inner ones are also shared elsewhere.
+   *
+   * @param expressions the expressions.
+   * @param parameters the parameters of the expressions, e.g., with folded constants.
+   * @return the shared subtrees, each after the shared subtrees it contains.
+   */
+  public static List<ExpressionOperator> sharedSubexpressions(
+      final List<Expression> expressions, final ExpressionOperatorParameter parameters) {
+    /* For each candidate, the number of occurrences and the number of those that are always evaluated. */
+    final Map<ExpressionOperator, int[]> counts = new LinkedHashMap<>();
+    for (Expression expression : expressions) {
+      if (canShare(expression)) {
+        count(expression.getRootExpressionOperator(), true, parameters, counts);
+      }
+    }
+
+    final List<ExpressionOperator> shared = new ArrayList<>();
+    for (Expression expression : expressions) {
+      if (canShare(expression)) {
+        select(expression.getRootExpressionOperator(), counts, shared);
+      }
+    }
+    shared.sort(Comparator.comparingInt(ExpressionOptimizer::size));
+    return shared;
+  }
+
+  /**
+   * @param expression an expression.
+   * @return if the subtrees of the expression may be computed by a generated evaluator of the operator.
+   */
+  private static boolean canShare(final Expression expression) {
+    return !expression.isConstant() && !expression.isRegisteredPythonUDF();
+  }
+
+  /**
+   * @param op a subtree.
+   * @param alwaysEvaluated if the subtree is evaluated whenever the expression is.
+   * @param parameters the parameters of the expressions.
+   * @param counts the number of occurrences of each candidate, and the number of those that are always evaluated.
+   */
+  private static void count(
+      final ExpressionOperator op,
+      final boolean alwaysEvaluated,
+      final ExpressionOperatorParameter parameters,
+      final Map<ExpressionOperator, int[]> counts) {
+    if (op.getChildren().isEmpty() || parameters.getReplacement(op) != null) {
+      return;
+    }
+    if (!op.isRowInvariant()
+        && !op.hasArrayOutputType()
+        && !contains(op, RandomExpression.class)
+        && !contains(op, PyUDFExpression.class)) {
+      final int[] count = counts.computeIfAbsent(op, k -> new int[2]);
+      ++count[0];
+      if (alwaysEvaluated) {
+        ++count[1];
+      }
+    }
+    final List<ExpressionOperator> children = op.getChildren();
+    for (int i = 0; i < children.size(); ++i) {
+      final boolean branch =
+          i > 0
+              && (op instanceof ConditionalExpression
+                  || op instanceof AndExpression
+                  || op instanceof OrExpression);
+      count(children.get(i), alwaysEvaluated && !branch, parameters, counts);
+    }
+  }
+
+  /**
+   * @param op a subtree.
+   * @param counts the number of occurrences of each candidate, and the number of those that are always evaluated.
+   * @param shared the shared subtrees found so far.
+   */
+  private static void select(
+      final ExpressionOperator op,
+      final Map<ExpressionOperator, int[]> counts,
+      final List<ExpressionOperator> shared) {
+    final int[] count = counts.get(op);
+    if (count != null && count[0] > 1 && count[1] > 0) {
+      if (!shared.contains(op)) {
+        shared.add(op);
+      }
+      return;
+    }
+    for (ExpressionOperator child : op.getChildren()) {
+      select(child, counts, shared);
+    }
+  }
+
+  /**
+   * @param op a subtree.
+   * @param type an operator class.
+   * @return if the subtree has an operator of the class.
+   */
+  private static boolean contains(final ExpressionOperator op, final Class<?> type) {
+    if (type.isInstance(op)) {
+      return true;
+    }
+    for (ExpressionOperator child : op.getChildren()) {
+      if (contains(child, type)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param op a subtree.
+   * @return the number of operators of the subtree.
+   */
+  private static int size(final ExpressionOperator op) {
+    int size = 1;
+    for (ExpressionOperator child : op.getChildren()) {
+      size += size(child);
+    }
+    return size;
+  }
+}
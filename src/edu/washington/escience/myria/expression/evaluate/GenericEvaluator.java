@@ -45,6 +45,8 @@ public class GenericEvaluator extends Evaluator {
   private ExpressionEvalInterface evaluator;
   /** The script. */
   private String script;
+  /** The row-invariant values that {@link #script} refers to. */
+  private HoistedValues hoistedValues;
 
   /**
    * Default constructor.
@@ -56,7 +58,10 @@ public class GenericEvaluator extends Evaluator {
   public GenericEvaluator(final Expression expression, final ExpressionOperatorParameter parameters)
       throws DbException {
     super(expression, parameters);
-    this.script = getExpression().getJavaExpressionWithAppend(getParameters());
+    hoistedValues = new HoistedValues();
+    this.script =
+        getExpression()
+            .getJavaExpressionWithAppend(getParameters().withHoistedValues(hoistedValues));
     compile();
   }
 
@@ -72,6 +77,7 @@ public class GenericEvaluator extends Evaluator {
       final ExpressionOperatorParameter parameters)
       throws DbException {
     super(expression, parameters);
+    hoistedValues = new HoistedValues();
     this.script = script;
     compile();
   }
@@ -83,6 +89,36 @@ public class GenericEvaluator extends Evaluator {
    */
   @Override
   public void compile() throws DbException {
+    if (!hoistedValues.isEmpty()) {
+      if (script.contains("append")) {
+        evaluator =
+            hoistedValues.newInstance(
+                ExpressionEvalAppendInterface.class,
+                new String[] {
+                  Expression.INPUT,
+                  Expression.INPUTROW,
+                  Expression.STATE,
+                  Expression.STATEROW,
+                  Expression.STATECOLOFFSET,
+                  Expression.RESULT,
+                  Expression.COUNT
+                },
+                script);
+      } else {
+        evaluator =
+            hoistedValues.newInstance(
+                ExpressionEvalReplaceInterface.class,
+                new String[] {
+                  Expression.INPUT,
+                  Expression.INPUTROW,
+                  Expression.STATE,
+                  Expression.STATEROW,
+                  Expression.STATECOLOFFSET
+                },
+                script);
+      }
+      return;
+    }
     IScriptEvaluator se;
     try {
       se = CompilerFactoryFactory.getDefaultCompilerFactory().newScriptEvaluator();
@@ -0,0 +1,107 @@
+package edu.washington.escience.myria.expression.evaluate;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+
+import com.google.common.base.Preconditions;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.MyriaConstants;
+
+/**
+ * The row-invariant values of an expression, such as compiled regular expressions, that the generated class computes
+ * once, in static fields, instead of once per row. Values with the same initializer share a field.
+ */
+public final class HoistedValues {
+  /** The field of each initializer, in order of declaration. */
+  private final Map<String, String> fields = new LinkedHashMap<>();
+  /** The declarations of the fields. */
+  private final StringBuilder declarations = new StringBuilder();
+
+  /**
+   * @param type the type of the value.
+   * @param initializer the Java expression that computes the value.
+   * @return the name of the field that holds the value.
+   */
+  public String hoist(final Class<?> type, final String initializer) {
+    String field = fields.get(initializer);
+    if (field == null) {
+      field = "hoisted" + fields.size();
+      fields.put(initializer, field);
+      declarations
+          .append("private static final ")
+          .append(type.getCanonicalName())
+          .append(' ')
+          .append(field)
+          .append(" = ")
+          .append(initializer)
+          .append(";\n");
+    }
+    return field;
+  }
+
+  /**
+   * @return if no value has been hoisted.
+   */
+  public boolean isEmpty() {
+    return fields.isEmpty();
+  }
+
+  /**
+   * Compiles a class that declares the hoisted values and implements the single method of an interface.
+   *
+   * @param type the interface.
+   * @param parameterNames the names of the parameters of the method.
+   * @param body the body of the method.
+   * @param <T> the type of the interface.
+   * @return an instance of the class.
+   * @throws DbException if the compilation or the computation of the hoisted values failed.
+   */
+  public <T> T newInstance(final Class<T> type, final String[] parameterNames, final String body)
+      throws DbException {
+    Preconditions.checkArgument(
+        type.isInterface() && type.getMethods().length == 1,
+        "%s is not an interface with a single method",
+        type);
+    final Method method = type.getMethods()[0];
+    final Class<?>[] parameterTypes = method.getParameterTypes();
+    Preconditions.checkArgument(
+        parameterTypes.length == parameterNames.length, "one name is needed for each parameter");
+
+    final StringBuilder classBody = new StringBuilder(declarations);
+    classBody
+        .append("public ")
+        .append(method.getReturnType().getCanonicalName())
+        .append(' ')
+        .append(method.getName())
+        .append('(');
+    for (int i = 0; i < parameterTypes.length; ++i) {
+      if (i > 0) {
+        classBody.append(", ");
+      }
+      classBody
+          .append("final ")
+          .append(parameterTypes[i].getCanonicalName())
+          .append(' ')
+          .append(parameterNames[i]);
+    }
+    classBody.append(") {\n").append(body).append("\n}\n");
+
+    try {
+      IClassBodyEvaluator cbe =
+          CompilerFactoryFactory.getDefaultCompilerFactory().newClassBodyEvaluator();
+      cbe.setDefaultImports(MyriaConstants.DEFAULT_JANINO_IMPORTS);
+      cbe.setImplementedInterfaces(new Class<?>[] {type});
+      cbe.cook(classBody.toString());
+      /* getClazz returns a raw Class. */
+      final Class<?> clazz = cbe.getClazz();
+      return clazz.asSubclass(type).getDeclaredConstructor().newInstance();
+    } catch (Exception | ExceptionInInitializerError e) {
+      throw new DbException("Error when compiling " + classBody, e);
+    }
+  }
+}
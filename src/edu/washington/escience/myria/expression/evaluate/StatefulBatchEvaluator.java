@@ -0,0 +1,203 @@
+package edu.washington.escience.myria.expression.evaluate;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.column.builder.WritableColumn;
+import edu.washington.escience.myria.expression.Expression;
+import edu.washington.escience.myria.expression.ExpressionOperator;
+import edu.washington.escience.myria.expression.StateExpression;
+import edu.washington.escience.myria.storage.ReadableTable;
+import edu.washington.escience.myria.storage.Tuple;
+
+/**
+ * Evaluates the update expressions of a {@link edu.washington.escience.myria.operator.StatefulApply}, and its emit
+ * expressions that read the state, over an entire TupleBatch in a single generated loop. The state is held in local
+ * variables of primitive types while the loop runs, instead of being written to a new {@link Tuple} through an
+ * evaluator call for each row and state column, and it is written back once per batch.
+ */
+public final class StatefulBatchEvaluator {
+  /** The prefix of the local variables that hold the state. */
+  private static final String STATE_VARIABLE = "stateValue";
+  /** The prefix of the local variables that hold the updated state of a row. */
+  private static final String NEW_STATE_VARIABLE = "newStateValue";
+  /** The variable name of the result columns. */
+  private static final String RESULTS = "results";
+
+  /** The script. */
+  private final String script;
+  /** The compiled script. */
+  private final ExpressionEvalBatchInterface evaluator;
+
+  /**
+   * @param updateExpressions the expressions that update the state, one for each column of the state.
+   * @param emitExpressions the emit expressions that read the state, one for each result column.
+   * @param parameters the parameters of the expressions, with the input and state schemas.
+   * @throws DbException if the compilation failed.
+   */
+  public StatefulBatchEvaluator(
+      final List<Expression> updateExpressions,
+      final List<Expression> emitExpressions,
+      final ExpressionOperatorParameter parameters)
+      throws DbException {
+    Preconditions.checkArgument(
+        canEvaluate(updateExpressions, emitExpressions, parameters),
+        "the expressions cannot be evaluated a batch at a time");
+    final Schema stateSchema = parameters.getStateSchema();
+
+    /* Read the state from local variables rather than from the state tuple. */
+    final ImmutableMap.Builder<ExpressionOperator, String> stateVariables = ImmutableMap.builder();
+    for (int i = 0; i < stateSchema.numColumns(); ++i) {
+      stateVariables.put(new StateExpression(i), STATE_VARIABLE + i);
+    }
+    final HoistedValues hoistedValues = new HoistedValues();
+    final ExpressionOperatorParameter batchParameters =
+        parameters
+            .withReplacements(parameters.getSchema(), stateVariables.build())
+            .withHoistedValues(hoistedValues);
+
+    final StringBuilder body = new StringBuilder();
+    for (int i = 0; i < stateSchema.numColumns(); ++i) {
+      final Type type = stateSchema.getColumnType(i);
+      body.append(javaType(type))
+          .append(' ')
+          .append(STATE_VARIABLE)
+          .append(i)
+          .append(" = ")
+          .append(Expression.STATE)
+          .append(".get")
+          .append(type.getName())
+          .append('(')
+          .append(i)
+          .append(", 0);\n");
+    }
+    body.append("for (int ")
+        .append(Expression.INPUTROW)
+        .append(" = 0; ")
+        .append(Expression.INPUTROW)
+        .append(" < ")
+        .append(Expression.INPUT)
+        .append(".numTuples(); ++")
+        .append(Expression.INPUTROW)
+        .append(") {\n");
+    /* Every update expression reads the state before the row, and every emit expression the state after it. */
+    for (int i = 0; i < updateExpressions.size(); ++i) {
+      body.append("final ")
+          .append(javaType(stateSchema.getColumnType(i)))
+          .append(' ')
+          .append(NEW_STATE_VARIABLE)
+          .append(i)
+          .append(" = ")
+          .append(updateExpressions.get(i).getJavaExpression(batchParameters))
+          .append(";\n");
+    }
+    for (int i = 0; i < updateExpressions.size(); ++i) {
+      body.append(STATE_VARIABLE).append(i).append(" = ").append(NEW_STATE_VARIABLE).append(i);
+      body.append(";\n");
+    }
+    for (int i = 0; i < emitExpressions.size(); ++i) {
+      final Expression expr = emitExpressions.get(i);
+      body.append(RESULTS)
+          .append('[')
+          .append(i)
+          .append("].append")
+          .append(expr.getOutputType(parameters).getName())
+          .append('(')
+          .append(expr.getJavaExpression(batchParameters))
+          .append(");\n");
+    }
+    body.append("}\n");
+    body.append("final ")
+        .append(Tuple.class.getCanonicalName())
+        .append(" newState = new ")
+        .append(Tuple.class.getCanonicalName())
+        .append('(')
+        .append(Expression.STATE)
+        .append(".getSchema());\n");
+    for (int i = 0; i < stateSchema.numColumns(); ++i) {
+      body.append("newState.put")
+          .append(stateSchema.getColumnType(i).getName())
+          .append('(')
+          .append(i)
+          .append(", ")
+          .append(STATE_VARIABLE)
+          .append(i)
+          .append(");\n");
+    }
+    body.append("return newState;");
+
+    script = body.toString();
+    evaluator =
+        hoistedValues.newInstance(
+            ExpressionEvalBatchInterface.class,
+            new String[] {Expression.INPUT, Expression.STATE, RESULTS},
+            script);
+  }
+
+  /**
+   * @param updateExpressions the expressions that update the state, one for each column of the state.
+   * @param emitExpressions the emit expressions that read the state.
+   * @param parameters the parameters of the expressions, with the input and state schemas.
+   * @return if the expressions can be compiled into a single loop: none is a Python UDF or multivalued, and each update
+   *         expression has the type of its state column.
+   */
+  public static boolean canEvaluate(
+      final List<Expression> updateExpressions,
+      final List<Expression> emitExpressions,
+      final ExpressionOperatorParameter parameters) {
+    final Schema stateSchema = parameters.getStateSchema();
+    if (updateExpressions.size() != stateSchema.numColumns()) {
+      return false;
+    }
+    for (int i = 0; i < updateExpressions.size(); ++i) {
+      final Expression expr = updateExpressions.get(i);
+      if (expr.isRegisteredPythonUDF()
+          || expr.isMultiValued()
+          || expr.getOutputType(parameters) != stateSchema.getColumnType(i)) {
+        return false;
+      }
+    }
+    for (Expression expr : emitExpressions) {
+      if (expr.isRegisteredPythonUDF() || expr.isMultiValued()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param type a type.
+   * @return the name of the Java type of local variables holding values of the type.
+   */
+  private static String javaType(final Type type) {
+    return type.toJavaType().getCanonicalName();
+  }
+
+  /**
+   * @param input the input tuple batch.
+   * @param state the state before the first row of the input.
+   * @param results the columns storing the values of the emit expressions, one per row of the input.
+   * @return the state after the last row of the input.
+   */
+  public Tuple evaluate(
+      @Nonnull final ReadableTable input,
+      @Nonnull final Tuple state,
+      @Nonnull final WritableColumn[] results) {
+    return evaluator.evaluate(input, state, results);
+  }
+
+  /**
+   * @return the script
+   */
+  public String getScript() {
+    return script;
+  }
+}
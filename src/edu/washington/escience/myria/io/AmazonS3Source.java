@@ -31,7 +31,7 @@ import edu.washington.escience.myria.api.MyriaApiException;
  *
  */
 @NotThreadSafe
-public class AmazonS3Source implements DataSource, Serializable {
+public class AmazonS3Source implements RangedDataSource, Serializable {
 
   /** Required for Java serialization. */
   private static final long serialVersionUID = 1L;
@@ -42,7 +42,6 @@ public class AmazonS3Source implements DataSource, Serializable {
   private final URI s3Uri;
   @JsonIgnore private transient ClientConfiguration clientConfig;
   @JsonIgnore private transient AmazonS3Client s3Client;
-  @JsonIgnore private transient GetObjectRequest s3Request;
 
   private long startRange;
   private long endRange;
@@ -77,7 +76,7 @@ public class AmazonS3Source implements DataSource, Serializable {
     return s3Uri.toString();
   }
 
-  public AmazonS3Client getS3Client() throws MyriaApiException {
+  public synchronized AmazonS3Client getS3Client() throws MyriaApiException {
     if (s3Client == null) {
       /**
        * Supported providers in fs.s3a.aws.credentials.provider are InstanceProfileCredentialsProvider,
@@ -125,25 +124,24 @@ public class AmazonS3Source implements DataSource, Serializable {
     return s3Client;
   }
 
-  public Long getFileSize() {
+  @Override
+  public synchronized long getFileSize() {
     if (fileSize == null) {
       fileSize = getS3Client().getObjectMetadata(bucket, key).getContentLength();
     }
     return fileSize;
   }
 
+  @Override
   public InputStream getInputStream(final long startByte, final long endByte) throws IOException {
-    setStartRange(startByte);
-    setEndRange(endByte);
-    return getInputStream();
+    /* the request is built for each call, since concurrent fragments read their ranges through this source. */
+    GetObjectRequest s3Request = new GetObjectRequest(bucket, key).withRange(startByte, endByte);
+    return getS3Client().getObject(s3Request).getObjectContent();
   }
 
   @Override
   public InputStream getInputStream() throws IOException {
-    s3Request = new GetObjectRequest(bucket, key);
-    s3Request.setRange(startRange, endRange);
-
-    return getS3Client().getObject(s3Request).getObjectContent();
+    return getInputStream(startRange, endRange);
   }
 
   public void setStartRange(final long startRange) {
@@ -1,18 +1,23 @@
 package edu.washington.escience.myria.io;
 
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.util.Objects;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.io.ByteStreams;
 
 /**
  * A data source that pulls data from local file.
  */
-public class FileSource implements DataSource, Serializable {
+public class FileSource implements RangedDataSource, Serializable {
   /** Required for Java serialization. */
   private static final long serialVersionUID = 1L;
   /** The filename. */
@@ -34,6 +39,23 @@ public class FileSource implements DataSource, Serializable {
     return new FileInputStream(filename);
   }
 
+  @Override
+  public InputStream getInputStream(final long startByte, final long endByte) throws IOException {
+    FileInputStream stream = new FileInputStream(filename);
+    stream.getChannel().position(startByte);
+    return ByteStreams.limit(new BufferedInputStream(stream), endByte - startByte + 1);
+  }
+
+  @Override
+  @JsonIgnore
+  public long getFileSize() throws IOException {
+    File file = new File(filename);
+    if (!file.isFile()) {
+      throw new FileNotFoundException(filename);
+    }
+    return file.length();
+  }
+
   /**
    * @return the local file that this FileSource references.
    */
@@ -0,0 +1,267 @@
+package edu.washington.escience.myria.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Objects;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Reads fixed-width binary records in batches, and decodes each field of a batch in one pass into a primitive array, so
+ * that a batch of records becomes a batch of columns without going through a {@link java.io.DataInput} call per field.
+ *
+ * Records of a local file are memory-mapped a large window at a time, so a reader can start at any record and several
+ * readers can scan disjoint record ranges of the same file concurrently. Records of any other stream are read in blocks
+ * of one batch.
+ */
+public final class FixedWidthRecordReader implements Closeable {
+
+  /** The maximum number of bytes of a file that are mapped at a time. */
+  private static final int WINDOW_BYTES = 1 << 28;
+
+  /** The size of a record in bytes. */
+  private final int recordSize;
+  /** The byte order of the fields. */
+  private final ByteOrder order;
+  /** The file being mapped, null if reading a stream. */
+  private final FileChannel channel;
+  /** The stream being read, null if mapping a file. */
+  private final InputStream stream;
+  /** The file offset of the first record that has not been mapped yet. */
+  private long nextOffset;
+  /** The number of records that have not been mapped or read yet, negative to read the stream until its end. */
+  private long remainingRecords;
+  /** The block of the stream being read. */
+  private byte[] block;
+  /** The records that have been mapped or read. */
+  private ByteBuffer window;
+  /** The position in the window of the first record of the current batch. */
+  private int batchStart;
+  /** The number of records in the current batch. */
+  private int batchSize;
+
+  /**
+   * @param channel the file being mapped, null if reading a stream.
+   * @param stream the stream being read, null if mapping a file.
+   * @param offset the file offset of the first record.
+   * @param recordSize the size of a record in bytes.
+   * @param numRecords the number of records, negative to read the stream until its end.
+   * @param order the byte order of the fields.
+   */
+  private FixedWidthRecordReader(
+      final FileChannel channel,
+      final InputStream stream,
+      final long offset,
+      final int recordSize,
+      final long numRecords,
+      final ByteOrder order) {
+    Preconditions.checkArgument(recordSize > 0, "recordSize must be positive");
+    this.channel = channel;
+    this.stream = stream;
+    nextOffset = offset;
+    this.recordSize = recordSize;
+    remainingRecords = numRecords;
+    this.order = Objects.requireNonNull(order, "order");
+  }
+
+  /**
+   * Reads a range of records of a local file by memory-mapping it.
+   *
+   * @param file the file.
+   * @param offset the file offset of the first record of the file.
+   * @param recordSize the size of a record in bytes.
+   * @param firstRecord the index of the first record to read.
+   * @param numRecords the number of records to read.
+   * @param order the byte order of the fields.
+   * @return the reader.
+   * @throws IOException if the file cannot be opened or is too short.
+   */
+  public static FixedWidthRecordReader ofFile(
+      final Path file,
+      final long offset,
+      final int recordSize,
+      final long firstRecord,
+      final long numRecords,
+      final ByteOrder order)
+      throws IOException {
+    Preconditions.checkArgument(firstRecord >= 0 && numRecords >= 0, "invalid record range");
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    long start = offset + firstRecord * recordSize;
+    if (channel.size() < start + numRecords * recordSize) {
+      channel.close();
+      throw new EOFException(
+          String.format(
+              "%s has %s bytes, too few for %s records of %s bytes at offset %s",
+              file, channel.size(), numRecords, recordSize, start));
+    }
+    return new FixedWidthRecordReader(channel, null, start, recordSize, numRecords, order);
+  }
+
+  /**
+   * Reads records from a stream positioned at the first record to read.
+   *
+   * @param stream the stream.
+   * @param recordSize the size of a record in bytes.
+   * @param numRecords the number of records to read, negative to read until the end of the stream.
+   * @param order the byte order of the fields.
+   * @return the reader.
+   */
+  public static FixedWidthRecordReader ofStream(
+      final InputStream stream,
+      final int recordSize,
+      final long numRecords,
+      final ByteOrder order) {
+    return new FixedWidthRecordReader(
+        null, Objects.requireNonNull(stream, "stream"), 0, recordSize, numRecords, order);
+  }
+
+  /**
+   * Moves to the next batch of records.
+   *
+   * @param maxRecords the maximum number of records in the batch.
+   * @return the number of records in the batch, 0 if all the records have been read.
+   * @throws IOException if the records cannot be read.
+   */
+  public int nextBatch(final int maxRecords) throws IOException {
+    Preconditions.checkArgument(maxRecords > 0, "maxRecords must be positive");
+    batchStart += batchSize * recordSize;
+    batchSize = 0;
+    if (window == null || batchStart >= window.limit()) {
+      batchStart = 0;
+      window = channel != null ? mapWindow() : readBlock(maxRecords);
+      if (window == null) {
+        return 0;
+      }
+    }
+    batchSize = Math.min(maxRecords, (window.limit() - batchStart) / recordSize);
+    return batchSize;
+  }
+
+  /**
+   * @return the next window of the mapped file, null if all the records have been mapped.
+   * @throws IOException if the file cannot be mapped.
+   */
+  private ByteBuffer mapWindow() throws IOException {
+    if (remainingRecords == 0) {
+      return null;
+    }
+    long numRecords = Math.min(remainingRecords, Math.max(1, WINDOW_BYTES / recordSize));
+    long size = numRecords * recordSize;
+    ByteBuffer ret = channel.map(FileChannel.MapMode.READ_ONLY, nextOffset, size).order(order);
+    nextOffset += size;
+    remainingRecords -= numRecords;
+    return ret;
+  }
+
+  /**
+   * @param maxRecords the maximum number of records to read.
+   * @return the next block of the stream, null if all the records have been read.
+   * @throws IOException if the stream cannot be read, or ends in the middle of the records.
+   */
+  private ByteBuffer readBlock(final int maxRecords) throws IOException {
+    if (remainingRecords == 0) {
+      return null;
+    }
+    int numRecords =
+        remainingRecords < 0 ? maxRecords : (int) Math.min(remainingRecords, maxRecords);
+    int size = numRecords * recordSize;
+    if (block == null || block.length < size) {
+      block = new byte[size];
+    }
+    int read = ByteStreams.read(stream, block, 0, size);
+    if (read % recordSize != 0) {
+      throw new EOFException("Ran out of binary data in the middle of a record");
+    }
+    if (remainingRecords > 0) {
+      if (read < size) {
+        throw new EOFException(
+            String.format(
+                "Expected %s more records, found %s", remainingRecords, read / recordSize));
+      }
+      remainingRecords -= numRecords;
+    } else if (read == 0) {
+      remainingRecords = 0;
+      return null;
+    }
+    return ByteBuffer.wrap(block, 0, read).order(order);
+  }
+
+  /**
+   * @param fieldOffset the offset of an int field in the record.
+   * @param dst the array the field of each record of the current batch is stored in.
+   */
+  public void getInts(final int fieldOffset, final int[] dst) {
+    for (int i = 0, pos = batchStart + fieldOffset; i < batchSize; ++i, pos += recordSize) {
+      dst[i] = window.getInt(pos);
+    }
+  }
+
+  /**
+   * @param fieldOffset the offset of an unsigned short field in the record.
+   * @param dst the array the field of each record of the current batch is stored in.
+   */
+  public void getUnsignedShorts(final int fieldOffset, final int[] dst) {
+    for (int i = 0, pos = batchStart + fieldOffset; i < batchSize; ++i, pos += recordSize) {
+      dst[i] = window.getShort(pos) & 0xFFFF;
+    }
+  }
+
+  /**
+   * @param fieldOffset the offset of a long field in the record.
+   * @param dst the array the field of each record of the current batch is stored in.
+   */
+  public void getLongs(final int fieldOffset, final long[] dst) {
+    for (int i = 0, pos = batchStart + fieldOffset; i < batchSize; ++i, pos += recordSize) {
+      dst[i] = window.getLong(pos);
+    }
+  }
+
+  /**
+   * @param fieldOffset the offset of a float field in the record.
+   * @param dst the array the field of each record of the current batch is stored in.
+   */
+  public void getFloats(final int fieldOffset, final float[] dst) {
+    for (int i = 0, pos = batchStart + fieldOffset; i < batchSize; ++i, pos += recordSize) {
+      dst[i] = window.getFloat(pos);
+    }
+  }
+
+  /**
+   * @param fieldOffset the offset of a double field in the record.
+   * @param dst the array the field of each record of the current batch is stored in.
+   */
+  public void getDoubles(final int fieldOffset, final double[] dst) {
+    for (int i = 0, pos = batchStart + fieldOffset; i < batchSize; ++i, pos += recordSize) {
+      dst[i] = window.getDouble(pos);
+    }
+  }
+
+  /**
+   * @param fieldOffset the offset of a boolean field in the record.
+   * @param dst the bits the field of each record of the current batch is stored in.
+   */
+  public void getBooleans(final int fieldOffset, final BitSet dst) {
+    for (int i = 0, pos = batchStart + fieldOffset; i < batchSize; ++i, pos += recordSize) {
+      dst.set(i, window.get(pos) != 0);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    if (channel != null) {
+      channel.close();
+    } else {
+      stream.close();
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package edu.washington.escience.myria.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link DataSource} whose bytes can be read starting at any offset, so that disjoint byte ranges of the same data can
+ * be read by different workers at the same time.
+ */
+public interface RangedDataSource extends DataSource {
+  /**
+   * Returns the number of bytes in this data source.
+   *
+   * @return the number of bytes in this data source.
+   * @throws IOException if there is an error looking up the size.
+   */
+  long getFileSize() throws IOException;
+
+  /**
+   * Returns an {@link InputStream} providing read access to a byte range of this data source. The fragments that read
+   * the ranges of the same data on a worker share the data source, so this may be called concurrently, and must not
+   * change the data source.
+   *
+   * @param startByte the offset of the first byte to read.
+   * @param endByte the offset of the last byte to read, inclusive. The stream ends early if the data source is shorter.
+   * @return an {@link InputStream} providing read access to the specified byte range.
+   * @throws IOException if there is an error producing the input stream.
+   */
+  InputStream getInputStream(long startByte, long endByte) throws IOException;
+}
@@ -5,19 +5,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
 import java.io.Serializable;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.io.ByteStreams;
 
 import edu.washington.escience.myria.util.MyriaUtils;
 
@@ -26,8 +31,9 @@ import edu.washington.escience.myria.util.MyriaUtils;
  * web link; an AWS link; and perhaps more.
  *
  * If the URI points to a directory, all files in that directory will be concatenated into a single {@link InputStream}.
+ * Byte ranges can only be read from a URI that points to a single file or web resource.
  */
-public class UriSource implements DataSource, Serializable {
+public class UriSource implements RangedDataSource, Serializable {
 
   /** Required for Java serialization. */
   private static final long serialVersionUID = 1L;
@@ -58,11 +64,71 @@ public class UriSource implements DataSource, Serializable {
 
   @Override
   public InputStream getInputStream() throws IOException {
-    return (parsedUri.getScheme().equals("http") || parsedUri.getScheme().equals("https"))
+    return isWebLink()
         ? parsedUri.toURL().openConnection().getInputStream()
         : getHadoopFileSystemInputStream(parsedUri);
   }
 
+  @Override
+  public InputStream getInputStream(final long startByte, final long endByte) throws IOException {
+    long length = endByte - startByte + 1;
+    if (isWebLink()) {
+      URLConnection connection = parsedUri.toURL().openConnection();
+      connection.setRequestProperty("Range", "bytes=" + startByte + "-" + endByte);
+      InputStream stream = connection.getInputStream();
+      /* A server that ignores the range sends the whole resource. */
+      if (!(connection instanceof HttpURLConnection)
+          || ((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+        ByteStreams.skipFully(stream, startByte);
+      }
+      return ByteStreams.limit(stream, length);
+    }
+    FileSystem fs = FileSystem.get(parsedUri, new Configuration());
+    FSDataInputStream stream = fs.open(getSingleFile(fs).getPath());
+    stream.seek(startByte);
+    return ByteStreams.limit(stream, length);
+  }
+
+  @Override
+  @JsonIgnore
+  public long getFileSize() throws IOException {
+    if (isWebLink()) {
+      URLConnection connection = parsedUri.toURL().openConnection();
+      if (connection instanceof HttpURLConnection) {
+        ((HttpURLConnection) connection).setRequestMethod("HEAD");
+      }
+      long size = connection.getContentLengthLong();
+      if (size < 0) {
+        throw new IOException("The size of " + parsedUri + " is unknown");
+      }
+      return size;
+    }
+    return getSingleFile(FileSystem.get(parsedUri, new Configuration())).getLen();
+  }
+
+  /**
+   * @return true if the URI is a web link, false if it is read through a Hadoop file system.
+   */
+  private boolean isWebLink() {
+    return parsedUri.getScheme().equals("http") || parsedUri.getScheme().equals("https");
+  }
+
+  /**
+   * @param fs the Hadoop file system of the URI.
+   * @return the status of the single file the URI points to.
+   * @throws IOException if the URI does not point to a single file.
+   */
+  private FileStatus getSingleFile(final FileSystem fs) throws IOException {
+    FileStatus[] statii = fs.globStatus(new Path(parsedUri));
+    if (statii == null || statii.length == 0) {
+      throw new FileNotFoundException(parsedUri.toString());
+    }
+    if (statii.length > 1 || statii[0].isDirectory()) {
+      throw new IOException(parsedUri + " does not point to a single file");
+    }
+    return statii[0];
+  }
+
   @JsonProperty("uri")
   private String getUriString() {
     return parsedUri.toString();
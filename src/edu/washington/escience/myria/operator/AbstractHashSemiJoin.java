@@ -0,0 +1,191 @@
+package edu.washington.escience.myria.operator;
+
+import java.util.BitSet;
+
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.util.MyriaArrayUtils;
+
+/**
+ * Filters the tuples of the left child on whether their key matches the key of some tuple of the right child, i.e.,
+ * WHERE [NOT] EXISTS. Only the distinct keys of the right child are kept, in a set of longs if the key is a single int
+ * or long column, or else in a {@link UniqueTupleHashTable} of the key columns. The left child is streamed through
+ * once the right child is done, and its tuples are emitted unchanged, at most once each.
+ */
+public abstract class AbstractHashSemiJoin extends BinaryOperator {
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** The key columns of the left child. */
+  private final int[] leftCompareIndx;
+  /** The key columns of the right child, compared with the key columns of the left child in order. */
+  private final int[] rightCompareIndx;
+  /** Whether to keep the left tuples whose key matches, or those whose key does not. */
+  private final boolean keepMatches;
+
+  /** The distinct keys of the right child, if the key is a single int or long column. */
+  private transient LongHashSet longKeys;
+  /** The distinct keys of the right child, otherwise. */
+  private transient UniqueTupleHashTable keys;
+
+  /**
+   * @param left the child whose tuples are filtered.
+   * @param right the child whose keys filter the tuples of the left child.
+   * @param compareIndx1 the key columns of the left child.
+   * @param compareIndx2 the key columns of the right child, compared with the key columns of the left child in order.
+   * @param keepMatches whether to keep the left tuples whose key matches, or those whose key does not.
+   */
+  protected AbstractHashSemiJoin(
+      final Operator left,
+      final Operator right,
+      final int[] compareIndx1,
+      final int[] compareIndx2,
+      final boolean keepMatches) {
+    super(left, right);
+    Preconditions.checkArgument(
+        compareIndx1.length == compareIndx2.length && compareIndx1.length > 0,
+        "the children must have the same, nonzero number of key columns");
+    leftCompareIndx = MyriaArrayUtils.warnIfNotSet(compareIndx1);
+    rightCompareIndx = MyriaArrayUtils.warnIfNotSet(compareIndx2);
+    this.keepMatches = keepMatches;
+  }
+
+  @Override
+  protected Schema generateSchema() {
+    final Operator left = getLeft();
+    if (left == null) {
+      return null;
+    }
+    return left.getSchema();
+  }
+
+  @Override
+  protected void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
+    final Schema leftSchema = getLeft().getSchema();
+    final Schema rightSchema = getRight().getSchema();
+    for (int i = 0; i < leftCompareIndx.length; ++i) {
+      Type leftType = leftSchema.getColumnType(leftCompareIndx[i]);
+      Type rightType = rightSchema.getColumnType(rightCompareIndx[i]);
+      Preconditions.checkState(
+          leftType == rightType,
+          "column types do not match for join at index %s: left column type %s [%s] != right column type %s [%s]",
+          i,
+          leftCompareIndx[i],
+          leftType,
+          rightCompareIndx[i],
+          rightType);
+    }
+
+    final Type keyType = rightSchema.getColumnType(rightCompareIndx[0]);
+    if (rightCompareIndx.length == 1 && (keyType == Type.INT_TYPE || keyType == Type.LONG_TYPE)) {
+      longKeys = new LongHashSet();
+    } else {
+      keys =
+          new UniqueTupleHashTable(
+              rightSchema.getSubSchema(rightCompareIndx),
+              MyriaArrayUtils.range(0, rightCompareIndx.length));
+    }
+  }
+
+  @Override
+  protected void cleanup() throws DbException {
+    longKeys = null;
+    keys = null;
+  }
+
+  /**
+   * @param tb a batch of the right child.
+   */
+  private void processRightChildTB(final TupleBatch tb) {
+    if (longKeys != null) {
+      final int column = rightCompareIndx[0];
+      if (tb.getSchema().getColumnType(column) == Type.INT_TYPE) {
+        for (int row = 0; row < tb.numTuples(); ++row) {
+          longKeys.add(tb.getInt(column, row));
+        }
+      } else {
+        for (int row = 0; row < tb.numTuples(); ++row) {
+          longKeys.add(tb.getLong(column, row));
+        }
+      }
+      return;
+    }
+    for (int row = 0; row < tb.numTuples(); ++row) {
+      if (keys.getIndex(tb, rightCompareIndx, row) == -1) {
+        keys.addTuple(tb, rightCompareIndx, row, true);
+      }
+    }
+  }
+
+  /**
+   * @param tb a batch of the left child.
+   * @return the tuples of the batch to emit.
+   */
+  private TupleBatch processLeftChildTB(final TupleBatch tb) {
+    final BitSet keep = new BitSet(tb.numTuples());
+    if (longKeys != null) {
+      final int column = leftCompareIndx[0];
+      if (tb.getSchema().getColumnType(column) == Type.INT_TYPE) {
+        for (int row = 0; row < tb.numTuples(); ++row) {
+          if (longKeys.contains(tb.getInt(column, row)) == keepMatches) {
+            keep.set(row);
+          }
+        }
+      } else {
+        for (int row = 0; row < tb.numTuples(); ++row) {
+          if (longKeys.contains(tb.getLong(column, row)) == keepMatches) {
+            keep.set(row);
+          }
+        }
+      }
+    } else {
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        if ((keys.getIndex(tb, leftCompareIndx, row) != -1) == keepMatches) {
+          keep.set(row);
+        }
+      }
+    }
+    if (keep.cardinality() == tb.numTuples()) {
+      return tb;
+    }
+    return tb.filter(keep);
+  }
+
+  @Override
+  protected TupleBatch fetchNextReady() throws Exception {
+    final Operator right = getRight();
+
+    /* Drain the right child. */
+    while (!right.eos()) {
+      TupleBatch rightTB = right.nextReady();
+      if (rightTB == null) {
+        if (right.eos()) {
+          break;
+        }
+        return null;
+      }
+      processRightChildTB(rightTB);
+    }
+
+    /* Stream the left child through, skipping the batches that are filtered out entirely. */
+    final Operator left = getLeft();
+    while (!left.eos()) {
+      TupleBatch leftTB = left.nextReady();
+      if (leftTB == null) {
+        return null;
+      }
+      TupleBatch result = processLeftChildTB(leftTB);
+      if (result.numTuples() > 0) {
+        return result;
+      }
+    }
+    return null;
+  }
+}
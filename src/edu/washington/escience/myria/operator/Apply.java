@@ -19,9 +19,14 @@ import edu.washington.escience.myria.MyriaConstants;
 import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.Type;
 import edu.washington.escience.myria.column.Column;
+import edu.washington.escience.myria.column.builder.ColumnBuilder;
+import edu.washington.escience.myria.column.builder.ColumnFactory;
 import edu.washington.escience.myria.expression.Expression;
+import edu.washington.escience.myria.expression.ExpressionOperator;
+import edu.washington.escience.myria.expression.VariableExpression;
 import edu.washington.escience.myria.expression.evaluate.ConstantEvaluator;
 import edu.washington.escience.myria.expression.evaluate.ExpressionOperatorParameter;
+import edu.washington.escience.myria.expression.evaluate.ExpressionOptimizer;
 import edu.washington.escience.myria.expression.evaluate.GenericEvaluator;
 import edu.washington.escience.myria.expression.evaluate.GenericEvaluator.EvaluatorResult;
 import edu.washington.escience.myria.expression.evaluate.PythonUDFEvaluator;
@@ -47,6 +52,12 @@ public class Apply extends UnaryOperator {
    */
   @Nonnull private ImmutableList<GenericEvaluator> emitEvaluators = ImmutableList.of();
 
+  /**
+   * One evaluator for each subexpression that {@link #emitExpressions} share. The result of each is appended as a
+   * column to the input of the evaluators that come after it, so that the subexpression is computed once per row.
+   */
+  @Nonnull private ImmutableList<GenericEvaluator> sharedEvaluators = ImmutableList.of();
+
   /**
    * Buffer to hold finished and in-progress TupleBatches.
    */
@@ -116,6 +127,11 @@ public class Apply extends UnaryOperator {
     this.addCounter = addCounter;
   }
 
+  /**
+   * The prefix of the names of the columns that hold shared subexpressions.
+   */
+  private static final String SHARED_COLUMN_PREFIX = "__shared";
+
   /**
    * The logger for debug, trace, etc. messages in this class.
    */
@@ -152,6 +168,7 @@ public class Apply extends UnaryOperator {
     while (!outputBuffer.hasFilledTB()) {
       TupleBatch inputTuples = getChild().nextReady();
       if (inputTuples != null) {
+        inputTuples = appendSharedColumns(inputTuples);
         if (onlySingleValuedExpressions()) {
           List<List<Column<?>>> tbs = new ArrayList<List<Column<?>>>();
           for (final GenericEvaluator eval : emitEvaluators) {
@@ -239,6 +256,24 @@ public class Apply extends UnaryOperator {
     return outputBuffer.popAny();
   }
 
+  /**
+   * @param tb a batch of the child.
+   * @return the batch with the values of the shared subexpressions appended as columns.
+   * @throws DbException if there is an error evaluating a subexpression.
+   */
+  private TupleBatch appendSharedColumns(final TupleBatch tb) throws DbException {
+    TupleBatch ret = tb;
+    for (final GenericEvaluator eval : sharedEvaluators) {
+      final ColumnBuilder<?> column =
+          ColumnFactory.allocateColumn(eval.getOutputType(), tb.numTuples());
+      for (int rowIdx = 0; rowIdx < tb.numTuples(); ++rowIdx) {
+        eval.eval(ret, rowIdx, null, -1, column, null);
+      }
+      ret = ret.appendColumn(eval.getOutputName(), column.build());
+    }
+    return ret;
+  }
+
   /**
    * This method mutates {@link iteratorIndexes} on each call to yield the next element of the Cartesian product of
    * {@link upperBounds} in lexicographic order. If all elements have been exhausted, it returns true, otherwise it
@@ -280,9 +315,31 @@ public class Apply extends UnaryOperator {
     Schema inputSchema = Objects.requireNonNull(getChild().getSchema());
 
     List<GenericEvaluator> evals = new ArrayList<>();
-    final ExpressionOperatorParameter parameters =
-        new ExpressionOperatorParameter(
-            inputSchema, null, getNodeID(), getPythonFunctionRegistrar());
+    ExpressionOperatorParameter parameters =
+        ExpressionOptimizer.foldConstants(
+            emitExpressions,
+            new ExpressionOperatorParameter(
+                inputSchema, null, getNodeID(), getPythonFunctionRegistrar()));
+
+    /* Compute each shared subexpression into a column that the expressions after it refer to instead. */
+    List<GenericEvaluator> shared = new ArrayList<>();
+    for (ExpressionOperator op :
+        ExpressionOptimizer.sharedSubexpressions(emitExpressions, parameters)) {
+      GenericEvaluator evaluator =
+          new GenericEvaluator(
+              new Expression(SHARED_COLUMN_PREFIX + shared.size(), op), parameters);
+      shared.add(evaluator);
+      Schema schema =
+          Schema.appendColumn(
+              parameters.getSchema(), evaluator.getOutputType(), evaluator.getOutputName());
+      ExpressionOperatorParameter extended = parameters.withReplacements(schema, ImmutableMap.of());
+      parameters =
+          extended.withReplacements(
+              schema,
+              ImmutableMap.of(
+                  op, new VariableExpression(schema.numColumns() - 1).getJavaString(extended)));
+    }
+    sharedEvaluators = ImmutableList.copyOf(shared);
 
     for (Expression expr : emitExpressions) {
       GenericEvaluator evaluator;
@@ -98,6 +98,8 @@ public final class BatchTupleSource extends LeafOperator {
       setEOI(true);
       return null;
     }
+    /* the source keeps the batch, so the batch handed out carries its own reference to its pooled arrays. */
+    ret.retain();
     return ret;
   }
 
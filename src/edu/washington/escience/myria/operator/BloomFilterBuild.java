@@ -0,0 +1,111 @@
+package edu.washington.escience.myria.operator;
+
+import java.util.Objects;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+import edu.washington.escience.myria.util.MyriaArrayUtils;
+import edu.washington.escience.myria.util.TupleBloomFilter;
+
+/**
+ * Builds a Bloom filter over the join keys of its child and, once the child is exhausted, emits it as a single blob.
+ *
+ * Together with {@link BloomFilterProbe} this implements a Bloom filter semi-join: each worker builds a filter over its
+ * partition of the build side, the filters are broadcast, and the probe side is filtered before it is shuffled, so that
+ * tuples that cannot find a match are never sent over the network.
+ */
+public final class BloomFilterBuild extends UnaryOperator {
+
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** The schema of the output, a single Bloom filter. */
+  public static final Schema BLOOM_FILTER_SCHEMA = Schema.ofFields("bloomFilter", Type.BLOB_TYPE);
+
+  /** The key columns of the child. */
+  private final int[] keyColumns;
+
+  /** The expected number of distinct keys over all workers. */
+  private final long expectedNumKeys;
+
+  /** The false positive probability of the filter at the expected number of keys. */
+  private final double falsePositiveProbability;
+
+  /** The filter being built. */
+  private transient TupleBloomFilter filter;
+
+  /** If the filter has been emitted. */
+  private transient boolean emitted;
+
+  /**
+   * @param child the source of the keys.
+   * @param keyColumns the key columns of the child.
+   * @param expectedNumKeys the expected number of distinct keys over all workers. All the filters that are merged by a
+   *        {@link BloomFilterProbe} must be built with the same expected number of keys and false positive probability.
+   * @param falsePositiveProbability the false positive probability of the filter at the expected number of keys.
+   */
+  public BloomFilterBuild(
+      final Operator child,
+      final int[] keyColumns,
+      final long expectedNumKeys,
+      final double falsePositiveProbability) {
+    super(child);
+    this.keyColumns = Objects.requireNonNull(keyColumns, "keyColumns");
+    Preconditions.checkArgument(
+        keyColumns.length > 0, "a Bloom filter needs at least one key column");
+    MyriaArrayUtils.checkSet(keyColumns);
+    Preconditions.checkArgument(expectedNumKeys > 0, "expectedNumKeys must be positive");
+    Preconditions.checkArgument(
+        falsePositiveProbability > 0 && falsePositiveProbability < 1,
+        "falsePositiveProbability must be in (0, 1)");
+    this.expectedNumKeys = expectedNumKeys;
+    this.falsePositiveProbability = falsePositiveProbability;
+  }
+
+  @Override
+  protected TupleBatch fetchNextReady() throws DbException {
+    final Operator child = getChild();
+    for (TupleBatch tb = child.nextReady(); tb != null; tb = child.nextReady()) {
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        filter.add(tb, keyColumns, row);
+      }
+    }
+    if (child.eos() && !emitted) {
+      emitted = true;
+      TupleBatchBuffer out = new TupleBatchBuffer(BLOOM_FILTER_SCHEMA);
+      out.putBlob(0, filter.toByteBuffer());
+      return out.popAny();
+    }
+    return null;
+  }
+
+  @Override
+  public void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
+    final Schema childSchema = getChild().getSchema();
+    for (int column : keyColumns) {
+      Preconditions.checkElementIndex(column, childSchema.numColumns(), "key column");
+    }
+    filter =
+        TupleBloomFilter.forExpectedKeys(
+            childSchema.getSubSchema(keyColumns).getColumnTypes(),
+            expectedNumKeys,
+            falsePositiveProbability);
+    emitted = false;
+  }
+
+  @Override
+  protected void cleanup() throws DbException {
+    filter = null;
+  }
+
+  @Override
+  protected Schema generateSchema() {
+    return BLOOM_FILTER_SCHEMA;
+  }
+}
@@ -0,0 +1,132 @@
+package edu.washington.escience.myria.operator;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.util.MyriaArrayUtils;
+import edu.washington.escience.myria.util.TupleBloomFilter;
+
+/**
+ * Drops the tuples of its right child whose key is definitely not in a Bloom filter. The left child supplies the
+ * filters, e.g. the output of a {@link BloomFilterBuild} on every worker received through a broadcast; all of them are
+ * merged before the right child is read. If no filter is received, the build side is empty and all tuples are dropped.
+ * The key columns of the right child must have the types of the keys the filters were built with, which are only known
+ * once the filters are received, since the filters are opaque blobs to the plan.
+ *
+ * Tuples that are kept may still not have a match, so this is a pre-filter for an inner or semi join, not a join.
+ */
+public final class BloomFilterProbe extends BinaryOperator {
+
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** The key columns of the right child. */
+  private final int[] keyColumns;
+
+  /** The types of the key columns of the right child. */
+  private transient List<Type> keyTypes;
+
+  /** The union of the received filters, null if none has been received. */
+  private transient TupleBloomFilter filter;
+
+  /**
+   * @param left the source of the Bloom filters.
+   * @param right the tuples to filter.
+   * @param keyColumns the key columns of the right child, in the order the filters were built with.
+   */
+  public BloomFilterProbe(final Operator left, final Operator right, final int[] keyColumns) {
+    super(left, right);
+    this.keyColumns = Objects.requireNonNull(keyColumns, "keyColumns");
+    Preconditions.checkArgument(
+        keyColumns.length > 0, "a Bloom filter needs at least one key column");
+    MyriaArrayUtils.checkSet(keyColumns);
+  }
+
+  @Override
+  protected TupleBatch fetchNextReady() throws DbException {
+    final Operator left = getLeft();
+
+    /* Drain the left child. */
+    while (!left.eos()) {
+      TupleBatch leftTB = left.nextReady();
+      if (leftTB == null) {
+        if (left.eos()) {
+          break;
+        }
+        return null;
+      }
+      for (int row = 0; row < leftTB.numTuples(); ++row) {
+        TupleBloomFilter received = TupleBloomFilter.fromByteBuffer(leftTB.getBlob(0, row));
+        if (!received.getKeyTypes().equals(keyTypes)) {
+          throw new DbException(
+              "A Bloom filter of keys "
+                  + received.getKeyTypes()
+                  + " cannot filter keys "
+                  + keyTypes);
+        }
+        if (filter == null) {
+          filter = received;
+        } else {
+          filter.merge(received);
+        }
+      }
+    }
+
+    /* Filter the right child. */
+    final Operator right = getRight();
+    while (!right.eos()) {
+      TupleBatch rightTB = right.nextReady();
+      if (rightTB == null) {
+        return null;
+      }
+      if (filter == null) {
+        continue;
+      }
+      final BitSet toRemove = new BitSet(rightTB.numTuples());
+      for (int row = 0; row < rightTB.numTuples(); ++row) {
+        if (!filter.mightContain(rightTB, keyColumns, row)) {
+          toRemove.set(row);
+        }
+      }
+      return rightTB.filterOut(toRemove);
+    }
+
+    return null;
+  }
+
+  @Override
+  public void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
+    final Schema leftSchema = getLeft().getSchema();
+    if (leftSchema.numColumns() != 1 || leftSchema.getColumnType(0) != Type.BLOB_TYPE) {
+      throw new DbException("Expected a single blob column of Bloom filters, got " + leftSchema);
+    }
+    final Schema rightSchema = getRight().getSchema();
+    for (int column : keyColumns) {
+      Preconditions.checkElementIndex(column, rightSchema.numColumns(), "key column");
+    }
+    keyTypes = rightSchema.getSubSchema(keyColumns).getColumnTypes();
+    filter = null;
+  }
+
+  @Override
+  protected void cleanup() throws DbException {
+    keyTypes = null;
+    filter = null;
+  }
+
+  @Override
+  protected Schema generateSchema() {
+    if (getRight() == null) {
+      return null;
+    }
+    return getRight().getSchema();
+  }
+}
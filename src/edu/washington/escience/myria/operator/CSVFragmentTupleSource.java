@@ -3,30 +3,27 @@
  */
 package edu.washington.escience.myria.operator;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import javax.annotation.Nullable;
 
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.lang.BooleanUtils;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Floats;
 
+import edu.washington.escience.myria.CsvTokenizer;
 import edu.washington.escience.myria.DbException;
 import edu.washington.escience.myria.MyriaConstants;
 import edu.washington.escience.myria.Schema;
-import edu.washington.escience.myria.io.AmazonS3Source;
-import edu.washington.escience.myria.io.DataSource;
 import edu.washington.escience.myria.io.FileSource;
+import edu.washington.escience.myria.io.RangedDataSource;
 import edu.washington.escience.myria.storage.TupleBatch;
 import edu.washington.escience.myria.storage.TupleBatchBuffer;
 import edu.washington.escience.myria.util.DateTimeUtils;
@@ -38,10 +35,8 @@ public class CSVFragmentTupleSource extends LeafOperator {
 
   /** The Schema of the relation stored in this file. */
   private final Schema schema;
-  /** Scanner used to parse the file. */
-  private transient CSVParser parser = null;
-  /** Iterator over CSV records. */
-  private transient Iterator<CSVRecord> iterator = null;
+  /** Tokenizer used to parse the file. */
+  private transient CsvTokenizer tokenizer = null;
   /** A user-provided file delimiter; if null, the system uses the default comma as delimiter. */
   private final Character delimiter;
   /** A user-provided quotation mark, if null, the system uses '"'. */
@@ -49,7 +44,7 @@ public class CSVFragmentTupleSource extends LeafOperator {
   /** A user-provided escape character to escape quote and itself, if null, the system uses '/'. */
   private final Character escape;
   /** The data source that will generate the input stream to be read at initialization. */
-  private final AmazonS3Source source;
+  private final RangedDataSource source;
   /** Number of skipped lines on the head. */
   private final Integer numberOfSkippedLines;
   /** Holds the tuples that are ready for release. */
@@ -57,23 +52,27 @@ public class CSVFragmentTupleSource extends LeafOperator {
   /** Which line of the file the scanner is currently on. */
   private long lineNumber = 0;
   private long byteOverlap = MyriaConstants.PARALLEL_INGEST_BYTE_OVERLAP;
-  private static final String truncatedQuoteErrorMessage =
-      "EOF reached before encapsulated token finished";
+  private static final String truncatedQuoteErrorMessage = CsvTokenizer.TRUNCATED_QUOTE_MESSAGE;
 
   private boolean isLastWorker;
-  private final long maxByteRange;
+  private long maxByteRange;
   private long partitionStartByteRange;
   private long partitionEndByteRange;
 
   private long adjustedStartByteRange;
   private int byteOffsetFromTruncatedRowAtStart = 0;
   private InputStream partitionInputStream;
-  private CSVRecord record;
+  /** The position of the current record in the stream of the tokenizer. */
+  private long recordPosition;
   private boolean onLastRow;
   private boolean finishedReadingLastRow;
   private boolean flagAsIncomplete;
   private boolean flagAsRangeSelected;
   private int[] workerIds;
+  /** The number of byte ranges each worker reads, each by a different instance of this operator. */
+  private int rangesPerWorker;
+  /** Which of the byte ranges of its worker this instance reads. */
+  private int rangeIndex;
 
   /** Required for Java serialization. */
   private static final long serialVersionUID = 1L;
@@ -94,7 +93,7 @@ public class CSVFragmentTupleSource extends LeafOperator {
   }
 
   public CSVFragmentTupleSource(
-      final DataSource source,
+      final RangedDataSource source,
       final Schema schema,
       final long startByteRange,
       final long endByteRange,
@@ -122,7 +121,7 @@ public class CSVFragmentTupleSource extends LeafOperator {
   }
 
   public CSVFragmentTupleSource(
-      final DataSource source,
+      final RangedDataSource source,
       final Schema schema,
       final long startByteRange,
       final long endByteRange,
@@ -154,7 +153,7 @@ public class CSVFragmentTupleSource extends LeafOperator {
   }
 
   public CSVFragmentTupleSource(
-      final DataSource source,
+      final RangedDataSource source,
       final Schema schema,
       final long partitionStartByteRange,
       final long partitionEndByteRange,
@@ -163,7 +162,7 @@ public class CSVFragmentTupleSource extends LeafOperator {
       @Nullable final Character quote,
       @Nullable final Character escape,
       @Nullable final Integer numberOfSkippedLines) {
-    this.source = (AmazonS3Source) Preconditions.checkNotNull(source, "source");
+    this.source = Preconditions.checkNotNull(source, "source");
     this.schema = Preconditions.checkNotNull(schema, "schema");
 
     this.delimiter = MoreObjects.firstNonNull(delimiter, CSVFormat.DEFAULT.getDelimiter());
@@ -175,7 +174,6 @@ public class CSVFragmentTupleSource extends LeafOperator {
     this.partitionEndByteRange = partitionEndByteRange;
     this.isLastWorker = isLastWorker;
 
-    maxByteRange = ((AmazonS3Source) source).getFileSize();
     onLastRow = false;
     finishedReadingLastRow = false;
     flagAsIncomplete = false;
@@ -183,9 +181,36 @@ public class CSVFragmentTupleSource extends LeafOperator {
   }
 
   public CSVFragmentTupleSource(
-      final AmazonS3Source source,
+      final RangedDataSource source,
+      final Schema schema,
+      final int[] workerIds,
+      @Nullable final Character delimiter,
+      @Nullable final Character quote,
+      @Nullable final Character escape,
+      @Nullable final Integer numberOfSkippedLines) {
+    this(source, schema, workerIds, 1, 0, delimiter, quote, escape, numberOfSkippedLines);
+  }
+
+  /**
+   * Reads one of several byte ranges of a worker. The file is split into <code>rangesPerWorker</code> ranges per
+   * worker, and this instance reads range <code>rangeIndex</code> of the worker it runs on.
+   *
+   * @param source the source of the file.
+   * @param schema the schema of the file.
+   * @param workerIds the workers that read the file, in the order their ranges appear in the file.
+   * @param rangesPerWorker the number of ranges each worker reads.
+   * @param rangeIndex which of the ranges of its worker this instance reads.
+   * @param delimiter the field delimiter, null for the default.
+   * @param quote the quote character, null for the default.
+   * @param escape the escape character, null for none.
+   * @param numberOfSkippedLines the number of lines to skip at the beginning of the file.
+   */
+  public CSVFragmentTupleSource(
+      final RangedDataSource source,
       final Schema schema,
       final int[] workerIds,
+      final int rangesPerWorker,
+      final int rangeIndex,
       @Nullable final Character delimiter,
       @Nullable final Character quote,
       @Nullable final Character escape,
@@ -194,13 +219,16 @@ public class CSVFragmentTupleSource extends LeafOperator {
     this.source = Preconditions.checkNotNull(source, "source");
     this.schema = Preconditions.checkNotNull(schema, "schema");
     this.workerIds = workerIds;
+    Preconditions.checkArgument(rangesPerWorker > 0, "rangesPerWorker must be positive");
+    Preconditions.checkElementIndex(rangeIndex, rangesPerWorker, "rangeIndex");
+    this.rangesPerWorker = rangesPerWorker;
+    this.rangeIndex = rangeIndex;
 
     this.delimiter = MoreObjects.firstNonNull(delimiter, CSVFormat.DEFAULT.getDelimiter());
     this.quote = MoreObjects.firstNonNull(quote, CSVFormat.DEFAULT.getQuoteCharacter());
     this.escape = escape;
     this.numberOfSkippedLines = MoreObjects.firstNonNull(numberOfSkippedLines, 0);
 
-    maxByteRange = source.getFileSize();
     onLastRow = false;
     finishedReadingLastRow = false;
     flagAsIncomplete = false;
@@ -214,7 +242,7 @@ public class CSVFragmentTupleSource extends LeafOperator {
 
     while ((buffer.numTuples() < buffer.getBatchSize()) && !flagAsIncomplete) {
       lineNumber++;
-      if (parser.isClosed()) {
+      if (tokenizer.isClosed()) {
         break;
       }
 
@@ -224,7 +252,7 @@ public class CSVFragmentTupleSource extends LeafOperator {
 
       try {
         if (!onLastRow) {
-          record = iterator.next();
+          nextRecord();
         }
       } catch (Exception e) {
         /*
@@ -239,7 +267,7 @@ public class CSVFragmentTupleSource extends LeafOperator {
       }
 
       try {
-        if (!iterator.hasNext()) {
+        if (!tokenizer.hasNextRecord()) {
           onLastRow = true;
         }
       } catch (Exception e) {
@@ -295,25 +323,16 @@ public class CSVFragmentTupleSource extends LeafOperator {
            * trailing range.
            */
           if (finalLineFound) {
-            long characterPositionAtBeginningOfRecord =
-                (record == null) ? 0 : record.getCharacterPosition();
             InputStream completePartitionStream =
                 source.getInputStream(
                     adjustedStartByteRange + byteOffsetFromTruncatedRowAtStart,
                     finalBytePositionFound);
-            BufferedReader reader =
-                new BufferedReader(new InputStreamReader(completePartitionStream));
-            reader.skip(characterPositionAtBeginningOfRecord);
-            parser =
-                new CSVParser(
-                    reader,
-                    CSVFormat.newFormat(delimiter).withQuote(quote).withEscape(escape),
-                    0,
-                    0);
-            iterator = parser.iterator();
-            record = iterator.next();
+            ByteStreams.skipFully(completePartitionStream, recordPosition);
+            tokenizer = new CsvTokenizer(completePartitionStream, delimiter, quote, escape);
+            recordPosition = 0;
+            nextRecord();
             if (nextRecordTruncated) {
-              record = iterator.next();
+              nextRecord();
             }
             finishedReadingLastRow = true;
           } else {
@@ -322,7 +341,7 @@ public class CSVFragmentTupleSource extends LeafOperator {
             trailingEndByte += byteOverlap;
           }
         }
-      } else if (record.size() == schema.numColumns() && onLastRow && isLastWorker) {
+      } else if (tokenizer.numFields() == schema.numColumns() && onLastRow && isLastWorker) {
         finishedReadingLastRow = true;
       }
 
@@ -331,10 +350,10 @@ public class CSVFragmentTupleSource extends LeafOperator {
        */
       if (!onLastRow || (onLastRow && finishedReadingLastRow)) {
         for (int column = 0; column < schema.numColumns(); ++column) {
-          String cell = record.get(column);
           try {
             switch (schema.getColumnType(column)) {
               case BOOLEAN_TYPE:
+                String cell = tokenizer.getString(column);
                 if (Floats.tryParse(cell) != null) {
                   buffer.putBoolean(column, Floats.tryParse(cell) != 0);
                 } else if (BooleanUtils.toBoolean(cell)) {
@@ -342,22 +361,22 @@ public class CSVFragmentTupleSource extends LeafOperator {
                 }
                 break;
               case DOUBLE_TYPE:
-                buffer.putDouble(column, Double.parseDouble(cell));
+                buffer.putDouble(column, tokenizer.getDouble(column));
                 break;
               case FLOAT_TYPE:
-                buffer.putFloat(column, Float.parseFloat(cell));
+                buffer.putFloat(column, tokenizer.getFloat(column));
                 break;
               case INT_TYPE:
-                buffer.putInt(column, Integer.parseInt(cell));
+                buffer.putInt(column, tokenizer.getInt(column));
                 break;
               case LONG_TYPE:
-                buffer.putLong(column, Long.parseLong(cell));
+                buffer.putLong(column, tokenizer.getLong(column));
                 break;
               case STRING_TYPE:
-                buffer.putString(column, cell);
+                buffer.putString(column, tokenizer.getString(column));
                 break;
               case DATETIME_TYPE:
-                buffer.putDateTime(column, DateTimeUtils.parse(cell));
+                buffer.putDateTime(column, DateTimeUtils.parse(tokenizer.getString(column)));
                 break;
               case BLOB_TYPE:
                 throw new DbException(
@@ -372,7 +391,7 @@ public class CSVFragmentTupleSource extends LeafOperator {
                     + ", expected type: "
                     + schema.getColumnType(column)
                     + ", scanned value: "
-                    + cell,
+                    + tokenizer.getString(column),
                 e);
           }
         }
@@ -380,7 +399,7 @@ public class CSVFragmentTupleSource extends LeafOperator {
          * Once we finish reading the last row, we close the parser
          */
         if (onLastRow) {
-          parser.close();
+          tokenizer.close();
         }
       }
       LOGGER.debug("Scanned {} input lines", lineNumber - lineNumberBegin);
@@ -388,9 +407,22 @@ public class CSVFragmentTupleSource extends LeafOperator {
     return buffer.popAny();
   }
 
+  /**
+   * Move the tokenizer to the next record.
+   *
+   * @throws IOException if the record cannot be read.
+   * @throws NoSuchElementException if there are no more records.
+   */
+  private void nextRecord() throws IOException {
+    if (!tokenizer.nextRecord()) {
+      throw new NoSuchElementException();
+    }
+    recordPosition = tokenizer.getRecordPosition();
+  }
+
   @Override
   public void cleanup() throws IOException {
-    parser = null;
+    tokenizer = null;
     while (buffer.numTuples() > 0) {
       buffer.popAny();
     }
@@ -405,35 +437,37 @@ public class CSVFragmentTupleSource extends LeafOperator {
   protected void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
     buffer = new TupleBatchBuffer(getSchema());
 
-    if (!flagAsRangeSelected) {
-      int workerID = getNodeID();
-      long fileSize = source.getFileSize();
-      long currentPartitionSize = fileSize / workerIds.length;
-      int workerIndex = -1;
-      for (int i = 0; i < workerIds.length; i++) {
-        if (workerID == workerIds[i]) {
-          workerIndex = i;
+    try {
+      maxByteRange = source.getFileSize();
+
+      if (!flagAsRangeSelected) {
+        int workerID = getNodeID();
+        int numRanges = workerIds.length * rangesPerWorker;
+        long currentPartitionSize = maxByteRange / numRanges;
+        int workerIndex = -1;
+        for (int i = 0; i < workerIds.length; i++) {
+          if (workerID == workerIds[i]) {
+            workerIndex = i;
+          }
         }
-      }
-      if (workerIndex >= 0) {
-        boolean isLastWorker = (workerIndex == workerIds.length - 1);
-        long startByteRange = currentPartitionSize * workerIndex;
-        long endByteRange;
-
-        if (isLastWorker) {
-          endByteRange = fileSize - 1;
+        if (workerIndex >= 0) {
+          int partitionIndex = workerIndex * rangesPerWorker + rangeIndex;
+          boolean isLastWorker = (partitionIndex == numRanges - 1);
+          long startByteRange = currentPartitionSize * partitionIndex;
+          long endByteRange;
+
+          if (isLastWorker) {
+            endByteRange = maxByteRange - 1;
+          } else {
+            endByteRange = (currentPartitionSize * (partitionIndex + 1)) - 1;
+          }
+          this.partitionStartByteRange = startByteRange;
+          this.partitionEndByteRange = endByteRange;
+          this.isLastWorker = isLastWorker;
         } else {
-          endByteRange = (currentPartitionSize * (workerIndex + 1)) - 1;
+          flagAsIncomplete = true;
         }
-        this.partitionStartByteRange = startByteRange;
-        this.partitionEndByteRange = endByteRange;
-        this.isLastWorker = isLastWorker;
-      } else {
-        flagAsIncomplete = true;
       }
-    }
-
-    try {
 
       adjustedStartByteRange = partitionStartByteRange;
       /* Optimization */
@@ -500,16 +534,13 @@ public class CSVFragmentTupleSource extends LeafOperator {
 
       /* If the partition is incomplete, do not instantiate the parser */
       if (!flagAsIncomplete) {
-        parser =
-            new CSVParser(
-                new BufferedReader(new InputStreamReader(partitionInputStream)),
-                CSVFormat.newFormat(delimiter).withQuote(quote).withEscape(escape));
-        iterator = parser.iterator();
+        tokenizer = new CsvTokenizer(partitionInputStream, delimiter, quote, escape);
+        recordPosition = 0;
 
         /* FIX ME: For now, we only support cases where all skipped lines are contained within the first partition. */
         if (partitionStartByteRange == 0) {
           for (int i = 0; i < numberOfSkippedLines; i++) {
-            iterator.next();
+            nextRecord();
           }
         }
       }
@@ -47,6 +47,10 @@ public class DbCreateView extends RootOperator {
       connectionInfo =
           (ConnectionInfo) execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_DATABASE_CONN_INFO);
     }
+    if (connectionInfo.getDbms().equals(MyriaConstants.STORAGE_SYSTEM_COLUMNAR)) {
+      throw new DbException(
+          "Unable to instantiate DbCreateView: columnar storage does not support views");
+    }
     /* Open the database connection */
     accessMethod = AccessMethod.of(connectionInfo.getDbms(), connectionInfo, false);
 
@@ -45,6 +45,10 @@ public class DbExecute extends RootOperator {
       connectionInfo =
           (ConnectionInfo) execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_DATABASE_CONN_INFO);
     }
+    if (connectionInfo.getDbms().equals(MyriaConstants.STORAGE_SYSTEM_COLUMNAR)) {
+      throw new DbException(
+          "Unable to instantiate DbExecute: columnar storage does not execute SQL commands");
+    }
     /* Open the database connection */
     accessMethod = AccessMethod.of(connectionInfo.getDbms(), connectionInfo, false);
 
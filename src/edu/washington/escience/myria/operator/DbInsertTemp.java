@@ -4,6 +4,7 @@
 package edu.washington.escience.myria.operator;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -24,6 +25,7 @@ import edu.washington.escience.myria.operator.network.distribute.DistributeFunct
 import edu.washington.escience.myria.accessmethod.ConnectionInfo;
 import edu.washington.escience.myria.accessmethod.SQLiteInfo;
 import edu.washington.escience.myria.parallel.RelationWriteMetadata;
+import edu.washington.escience.myria.storage.TempRelationStore;
 import edu.washington.escience.myria.storage.TupleBatch;
 import edu.washington.escience.myria.storage.TupleUtils;
 
@@ -52,6 +54,12 @@ public class DbInsertTemp extends AbstractDbInsert {
   private final List<List<IndexRef>> indexes;
   /** The DistributeFunction used to distribute the table across workers. */
   private final DistributeFunction distributeFunction;
+  /** The worker-local store of temporary relations, if the relation is kept in memory. */
+  private TempRelationStore store;
+  /** The tuples to be put into the store at EOS, null once the relation is written to the database. */
+  private List<TupleBatch> storedBatches;
+  /** The number of bytes reserved in the store for {@link #storedBatches}. */
+  private long storedBytes;
 
   /** Constructs a temporary insertion operator to store the tuples from the specified child into the specified
    * relation. If the table does not exist, it will be created. If <code>overwriteTable</code> is <code>true</code>, any
@@ -118,6 +126,10 @@ public class DbInsertTemp extends AbstractDbInsert {
 
   @Override
   public void cleanup() {
+    if (storedBatches != null) {
+      store.release(storedBytes);
+      storedBatches = null;
+    }
     try {
       if (accessMethod != null) {
         accessMethod.close();
@@ -129,20 +141,61 @@ public class DbInsertTemp extends AbstractDbInsert {
 
   @Override
   protected void consumeTuples(final TupleBatch tupleBatch) throws DbException {
-    Preconditions.checkState(accessMethod != null, "accessMethod must not be null");
     Preconditions.checkArgument(
         tupleBatch.getSchema().equals(getSchema()),
         "tuple schema %s does not match operator schema %s",
         tupleBatch.getSchema(),
         getSchema());
+    if (storedBatches != null) {
+      final long bytes = TupleUtils.sizeOf(tupleBatch);
+      if (store.reserve(bytes)) {
+        storedBatches.add(tupleBatch);
+        storedBytes += bytes;
+        return;
+      }
+      /* The store is full: write the relation to the database instead. */
+      connectionInfo = store.getConnectionInfo();
+      accessMethod = AccessMethod.of(connectionInfo.getDbms(), connectionInfo, false);
+      if (!overwriteTable) {
+        store.spill(relationKey);
+      }
+      createTables();
+      for (TupleBatch tb : storedBatches) {
+        accessMethod.tupleBatchInsert(stagingRelationKey, tb);
+      }
+      store.release(storedBytes);
+      storedBatches = null;
+    }
+    Preconditions.checkState(accessMethod != null, "accessMethod must not be null");
     accessMethod.tupleBatchInsert(stagingRelationKey, tupleBatch);
   }
 
   @Override
   protected void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
     setThreshold(TupleUtils.getBatchSize(getSchema()));
+    /* Temporary relations written to the default database without indexes are kept in memory, unless they are being
+     * appended to and were already spilled to the database. */
+    if (connectionInfo == null
+        && indexes.isEmpty()
+        && relationKey.isTemp()
+        && execEnvVars != null) {
+      store = (TempRelationStore) execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_TEMP_RELATION_STORE);
+      if (store != null && (overwriteTable || !store.isInDatabase(relationKey))) {
+        storedBatches = new ArrayList<>();
+        storedBytes = 0;
+        return;
+      }
+    }
     setupConnection(execEnvVars);
+    createTables();
+  }
 
+  /**
+   * Creates the table the tuples are inserted into, and its indexes.
+   *
+   * @throws DbException if there is an error accessing the database.
+   */
+  private void createTables() throws DbException {
     if (overwriteTable) {
       stagingRelationKey =
           RelationKey.of(
@@ -163,10 +216,18 @@ public class DbInsertTemp extends AbstractDbInsert {
 
   @Override
   protected void childEOS() throws DbException {
+    if (storedBatches != null) {
+      store.put(relationKey, getSchema(), storedBatches, storedBytes, overwriteTable);
+      storedBatches = null;
+      return;
+    }
     /* If the child finished, we're done too. If in overwrite mode, drop the existing table and rename. */
     if (overwriteTable) {
       accessMethod.dropAndRenameTables(relationKey, stagingRelationKey);
     }
+    if (store != null) {
+      store.storedInDatabase(relationKey);
+    }
   }
 
   @Override
@@ -1,12 +1,14 @@
 package edu.washington.escience.myria.operator;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 
 import edu.washington.escience.myria.DbException;
 import edu.washington.escience.myria.MyriaConstants;
@@ -14,6 +16,7 @@ import edu.washington.escience.myria.RelationKey;
 import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.accessmethod.AccessMethod;
 import edu.washington.escience.myria.accessmethod.ConnectionInfo;
+import edu.washington.escience.myria.storage.TempRelationStore;
 import edu.washington.escience.myria.storage.TupleBatch;
 
 /**
@@ -186,7 +189,8 @@ public class DbQueryScan extends LeafOperator implements DbReader {
 
   @Override
   protected final void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
-    if (connectionInfo == null) {
+    final boolean defaultConnection = connectionInfo == null;
+    if (defaultConnection) {
       final String dbms = (String) execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_DATABASE_SYSTEM);
       if (dbms == null) {
         throw new DbException("Unable to instantiate DbQueryScan: database system unknown");
@@ -226,6 +230,34 @@ public class DbQueryScan extends LeafOperator implements DbReader {
         baseSQL = baseSQL.concat(orderByClause.toString());
       }
     }
+
+    final TempRelationStore store =
+        defaultConnection
+            ? (TempRelationStore) execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_TEMP_RELATION_STORE)
+            : null;
+    if (store != null) {
+      if (relationKey == null) {
+        /* The SQL query may read the temporary relations of this query, so they must be in the database. */
+        final Long queryId = (Long) execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_QUERY_ID);
+        if (queryId != null) {
+          store.spillQuery(queryId);
+        }
+      } else if (relationKey.isTemp()) {
+        final List<TupleBatch> batches = store.get(relationKey);
+        if (batches != null && sortedColumns == null) {
+          /* the store keeps the batches, so each one handed out carries its own reference to its pooled arrays. */
+          tuples =
+              Iterators.transform(
+                  batches.iterator(),
+                  tb -> {
+                    tb.retain();
+                    return tb;
+                  });
+        } else {
+          store.spill(relationKey);
+        }
+      }
+    }
   }
 
   /**
@@ -54,6 +54,8 @@ public class DuplicateTBGenerator extends LeafOperator {
       return null;
     }
     numDuplicated++;
+    /* every duplicate handed out carries its own reference to the pooled arrays of the batch. */
+    tb.retain();
     return tb;
   }
 
@@ -4,6 +4,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.BitSet;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import edu.washington.escience.myria.DbException;
@@ -11,6 +12,7 @@ import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.expression.Expression;
 import edu.washington.escience.myria.expression.evaluate.BooleanEvaluator;
 import edu.washington.escience.myria.expression.evaluate.ExpressionOperatorParameter;
+import edu.washington.escience.myria.expression.evaluate.ExpressionOptimizer;
 import edu.washington.escience.myria.storage.TupleBatch;
 
 /**
@@ -72,7 +74,8 @@ public final class Filter extends UnaryOperator {
     Preconditions.checkNotNull(predicate);
     Schema inputSchema = getChild().getSchema();
     final ExpressionOperatorParameter parameters =
-        new ExpressionOperatorParameter(inputSchema, getNodeID());
+        ExpressionOptimizer.foldConstants(
+            ImmutableList.of(predicate), new ExpressionOperatorParameter(inputSchema, getNodeID()));
     evaluator = new BooleanEvaluator(predicate, parameters);
     evaluator.compile();
   }
@@ -0,0 +1,25 @@
+package edu.washington.escience.myria.operator;
+
+/**
+ * Anti-join: emits the tuples of the left child whose key matches the key of no tuple of the right child, i.e.,
+ * WHERE NOT EXISTS. Unlike {@link Difference}, the children need not have the same schema, and only the key columns
+ * are compared. See {@link AbstractHashSemiJoin}.
+ */
+public final class HashAntiJoin extends AbstractHashSemiJoin {
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * @param left the child whose tuples are filtered.
+   * @param right the child whose keys filter the tuples of the left child.
+   * @param compareIndx1 the key columns of the left child.
+   * @param compareIndx2 the key columns of the right child, compared with the key columns of the left child in order.
+   */
+  public HashAntiJoin(
+      final Operator left,
+      final Operator right,
+      final int[] compareIndx1,
+      final int[] compareIndx2) {
+    super(left, right, compareIndx1, compareIndx2, false);
+  }
+}
@@ -0,0 +1,24 @@
+package edu.washington.escience.myria.operator;
+
+/**
+ * Semi-join: emits the tuples of the left child whose key matches the key of some tuple of the right child, i.e.,
+ * WHERE EXISTS, each once no matter how many right tuples match it. See {@link AbstractHashSemiJoin}.
+ */
+public final class HashSemiJoin extends AbstractHashSemiJoin {
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * @param left the child whose tuples are filtered.
+   * @param right the child whose keys filter the tuples of the left child.
+   * @param compareIndx1 the key columns of the left child.
+   * @param compareIndx2 the key columns of the right child, compared with the key columns of the left child in order.
+   */
+  public HashSemiJoin(
+      final Operator left,
+      final Operator right,
+      final int[] compareIndx1,
+      final int[] compareIndx2) {
+    super(left, right, compareIndx1, compareIndx2, true);
+  }
+}
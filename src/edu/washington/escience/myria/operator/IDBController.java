@@ -101,6 +101,12 @@ public class IDBController extends Operator implements StreamingStateful, DbWrit
   /** delta tuples of the previous iteration. */
   private LinkedList<TupleBatch> deltaTuples;
 
+  /** the number of iterations finished in sync mode. */
+  private transient int iteration;
+
+  /** the number of delta tuples generated in the current iteration in sync mode. */
+  private transient long numDeltaTuples;
+
   /** if the buffer of previous iteration tuples has been cleaned. */
   private boolean bufferCleared = false;
 
@@ -248,21 +254,34 @@ public class IDBController extends Operator implements StreamingStateful, DbWrit
       bufferedIterTBs.add(tb);
     }
     if (iterationInput.eoi() && !bufferCleared) {
-      StreamingState tmpState = state.duplicate();
-      tmpState.setAttachedOperator(this);
-      tmpState.init(null);
-      for (TupleBatch tb1 : bufferedIterTBs) {
-        tmpState.update(tb1);
-      }
-      List<TupleBatch> tmp = tmpState.exportState();
       Preconditions.checkArgument(deltaTuples.size() == 0);
-      for (TupleBatch tb1 : tmp) {
-        tb = state.update(tb1);
-        if (tb != null) {
-          deltaTuples.add(tb);
+      if (state.isDeltaPreserving()) {
+        // the state already indexes the accumulated IDB, so the new tuples are checked against it directly.
+        for (TupleBatch tb1 : bufferedIterTBs) {
+          addDelta(state.update(tb1));
         }
+      } else {
+        StreamingState tmpState = state.duplicate();
+        tmpState.setAttachedOperator(this);
+        tmpState.init(null);
+        for (TupleBatch tb1 : bufferedIterTBs) {
+          tmpState.update(tb1);
+        }
+        for (TupleBatch tb1 : tmpState.exportState()) {
+          addDelta(state.update(tb1));
+        }
+        tmpState.cleanup();
       }
       emptyDelta = (deltaTuples.size() == 0);
+      LOGGER.debug(
+          "IDB {} iteration {}: {} new tuples in {} batches, {} tuples in total",
+          selfIDBIdx,
+          iteration,
+          numDeltaTuples,
+          deltaTuples.size(),
+          state.numTuples());
+      iteration++;
+      numDeltaTuples = 0;
       bufferedIterTBs.clear();
       bufferCleared = true;
     }
@@ -273,6 +292,18 @@ public class IDBController extends Operator implements StreamingStateful, DbWrit
     return null;
   }
 
+  /**
+   * Append a non-empty delta TupleBatch produced by the state to the output queue of the current iteration.
+   *
+   * @param tb the delta TupleBatch, may be null.
+   */
+  private void addDelta(final TupleBatch tb) {
+    if (tb != null && tb.numTuples() > 0) {
+      deltaTuples.add(tb);
+      numDeltaTuples += tb.numTuples();
+    }
+  }
+
   @Override
   public final void checkEOSAndEOI() {
     if (!initialInputEnded) {
@@ -355,6 +386,8 @@ public class IDBController extends Operator implements StreamingStateful, DbWrit
             execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_FRAGMENT_RESOURCE_MANAGER);
     eoiReportChannel = resourceManager.startAStream(controllerWorkerID, controllerOpID);
     state.init(execEnvVars);
+    iteration = 0;
+    numDeltaTuples = 0;
     deltaTuples = new LinkedList<TupleBatch>();
     bufferedIterTBs = new ArrayList<TupleBatch>();
 
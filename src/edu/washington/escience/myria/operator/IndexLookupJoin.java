@@ -0,0 +1,341 @@
+package edu.washington.escience.myria.operator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.MyriaConstants;
+import edu.washington.escience.myria.RelationKey;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.accessmethod.AccessMethod;
+import edu.washington.escience.myria.accessmethod.ConnectionInfo;
+import edu.washington.escience.myria.storage.ReadableColumn;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+import edu.washington.escience.myria.util.MyriaArrayUtils;
+
+/**
+ * Index nested-loop join of its child with a relation stored in the database of the worker: for each batch of the
+ * child, the distinct keys that are not cached are looked up in the relation with one statement, see
+ * {@link AccessMethod#tupleBatchLookup}, so an index on the key column of the relation turns the join into index seeks
+ * instead of a scan of the whole relation. The matches of the most recently used lookups, including the keys with no
+ * matches, are cached. Columnar storage, which cannot look up keys, is not supported.
+ */
+public final class IndexLookupJoin extends UnaryOperator {
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** The names of the output columns. */
+  private final ImmutableList<String> outputColumns;
+  /** The key column of the child. */
+  private final int childKeyColumn;
+  /** The stored relation. */
+  private final RelationKey relationKey;
+  /** The schema of the stored relation. */
+  private final Schema relationSchema;
+  /** The key column of the stored relation. */
+  private final int relationKeyColumn;
+  /** Which columns of the child are to be output. */
+  private final int[] childAnswerColumns;
+  /** Which columns of the stored relation are to be output. */
+  private final int[] relationAnswerColumns;
+
+  /** The connection information of the database of the worker. */
+  private transient ConnectionInfo connectionInfo;
+  /** The connection to the database of the worker, open from init to cleanup, or null for SQLite. */
+  private transient AccessMethod accessMethod;
+  /** The matches of the cached keys. */
+  private transient Map<Object, Matches> cache;
+  /**
+   * The lookups whose matches are cached, least recently used first. A lookup is evicted with all of its keys, since
+   * they share its tuples.
+   */
+  private transient LinkedHashSet<Lookup> lookups;
+  /** The number of tuples that the cached lookups stand for, counting one for a key with no matches. */
+  private transient int cachedTuples;
+  /** The buffer holding the results. */
+  private transient TupleBatchBuffer ans;
+
+  /** The tuples of the stored relation looked up with the keys of a batch of the child. */
+  private static final class Lookup {
+    /** The keys looked up. */
+    private final List<Object> keys;
+    /** The tuples looked up. */
+    private final List<TupleBatch> batches;
+    /** The number of tuples looked up, counting one for a key with no matches. */
+    private int numTuples;
+
+    /**
+     * @param keys the keys looked up.
+     * @param batches the tuples looked up.
+     */
+    private Lookup(final List<Object> keys, final List<TupleBatch> batches) {
+      this.keys = keys;
+      this.batches = batches;
+    }
+  }
+
+  /** The tuples of the stored relation that match a key. */
+  private static final class Matches {
+    /** The lookup of the key. */
+    private final Lookup lookup;
+    /** The batches of the lookup that hold the tuples matching the key. */
+    private final IntArrayList batches;
+    /** The rows of the tuples matching the key in their batches. */
+    private final IntArrayList rows;
+
+    /**
+     * @param lookup the lookup of the key.
+     */
+    private Matches(final Lookup lookup) {
+      this.lookup = lookup;
+      batches = new IntArrayList(1);
+      rows = new IntArrayList(1);
+    }
+  }
+
+  /**
+   * @param outputColumns the names of the columns in the output schema. If null, the corresponding columns will be
+   *          copied from the child and the stored relation.
+   * @param child the child, whose tuples are looked up in the stored relation.
+   * @param childKeyColumn the key column of the child.
+   * @param relationKey the stored relation.
+   * @param relationSchema the schema of the stored relation.
+   * @param relationKeyColumn the key column of the stored relation, which should be indexed.
+   * @param childAnswerColumns the columns of the child to be returned. Order matters.
+   * @param relationAnswerColumns the columns of the stored relation to be returned. Order matters.
+   */
+  public IndexLookupJoin(
+      final List<String> outputColumns,
+      final Operator child,
+      final int childKeyColumn,
+      final RelationKey relationKey,
+      final Schema relationSchema,
+      final int relationKeyColumn,
+      final int[] childAnswerColumns,
+      final int[] relationAnswerColumns) {
+    super(child);
+    this.relationKey = Objects.requireNonNull(relationKey, "relationKey");
+    this.relationSchema = Objects.requireNonNull(relationSchema, "relationSchema");
+    Preconditions.checkElementIndex(
+        relationKeyColumn, relationSchema.numColumns(), "relationKeyColumn");
+    Preconditions.checkArgument(
+        relationSchema.getColumnType(relationKeyColumn) != Type.BLOB_TYPE,
+        "cannot look up keys of type %s",
+        Type.BLOB_TYPE);
+    if (outputColumns != null) {
+      Preconditions.checkArgument(
+          outputColumns.size() == childAnswerColumns.length + relationAnswerColumns.length,
+          "length mismatch between output column names and columns selected for output");
+      Preconditions.checkArgument(
+          ImmutableSet.copyOf(outputColumns).size() == outputColumns.size(),
+          "duplicate column names in outputColumns");
+      this.outputColumns = ImmutableList.copyOf(outputColumns);
+    } else {
+      this.outputColumns = null;
+    }
+    this.childKeyColumn = childKeyColumn;
+    this.relationKeyColumn = relationKeyColumn;
+    this.childAnswerColumns = MyriaArrayUtils.warnIfNotSet(childAnswerColumns);
+    this.relationAnswerColumns = MyriaArrayUtils.warnIfNotSet(relationAnswerColumns);
+  }
+
+  @Override
+  protected Schema generateSchema() {
+    final Operator child = getChild();
+    if (child == null) {
+      return null;
+    }
+    final Schema childSchema = child.getSchema();
+    Preconditions.checkState(
+        childSchema.getColumnType(childKeyColumn)
+            == relationSchema.getColumnType(relationKeyColumn),
+        "column types do not match for join: child column type %s [%s] != relation column type %s [%s]",
+        childKeyColumn,
+        childSchema.getColumnType(childKeyColumn),
+        relationKeyColumn,
+        relationSchema.getColumnType(relationKeyColumn));
+
+    ImmutableList.Builder<Type> types = ImmutableList.builder();
+    ImmutableList.Builder<String> names = ImmutableList.builder();
+    for (int i : childAnswerColumns) {
+      types.add(childSchema.getColumnType(i));
+      names.add(childSchema.getColumnName(i));
+    }
+    for (int i : relationAnswerColumns) {
+      types.add(relationSchema.getColumnType(i));
+      names.add(relationSchema.getColumnName(i));
+    }
+    if (outputColumns != null) {
+      return new Schema(types.build(), outputColumns);
+    } else {
+      return new Schema(types, names);
+    }
+  }
+
+  @Override
+  protected void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
+    final String dbms = (String) execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_DATABASE_SYSTEM);
+    if (dbms == null) {
+      throw new DbException("Unable to instantiate IndexLookupJoin: database system unknown");
+    }
+    connectionInfo =
+        (ConnectionInfo) execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_DATABASE_CONN_INFO);
+    if (connectionInfo == null) {
+      throw new DbException(
+          "Unable to instantiate IndexLookupJoin: connection information unknown");
+    }
+    if (!dbms.equals(connectionInfo.getDbms())) {
+      throw new DbException(
+          "Unable to instantiate IndexLookupJoin: database system does not conform with connection information");
+    }
+    if (dbms.equals(MyriaConstants.STORAGE_SYSTEM_COLUMNAR)) {
+      throw new DbException(
+          "Unable to instantiate IndexLookupJoin: columnar storage does not support key lookups");
+    }
+    /*
+     * A SQLite connection is confined to the thread that opened it, and the task of this operator may run on any
+     * thread, so it is opened for each lookup instead.
+     */
+    if (!dbms.equals(MyriaConstants.STORAGE_SYSTEM_SQLITE)) {
+      accessMethod = AccessMethod.of(dbms, connectionInfo, true);
+    }
+    cache = new HashMap<>();
+    lookups = new LinkedHashSet<>();
+    cachedTuples = 0;
+    ans = new TupleBatchBuffer(getSchema());
+  }
+
+  @Override
+  protected void cleanup() throws DbException {
+    if (accessMethod != null) {
+      accessMethod.close();
+      accessMethod = null;
+    }
+    connectionInfo = null;
+    cache = null;
+    lookups = null;
+    ans = null;
+  }
+
+  @Override
+  protected TupleBatch fetchNextReady() throws DbException {
+    while (!ans.hasFilledTB()) {
+      TupleBatch tb = getChild().nextReady();
+      if (tb == null) {
+        break;
+      }
+      processChildTB(tb);
+    }
+    return ans.popAny();
+  }
+
+  /**
+   * Looks up the keys of a batch of the child that are not cached, and joins the batch with their matches.
+   *
+   * @param tb the batch.
+   * @throws DbException if there is an error looking up the keys.
+   */
+  private void processChildTB(final TupleBatch tb) throws DbException {
+    final ReadableColumn keys = tb.asColumn(childKeyColumn);
+    final Set<Object> missing = new LinkedHashSet<>();
+    for (int row = 0; row < tb.numTuples(); ++row) {
+      final Object key = keys.getObject(row);
+      if (!cache.containsKey(key)) {
+        missing.add(key);
+      }
+    }
+    if (!missing.isEmpty()) {
+      lookup(new ArrayList<>(missing));
+    }
+
+    final Set<Lookup> used = new LinkedHashSet<>();
+    for (int row = 0; row < tb.numTuples(); ++row) {
+      final Matches matches = cache.get(keys.getObject(row));
+      used.add(matches.lookup);
+      for (int i = 0; i < matches.rows.size(); ++i) {
+        final TupleBatch batch = matches.lookup.batches.get(matches.batches.get(i));
+        final int index = matches.rows.get(i);
+        for (int childAnswerColumn : childAnswerColumns) {
+          ans.append(tb, childAnswerColumn, row);
+        }
+        for (int relationAnswerColumn : relationAnswerColumns) {
+          ans.append(batch, relationAnswerColumn, index);
+        }
+      }
+    }
+
+    for (Lookup lookup : used) {
+      lookups.remove(lookup);
+      lookups.add(lookup);
+    }
+    /* Evict the least recently used lookups, but never the lookups of this batch, which are the most recently used. */
+    final Iterator<Lookup> lru = lookups.iterator();
+    while (cachedTuples > MyriaConstants.INDEX_LOOKUP_CACHE_TUPLES
+        && lookups.size() > used.size()) {
+      final Lookup evicted = lru.next();
+      lru.remove();
+      cachedTuples -= evicted.numTuples;
+      for (Object key : evicted.keys) {
+        cache.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Looks up keys in the stored relation, and caches their matches.
+   *
+   * @param keys the distinct keys, none of which is cached.
+   * @throws DbException if there is an error looking up the keys.
+   */
+  private void lookup(final List<Object> keys) throws DbException {
+    final List<TupleBatch> batches;
+    if (accessMethod != null) {
+      batches = accessMethod.tupleBatchLookup(relationKey, relationSchema, relationKeyColumn, keys);
+    } else {
+      final AccessMethod sqlite = AccessMethod.of(connectionInfo.getDbms(), connectionInfo, true);
+      try {
+        batches = sqlite.tupleBatchLookup(relationKey, relationSchema, relationKeyColumn, keys);
+      } finally {
+        sqlite.close();
+      }
+    }
+
+    final Lookup lookup = new Lookup(keys, batches);
+    final Map<Object, Matches> fetched = new HashMap<>();
+    for (Object key : keys) {
+      fetched.put(key, new Matches(lookup));
+    }
+    for (int b = 0; b < batches.size(); ++b) {
+      final TupleBatch batch = batches.get(b);
+      final ReadableColumn batchKeys = batch.asColumn(relationKeyColumn);
+      for (int row = 0; row < batch.numTuples(); ++row) {
+        final Matches matches = fetched.get(batchKeys.getObject(row));
+        if (matches != null) {
+          matches.batches.add(b);
+          matches.rows.add(row);
+        }
+      }
+    }
+    for (Matches matches : fetched.values()) {
+      lookup.numTuples += Math.max(1, matches.rows.size());
+    }
+    cache.putAll(fetched);
+    lookups.add(lookup);
+    cachedTuples += lookup.numTuples;
+  }
+}
@@ -31,6 +31,12 @@ import edu.washington.escience.myria.storage.TupleUtils;
  *
  * It takes pre-sorted relations as input. The variable ordering must be implied at joinFieldMapping.
  *
+ * Once its children are drained, each relation is seen as a trie over its join fields in their local order: the join
+ * fields of integral types are copied to primitive arrays, one per level, in which a trie node is a range of rows with
+ * the same prefix, and the first level of a relation with {@code indexOnFirst} gets an index of its distinct values.
+ * Seeks gallop, i.e., search with exponentially growing steps from the current row, so a seek that skips d rows costs
+ * O(log d) comparisons of primitive values, and the tuples of the last join variable are output range by range.
+ *
  */
 public class LeapFrogJoin extends NAryOperator {
   /**
@@ -119,83 +125,19 @@ public class LeapFrogJoin extends NAryOperator {
   private transient IntArrayList[] firstVarIndices;
 
   /**
-   * Pointer to a cell in a table.
-   *
+   * {@code {@link #keys}[i][j]} holds the values of the j-th field of the i-th child's table if it is a join field of an
+   * integral type, and null otherwise.
    */
-  private final class CellPointer {
-    /**
-     * Table index of this CellPointer.
-     */
-    private final int tableIndex;
-
-    /**
-     * @return Table index of this CellPointer
-     */
-    public int getTableIndex() {
-      return tableIndex;
-    }
+  private transient long[][][] keys;
 
-    /**
-     * @return Field index of this CellPointer
-     */
-    public int getFieldIndex() {
-      return fieldIndex;
-    }
-
-    /**
-     * Field index of this CellPointer.
-     */
-    private final int fieldIndex;
-
-    /**
-     * row number.
-     */
-    private int row;
-
-    /**
-     * @return row number
-     */
-    public int getRow() {
-      return row;
-    }
-
-    /**
-     * @param row row number to set
-     */
-    public void setRow(final int row) {
-      Preconditions.checkElementIndex(
-          row, tables[tableIndex].numTuples(), "row out of bound when setting row");
-      this.row = row;
-    }
-
-    /**
-     * @param tableIndex the table index of this CellPointer
-     * @param fieldIndex the field index of this CellPointer
-     * @param row row number
-     */
-    public CellPointer(final int tableIndex, final int fieldIndex, final int row) {
-      Preconditions.checkElementIndex(tableIndex, tables.length, "tableIndex exceeds legal range.");
-      Preconditions.checkElementIndex(
-          fieldIndex, tables[tableIndex].numColumns(), "fieldIndex exceeds legal range.");
-      Preconditions.checkState(
-          row >= 0 && row <= tables[tableIndex].numTuples(), "row number exceeds legal range.");
-      this.tableIndex = tableIndex;
-      this.fieldIndex = fieldIndex;
-      this.row = row;
-    }
+  /** The table of each output field. */
+  private transient int[] outputTables;
 
-    /**
-     * @param cp the CellPointer to copy from
-     */
-    public CellPointer(final CellPointer cp) {
-      this(cp.getTableIndex(), cp.getFieldIndex(), cp.getRow());
-    }
+  /** The column of each output field in its table. */
+  private transient int[] outputColumns;
 
-    @Override
-    public String toString() {
-      return "t:" + tableIndex + " f:" + fieldIndex + " r:" + row;
-    }
-  }
+  /** The current row of each output field, filled when outputting the tuples of a join key. */
+  private transient int[] outputRows;
 
   /**
    *
@@ -285,6 +227,10 @@ public class LeapFrogJoin extends NAryOperator {
      */
     public void setRowOfCurrentField(final int row) {
       rowIndices[currentField] = row;
+      /* this is called for every output tuple, so only format the messages of failed checks. */
+      if (row < ranges[currentField].getMaxRow() && row >= ranges[currentField].getMinRow()) {
+        return;
+      }
       Preconditions.checkArgument(
           row < ranges[currentField].getMaxRow(),
           "row: %s >= maxRow: %s, currentField: %s, tableIdx: %s, curDepth: %s",
@@ -372,8 +318,7 @@ public class LeapFrogJoin extends NAryOperator {
        */
       public void setMinRow(final int minRow) {
         this.minRow = minRow;
-        Preconditions.checkState(
-            minRow < maxRow, "minRow >= maxRow. (minRow=%s, ,maxRow=%s)", minRow, maxRow);
+        checkRange();
       }
 
       /**
@@ -388,9 +333,7 @@ public class LeapFrogJoin extends NAryOperator {
        */
       public void setMaxRow(final int maxRow) {
         this.maxRow = maxRow;
-        Preconditions.checkArgument(maxRow > 0, "maxRow: %s", maxRow);
-        Preconditions.checkState(
-            minRow < maxRow, "minRow >= maxRow. (minRow=%s, ,maxRow=%s)", minRow, maxRow);
+        checkRange();
       }
 
       /**
@@ -400,6 +343,16 @@ public class LeapFrogJoin extends NAryOperator {
       public void setRange(final int minRow, final int maxRow) {
         this.minRow = minRow;
         this.maxRow = maxRow;
+        checkRange();
+      }
+
+      /**
+       * Checks that the range is not empty, formatting the messages only if it is, since ranges are set for every seek.
+       */
+      private void checkRange() {
+        if (maxRow > 0 && minRow < maxRow) {
+          return;
+        }
         Preconditions.checkArgument(maxRow > 0, "maxRow: %s", maxRow);
         Preconditions.checkState(
             minRow < maxRow, "minRow >= maxRow. (minRow=%s, ,maxRow=%s)", minRow, maxRow);
@@ -445,12 +398,10 @@ public class LeapFrogJoin extends NAryOperator {
   private class JoinIteratorCompare implements Comparator<JoinField> {
     @Override
     public int compare(final JoinField o1, final JoinField o2) {
-      return TupleUtils.cellCompare(
-          tables[o1.table],
-          o1.column,
+      return cellCompare(
+          o1,
           iterators[o1.table].getRowOfCurrentField(),
-          tables[o2.table],
-          o2.column,
+          o2,
           iterators[o2.table].getRowOfCurrentField());
     }
   }
@@ -593,7 +544,8 @@ public class LeapFrogJoin extends NAryOperator {
           return null;
         }
       }
-      /* Initiate table iterators. */
+      /* Build the tries and initiate table iterators. */
+      buildTries();
       initIterators();
     }
     /* do the join, pop if there is ready tb. */
@@ -647,6 +599,38 @@ public class LeapFrogJoin extends NAryOperator {
     currentIteratorIndex = (currentIteratorIndex + 1) % joinFieldMapping.get(currentDepth).size();
   }
 
+  /**
+   * Copy the join fields of integral types of the tables to primitive arrays, and index the distinct values of the
+   * first join field of the tables with indexOnFirst.
+   */
+  private void buildTries() {
+    keys = new long[tables.length][][];
+    for (int i = 0; i < tables.length; ++i) {
+      final MutableTupleBuffer table = tables[i];
+      keys[i] = new long[table.numColumns()][];
+      for (JoinField jf : localOrderedJoinField.get(i)) {
+        final Type type = table.getSchema().getColumnType(jf.column);
+        if (type != Type.INT_TYPE && type != Type.LONG_TYPE) {
+          continue;
+        }
+        final long[] values = new long[table.numTuples()];
+        for (int row = 0; row < values.length; ++row) {
+          values[row] =
+              type == Type.INT_TYPE ? table.getInt(jf.column, row) : table.getLong(jf.column, row);
+        }
+        keys[i][jf.column] = values;
+      }
+      if (indexOnFirst[i] && !localOrderedJoinField.get(i).isEmpty()) {
+        final JoinField first = localOrderedJoinField.get(i).get(0);
+        for (int row = 0; row < table.numTuples(); ++row) {
+          if (row == 0 || cellCompare(first, row - 1, first, row) != 0) {
+            firstVarIndices[i].add(row);
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Initiate iterators.
    */
@@ -758,6 +742,14 @@ public class LeapFrogJoin extends NAryOperator {
       firstVarIndices[i] = new IntArrayList();
     }
 
+    outputTables = new int[outputFieldMapping.size()];
+    outputColumns = new int[outputFieldMapping.size()];
+    outputRows = new int[outputFieldMapping.size()];
+    for (int i = 0; i < outputFieldMapping.size(); ++i) {
+      outputTables[i] = outputFieldMapping.get(i).table;
+      outputColumns[i] = outputFieldMapping.get(i).column;
+    }
+
     currentDepth = -1;
 
     ansTBB = new TupleBatchBuffer(getSchema());
@@ -772,6 +764,7 @@ public class LeapFrogJoin extends NAryOperator {
     }
     tables = null;
     firstVarIndices = null;
+    keys = null;
     /* iterators may not be initialized */
     if (iterators != null) {
       for (int i = 0; i < iterators.length; ++i) {
@@ -792,23 +785,6 @@ public class LeapFrogJoin extends NAryOperator {
     for (int row = 0; row < tb.numTuples(); ++row) {
       for (int column = 0; column < tb.numColumns(); column++) {
         tables[childIndex].put(column, inputColumns.get(column), row);
-        /* put value to index table if it first appears */
-        if (isIndexed(new JoinField(childIndex, column))) {
-          int thisRow = tables[childIndex].numTuples();
-          /*
-           * If this is the last column, this tuple is already built in tables[childIndex]. So numTuples() have been
-           * updated already.
-           */
-          if (column == tb.numColumns() - 1) {
-            thisRow--;
-          }
-          int lastRow = thisRow - 1;
-          if (lastRow == -1
-              || TupleUtils.cellCompare(tables[childIndex], column, lastRow, tb, column, row)
-                  != 0) {
-            firstVarIndices[childIndex].add(thisRow);
-          }
-        }
       }
     }
   }
@@ -852,211 +828,186 @@ public class LeapFrogJoin extends NAryOperator {
     boolean atEnd = false;
     Preconditions.checkElementIndex(
         currentDepth, joinFieldMapping.size(), "current depth is invalid.");
+    final List<JoinField> joinFields = joinFieldMapping.get(currentDepth);
     /* get the column to proceed the search. */
-    JoinField columnToProceed = joinFieldMapping.get(currentDepth).get(currentIteratorIndex);
-    CellPointer maxKey =
-        new CellPointer(
-            columnToProceed.table,
-            columnToProceed.column,
-            iterators[columnToProceed.table].getRowOfCurrentField());
+    JoinField maxField = joinFields.get(currentIteratorIndex);
+    int maxKeyRow = iterators[maxField.table].getRowOfCurrentField();
     /* if this is already the end of a trie range, return atEnd=ture. */
-    final int maxRow = iterators[columnToProceed.table].ranges[columnToProceed.column].getMaxRow();
-    Preconditions.checkState(
-        maxKey.getRow() <= maxRow, "current row: %s, maxRow: %s", maxKey.getRow(), maxRow);
-    if (maxKey.getRow() == maxRow) {
+    final int maxRow = iterators[maxField.table].ranges[maxField.column].getMaxRow();
+    Preconditions.checkState(maxKeyRow <= maxRow, "current row exceeds maxRow");
+    if (maxKeyRow == maxRow) {
       return true;
     }
 
     nextIterator();
 
     while (true) {
-      JoinField fieldWithLeastKey = joinFieldMapping.get(currentDepth).get(currentIteratorIndex);
-      CellPointer leastKey =
-          new CellPointer(
-              fieldWithLeastKey.table,
-              fieldWithLeastKey.column,
-              iterators[fieldWithLeastKey.table].getRowOfCurrentField());
-      if (cellCompare(leastKey, maxKey) == 0) { // if the value current
+      JoinField fieldWithLeastKey = joinFields.get(currentIteratorIndex);
+      final int leastKeyRow = iterators[fieldWithLeastKey.table].getRowOfCurrentField();
+      if (cellCompare(fieldWithLeastKey, leastKeyRow, maxField, maxKeyRow) == 0) {
         break;
       } else {
-        atEnd = leapfrogSeek(fieldWithLeastKey, maxKey);
+        atEnd = leapfrogSeek(fieldWithLeastKey, maxField, maxKeyRow);
         if (atEnd) {
           break;
         } else {
           // if leapfrog_seek hasn't reach end, update max key, move to the next table
-          maxKey =
-              new CellPointer(
-                  fieldWithLeastKey.table,
-                  fieldWithLeastKey.column,
-                  iterators[fieldWithLeastKey.table].getRowOfCurrentField());
+          maxField = fieldWithLeastKey;
+          maxKeyRow = iterators[fieldWithLeastKey.table].getRowOfCurrentField();
           nextIterator();
         }
       }
     }
     /* checking the state */
-    for (JoinField jf : joinFieldMapping.get(currentDepth)) {
+    for (JoinField jf : joinFields) {
       final int maxRowJf = iterators[jf.table].ranges[jf.column].getMaxRow();
       final int minRowJf = iterators[jf.table].ranges[jf.column].getMinRow();
       final int curRow = iterators[jf.table].getRow(jf.column);
-      Preconditions.checkState(curRow >= minRowJf, "curRow: %s, minRow: %s", curRow, minRowJf);
-      Preconditions.checkState(curRow < maxRowJf, "curRow: %s, maxRow: %s", curRow, maxRowJf);
+      if (curRow < minRowJf || curRow >= maxRowJf) {
+        Preconditions.checkState(curRow >= minRowJf, "curRow: %s, minRow: %s", curRow, minRowJf);
+        Preconditions.checkState(curRow < maxRowJf, "curRow: %s, maxRow: %s", curRow, maxRowJf);
+      }
     }
 
     return atEnd;
   }
 
   /**
+   * Narrow the range of a join field to the rows with the value of its current row, i.e., open the trie node of the
+   * value.
+   *
    * @param jf JoinField
-   * @throws DbException
    */
   private void refineRange(final JoinField jf) {
+    final TableIterator it = iterators[jf.table];
+    final int startRow = it.getRow(jf.column);
+    final int endRow =
+        gallop(jf, startRow + 1, it.ranges[jf.column].getMaxRow(), jf, startRow, true);
+    it.ranges[jf.column].setRange(startRow, endRow);
+  }
 
-    int startRow = iterators[jf.table].getRow(jf.column);
-    int endRow = iterators[jf.table].ranges[jf.column].getMaxRow() - 1;
-    iterators[jf.table].ranges[jf.column].setMinRow(startRow);
-    Preconditions.checkState(
-        startRow <= endRow, "startRow > endRow. (startRow=%s, endRow=%s)", startRow, endRow);
-
-    final CellPointer startCursor = new CellPointer(jf.table, jf.column, startRow);
-
-    /* short cut: if the maxCursor has the same value as current line */
-    CellPointer cursor = new CellPointer(jf.table, jf.column, endRow);
-    if (cellCompare(startCursor, cursor) == 0) {
-      return;
-    }
-
-    /* short cut: if the next line has different value */
-    cursor.setRow(++startRow);
-    if (cellCompare(startCursor, cursor) < 0) {
-      iterators[jf.table].ranges[jf.column].setMaxRow(startRow);
-      return;
-    }
+  /**
+   * @param jf a join field.
+   * @param row a row of the join field.
+   * @param target the join field of the target.
+   * @param targetRow the row of the target.
+   * @param orEqual if a value equal to the target also precedes it.
+   * @return true if the value in the row precedes the target.
+   */
+  private boolean precedes(
+      final JoinField jf,
+      final int row,
+      final JoinField target,
+      final int targetRow,
+      final boolean orEqual) {
+    final int compared = cellCompare(jf, row, target, targetRow);
+    return compared < 0 || orEqual && compared == 0;
+  }
 
-    /* refine start */
+  /**
+   * Exponential search: find the first row in a sorted range that does not precede a target, by probing rows at
+   * doubling distances from the start of the range, then binary searching between the last two probes.
+   *
+   * @param jf the join field to search.
+   * @param fromRow the first row of the range. The rows before it precede the target.
+   * @param toRow the end of the range, exclusive.
+   * @param target the join field of the target.
+   * @param targetRow the row of the target.
+   * @param orEqual if a value equal to the target also precedes it, i.e., to find the first greater value.
+   * @return the first row of the range that does not precede the target, or toRow if there is none.
+   */
+  private int gallop(
+      final JoinField jf,
+      final int fromRow,
+      final int toRow,
+      final JoinField target,
+      final int targetRow,
+      final boolean orEqual) {
+    int before = fromRow - 1;
+    int notBefore = fromRow;
     int step = 1;
-    while (true) {
-      int compare = cellCompare(startCursor, cursor);
-      Preconditions.checkState(
-          compare <= 0,
-          "startCursor must point to an element that is not greater than element pointed by current cursor");
-      if (compare < 0) {
-        endRow = cursor.getRow();
-        break;
-      } else if (compare == 0) {
-        startRow = cursor.getRow();
-        cursor.setRow(startRow + step);
-        step = step * 2;
-        if (cursor.getRow() + step > endRow) {
-          break;
-        }
-      }
-    }
-
-    /* refine end */
-    while (true) {
-      cursor.setRow((startRow + endRow) / 2);
-      int compare = cellCompare(startCursor, cursor);
-      if (compare == 0) { // if current cursor equals to start cursor
-        startRow = cursor.getRow();
-      } else if (compare < 0) { // if current cursor is greater than start cursor
-        endRow = cursor.getRow();
-      }
-
-      if (endRow == startRow + 1) {
-        iterators[jf.table].ranges[jf.column].setMaxRow(endRow);
-        return;
+    while (notBefore < toRow && precedes(jf, notBefore, target, targetRow, orEqual)) {
+      before = notBefore;
+      notBefore = before + step;
+      step *= 2;
+    }
+    notBefore = Math.min(notBefore, toRow);
+    while (notBefore - before > 1) {
+      final int mid = (before + notBefore) >>> 1;
+      if (precedes(jf, mid, target, targetRow, orEqual)) {
+        before = mid;
+      } else {
+        notBefore = mid;
       }
     }
+    return notBefore;
   }
 
   /**
    * move the iterator to the element which is the first key larger than current max.
    *
    * @param jf seek on which field of which table.
-   * @param target the target value of seeking.
+   * @param target the join field of the target value of seeking.
+   * @param targetRow the row of the target value of seeking.
    * @return at end or not.
    */
-  private boolean leapfrogSeek(final JoinField jf, final CellPointer target) {
+  private boolean leapfrogSeek(final JoinField jf, final JoinField target, final int targetRow) {
     /* switch to indexed version if possible. */
     if (isIndexed(jf)) {
-      return leapfrogSeekWithIndex(jf, target);
+      return leapfrogSeekWithIndex(jf, target, targetRow);
     }
 
-    int startRow = iterators[jf.table].getRow(jf.column);
-    int endRow = iterators[jf.table].ranges[jf.column].getMaxRow() - 1;
-    Preconditions.checkState(startRow <= endRow, "startRow must be no less than endRow");
-
-    final CellPointer startCursor = new CellPointer(jf.table, jf.column, startRow);
-    CellPointer cursor = new CellPointer(startCursor);
-
-    /* set row number to upper bound */
-    cursor.setRow(endRow);
-    if (cellCompare(cursor, target) < 0) {
+    final TableIterator it = iterators[jf.table];
+    final int endRow = it.ranges[jf.column].getMaxRow();
+    /* the current row precedes the target, since it has the least key. */
+    final int row = gallop(jf, it.getRow(jf.column) + 1, endRow, target, targetRow, false);
+    if (row == endRow) {
       return true;
     }
-
-    /* binary search: find the first row whose value is not less than target */
-    while (true) {
-      cursor.setRow((endRow + startRow) / 2);
-      int compare = cellCompare(cursor, target);
-      if (compare >= 0) { // cursor > target
-        endRow = cursor.getRow();
-      } else if (compare < 0) { // cursor < target
-        startRow = cursor.getRow();
-      }
-
-      if (startRow == endRow - 1) {
-        cursor.setRow(endRow);
-        iterators[jf.table].setRow(jf.column, endRow);
-        return false;
-      }
-    }
+    it.setRow(jf.column, row);
+    return false;
   }
 
   /**
    * move the iterator to the element which is the first key larger than current max.
    *
    * @param jf seek on which field of which table.
-   * @param target the target value of seeking.
+   * @param target the join field of the target value of seeking.
+   * @param targetRow the row of the target value of seeking.
    * @return at end or not.
    */
-  private boolean leapfrogSeekWithIndex(final JoinField jf, final CellPointer target) {
-    IntArrayList index = firstVarIndices[jf.table];
-    int startRowOnIndex = iterators[jf.table].rowOnIndex;
-    int endRowOnIndex = index.size() - 1;
-    Preconditions.checkState(
-        startRowOnIndex <= endRowOnIndex, "startRow must be no less than endRow");
-    Preconditions.checkElementIndex(startRowOnIndex, index.size());
-    Preconditions.checkElementIndex(endRowOnIndex, index.size());
-
-    final CellPointer startCursor =
-        new CellPointer(jf.table, jf.column, index.get(startRowOnIndex));
-    CellPointer cursor = new CellPointer(startCursor);
-
-    /* set row number to upper bound */
-    cursor.setRow(index.get(endRowOnIndex));
-    if (cellCompare(cursor, target) < 0) {
-      return true;
-    }
-
-    /* binary search: find the first row whose value is not less than target */
-    while (true) {
-      int rowOnIndex = (startRowOnIndex + endRowOnIndex) / 2;
-      cursor.setRow(index.get(rowOnIndex));
-      int compare = cellCompare(cursor, target);
-      if (compare >= 0) { // cursor > target
-        endRowOnIndex = rowOnIndex;
-      } else if (compare < 0) { // cursor < target
-        startRowOnIndex = rowOnIndex;
+  private boolean leapfrogSeekWithIndex(
+      final JoinField jf, final JoinField target, final int targetRow) {
+    final IntArrayList index = firstVarIndices[jf.table];
+    final TableIterator it = iterators[jf.table];
+    Preconditions.checkElementIndex(it.rowOnIndex, index.size());
+
+    /* gallop on the index, from the distinct value at or before the current row. */
+    int before = it.rowOnIndex;
+    int notBefore = before + 1;
+    int step = 1;
+    while (notBefore < index.size()
+        && precedes(jf, index.get(notBefore), target, targetRow, false)) {
+      before = notBefore;
+      notBefore = before + step;
+      step *= 2;
+    }
+    notBefore = Math.min(notBefore, index.size());
+    while (notBefore - before > 1) {
+      final int mid = (before + notBefore) >>> 1;
+      if (precedes(jf, index.get(mid), target, targetRow, false)) {
+        before = mid;
+      } else {
+        notBefore = mid;
       }
+    }
 
-      if (startRowOnIndex == endRowOnIndex - 1) {
-        cursor.setRow(index.get(endRowOnIndex));
-        iterators[jf.table].setRow(jf.column, index.get(endRowOnIndex));
-        iterators[jf.table].rowOnIndex = endRowOnIndex;
-        return false;
-      }
+    if (notBefore == index.size()) {
+      return true;
     }
+    it.setRow(jf.column, index.get(notBefore));
+    it.rowOnIndex = notBefore;
+    return false;
   }
 
   /**
@@ -1171,48 +1122,52 @@ public class LeapFrogJoin extends NAryOperator {
   }
 
   /**
-   * Recursively output all result tuples sharing the same join key(s).
+   * Recursively output all result tuples sharing the same join key(s). The rows of the last table vary fastest, so its
+   * whole range is output with the rows of the other tables fixed.
    *
    * @param index the current table index.
    */
   private void exhaustOutput(final int index) {
     final int tableIdx = index;
     final int colIdx = lastJoinAttrIdx.get(index);
-    int currentRow = iterators[tableIdx].ranges[colIdx].minRow;
-    for (; currentRow < iterators[tableIdx].ranges[colIdx].maxRow; currentRow++) {
-      iterators[tableIdx].setRowOfCurrentField(currentRow);
-      if (index == tables.length - 1) {
-        addToAns();
-      } else {
+    final int minRow = iterators[tableIdx].ranges[colIdx].minRow;
+    final int maxRow = iterators[tableIdx].ranges[colIdx].maxRow;
+    if (index < tables.length - 1) {
+      for (int currentRow = minRow; currentRow < maxRow; currentRow++) {
+        iterators[tableIdx].setRowOfCurrentField(currentRow);
         exhaustOutput(index + 1);
       }
+      return;
     }
-  }
 
-  /**
-   * add result to answer.
-   */
-  private void addToAns() {
-    for (int i = 0; i < outputFieldMapping.size(); ++i) {
-      MutableTupleBuffer hashTable = tables[outputFieldMapping.get(i).table];
-      int row = iterators[outputFieldMapping.get(i).table].getRowOfCurrentField();
-      ansTBB.append(hashTable, outputFieldMapping.get(i).column, row);
+    for (int i = 0; i < outputTables.length; ++i) {
+      outputRows[i] = iterators[outputTables[i]].getRowOfCurrentField();
     }
+    for (int currentRow = minRow; currentRow < maxRow; currentRow++) {
+      for (int i = 0; i < outputTables.length; ++i) {
+        final int row = outputTables[i] == tableIdx ? currentRow : outputRows[i];
+        ansTBB.append(tables[outputTables[i]], outputColumns[i], row);
+      }
+    }
+    iterators[tableIdx].setRowOfCurrentField(maxRow - 1);
   }
 
   /**
-   * @param cp1 CellPointer 1
-   * @param cp2 CellPointer 2
+   * @param jf1 the first join field.
+   * @param row1 the row of the first join field.
+   * @param jf2 the second join field.
+   * @param row2 the row of the second join field.
    * @return result of comparison
    */
-  private int cellCompare(final CellPointer cp1, final CellPointer cp2) {
+  private int cellCompare(
+      final JoinField jf1, final int row1, final JoinField jf2, final int row2) {
+    final long[] keys1 = keys[jf1.table][jf1.column];
+    final long[] keys2 = keys[jf2.table][jf2.column];
+    if (keys1 != null && keys2 != null) {
+      return Long.compare(keys1[row1], keys2[row2]);
+    }
     return TupleUtils.cellCompare(
-        tables[cp1.tableIndex],
-        cp1.getFieldIndex(),
-        cp1.getRow(),
-        tables[cp2.getTableIndex()],
-        cp2.getFieldIndex(),
-        cp2.getRow());
+        tables[jf1.table], jf1.column, row1, tables[jf2.table], jf2.column, row2);
   }
 
   /**
@@ -1,19 +1,15 @@
 package edu.washington.escience.myria.operator;
 
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.Objects;
-import java.util.PriorityQueue;
-import java.util.Queue;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 
 import edu.washington.escience.myria.DbException;
 import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.storage.KeyComparator;
 import edu.washington.escience.myria.storage.TupleBatch;
 import edu.washington.escience.myria.storage.TupleBatchBuffer;
-import edu.washington.escience.myria.storage.TupleUtils;
 
 /**
  * Merges the sorted output of a set of operators.
@@ -34,14 +30,10 @@ public final class Merge extends NAryOperator {
    *
    * Contains null if there is no batch.
    */
-  private transient ArrayList<TupleBatch> childBatches = new ArrayList<TupleBatch>();
+  private transient TupleBatch[] childBatches;
 
-  /**
-   * Index that points to the current location in the tupleBuffer of all children.
-   *
-   * -1 indicates an invalid pointer.
-   */
-  private transient ArrayList<Integer> childRowIndexes = new ArrayList<Integer>();
+  /** The row of the next tuple of each child in its batch in {@link #childBatches}. */
+  private transient int[] childRowIndexes;
 
   /**
    * The buffer holding the results.
@@ -49,38 +41,19 @@ public final class Merge extends NAryOperator {
   private transient TupleBatchBuffer ans;
 
   /**
-   * Use a heap to find the smallest tuple (actually just the index in {@link #childBatches} to a child, where the
-   * pointer in {@link #childRowIndexes} points to the smallest tuple).
+   * A tournament tree of the children, as an implicit binary tree whose leaves are the children: each internal node
+   * holds the child that lost the match there, i.e., whose next tuple is after the next tuple of the child that won,
+   * and the root at 0 holds the overall winner. Replacing the winner with the next tuple of the same child replays
+   * only the matches on its path, so emitting a tuple takes log(#children) comparisons. A child at EOS loses all its
+   * matches. Null until every child has a batch or is at EOS.
    */
-  private transient Queue<Integer> heap;
+  private transient int[] tree;
 
-  /**
-   * Comparator for tuples in tuple batch.
-   */
-  class TupleComparator implements Comparator<Integer> {
-    @Override
-    public int compare(final Integer left, final Integer right) {
-      Integer leftPointer = childRowIndexes.get(left);
-      Integer rightPointer = childRowIndexes.get(right);
-      TupleBatch leftTb = childBatches.get(left);
-      TupleBatch rightTb = childBatches.get(right);
-      Preconditions.checkArgument(leftTb.numTuples() > leftPointer);
-      Preconditions.checkArgument(rightTb.numTuples() > rightPointer);
-      for (int columnIndex = 0; columnIndex < sortedColumns.length; columnIndex++) {
-        int compared =
-            TupleUtils.cellCompare(
-                leftTb, columnIndex, leftPointer, rightTb, columnIndex, rightPointer);
-        if (compared != 0) {
-          if (ascending[columnIndex]) {
-            return compared;
-          } else {
-            return -compared;
-          }
-        }
-      }
-      return 0;
-    }
-  }
+  /** The child whose batch is to be refilled before the tree can be replayed, or -1. */
+  private transient int refill;
+
+  /** Compares the sorted columns of two tuples. */
+  private transient KeyComparator comparator;
 
   /**
    * @param children the children to be merged.
@@ -96,7 +69,89 @@ public final class Merge extends NAryOperator {
 
   @Override
   protected void cleanup() throws DbException {
-    childBatches.clear();
+    childBatches = null;
+    childRowIndexes = null;
+    tree = null;
+  }
+
+  /**
+   * Fetches the next batch of a child, skipping empty batches.
+   *
+   * @param childIdx the child.
+   * @return true if the child has a batch or is at EOS, false if it has no data yet.
+   * @throws DbException if there is an error in the child.
+   */
+  private boolean fill(final int childIdx) throws DbException {
+    final Operator child = getChild(childIdx);
+    while (!child.eos()) {
+      TupleBatch tb = child.nextReady();
+      if (tb == null) {
+        // After fetching from a child, it might be EOS.
+        return child.eos();
+      }
+      if (tb.numTuples() > 0) {
+        childBatches[childIdx] = tb;
+        childRowIndexes[childIdx] = 0;
+        return true;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param left a child.
+   * @param right another child.
+   * @return true if the next tuple of the left child is before the next tuple of the right child, breaking ties by the
+   *         order of the children. A child without a batch, i.e., at EOS, is after all the others.
+   */
+  private boolean before(final int left, final int right) {
+    final TupleBatch leftTb = childBatches[left];
+    final TupleBatch rightTb = childBatches[right];
+    if (leftTb == null || rightTb == null) {
+      return rightTb == null && (leftTb != null || left < right);
+    }
+    final int compared =
+        comparator.compare(leftTb, childRowIndexes[left], rightTb, childRowIndexes[right]);
+    return compared < 0 || compared == 0 && left < right;
+  }
+
+  /**
+   * Plays the matches of a subtree.
+   *
+   * @param node the root of the subtree. Node i has children 2i and 2i + 1, and the leaf of child c is node
+   *        #children + c.
+   * @return the winner of the subtree.
+   */
+  private int play(final int node) {
+    final int numChildren = getNumChildren();
+    if (node >= numChildren) {
+      return node - numChildren;
+    }
+    final int left = play(2 * node);
+    final int right = play(2 * node + 1);
+    if (before(left, right)) {
+      tree[node] = right;
+      return left;
+    }
+    tree[node] = left;
+    return right;
+  }
+
+  /**
+   * Replays the matches on the path from the leaf of a child to the root, after the next tuple of the child changed.
+   *
+   * @param childIdx the child.
+   */
+  private void replay(final int childIdx) {
+    int winner = childIdx;
+    for (int node = (getNumChildren() + childIdx) / 2; node > 0; node /= 2) {
+      if (before(tree[node], winner)) {
+        final int loser = winner;
+        winner = tree[node];
+        tree[node] = loser;
+      }
+    }
+    tree[0] = winner;
   }
 
   @Override
@@ -106,84 +161,53 @@ public final class Merge extends NAryOperator {
       return nexttb;
     }
 
-    int numEOS = 0;
-
-    while (nexttb == null) {
-      numEOS = 0;
-
-      // fill the buffers, if possible and necessary
-      boolean notEnoughData = false;
+    if (tree == null) {
+      // fill the buffers of all the children before the first match
       for (int childIdx = 0; childIdx < getNumChildren(); childIdx++) {
-        Operator child = getChild(childIdx);
-        if (child.eos()) {
-          numEOS++;
-          continue;
-        }
-        if (childBatches.get(childIdx) == null) {
-          TupleBatch tb = child.nextReady();
-
-          // After fetching from a child, it might be EOS.
-          // If we don't catch this case here but return null,
-          // this method might not be called again.
-          if (child.eos()) {
-            numEOS++;
-            continue;
-          }
-          if (tb != null) {
-            childBatches.set(childIdx, tb);
-            childRowIndexes.set(childIdx, 0);
-
-            // add the index after we refilled the batch or
-            // when the batches are initially loaded
-            heap.add(childIdx);
-          } else {
-            notEnoughData = true;
-            break;
-          }
+        if (childBatches[childIdx] == null && !fill(childIdx)) {
+          return null;
         }
       }
+      tree = new int[getNumChildren()];
+      tree[0] = play(1);
+    }
 
-      if (notEnoughData) {
-        // break if this is EOS to ensure that we don't return
-        // null and have data in buffer which would mean that this
-        // method is never called again.
-        if (numEOS == getNumChildren()) {
-          break;
+    while (true) {
+      if (refill >= 0) {
+        if (!fill(refill)) {
+          // we cannot go on until this child has data, since its next tuple may be the smallest.
+          return null;
         }
-        return null;
+        replay(refill);
+        refill = -1;
       }
 
-      Integer smallestTb = heap.poll();
-      if (smallestTb != null) {
-        Integer positionInSmallestTb = childRowIndexes.get(smallestTb);
-        ans.append(childBatches.get(smallestTb), positionInSmallestTb);
-
-        // reset tb or advance position pointer
-        if (positionInSmallestTb == childBatches.get(smallestTb).numTuples() - 1) {
-          childRowIndexes.set(smallestTb, -1);
-          childBatches.set(smallestTb, null);
-        } else {
-          childRowIndexes.set(smallestTb, positionInSmallestTb + 1);
-          // We either re-add the index to the child here or when we fetch more data.
-          // We cannot re-add it here because we don't know whether there will be data or not.
-          heap.add(smallestTb);
+      final int winner = tree[0];
+      final TupleBatch tb = childBatches[winner];
+      if (tb == null) {
+        // the winner is at EOS only if all the children are.
+        nexttb = ans.popAny();
+        if (nexttb == null) {
+          setEOS();
         }
-        nexttb = ans.popFilled();
+        return nexttb;
       }
 
-      if (numEOS == getNumChildren()) {
-        setEOS();
-        Preconditions.checkArgument(heap.size() == 0);
-        Preconditions.checkArgument(nexttb == null);
-        break;
+      final int row = childRowIndexes[winner];
+      ans.append(tb, row);
+      if (row == tb.numTuples() - 1) {
+        childBatches[winner] = null;
+        refill = winner;
+      } else {
+        childRowIndexes[winner] = row + 1;
+        replay(winner);
       }
-    }
 
-    if (nexttb == null && ans.numTuples() > 0) {
-      nexttb = ans.popAny();
+      nexttb = ans.popFilled();
+      if (nexttb != null) {
+        return nexttb;
+      }
     }
-
-    return nexttb;
   }
 
   @Override
@@ -197,13 +221,13 @@ public final class Merge extends NAryOperator {
     for (Operator child : getChildren()) {
       Preconditions.checkNotNull(child);
       Preconditions.checkArgument(getSchema().equals(child.getSchema()));
-
-      childBatches.add(null);
-      childRowIndexes.add(-1);
     }
 
-    Comparator<Integer> comparator = new TupleComparator();
-    heap = new PriorityQueue<Integer>(getNumChildren(), comparator);
+    childBatches = new TupleBatch[getNumChildren()];
+    childRowIndexes = new int[getNumChildren()];
+    tree = null;
+    refill = -1;
+    comparator = KeyComparator.compile(getSchema(), sortedColumns, ascending);
   }
 
   @Override
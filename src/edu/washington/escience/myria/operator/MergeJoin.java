@@ -1,7 +1,8 @@
 package edu.washington.escience.myria.operator;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import com.google.common.base.Preconditions;
@@ -12,6 +13,7 @@ import com.google.common.collect.ImmutableSet;
 import edu.washington.escience.myria.DbException;
 import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.storage.KeyComparator;
 import edu.washington.escience.myria.storage.TupleBatch;
 import edu.washington.escience.myria.storage.TupleBatchBuffer;
 import edu.washington.escience.myria.storage.TupleUtils;
@@ -20,9 +22,13 @@ import edu.washington.escience.myria.util.MyriaArrayUtils;
 /**
  * This is an implementation of merge join that requires the tuples from the children to come in order.
  *
- * The data is buffered in a linked list for each child operator. There is a main index on each list that indicates up
- * to where we have advanced in the last tuple batch. Also, there is a second index that points to the last tuple that
- * is equal. This index is valid in the first tuple batch in the linked list.
+ * The data is buffered in a deque for each child operator. There is a main index on each deque that indicates up to
+ * where we have advanced in the last tuple batch. Also, there is a second index that points to the last tuple that is
+ * equal. This index is valid in the first tuple batch in the deque.
+ *
+ * When the key on one side is less than the key on the other side, that side gallops, i.e., searches its batch with
+ * exponentially growing steps for the first tuple that is not less, so runs of tuples without a match are skipped in a
+ * logarithmic number of comparisons.
  */
 public final class MergeJoin extends BinaryOperator {
   /** Required for Java serialization. */
@@ -50,12 +56,12 @@ public final class MergeJoin extends BinaryOperator {
   /**
    * The tuples from the left.
    */
-  private transient LinkedList<TupleBatch> leftBatches;
+  private transient Deque<TupleBatch> leftBatches;
 
   /**
    * The tuples from the right.
    */
-  private transient LinkedList<TupleBatch> rightBatches;
+  private transient Deque<TupleBatch> rightBatches;
 
   /**
    * Location of reader in left batch.
@@ -101,6 +107,15 @@ public final class MergeJoin extends BinaryOperator {
    */
   private transient TupleBatchBuffer ans;
 
+  /** Compares the keys of a left tuple and a right tuple. */
+  private transient KeyComparator leftRightComparator;
+
+  /** Compares the keys of two left tuples. */
+  private transient KeyComparator leftComparator;
+
+  /** Compares the keys of two right tuples. */
+  private transient KeyComparator rightComparator;
+
   /** Which columns in the left child are to be output. */
   private final int[] leftAnswerColumns;
   /** Which columns in the right child are to be output. */
@@ -295,9 +310,7 @@ public final class MergeJoin extends BinaryOperator {
   protected void addToAns(
       final TupleBatch leftTb, final int leftRow, final TupleBatch rightTb, final int rightRow) {
     Preconditions.checkArgument(
-        TupleUtils.tupleCompare(
-                leftTb, leftCompareIndx, leftRow, rightTb, rightCompareIndx, rightRow, ascending)
-            == 0);
+        leftRightComparator.compare(leftTb, leftRow, rightTb, rightRow) == 0);
     for (int leftAnswerColumn : leftAnswerColumns) {
       ans.append(leftTb, leftAnswerColumn, leftRow);
     }
@@ -352,35 +365,16 @@ public final class MergeJoin extends BinaryOperator {
 
     while (!deferredEOS && !needData) {
       final int compared =
-          TupleUtils.tupleCompare(
-              leftBatches.getLast(),
-              leftCompareIndx,
-              leftRowIndex,
-              rightBatches.getLast(),
-              rightCompareIndx,
-              rightRowIndex,
-              ascending);
+          leftRightComparator.compare(
+              leftBatches.getLast(), leftRowIndex, rightBatches.getLast(), rightRowIndex);
 
       if (compared == 0) {
         Preconditions.checkState(
-            TupleUtils.tupleCompare(
-                    leftBatches.getLast(),
-                    leftCompareIndx,
-                    leftRowIndex,
-                    rightBatches.getLast(),
-                    rightCompareIndx,
-                    rightRowIndex,
-                    ascending)
-                == 0);
-        Preconditions.checkState(
-            TupleUtils.tupleCompare(
+            leftRightComparator.compare(
                     leftBatches.getFirst(),
-                    leftCompareIndx,
                     leftBeginIndex,
                     rightBatches.getFirst(),
-                    rightCompareIndx,
-                    rightBeginIndex,
-                    ascending)
+                    rightBeginIndex)
                 == 0);
         leftAndRightEqual();
       } else if (compared > 0) {
@@ -551,7 +545,7 @@ public final class MergeJoin extends BinaryOperator {
         }
       }
     } else {
-      leftRowIndex++;
+      leftRowIndex = gallopLeft();
     }
     leftBeginIndex = leftRowIndex;
   }
@@ -578,11 +572,74 @@ public final class MergeJoin extends BinaryOperator {
         }
       }
     } else {
-      rightRowIndex++;
+      rightRowIndex = gallopRight();
     }
     rightBeginIndex = rightRowIndex;
   }
 
+  /**
+   * Finds the first tuple of the last left batch, after the current one, whose key is not less than the current right
+   * key, by exponential search: the steps double until a tuple is not less, then a binary search finds the first one
+   * between the last two steps.
+   *
+   * @return the row of that tuple, or of the last tuple of the batch if all of them are less.
+   */
+  private int gallopLeft() {
+    final TupleBatch tb = leftBatches.getLast();
+    final TupleBatch other = rightBatches.getLast();
+    final int numTuples = tb.numTuples();
+    int less = leftRowIndex;
+    int step = 1;
+    int notLess = less + step;
+    while (notLess < numTuples
+        && leftRightComparator.compare(tb, notLess, other, rightRowIndex) < 0) {
+      less = notLess;
+      step *= 2;
+      notLess = leftRowIndex + step;
+    }
+    notLess = Math.min(notLess, numTuples);
+    while (notLess - less > 1) {
+      final int mid = (less + notLess) >>> 1;
+      if (leftRightComparator.compare(tb, mid, other, rightRowIndex) < 0) {
+        less = mid;
+      } else {
+        notLess = mid;
+      }
+    }
+    return Math.min(notLess, numTuples - 1);
+  }
+
+  /**
+   * Same as {@link #gallopLeft()} on the last right batch.
+   *
+   * @return the row of the first tuple of the last right batch, after the current one, whose key is not less than the
+   *         current left key, or of the last tuple of the batch if all of them are less.
+   */
+  private int gallopRight() {
+    final TupleBatch tb = rightBatches.getLast();
+    final TupleBatch other = leftBatches.getLast();
+    final int numTuples = tb.numTuples();
+    int less = rightRowIndex;
+    int step = 1;
+    int notLess = less + step;
+    while (notLess < numTuples
+        && leftRightComparator.compare(other, leftRowIndex, tb, notLess) > 0) {
+      less = notLess;
+      step *= 2;
+      notLess = rightRowIndex + step;
+    }
+    notLess = Math.min(notLess, numTuples);
+    while (notLess - less > 1) {
+      final int mid = (less + notLess) >>> 1;
+      if (leftRightComparator.compare(other, leftRowIndex, tb, mid) > 0) {
+        less = mid;
+      } else {
+        notLess = mid;
+      }
+    }
+    return Math.min(notLess, numTuples - 1);
+  }
+
   /**
    * Add {@link #leftNotProcessed} into {@link #leftBatches}.
    */
@@ -645,15 +702,7 @@ public final class MergeJoin extends BinaryOperator {
       }
 
       if (leftNotProcessed != null) {
-        if (TupleUtils.tupleCompare(
-                leftBatches.getLast(),
-                leftCompareIndx,
-                leftRowIndex,
-                leftNotProcessed,
-                leftCompareIndx,
-                0,
-                ascending)
-            == 0) {
+        if (leftComparator.compare(leftBatches.getLast(), leftRowIndex, leftNotProcessed, 0) == 0) {
           leftBatches.add(leftNotProcessed);
           leftNotProcessed = null;
           leftRowIndex = 0;
@@ -665,8 +714,8 @@ public final class MergeJoin extends BinaryOperator {
       } else {
         return AdvanceResult.NOT_ENOUGH_DATA;
       }
-    } else if (TupleUtils.tupleCompare(
-            leftBatches.getLast(), leftCompareIndx, leftRowIndex, leftRowIndex + 1, ascending)
+    } else if (leftComparator.compare(
+            leftBatches.getLast(), leftRowIndex, leftBatches.getLast(), leftRowIndex + 1)
         == 0) {
       leftRowIndex++;
       joinedLeft = false;
@@ -692,14 +741,7 @@ public final class MergeJoin extends BinaryOperator {
       }
 
       if (rightNotProcessed != null) {
-        if (TupleUtils.tupleCompare(
-                rightBatches.getLast(),
-                rightCompareIndx,
-                rightRowIndex,
-                rightNotProcessed,
-                rightCompareIndx,
-                0,
-                ascending)
+        if (rightComparator.compare(rightBatches.getLast(), rightRowIndex, rightNotProcessed, 0)
             == 0) {
           rightBatches.add(rightNotProcessed);
           rightNotProcessed = null;
@@ -712,8 +754,8 @@ public final class MergeJoin extends BinaryOperator {
       } else {
         return AdvanceResult.NOT_ENOUGH_DATA;
       }
-    } else if (TupleUtils.tupleCompare(
-            rightBatches.getLast(), rightCompareIndx, rightRowIndex, rightRowIndex + 1, ascending)
+    } else if (rightComparator.compare(
+            rightBatches.getLast(), rightRowIndex, rightBatches.getLast(), rightRowIndex + 1)
         == 0) {
       rightRowIndex++;
       joinedRight = false;
@@ -731,12 +773,12 @@ public final class MergeJoin extends BinaryOperator {
    * @param firstBatchRow the row in which we can find the tuple to join n other with
    * @param firstCompareIndx the compare index in the first TB. Used to determine whether the next tuple is equal to the
    *          one under the current index.
-   * @param secondBeginRow the start of the n tuples (points into first TB in linked list)
-   * @param secondEndRow the end of the n tuples (points into last TB in linked list)
+   * @param secondBeginRow the start of the n tuples (points into first TB in deque)
+   * @param secondEndRow the end of the n tuples (points into last TB in deque)
    */
   protected void addAllToAns(
       final TupleBatch firstBatch,
-      final LinkedList<TupleBatch> secondBatches,
+      final Deque<TupleBatch> secondBatches,
       final int firstBatchRow,
       final int[] firstCompareIndx,
       final int secondBeginRow,
@@ -791,8 +833,16 @@ public final class MergeJoin extends BinaryOperator {
     leftNotProcessed = null;
     rightNotProcessed = null;
 
-    leftBatches = new LinkedList<TupleBatch>();
-    rightBatches = new LinkedList<TupleBatch>();
+    leftBatches = new ArrayDeque<TupleBatch>();
+    rightBatches = new ArrayDeque<TupleBatch>();
+
+    final Schema leftSchema = getLeft().getSchema();
+    final Schema rightSchema = getRight().getSchema();
+    leftRightComparator =
+        KeyComparator.compile(
+            leftSchema, leftCompareIndx, rightSchema, rightCompareIndx, ascending);
+    leftComparator = KeyComparator.compile(leftSchema, leftCompareIndx, ascending);
+    rightComparator = KeyComparator.compile(rightSchema, rightCompareIndx, ascending);
 
     ans = new TupleBatchBuffer(getSchema());
   }
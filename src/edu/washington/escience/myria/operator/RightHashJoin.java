@@ -3,19 +3,26 @@ package edu.washington.escience.myria.operator;
 import java.util.Arrays;
 import java.util.List;
 
-import org.eclipse.collections.api.block.procedure.primitive.IntProcedure;
+import javax.annotation.Nullable;
+
 import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
-import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.MyriaConstants;
 import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.Type;
 import edu.washington.escience.myria.column.Column;
+import edu.washington.escience.myria.parallel.LocalFragmentResourceManager;
+import edu.washington.escience.myria.storage.HashIndex;
+import edu.washington.escience.myria.storage.HashIndexRegistry;
 import edu.washington.escience.myria.storage.MutableTupleBuffer;
 import edu.washington.escience.myria.storage.TupleBatch;
 import edu.washington.escience.myria.storage.TupleBatchBuffer;
@@ -27,6 +34,12 @@ import edu.washington.escience.myria.util.MyriaArrayUtils;
  * This is an implementation of unbalanced hash join. This operator only builds hash tables for its right child, thus
  * will begin to output tuples after right child EOS.
  *
+ * If the right child is a relation that many fragments join against, e.g., a dimension table replicated to every worker
+ * by a broadcast, the join may be given a name of the version of that relation. It then probes the index of the
+ * relation published in the {@link HashIndexRegistry} of the worker, if any, draining its right child without keeping
+ * the tuples, or else builds the index and publishes it for the other fragments. While another fragment builds the
+ * index, the join keeps the tuples of its right child, and waits for the index once its right child is drained; it
+ * builds its own from the kept tuples if the other fragment abandons the index.
  */
 public final class RightHashJoin extends BinaryOperator {
   /** Required for Java serialization. */
@@ -47,14 +60,38 @@ public final class RightHashJoin extends BinaryOperator {
   private final int[] rightCompareIndx;
 
   /**
-   * A hash table for tuples from child 2. {Hashcode -> List of tuple indices with the same hash code}
+   * The name of the version of the relation of the right child, under which its index is shared, or null if it is not.
    */
-  private transient IntObjectHashMap<IntArrayList> rightHashTableIndices;
+  private final String sharedRight;
 
   /**
-   * The buffer holding the valid tuples from right.
+   * The buffer holding the valid tuples from right, while the index is built.
    */
   private transient MutableTupleBuffer rightHashTable;
+  /**
+   * The hash codes of the tuples in {@link #rightHashTable}.
+   */
+  private transient IntArrayList rightHashes;
+  /**
+   * The estimated size of the tuples in {@link #rightHashTable}, in bytes, if the index will be published.
+   */
+  private transient long rightBytes;
+  /**
+   * The index of the tuples from right, once built or found in {@link #registry}.
+   */
+  private transient HashIndex rightIndex;
+  /**
+   * The registry of shared indexes of the worker, if the index is shared.
+   */
+  private transient HashIndexRegistry registry;
+  /**
+   * The index being built by another fragment, while this join waits for it.
+   */
+  private transient ListenableFuture<HashIndex> pendingIndex;
+  /**
+   * If the index is reserved in {@link #registry} for this join to build and publish.
+   */
+  private transient boolean reservedIndex;
   /**
    * The buffer holding the results.
    */
@@ -64,52 +101,6 @@ public final class RightHashJoin extends BinaryOperator {
   /** Which columns in the right child are to be output. */
   private final int[] rightAnswerColumns;
 
-  /**
-   * Traverse through the list of tuples with the same hash code.
-   */
-  private final class JoinProcedure implements IntProcedure {
-
-    /** serial version id. */
-    private static final long serialVersionUID = 1L;
-
-    /**
-     * Hash table.
-     */
-    private MutableTupleBuffer joinAgainstHashTable;
-
-    /**
-     *
-     * */
-    private int[] inputCmpColumns;
-
-    /**
-     * the columns to compare against.
-     */
-    private int[] joinAgainstCmpColumns;
-    /**
-     * row index of the tuple.
-     */
-    private int row;
-
-    /**
-     * input TupleBatch.
-     */
-    private TupleBatch inputTB;
-
-    @Override
-    public void value(final int index) {
-      if (TupleUtils.tupleEquals(
-          inputTB, inputCmpColumns, row, joinAgainstHashTable, joinAgainstCmpColumns, index)) {
-        addToAns(inputTB, row, joinAgainstHashTable, index);
-      }
-    }
-  };
-
-  /**
-   * Traverse through the list of tuples.
-   */
-  private transient JoinProcedure doJoin;
-
   /**
    * Construct an EquiJoin operator. It returns all columns from both children when the corresponding columns in
    * compareIndx1 and compareIndx2 match.
@@ -174,6 +165,43 @@ public final class RightHashJoin extends BinaryOperator {
       final int[] compareIndx2,
       final int[] answerColumns1,
       final int[] answerColumns2) {
+    this(
+        outputColumns,
+        left,
+        right,
+        compareIndx1,
+        compareIndx2,
+        answerColumns1,
+        answerColumns2,
+        null);
+  }
+
+  /**
+   * Construct an EquiJoin operator. It returns the specified columns from both children when the corresponding columns
+   * in compareIndx1 and compareIndx2 match.
+   *
+   * @param outputColumns the names of the columns in the output schema. If null, the corresponding columns will be
+   *          copied from the children.
+   * @param left the left child.
+   * @param right the right child.
+   * @param compareIndx1 the columns of the left child to be compared with the right. Order matters.
+   * @param compareIndx2 the columns of the right child to be compared with the left. Order matters.
+   * @param answerColumns1 the columns of the left child to be returned. Order matters.
+   * @param answerColumns2 the columns of the right child to be returned. Order matters.
+   * @param sharedRight the name of the version of the relation of the right child, which must change whenever its
+   *          tuples do, to share its index with the other fragments of the worker, or null not to share it.
+   * @throw IllegalArgumentException if there are duplicated column names in <tt>outputColumns</tt>, or if
+   *        <tt>outputColumns</tt> does not have the correct number of columns and column types.
+   */
+  public RightHashJoin(
+      final List<String> outputColumns,
+      final Operator left,
+      final Operator right,
+      final int[] compareIndx1,
+      final int[] compareIndx2,
+      final int[] answerColumns1,
+      final int[] answerColumns2,
+      @Nullable final String sharedRight) {
     super(left, right);
     Preconditions.checkArgument(compareIndx1.length == compareIndx2.length);
     if (outputColumns != null) {
@@ -191,6 +219,7 @@ public final class RightHashJoin extends BinaryOperator {
     rightCompareIndx = MyriaArrayUtils.warnIfNotSet(compareIndx2);
     leftAnswerColumns = MyriaArrayUtils.warnIfNotSet(answerColumns1);
     rightAnswerColumns = MyriaArrayUtils.warnIfNotSet(answerColumns2);
+    this.sharedRight = sharedRight;
   }
 
   /**
@@ -276,26 +305,17 @@ public final class RightHashJoin extends BinaryOperator {
     }
   }
 
-  /**
-   * @param cntTB current TB
-   * @param row current row
-   * @param hashTable the buffer holding the tuples to join against
-   * @param index the index of hashTable, which the cntTuple is to join with
-   */
-  protected void addToAns(
-      final TupleBatch cntTB, final int row, final MutableTupleBuffer hashTable, final int index) {
-    for (int leftAnswerColumn : leftAnswerColumns) {
-      ans.append(cntTB, leftAnswerColumn, row);
-    }
-    for (int rightAnswerColumn : rightAnswerColumns) {
-      ans.append(hashTable, rightAnswerColumn, index);
-    }
-  }
-
   @Override
   protected void cleanup() throws DbException {
+    if (reservedIndex) {
+      registry.abandon(sharedRight, getRight().getSchema(), rightCompareIndx);
+      reservedIndex = false;
+    }
     rightHashTable = null;
-    rightHashTableIndices = null;
+    rightHashes = null;
+    rightIndex = null;
+    registry = null;
+    pendingIndex = null;
     ans = null;
   }
 
@@ -357,7 +377,24 @@ public final class RightHashJoin extends BinaryOperator {
         }
         return null;
       }
-      processRightChildTB(rightTB);
+      if (rightIndex == null) {
+        processRightChildTB(rightTB);
+      }
+    }
+    if (rightIndex == null && pendingIndex != null) {
+      if (!pendingIndex.isDone()) {
+        /* the fragment is woken up once the index is published. */
+        return null;
+      }
+      rightIndex = Futures.getUnchecked(pendingIndex);
+      pendingIndex = null;
+      if (rightIndex != null) {
+        rightHashTable = null;
+        rightHashes = null;
+      }
+    }
+    if (rightIndex == null) {
+      buildRightIndex();
     }
 
     /* The right child is done, let's drain the left child. */
@@ -396,11 +433,58 @@ public final class RightHashJoin extends BinaryOperator {
   public void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
     final Operator right = getRight();
 
-    rightHashTableIndices = new IntObjectHashMap<>();
-    rightHashTable = new MutableTupleBuffer(right.getSchema());
+    rightIndex = null;
+    registry = null;
+    pendingIndex = null;
+    reservedIndex = false;
+    if (sharedRight != null) {
+      registry =
+          (HashIndexRegistry) execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_HASH_INDEX_REGISTRY);
+    }
+    if (registry != null) {
+      ListenableFuture<HashIndex> index =
+          registry.getOrReserve(sharedRight, right.getSchema(), rightCompareIndx);
+      if (index == null) {
+        reservedIndex = true;
+      } else if (index.isDone()) {
+        rightIndex = Futures.getUnchecked(index);
+      } else {
+        pendingIndex = index;
+        final LocalFragmentResourceManager resourceManager =
+            (LocalFragmentResourceManager)
+                execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_FRAGMENT_RESOURCE_MANAGER);
+        if (resourceManager != null) {
+          pendingIndex.addListener(
+              () -> resourceManager.getFragment().notifyNewInput(), MoreExecutors.directExecutor());
+        }
+      }
+    }
+    if (rightIndex == null) {
+      rightHashTable = new MutableTupleBuffer(right.getSchema());
+      rightHashes = new IntArrayList();
+      rightBytes = 0;
+    }
+
+    /* the joined batches are handed off, so they are built on pooled arrays. */
+    ans = new TupleBatchBuffer(getSchema(), true);
+  }
 
-    ans = new TupleBatchBuffer(getSchema());
-    doJoin = new JoinProcedure();
+  /**
+   * Builds the index of the tuples from right, and publishes it if it is reserved for this join.
+   */
+  private void buildRightIndex() {
+    rightIndex = new HashIndex(rightHashTable, rightCompareIndx, rightHashes.toArray());
+    if (reservedIndex) {
+      registry.publish(
+          sharedRight,
+          getRight().getSchema(),
+          rightCompareIndx,
+          rightIndex,
+          rightBytes + rightIndex.indexBytes());
+      reservedIndex = false;
+    }
+    rightHashTable = null;
+    rightHashes = null;
   }
 
   /**
@@ -409,17 +493,18 @@ public final class RightHashJoin extends BinaryOperator {
    * @param tb TupleBatch to be processed.
    */
   protected void processLeftChildTB(final TupleBatch tb) {
-    doJoin.joinAgainstHashTable = rightHashTable;
-    doJoin.inputCmpColumns = leftCompareIndx;
-    doJoin.joinAgainstCmpColumns = rightCompareIndx;
-    doJoin.inputTB = tb;
-
+    final MutableTupleBuffer rightTable = rightIndex.getTable();
     for (int row = 0; row < tb.numTuples(); ++row) {
-      final int cntHashCode = HashUtils.hashSubRow(tb, doJoin.inputCmpColumns, row);
-      IntArrayList tuplesWithHashCode = rightHashTableIndices.get(cntHashCode);
-      if (tuplesWithHashCode != null) {
-        doJoin.row = row;
-        tuplesWithHashCode.forEach(doJoin);
+      final int cntHashCode = HashUtils.hashSubRow(tb, leftCompareIndx, row);
+      for (int index = rightIndex.firstMatch(tb, leftCompareIndx, row, cntHashCode);
+          index >= 0;
+          index = rightIndex.nextMatch(tb, leftCompareIndx, row, cntHashCode, index)) {
+        for (int leftAnswerColumn : leftAnswerColumns) {
+          ans.append(tb, leftAnswerColumn, row);
+        }
+        for (int rightAnswerColumn : rightAnswerColumns) {
+          ans.append(rightTable, rightAnswerColumn, index);
+        }
       }
     }
   }
@@ -430,37 +515,15 @@ public final class RightHashJoin extends BinaryOperator {
    * @param tb TupleBatch to be processed.
    */
   protected void processRightChildTB(final TupleBatch tb) {
-
-    for (int row = 0; row < tb.numTuples(); ++row) {
-      final int cntHashCode = HashUtils.hashSubRow(tb, rightCompareIndx, row);
-      // only build hash table on two sides if none of the children is EOS
-      addToHashTable(tb, row, rightHashTable, rightHashTableIndices, cntHashCode);
-    }
-  }
-
-  /**
-   * @param tb the source TupleBatch
-   * @param row the row number to get added to hash table
-   * @param hashTable the target hash table
-   * @param hashTable1IndicesLocal hash table 1 indices local
-   * @param hashCode the hashCode of the tb.
-   */
-  private void addToHashTable(
-      final TupleBatch tb,
-      final int row,
-      final MutableTupleBuffer hashTable,
-      final IntObjectHashMap<IntArrayList> hashTable1IndicesLocal,
-      final int hashCode) {
-    final int nextIndex = hashTable.numTuples();
-    IntArrayList tupleIndicesList = hashTable1IndicesLocal.get(hashCode);
-    if (tupleIndicesList == null) {
-      tupleIndicesList = new IntArrayList(1);
-      hashTable1IndicesLocal.put(hashCode, tupleIndicesList);
+    if (reservedIndex) {
+      rightBytes += TupleUtils.sizeOf(tb);
     }
-    tupleIndicesList.add(nextIndex);
     List<? extends Column<?>> inputColumns = tb.getDataColumns();
-    for (int column = 0; column < tb.numColumns(); column++) {
-      hashTable.put(column, inputColumns.get(column), row);
+    for (int row = 0; row < tb.numTuples(); ++row) {
+      rightHashes.add(HashUtils.hashSubRow(tb, rightCompareIndx, row));
+      for (int column = 0; column < tb.numColumns(); column++) {
+        rightHashTable.put(column, inputColumns.get(column), row);
+      }
     }
   }
 }
@@ -67,6 +67,13 @@ public abstract class RootOperator extends Operator {
    * */
   protected abstract void childEOI() throws DbException;
 
+  /**
+   * Called if the child has no tuples ready and has not reached EOS or EOI, e.g., to send out tuples held back.
+   *
+   * @throws DbException if any error occurs.
+   * */
+  protected void childNotReady() throws DbException {}
+
   /**
    * Implement coalescing tuples together if necessary.
    *
@@ -121,6 +128,8 @@ public abstract class RootOperator extends Operator {
       childEOI();
     } else if (child.eos()) {
       childEOS();
+    } else {
+      childNotReady();
     }
     return tb;
   }
@@ -1,11 +1,13 @@
 package edu.washington.escience.myria.operator;
 
-import java.io.BufferedInputStream;
-import java.io.DataInput;
-import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import com.google.common.base.Preconditions;
@@ -16,25 +18,28 @@ import com.google.common.io.LittleEndianDataInputStream;
 import edu.washington.escience.myria.DbException;
 import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.column.Column;
+import edu.washington.escience.myria.column.IntArrayColumn;
 import edu.washington.escience.myria.io.DataSource;
 import edu.washington.escience.myria.io.FileSource;
+import edu.washington.escience.myria.io.FixedWidthRecordReader;
 import edu.washington.escience.myria.storage.TupleBatch;
-import edu.washington.escience.myria.storage.TupleBatchBuffer;
 import edu.washington.escience.myria.storage.TupleUtils;
 
 /**
  * Read a SeaFlow EVT/OPP file. See the formats in https://github.com/fribalet/flowPhyto/blob/master/R/Globals.R
  *
- * This operator implements file format version 3.
+ * This operator implements file format version 3. A local file is memory-mapped and each batch of lines is decoded a
+ * column at a time.
  */
 public class SeaFlowFileScan extends LeafOperator {
 
   /** Required for Java serialization. */
   private static final long serialVersionUID = 1L;
-  /** The data input file. */
-  private transient DataInput input;
-  /** Holds the tuples that are ready for release. */
-  private transient TupleBatchBuffer buffer;
+  /** The stream being read, null if reading a local file or after checking its end. */
+  private transient InputStream input;
+  /** Reads the lines of the file in batches. */
+  private transient FixedWidthRecordReader reader;
 
   /** The group number file name. */
   private final DataSource source;
@@ -96,55 +101,81 @@ public class SeaFlowFileScan extends LeafOperator {
 
   @Override
   protected final TupleBatch fetchNextReady() throws DbException {
-    while ((lineNumber < numRows) && (buffer.numTuples() < buffer.getBatchSize())) {
-      try {
-        /*
-         * Every line but the last, including the header, is terminated with a 32-bit unsigned int with the value 10. We
-         * read the EOL for the header/previous line before the current line to simplify the EOF checking.
-         */
-        Preconditions.checkState(input.readInt() == EOL);
-        for (int col = 0; col < NUM_COLUMNS; ++col) {
-          buffer.putInt(col, input.readUnsignedShort());
-        }
-      } catch (final IOException e) {
-        throw new DbException("Exception in line " + lineNumber, e);
+    int numTuples;
+    try {
+      numTuples = reader.nextBatch(TupleUtils.getBatchSize(OPP_SCHEMA));
+      if (numTuples == 0) {
+        checkEndOfStream();
+        return null;
       }
-      lineNumber++;
+    } catch (IOException e) {
+      throw new DbException("Exception in line " + lineNumber, e);
     }
 
-    if (lineNumber == numRows) {
-      /* Check for an EOF, and error if not. */
-      boolean flag = false;
-      try {
-        input.readByte();
-      } catch (EOFException e) {
-        flag = true;
-      } catch (IOException e) {
-        throw new DbException("Error when verifying EOF after line " + lineNumber, e);
-      }
-      Preconditions.checkState(
-          flag, "Was able to read another byte after %s rows, expected EOFException", lineNumber);
+    /*
+     * Every line but the last, including the header, is terminated with a 32-bit unsigned int with the value 10. We read
+     * the EOL for the header/previous line as the first field of the current line to simplify the EOF checking.
+     */
+    int[] eol = new int[numTuples];
+    reader.getInts(0, eol);
+    for (int i = 0; i < numTuples; ++i) {
+      Preconditions.checkState(eol[i] == EOL, "Missing end of line before line %s", lineNumber + i);
+    }
+    List<Column<?>> columns = new ArrayList<>(NUM_COLUMNS);
+    for (int col = 0; col < NUM_COLUMNS; ++col) {
+      int[] data = new int[numTuples];
+      reader.getUnsignedShorts(Integer.BYTES + col * Short.BYTES, data);
+      columns.add(new IntArrayColumn(data, numTuples));
     }
-    return buffer.popAny();
+    lineNumber += numTuples;
+    return new TupleBatch(OPP_SCHEMA, columns, numTuples);
+  }
+
+  /**
+   * If reading a stream, check that it ends after the last line, and error if not.
+   *
+   * @throws DbException if the stream does not end after the last line.
+   */
+  private void checkEndOfStream() throws DbException {
+    if (input == null) {
+      return;
+    }
+    int next;
+    try {
+      next = input.read();
+    } catch (IOException e) {
+      throw new DbException("Error when verifying EOF after line " + lineNumber, e);
+    }
+    Preconditions.checkState(
+        next == -1, "Was able to read another byte after %s rows, expected EOF", lineNumber);
+    input = null;
   }
 
   @Override
   protected final void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
-    buffer = new TupleBatchBuffer(getSchema());
-
     try {
-      input = new LittleEndianDataInputStream(new BufferedInputStream(source.getInputStream()));
-      numRows = input.readInt(); /* number of rows */
-      /* If the source is a FileSource, we can actually check its length. */
       if (source instanceof FileSource) {
-        long length = Files.size(Paths.get(((FileSource) source).getFilename()));
-        long expectedSize = 4 + numRows * COLUMN_SIZE;
+        /* A local file is memory-mapped, after checking its length. */
+        Path path = Paths.get(((FileSource) source).getFilename());
+        try (InputStream header = Files.newInputStream(path)) {
+          numRows = new LittleEndianDataInputStream(header).readInt();
+        }
+        long length = Files.size(path);
+        long expectedSize = Integer.BYTES + (long) numRows * COLUMN_SIZE;
         Preconditions.checkArgument(
             length == expectedSize,
             "Given %s rows, expected a file of length %s, not %s",
             numRows,
             expectedSize,
             length);
+        reader =
+            FixedWidthRecordReader.ofFile(
+                path, Integer.BYTES, COLUMN_SIZE, 0, numRows, ByteOrder.LITTLE_ENDIAN);
+      } else {
+        input = source.getInputStream();
+        numRows = new LittleEndianDataInputStream(input).readInt();
+        reader =
+            FixedWidthRecordReader.ofStream(input, COLUMN_SIZE, numRows, ByteOrder.LITTLE_ENDIAN);
       }
     } catch (IOException e) {
       throw new DbException(e);
@@ -155,7 +186,15 @@ public class SeaFlowFileScan extends LeafOperator {
 
   @Override
   protected final void cleanup() throws DbException {
-    buffer.clear();
+    input = null;
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        throw new DbException(e);
+      }
+      reader = null;
+    }
   }
 
   @Override
@@ -46,6 +46,8 @@ public final class SimpleAppender extends StreamingState {
 
   @Override
   public TupleBatch update(final TupleBatch tb) {
+    /* the batch is both kept and returned, so the state holds its own reference to its pooled arrays. */
+    tb.retain();
     tuples.add(tb);
     numTuples += tb.numTuples();
     return tb;
@@ -68,4 +70,9 @@ public final class SimpleAppender extends StreamingState {
   public StreamingState duplicate() {
     return new SimpleAppender();
   }
+
+  @Override
+  public boolean isDeltaPreserving() {
+    return true;
+  }
 }
@@ -15,11 +15,13 @@ import edu.washington.escience.myria.Type;
 import edu.washington.escience.myria.column.Column;
 import edu.washington.escience.myria.column.builder.ColumnBuilder;
 import edu.washington.escience.myria.column.builder.ColumnFactory;
+import edu.washington.escience.myria.column.builder.WritableColumn;
 import edu.washington.escience.myria.expression.Expression;
 import edu.washington.escience.myria.expression.evaluate.ConstantEvaluator;
 import edu.washington.escience.myria.expression.evaluate.ExpressionOperatorParameter;
 import edu.washington.escience.myria.expression.evaluate.GenericEvaluator;
 import edu.washington.escience.myria.expression.evaluate.PythonUDFEvaluator;
+import edu.washington.escience.myria.expression.evaluate.StatefulBatchEvaluator;
 import edu.washington.escience.myria.storage.Tuple;
 import edu.washington.escience.myria.storage.TupleBatch;
 
@@ -53,6 +55,12 @@ public class StatefulApply extends Apply {
    */
   private ArrayList<GenericEvaluator> updateEvaluators;
 
+  /**
+   * Evaluates {@link #updateExpressions} and the emit expressions that need the state a whole batch at a time, or null
+   * if they have to be evaluated a row at a time, e.g., because some of them are Python UDFs.
+   */
+  private transient StatefulBatchEvaluator batchEvaluator;
+
   /**
    * Schema of the state relation.
    */
@@ -135,6 +143,32 @@ public class StatefulApply extends Apply {
     }
     List<ColumnBuilder<?>> columnBuilders = ColumnFactory.allocateColumns(outputTypes);
 
+    if (batchEvaluator != null) {
+      state = batchEvaluator.evaluate(tb, state, columnBuilders.toArray(new WritableColumn[0]));
+    } else {
+      evaluateRows(tb, needState, columnBuilders);
+    }
+
+    for (int builderIdx = 0; builderIdx < needState.size(); builderIdx++) {
+      output.set(needState.get(builderIdx), columnBuilders.get(builderIdx).build());
+    }
+
+    return new TupleBatch(getSchema(), output);
+  }
+
+  /**
+   * Updates the state and evaluates the emit expressions that need it a row at a time.
+   *
+   * @param tb the input batch.
+   * @param needState the emit expressions that need the state.
+   * @param columnBuilders the columns of the emit expressions that need the state.
+   * @throws DbException if there is an error evaluating an expression.
+   */
+  private void evaluateRows(
+      final TupleBatch tb,
+      final List<Integer> needState,
+      final List<ColumnBuilder<?>> columnBuilders)
+      throws DbException {
     for (int rowIdx = 0; rowIdx < tb.numTuples(); rowIdx++) {
       // update state
       Tuple newState = new Tuple(getStateSchema());
@@ -151,12 +185,6 @@ public class StatefulApply extends Apply {
         evaluator.eval(tb, rowIdx, state, 0, columnBuilders.get(index), null);
       }
     }
-
-    for (int builderIdx = 0; builderIdx < needState.size(); builderIdx++) {
-      output.set(needState.get(builderIdx), columnBuilders.get(builderIdx).build());
-    }
-
-    return new TupleBatch(getSchema(), output);
   }
 
   @Override
@@ -221,6 +249,21 @@ public class StatefulApply extends Apply {
       evaluator.compile();
       updateEvaluators.add(evaluator);
     }
+
+    List<Expression> stateEmitExpressions = new ArrayList<>();
+    for (GenericEvaluator evaluator : getEmitEvaluators()) {
+      if (evaluator.needsState() && !evaluator.isCopyFromInput()) {
+        stateEmitExpressions.add(evaluator.getExpression());
+      }
+    }
+    final ExpressionOperatorParameter parameters =
+        new ExpressionOperatorParameter(inputSchema, getStateSchema(), getNodeID());
+    if (StatefulBatchEvaluator.canEvaluate(updateExpressions, stateEmitExpressions, parameters)) {
+      batchEvaluator =
+          new StatefulBatchEvaluator(updateExpressions, stateEmitExpressions, parameters);
+    } else {
+      batchEvaluator = null;
+    }
   }
 
   /**
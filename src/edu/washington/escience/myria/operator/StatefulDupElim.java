@@ -156,4 +156,9 @@ public final class StatefulDupElim extends StreamingState {
   public StreamingState duplicate() {
     return new StatefulDupElim();
   }
+
+  @Override
+  public boolean isDeltaPreserving() {
+    return true;
+  }
 }
@@ -73,4 +73,15 @@ public abstract class StreamingState implements Serializable {
    * @return a new instance of StreamingState with all the constructor arguments copied.
    * */
   public abstract StreamingState duplicate();
+
+  /**
+   * Whether updating this state directly with all tuples of an iteration yields the same delta as first collapsing them
+   * in a fresh copy of the state. If so, a synchronous {@link IDBController} can skip building that temporary copy
+   * every iteration and keep a single indexed state across the whole recursion.
+   *
+   * @return true if the state is delta preserving.
+   */
+  public boolean isDeltaPreserving() {
+    return false;
+  }
 }
@@ -420,7 +420,8 @@ public final class SymmetricHashJoin extends BinaryOperator {
     rightHashTable = new TupleHashTable(getRight().getSchema(), rightCompareColumns);
     leftHashTable.name = "op" + getOpId() + ".left";
     rightHashTable.name = "op" + getOpId() + ".right";
-    ans = new TupleBatchBuffer(getSchema());
+    /* the joined batches are handed off, so they are built on pooled arrays. */
+    ans = new TupleBatchBuffer(getSchema(), true);
     nonBlocking =
         (QueryExecutionMode) execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_EXECUTION_MODE)
             == QueryExecutionMode.NON_BLOCKING;
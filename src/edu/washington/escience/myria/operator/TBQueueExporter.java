@@ -38,11 +38,14 @@ public class TBQueueExporter extends UnaryOperator {
     TupleBatch tb = getChild().nextReady();
 
     if (tb != null) {
+      /* the batch is both queued and returned, so the queue holds its own reference to its pooled arrays. */
+      tb.retain();
       while (!queueStore.offer(tb)) {
         try {
           Thread.sleep(1);
         } catch (InterruptedException e) {
           Thread.currentThread().interrupt();
+          tb.release();
           return null;
         }
       }
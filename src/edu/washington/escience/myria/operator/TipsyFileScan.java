@@ -1,8 +1,6 @@
 package edu.washington.escience.myria.operator;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -12,28 +10,42 @@ import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
-import java.util.Scanner;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
 
 import edu.washington.escience.myria.DbException;
 import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.column.Column;
+import edu.washington.escience.myria.column.ConstantValueColumn;
+import edu.washington.escience.myria.column.FloatColumn;
+import edu.washington.escience.myria.column.IntArrayColumn;
+import edu.washington.escience.myria.column.LongColumn;
+import edu.washington.escience.myria.io.FixedWidthRecordReader;
 import edu.washington.escience.myria.storage.TupleBatch;
-import edu.washington.escience.myria.storage.TupleBatchBuffer;
 import edu.washington.escience.myria.storage.TupleUtils;
 import edu.washington.escience.myria.util.MyriaUtils;
 
 /**
  * Read and merge Tipsy bin file, iOrder ascii file and group number ascii file.
  *
+ * A local bin file is memory-mapped and each batch of particles is decoded a column at a time. If the scan is given a
+ * set of workers, each of them reads a disjoint range of the particles, so that a snapshot on a shared file system is
+ * ingested in parallel.
+ *
  * @author leelee
  *
  */
@@ -49,14 +61,33 @@ public class TipsyFileScan extends LeafOperator {
   private static final int D_SIZE = 36;
   /** The star record size in bytes. */
   private static final int S_SIZE = 44;
-  /** The data input for bin file. */
-  private transient DataInput dataInputForBin;
-  /** Scanner used to parse the iOrder file. */
-  private transient Scanner iOrderScanner = null;
-  /** Scanner used to parse the group number file. */
-  private transient Scanner grpScanner = null;
-  /** Holds the tuples that are ready for release. */
-  private transient TupleBatchBuffer buffer;
+  /** The number of float columns, from mass to phi. */
+  private static final int NUM_FLOAT_COLUMNS = 14;
+  /** The particle types, in the order they are stored in the bin file. */
+  private static final String[] TYPES = {"gas", "dark", "star"};
+  /** The record size of each particle type. */
+  private static final int[] RECORD_SIZES = {G_SIZE, D_SIZE, S_SIZE};
+  /**
+   * For each particle type, the offset in the record of each float column from mass to phi, or -1 if the type does not
+   * have the column. Gas records are mass, x, y, z, vx, vy, vz, rho, temp, hsmooth, metals, phi. Dark records are mass,
+   * x, y, z, vx, vy, vz, eps, phi. Star records are mass, x, y, z, vx, vy, vz, metals, tform, eps, phi.
+   *
+   * TODO(leelee): Missing columns should be null. Put 0 for now as TupleBatchBuffer does not support null value.
+   */
+  private static final int[][] FLOAT_OFFSETS = {
+    {0, 4, 8, 12, 16, 20, 24, 28, 32, 36, 40, -1, -1, 44},
+    {0, 4, 8, 12, 16, 20, 24, -1, -1, -1, -1, -1, 28, 32},
+    {0, 4, 8, 12, 16, 20, 24, -1, -1, -1, 28, 32, 36, 40}
+  };
+
+  /** Reads the iOrder file. */
+  private transient BufferedReader iOrderReader = null;
+  /** Reads the group number file. */
+  private transient BufferedReader grpReader = null;
+  /** The bin file, if it is read as a stream rather than memory-mapped. */
+  private transient CountingInputStream binStream;
+  /** Reads the records of the current particle type. */
+  private transient FixedWidthRecordReader recordReader;
 
   /** The bin file name. */
   private final String binFileName;
@@ -64,14 +95,18 @@ public class TipsyFileScan extends LeafOperator {
   private final String iOrderFileName;
   /** The group number file name. */
   private final String grpFileName;
-  /** The number of gas particle record. */
-  private long ngas;
-  /** The number of star particle record. */
-  private long nstar;
-  /** The number of dark particle record. */
-  private long ndark;
-  /** Which line of the file the scanner is currently on. */
-  private int lineNumber;
+  /** The workers that split the particles among themselves, or null if every worker reads all of them. */
+  private final int[] workerIds;
+  /** The number of particles of each type. */
+  private long[] numParticles;
+  /** The first particle of each type this worker reads, counting from the first particle of that type. */
+  private long[] firstParticle;
+  /** The number of particles of each type this worker reads. */
+  private long[] numToRead;
+  /** The particle type being read. */
+  private int currentType;
+  /** Which line of the ascii files the readers are currently on. */
+  private long lineNumber;
 
   /** Schema for all Tipsy files. */
   private static final Schema TIPSY_SCHEMA =
@@ -109,64 +144,214 @@ public class TipsyFileScan extends LeafOperator {
    */
   public TipsyFileScan(
       final String binFileName, final String iOrderFileName, final String grpFileName) {
+    this(binFileName, iOrderFileName, grpFileName, null);
+  }
+
+  /**
+   * Construct a new TipsyFileScan object using the given binary filename, iOrder filename and group number filename,
+   * whose particles are split among the given workers.
+   *
+   * @param binFileName The binary file that contains the data for gas, dark, star particles.
+   * @param iOrderFileName The ascii file that contains the data for iOrder.
+   * @param grpFileName The ascii file that contains the data for group number.
+   * @param workerIds The workers that each read a disjoint range of the particles, or null if every worker reads all of
+   *          them.
+   */
+  public TipsyFileScan(
+      final String binFileName,
+      final String iOrderFileName,
+      final String grpFileName,
+      final int[] workerIds) {
     Objects.requireNonNull(binFileName);
     Objects.requireNonNull(iOrderFileName);
     Objects.requireNonNull(grpFileName);
     this.binFileName = binFileName;
     this.iOrderFileName = iOrderFileName;
     this.grpFileName = grpFileName;
+    this.workerIds = workerIds;
   }
 
   @Override
   protected final TupleBatch fetchNextReady() throws DbException {
-    processGasRecords();
-    processDarkRecords();
-    processStarRecords();
-    return buffer.popAny();
+    final int batchSize = TupleUtils.getBatchSize(TIPSY_SCHEMA);
+    while (currentType < TYPES.length) {
+      int numTuples;
+      try {
+        if (recordReader == null) {
+          recordReader = openRecordReader(currentType);
+        }
+        numTuples = recordReader.nextBatch(batchSize);
+      } catch (IOException e) {
+        throw new DbException(e);
+      }
+      if (numTuples > 0) {
+        return readBatch(currentType, numTuples);
+      }
+      recordReader = null;
+      currentType++;
+    }
+    return null;
+  }
+
+  /**
+   * Decode the current batch of records of the given particle type and merge it with iOrder and group number.
+   *
+   * @param type the particle type.
+   * @param numTuples the number of records in the batch.
+   * @return the tuples of the batch.
+   * @throws DbException if error reading from the ascii files.
+   */
+  private TupleBatch readBatch(final int type, final int numTuples) throws DbException {
+    List<Column<?>> columns = new ArrayList<>(TIPSY_SCHEMA.numColumns());
+    long[] iOrder = new long[numTuples];
+    int[] grp = new int[numTuples];
+    for (int i = 0; i < numTuples; ++i) {
+      lineNumber++;
+      iOrder[i] = Long.parseLong(nextValue(iOrderReader, "iOrderFile"));
+      grp[i] = Integer.parseInt(nextValue(grpReader, "grpFile"));
+    }
+    columns.add(new LongColumn(iOrder, numTuples));
+    for (int offset : FLOAT_OFFSETS[type]) {
+      float[] data = new float[numTuples];
+      if (offset >= 0) {
+        recordReader.getFloats(offset, data);
+      }
+      columns.add(new FloatColumn(data, numTuples));
+    }
+    columns.add(new IntArrayColumn(grp, numTuples));
+    columns.add(new ConstantValueColumn(TYPES[type], Type.STRING_TYPE, numTuples));
+    return new TupleBatch(TIPSY_SCHEMA, columns, numTuples);
+  }
+
+  /**
+   * @param reader an ascii file with one value per line.
+   * @param fileDescription the ascii file, for error messages.
+   * @return the next value of the file.
+   * @throws DbException if the file ends or has more than one value on the line.
+   */
+  private String nextValue(final BufferedReader reader, final String fileDescription)
+      throws DbException {
+    String line;
+    try {
+      do {
+        line = reader.readLine();
+        if (line == null) {
+          throw new DbException(fileDescription + ": Unexpected end of file at line " + lineNumber);
+        }
+        line = line.trim();
+      } while (line.isEmpty());
+    } catch (IOException e) {
+      throw new DbException(e);
+    }
+    for (int i = 0; i < line.length(); ++i) {
+      if (Character.isWhitespace(line.charAt(i))) {
+        throw new DbException(
+            fileDescription
+                + ": Unexpected output at the end of line "
+                + lineNumber
+                + ": "
+                + line.substring(i).trim());
+      }
+    }
+    return line;
+  }
+
+  /**
+   * Open a reader over the records of the given particle type that this worker reads.
+   *
+   * @param type the particle type.
+   * @return the reader.
+   * @throws IOException if error opening the bin file.
+   */
+  private FixedWidthRecordReader openRecordReader(final int type) throws IOException {
+    long offset = H_SIZE;
+    for (int i = 0; i < type; ++i) {
+      offset += numParticles[i] * RECORD_SIZES[i];
+    }
+    if (binStream == null) {
+      return FixedWidthRecordReader.ofFile(
+          Paths.get(localPath(binFileName)),
+          offset,
+          RECORD_SIZES[type],
+          firstParticle[type],
+          numToRead[type],
+          ByteOrder.BIG_ENDIAN);
+    }
+    ByteStreams.skipFully(
+        binStream, offset + firstParticle[type] * RECORD_SIZES[type] - binStream.getCount());
+    return FixedWidthRecordReader.ofStream(
+        binStream, RECORD_SIZES[type], numToRead[type], ByteOrder.BIG_ENDIAN);
   }
 
   @Override
   protected final void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
-    buffer = new TupleBatchBuffer(getSchema());
-    InputStream iOrderInputStream = openFileOrUrlInputStream(iOrderFileName);
-    InputStream grpInputStream = openFileOrUrlInputStream(grpFileName);
-    int ntot;
+    long ntot;
+    numParticles = new long[TYPES.length];
 
     try {
-      // Create a fileInputStream for the bin file
-      InputStream fStreamForBin = openFileOrUrlInputStream(binFileName);
-      BufferedInputStream bufferedStreamForBin = new BufferedInputStream(fStreamForBin);
-      dataInputForBin = new DataInputStream(bufferedStreamForBin);
+      String binPath = localPath(binFileName);
+      InputStream fStreamForBin =
+          binPath != null
+              ? Files.newInputStream(Paths.get(binPath))
+              : openFileOrUrlInputStream(binFileName);
+      binStream = new CountingInputStream(fStreamForBin);
+      DataInputStream dataInputForBin = new DataInputStream(binStream);
 
       dataInputForBin.readDouble(); // time
       ntot = dataInputForBin.readInt();
       dataInputForBin.readInt();
-      ngas = dataInputForBin.readInt();
-      ndark = dataInputForBin.readInt();
-      nstar = dataInputForBin.readInt();
+      for (int i = 0; i < TYPES.length; ++i) {
+        numParticles[i] = dataInputForBin.readInt();
+      }
       dataInputForBin.readInt();
-      long proposed = H_SIZE + ngas * G_SIZE + ndark * D_SIZE + nstar * S_SIZE;
-      if (ntot != ngas + ndark + nstar) {
+      long proposed = H_SIZE;
+      for (int i = 0; i < TYPES.length; ++i) {
+        proposed += numParticles[i] * RECORD_SIZES[i];
+      }
+      if (ntot != numParticles[0] + numParticles[1] + numParticles[2]) {
         throw new DbException("header info incorrect");
       }
-      if (fStreamForBin instanceof FileInputStream
-          && proposed != ((FileInputStream) fStreamForBin).getChannel().size()) {
-        throw new DbException("binary file size incorrect");
+      if (binPath != null) {
+        if (proposed != Files.size(Paths.get(binPath))) {
+          throw new DbException("binary file size incorrect");
+        }
+        /* The records of a local file are memory-mapped instead. */
+        binStream.close();
+        binStream = null;
       }
     } catch (IOException e) {
       throw new DbException(e);
     }
 
-    Preconditions.checkArgument(
-        iOrderInputStream != null, "FileScan iOrder input stream has not been set!");
-    Preconditions.checkArgument(
-        grpInputStream != null, "FileScan group input stream has not been set!");
-    Preconditions.checkArgument(
-        dataInputForBin != null, "FileScan binary input stream has not been set!");
-    iOrderScanner = new Scanner(new BufferedReader(new InputStreamReader(iOrderInputStream)));
-    grpScanner = new Scanner(new BufferedReader(new InputStreamReader(grpInputStream)));
-    int numIOrder = iOrderScanner.nextInt();
-    int numGrp = grpScanner.nextInt();
+    /* Find the range of particles this worker reads. */
+    long first = 0;
+    long end = ntot;
+    if (workerIds != null) {
+      int workerIndex = -1;
+      for (int i = 0; i < workerIds.length; ++i) {
+        if (workerIds[i] == getNodeID()) {
+          workerIndex = i;
+        }
+      }
+      first = workerIndex < 0 ? 0 : ntot * workerIndex / workerIds.length;
+      end = workerIndex < 0 ? 0 : ntot * (workerIndex + 1) / workerIds.length;
+    }
+    firstParticle = new long[TYPES.length];
+    numToRead = new long[TYPES.length];
+    long typeStart = 0;
+    for (int i = 0; i < TYPES.length; ++i) {
+      long typeEnd = typeStart + numParticles[i];
+      firstParticle[i] = Math.max(0, first - typeStart);
+      numToRead[i] = Math.max(0, Math.min(end, typeEnd) - Math.max(first, typeStart));
+      typeStart = typeEnd;
+    }
+
+    iOrderReader =
+        new BufferedReader(new InputStreamReader(openFileOrUrlInputStream(iOrderFileName)));
+    grpReader = new BufferedReader(new InputStreamReader(openFileOrUrlInputStream(grpFileName)));
+    lineNumber = 0;
+    long numIOrder = Long.parseLong(nextValue(iOrderReader, "iOrderFile"));
+    long numGrp = Long.parseLong(nextValue(grpReader, "grpFile"));
     if (numIOrder != ntot) {
       throw new DbException(
           "number of iOrder "
@@ -178,173 +363,63 @@ public class TipsyFileScan extends LeafOperator {
     if (numGrp != ntot) {
       throw new DbException("number of group is different from the number of tipsy record.");
     }
-    lineNumber = 0;
+    /* Skip the lines of the particles before this worker's range. */
+    for (; lineNumber < first; lineNumber++) {
+      nextValue(iOrderReader, "iOrderFile");
+      nextValue(grpReader, "grpFile");
+    }
+    currentType = 0;
+    recordReader = null;
   }
 
   @Override
   protected final void cleanup() throws DbException {
-    iOrderScanner = null;
-    grpScanner = null;
-    while (buffer.numTuples() > 0) {
-      buffer.popAny();
-    }
-  }
-
-  /**
-   * Construct tuples for gas particle records. The expected gas particles schema in the bin file is mass, x, y, z, vx,
-   * vy, vz, rho, temp, hsmooth, metals, phi. Merge the record in the binary file with iOrder and group number and fill
-   * in the each tuple column accordingly.
-   *
-   * @throws DbException if error reading from file.
-   */
-  private void processGasRecords() throws DbException {
-    while (ngas > 0 && (buffer.numTuples() < buffer.getBatchSize())) {
-      lineNumber++;
-      try {
-        int count = 0;
-        buffer.putLong(count++, iOrderScanner.nextLong());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        /*
-         * TODO(leelee): Should be null for the next two columns. Put 0 for now as TupleBatchBuffer does not support
-         * null value.
-         */
-        buffer.putFloat(count++, 0);
-        buffer.putFloat(count++, 0);
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putInt(count++, grpScanner.nextInt());
-        buffer.putString(count++, "gas");
-      } catch (final IOException e) {
-        throw new DbException(e);
+    try {
+      if (recordReader != null && binStream == null) {
+        recordReader.close();
       }
-      final String iOrderRest = iOrderScanner.nextLine().trim();
-      if (iOrderRest.length() > 0) {
-        throw new DbException(
-            "iOrderFile: Unexpected output at the end of line " + lineNumber + ": " + iOrderRest);
+      if (binStream != null) {
+        binStream.close();
       }
-      final String grpRest = grpScanner.nextLine().trim();
-      if (grpRest.length() > 0) {
-        throw new DbException(
-            "grpFile: Unexpected output at the end of line " + lineNumber + ": " + grpRest);
+      if (iOrderReader != null) {
+        iOrderReader.close();
       }
-      ngas--;
+      if (grpReader != null) {
+        grpReader.close();
+      }
+    } catch (IOException e) {
+      throw new DbException(e);
+    } finally {
+      recordReader = null;
+      binStream = null;
+      iOrderReader = null;
+      grpReader = null;
     }
   }
 
-  /**
-   * Construct tuples for gas particle records. The expected dark particles schema in the bin file is mass, x, y, z, vx,
-   * vy, vz, eps, phi. Merge the record in the binary file with iOrder and group number and fill in the each tuple
-   * column accordingly.
-   *
-   * @throws DbException if error reading from file.
-   */
-  private void processDarkRecords() throws DbException {
-    while (ndark > 0 && (buffer.numTuples() < buffer.getBatchSize())) {
-      lineNumber++;
-      try {
-        int count = 0;
-        buffer.putLong(count++, iOrderScanner.nextLong());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        /*
-         * TODO(leelee): Should be null for the next five columns. Put 0 for now as TupleBatchBuffer does not support
-         * null value.
-         */
-        buffer.putFloat(count++, 0);
-        buffer.putFloat(count++, 0);
-        buffer.putFloat(count++, 0);
-        buffer.putFloat(count++, 0);
-        buffer.putFloat(count++, 0);
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putInt(count++, grpScanner.nextInt());
-        buffer.putString(count++, "dark");
-      } catch (final IOException e) {
-        throw new DbException(e);
-      }
-      final String iOrderRest = iOrderScanner.nextLine().trim();
-      if (iOrderRest.length() > 0) {
-        throw new DbException(
-            "iOrderFile: Unexpected output at the end of line " + lineNumber + ": " + iOrderRest);
-      }
-      final String grpRest = grpScanner.nextLine().trim();
-      if (grpRest.length() > 0) {
-        throw new DbException(
-            "grpFile: Unexpected output at the end of line " + lineNumber + ": " + grpRest);
-      }
-      ndark--;
-    }
+  @Override
+  protected Schema generateSchema() {
+    return TIPSY_SCHEMA;
   }
 
   /**
-   * Construct tuples for gas particle records. The expected dark particles schema in the bin file is mass, x, y, z, vx,
-   * vy, vz, metals, tform, eps, phi. Merge the record in the binary file with iOrder and group number and fill in the
-   * each tuple column accordingly.
-   *
-   * @throws DbException if error reading from file.
+   * @param filenameOrUrl a file name or URL.
+   * @return the path of the local file it refers to, or null if it is not a local file.
    */
-  private void processStarRecords() throws DbException {
-    while (nstar > 0 && (buffer.numTuples() < buffer.getBatchSize())) {
-      lineNumber++;
-      try {
-        int count = 0;
-        buffer.putLong(count++, iOrderScanner.nextLong());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        /*
-         * TODO(leelee): Should be null for the next three columns. Put 0 for now as TupleBatchBuffer does not support
-         * null value.
-         */
-        buffer.putFloat(count++, 0);
-        buffer.putFloat(count++, 0);
-        buffer.putFloat(count++, 0);
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putFloat(count++, dataInputForBin.readFloat());
-        buffer.putInt(count++, grpScanner.nextInt());
-        buffer.putString(count++, "star");
-      } catch (final IOException e) {
-        throw new DbException(e);
-      }
-      final String iOrderRest = iOrderScanner.nextLine().trim();
-      if (iOrderRest.length() > 0) {
-        throw new DbException(
-            "iOrderFile: Unexpected output at the end of line " + lineNumber + ": " + iOrderRest);
-      }
-      final String grpRest = grpScanner.nextLine().trim();
-      if (grpRest.length() > 0) {
-        throw new DbException(
-            "grpFile: Unexpected output at the end of line " + lineNumber + ": " + grpRest);
+  private static String localPath(final String filenameOrUrl) {
+    try {
+      URI uri = new URI(filenameOrUrl);
+      if (uri.getScheme() == null) {
+        return filenameOrUrl;
+      } else if (uri.getScheme().equals("file")) {
+        return uri.getPath() != null ? uri.getPath() : uri.getSchemeSpecificPart();
       }
-      nstar--;
+      return null;
+    } catch (URISyntaxException e) {
+      return filenameOrUrl;
     }
   }
 
-  @Override
-  protected Schema generateSchema() {
-    return TIPSY_SCHEMA;
-  }
-
   private static InputStream openFileOrUrlInputStream(String filenameOrUrl) throws DbException {
     try {
       URI uri = MyriaUtils.normalizeS3Uri(new URI(filenameOrUrl));
@@ -0,0 +1,233 @@
+package edu.washington.escience.myria.operator;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import edu.washington.escience.myria.MyriaConstants;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.storage.MutableTupleBuffer;
+import edu.washington.escience.myria.storage.ReadableTable;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+import edu.washington.escience.myria.storage.TupleUtils;
+
+/**
+ * Emits the first <code>limit</code> tuples of its child in the given order, i.e., ORDER BY ... LIMIT ..., without
+ * sorting or buffering the whole input: the tuples kept so far are in a bounded heap whose top is the last of them in
+ * the order, and acts as a threshold that drops, without copying them, the input tuples that cannot be among the
+ * first. This takes O(n log k) time and O(k) memory.
+ *
+ * To order a distributed relation, every worker runs a TopK on its partition and sends the k tuples it keeps to a
+ * collector, which runs a TopK on them, so only k tuples per worker are shuffled.
+ */
+public final class TopK extends UnaryOperator {
+
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** Which columns to sort the tuples by. */
+  private final int[] sortColumns;
+
+  /** True for each column that should be sorted ascending. */
+  private final boolean[] ascending;
+
+  /** The number of tuples to emit. */
+  private final int limit;
+
+  /** The tuples kept so far. */
+  private transient MutableTupleBuffer table;
+
+  /** A heap of the rows of {@link #table}, whose top is the last row in the order. */
+  private transient int[] heap;
+
+  /** The tuples to emit, in order. */
+  private transient TupleBatchBuffer ans;
+
+  /**
+   * @param child the source of the tuples.
+   * @param sortColumns the columns that should be ordered by
+   * @param ascending true for each column that should be sorted ascending
+   * @param limit the number of tuples to emit.
+   */
+  public TopK(
+      final Operator child, final int[] sortColumns, final boolean[] ascending, final int limit) {
+    super(child);
+    Preconditions.checkArgument(
+        sortColumns.length == ascending.length,
+        "sort columns number should be equal to ascending orders number");
+    Preconditions.checkArgument(limit >= 0, "limit must be non-negative");
+    this.sortColumns = sortColumns;
+    this.ascending = ascending;
+    this.limit = limit;
+  }
+
+  @Override
+  protected void init(final ImmutableMap<String, Object> execEnvVars) throws Exception {
+    table = new MutableTupleBuffer(getSchema());
+    heap = new int[Math.min(limit, MyriaConstants.TUPLE_BATCH_DEFAULT_SIZE)];
+    ans = null;
+  }
+
+  @Override
+  protected void cleanup() throws Exception {
+    table = null;
+    heap = null;
+    ans = null;
+  }
+
+  @Override
+  protected TupleBatch fetchNextReady() throws Exception {
+    if (ans == null) {
+      final Operator child = getChild();
+      while (!child.eos()) {
+        TupleBatch tb = child.nextReady();
+        if (tb == null) {
+          if (child.eos()) {
+            break;
+          }
+          return null;
+        }
+        for (int row = 0; row < tb.numTuples(); ++row) {
+          offer(tb, row);
+        }
+      }
+      ans = new TupleBatchBuffer(getSchema());
+      for (int row : sortedRows()) {
+        ans.append(table, row);
+      }
+      table = null;
+    }
+    TupleBatch nexttb = ans.popAny();
+    if (nexttb == null) {
+      setEOS();
+    }
+    return nexttb;
+  }
+
+  /**
+   * @param table1 the table of the first tuple.
+   * @param row1 the row of the first tuple.
+   * @param table2 the table of the second tuple.
+   * @param row2 the row of the second tuple.
+   * @return a negative integer, zero, or a positive integer as the first tuple is before, tied with, or after the
+   *         second in the order.
+   */
+  private int compare(
+      final ReadableTable table1, final int row1, final ReadableTable table2, final int row2) {
+    return TupleUtils.tupleCompare(table1, sortColumns, row1, table2, sortColumns, row2, ascending);
+  }
+
+  /**
+   * Keeps a tuple of the input if it is among the first <code>limit</code> ones so far.
+   *
+   * @param tb the batch of the tuple.
+   * @param row the row of the tuple.
+   */
+  private void offer(final TupleBatch tb, final int row) {
+    final int numKept = table.numTuples();
+    if (numKept < limit) {
+      for (int column = 0; column < tb.numColumns(); ++column) {
+        table.put(column, tb.asColumn(column), row);
+      }
+      if (numKept == heap.length) {
+        heap = Arrays.copyOf(heap, (int) Math.min(limit, 2L * heap.length));
+      }
+      heap[numKept] = numKept;
+      siftUp(numKept);
+    } else if (limit > 0 && compare(tb, row, table, heap[0]) < 0) {
+      for (int column = 0; column < tb.numColumns(); ++column) {
+        table.replace(column, heap[0], tb.asColumn(column), row);
+      }
+      siftDown(0, numKept);
+    }
+  }
+
+  /**
+   * @param i a position of the heap.
+   * @param j another position of the heap.
+   * @return true if the row at position i is after the row at position j in the order.
+   */
+  private boolean after(final int i, final int j) {
+    return compare(table, heap[i], table, heap[j]) > 0;
+  }
+
+  /**
+   * @param i a position of the heap.
+   * @param j another position of the heap.
+   */
+  private void swap(final int i, final int j) {
+    final int row = heap[i];
+    heap[i] = heap[j];
+    heap[j] = row;
+  }
+
+  /**
+   * Moves the row at a position up the heap until its parent is after it.
+   *
+   * @param position the position.
+   */
+  private void siftUp(final int position) {
+    int child = position;
+    while (child > 0) {
+      final int parent = (child - 1) / 2;
+      if (!after(child, parent)) {
+        return;
+      }
+      swap(child, parent);
+      child = parent;
+    }
+  }
+
+  /**
+   * Moves the row at a position down the heap until its children are before it.
+   *
+   * @param position the position.
+   * @param size the size of the heap.
+   */
+  private void siftDown(final int position, final int size) {
+    int parent = position;
+    while (true) {
+      int last = parent;
+      final int left = 2 * parent + 1;
+      final int right = left + 1;
+      if (left < size && after(left, last)) {
+        last = left;
+      }
+      if (right < size && after(right, last)) {
+        last = right;
+      }
+      if (last == parent) {
+        return;
+      }
+      swap(parent, last);
+      parent = last;
+    }
+  }
+
+  /**
+   * Sorts the heap in place, since popping the last row of the heap to the end of the array leaves the rows in order.
+   *
+   * @return the rows kept, in order.
+   */
+  private int[] sortedRows() {
+    final int numKept = table.numTuples();
+    for (int size = numKept - 1; size > 0; --size) {
+      swap(0, size);
+      siftDown(0, size);
+    }
+    final int[] rows = new int[numKept];
+    System.arraycopy(heap, 0, rows, 0, numKept);
+    return rows;
+  }
+
+  @Override
+  protected Schema generateSchema() {
+    Operator child = getChild();
+    if (child == null) {
+      return null;
+    }
+    return child.getSchema();
+  }
+}
@@ -133,6 +133,8 @@ public class Aggregate extends UnaryOperator {
     for (Aggregator agg : internalAggs) {
       if (agg instanceof UserDefinedAggregator) {
         ((UserDefinedAggregator) agg).finalizePythonUpdaters(groupStates.getData(), stateOffset);
+      } else if (agg instanceof SketchAggregator) {
+        ((SketchAggregator) agg).finalizeSketches(groupStates.getData(), stateOffset);
       }
       stateOffset += agg.getStateSize();
     }
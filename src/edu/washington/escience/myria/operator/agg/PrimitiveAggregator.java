@@ -33,7 +33,31 @@ public abstract class PrimitiveAggregator implements Aggregator, Serializable {
     /**
      * SUM_SQUARED. Applies to numeric types. Result is coerced to the largest compatible numeric type (long or double).
      */
-    SUM_SQUARED
+    SUM_SQUARED,
+    /**
+     * APPROX_COUNT_DISTINCT. Applies to all types, and to {@link Type#BLOB_TYPE} columns of HLL_SKETCH results. Result
+     * is always of type {@link Type#LONG_TYPE}.
+     */
+    APPROX_COUNT_DISTINCT,
+    /**
+     * HLL_SKETCH. Applies to the same types as APPROX_COUNT_DISTINCT. Result is always of type {@link Type#BLOB_TYPE},
+     * a HyperLogLog sketch that later aggregates can merge.
+     */
+    HLL_SKETCH,
+    /**
+     * APPROX_MEDIAN. Applies to numeric types, and to {@link Type#BLOB_TYPE} columns of QUANTILE_SKETCH results.
+     * Result is always {@link Type#DOUBLE_TYPE}.
+     */
+    APPROX_MEDIAN,
+    /** APPROX_P90. Applies to the same types as APPROX_MEDIAN. Result is always {@link Type#DOUBLE_TYPE}. */
+    APPROX_P90,
+    /** APPROX_P99. Applies to the same types as APPROX_MEDIAN. Result is always {@link Type#DOUBLE_TYPE}. */
+    APPROX_P99,
+    /**
+     * QUANTILE_SKETCH. Applies to the same types as APPROX_MEDIAN. Result is always {@link Type#BLOB_TYPE}, a quantile
+     * sketch that later aggregates can merge.
+     */
+    QUANTILE_SKETCH
   };
 
   /** The aggregate operation. */
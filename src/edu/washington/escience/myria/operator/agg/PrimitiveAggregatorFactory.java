@@ -14,6 +14,9 @@ import com.google.common.collect.ImmutableList;
 
 import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.expression.ApproxCountDistinctExpression;
+import edu.washington.escience.myria.expression.ApproxQuantileExpression;
+import edu.washington.escience.myria.expression.ConstantExpression;
 import edu.washington.escience.myria.expression.DivideExpression;
 import edu.washington.escience.myria.expression.Expression;
 import edu.washington.escience.myria.expression.ExpressionOperator;
@@ -78,6 +81,9 @@ public class PrimitiveAggregatorFactory implements AggregatorFactory {
   private Aggregator generateAgg(final Schema inputSchema, final AggregationOp aggOp) {
     String inputName = inputSchema.getColumnName(column);
     Type type = inputSchema.getColumnType(column);
+    if (aggOp == AggregationOp.HLL_SKETCH || aggOp == AggregationOp.QUANTILE_SKETCH) {
+      return new SketchAggregator(inputName, column, aggOp, type);
+    }
     switch (type) {
       case BOOLEAN_TYPE:
         return new BooleanAggregator(inputName, column, aggOp);
@@ -109,8 +115,27 @@ public class PrimitiveAggregatorFactory implements AggregatorFactory {
         case MIN:
         case MAX:
         case SUM:
+        case HLL_SKETCH:
+        case QUANTILE_SKETCH:
           exps.add(new Expression(name, new VariableExpression(cols.indexOf(aggOps[i]))));
           continue;
+        case APPROX_COUNT_DISTINCT:
+          exps.add(
+              new Expression(
+                  name,
+                  new ApproxCountDistinctExpression(
+                      new VariableExpression(cols.indexOf(AggregationOp.HLL_SKETCH)))));
+          continue;
+        case APPROX_MEDIAN:
+        case APPROX_P90:
+        case APPROX_P99:
+          exps.add(
+              new Expression(
+                  name,
+                  new ApproxQuantileExpression(
+                      new VariableExpression(cols.indexOf(AggregationOp.QUANTILE_SKETCH)),
+                      new ConstantExpression(getQuantile(aggOps[i])))));
+          continue;
         case AVG:
           exps.add(
               new Expression(
@@ -164,7 +189,15 @@ public class PrimitiveAggregatorFactory implements AggregatorFactory {
       case MIN:
       case MAX:
       case SUM:
+      case HLL_SKETCH:
+      case QUANTILE_SKETCH:
         return ImmutableList.of(op);
+      case APPROX_COUNT_DISTINCT:
+        return ImmutableList.of(AggregationOp.HLL_SKETCH);
+      case APPROX_MEDIAN:
+      case APPROX_P90:
+      case APPROX_P99:
+        return ImmutableList.of(AggregationOp.QUANTILE_SKETCH);
       case AVG:
         return ImmutableList.of(AggregationOp.SUM, AggregationOp.COUNT);
       case STDEV:
@@ -174,6 +207,23 @@ public class PrimitiveAggregatorFactory implements AggregatorFactory {
     }
   }
 
+  /**
+   * @param op an approximate quantile op
+   * @return the quantile that the op estimates
+   */
+  private static double getQuantile(final AggregationOp op) {
+    switch (op) {
+      case APPROX_MEDIAN:
+        return 0.5;
+      case APPROX_P90:
+        return 0.9;
+      case APPROX_P99:
+        return 0.99;
+      default:
+        throw new IllegalArgumentException("Type " + op + " is not a quantile");
+    }
+  }
+
   /**
    * @param input the input type
    * @param op the aggregation op
@@ -185,7 +235,11 @@ public class PrimitiveAggregatorFactory implements AggregatorFactory {
       case MAX:
         return input;
       case COUNT:
+      case APPROX_COUNT_DISTINCT:
         return Type.LONG_TYPE;
+      case HLL_SKETCH:
+      case QUANTILE_SKETCH:
+        return Type.BLOB_TYPE;
       case SUM:
       case SUM_SQUARED:
         if (input == Type.INT_TYPE || input == Type.LONG_TYPE) {
@@ -197,6 +251,9 @@ public class PrimitiveAggregatorFactory implements AggregatorFactory {
         throw new IllegalArgumentException(op + " on " + input + " is invalid");
       case AVG:
       case STDEV:
+      case APPROX_MEDIAN:
+      case APPROX_P90:
+      case APPROX_P99:
         return Type.DOUBLE_TYPE;
       default:
         throw new IllegalArgumentException(op + " on " + input + " is invalid");
@@ -0,0 +1,168 @@
+package edu.washington.escience.myria.operator.agg;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.storage.AppendableTable;
+import edu.washington.escience.myria.storage.MutableTupleBuffer;
+import edu.washington.escience.myria.storage.ReadableColumn;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.util.HyperLogLog;
+import edu.washington.escience.myria.util.QuantileSketch;
+
+/**
+ * Knows how to build the sketches of approximate aggregates: a {@link HyperLogLog} sketch of the distinct values of
+ * any column, or a {@link QuantileSketch} of a numeric column. Over a BLOB column, the values are sketches of the same
+ * kind, e.g., built by the partial aggregates of other workers, and they are merged. The sketch of each group is kept
+ * in memory while the input is aggregated, and serialized into the state of the group by {@link #finalizeSketches}.
+ */
+public final class SketchAggregator extends PrimitiveAggregator {
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** The types whose quantiles can be estimated, besides sketches to merge. */
+  private static final ImmutableSet<Type> QUANTILE_TYPES =
+      ImmutableSet.of(Type.INT_TYPE, Type.LONG_TYPE, Type.FLOAT_TYPE, Type.DOUBLE_TYPE);
+
+  /** The type of the column to aggregate on. */
+  private final Type inputType;
+  /** The column to aggregate on, as the key columns of a {@link HyperLogLog} sketch. */
+  private final int[] keyColumns;
+  /** The HyperLogLog sketch of each group, by the row of its state. */
+  private transient List<HyperLogLog> distinctSketches;
+  /** The quantile sketch of each group, by the row of its state. */
+  private transient List<QuantileSketch> quantileSketches;
+
+  /**
+   * @param inputName the name of the column to aggregate on, for naming the output column.
+   * @param column the column to aggregate on.
+   * @param aggOp {@link AggregationOp#HLL_SKETCH} or {@link AggregationOp#QUANTILE_SKETCH}.
+   * @param inputType the type of the column to aggregate on.
+   */
+  protected SketchAggregator(
+      final String inputName, final int column, final AggregationOp aggOp, final Type inputType) {
+    super(inputName, column, aggOp);
+    Preconditions.checkArgument(
+        aggOp != AggregationOp.QUANTILE_SKETCH
+            || inputType == Type.BLOB_TYPE
+            || QUANTILE_TYPES.contains(inputType),
+        "%s on %s is invalid",
+        aggOp,
+        inputType);
+    this.inputType = inputType;
+    keyColumns = new int[] {column};
+  }
+
+  @Override
+  public void addRow(
+      final TupleBatch from,
+      final int fromRow,
+      final MutableTupleBuffer to,
+      final int toRow,
+      final int offset) {
+    switch (aggOp) {
+      case HLL_SKETCH:
+        if (inputType == Type.BLOB_TYPE) {
+          distinctSketches
+              .get(toRow)
+              .merge(HyperLogLog.fromByteBuffer(from.getBlob(column, fromRow)));
+        } else {
+          distinctSketches.get(toRow).add(from, keyColumns, fromRow);
+        }
+        break;
+      case QUANTILE_SKETCH:
+        if (inputType == Type.BLOB_TYPE) {
+          quantileSketches
+              .get(toRow)
+              .merge(QuantileSketch.fromByteBuffer(from.getBlob(column, fromRow)));
+        } else {
+          quantileSketches.get(toRow).add(getDouble(from.asColumn(column), fromRow));
+        }
+        break;
+      default:
+        throw new IllegalArgumentException(aggOp + " is invalid");
+    }
+  }
+
+  /**
+   * @param fromCol a numeric column.
+   * @param fromRow a row.
+   * @return the value of the row as a double.
+   */
+  private double getDouble(final ReadableColumn fromCol, final int fromRow) {
+    switch (inputType) {
+      case INT_TYPE:
+        return fromCol.getInt(fromRow);
+      case LONG_TYPE:
+        return fromCol.getLong(fromRow);
+      case FLOAT_TYPE:
+        return fromCol.getFloat(fromRow);
+      case DOUBLE_TYPE:
+        return fromCol.getDouble(fromRow);
+      default:
+        throw new IllegalArgumentException(aggOp + " on " + inputType + " is invalid");
+    }
+  }
+
+  /**
+   * Appends a placeholder to the state, and starts the sketch of the new group. Groups are added in the order of the
+   * rows of their states.
+   */
+  @Override
+  public void initState(final MutableTupleBuffer state, final int offset) {
+    super.initState(state, offset);
+    if (aggOp == AggregationOp.HLL_SKETCH) {
+      if (distinctSketches == null) {
+        distinctSketches = new ArrayList<>();
+      }
+      distinctSketches.add(new HyperLogLog());
+    } else {
+      if (quantileSketches == null) {
+        quantileSketches = new ArrayList<>();
+      }
+      quantileSketches.add(new QuantileSketch());
+    }
+  }
+
+  /**
+   * Serializes the sketch of each group into its state, and forgets the sketches, so that the states can be emitted
+   * and the next groups start from the first row.
+   *
+   * @param state the table containing the states.
+   * @param offset the column of the states of this aggregator.
+   */
+  public void finalizeSketches(final MutableTupleBuffer state, final int offset) {
+    if (distinctSketches != null) {
+      for (int row = 0; row < distinctSketches.size(); ++row) {
+        state.replaceByteBuffer(offset, row, distinctSketches.get(row).toByteBuffer());
+      }
+      distinctSketches.clear();
+    }
+    if (quantileSketches != null) {
+      for (int row = 0; row < quantileSketches.size(); ++row) {
+        state.replaceByteBuffer(offset, row, quantileSketches.get(row).toByteBuffer());
+      }
+      quantileSketches.clear();
+    }
+  }
+
+  @Override
+  protected boolean isSupported(final AggregationOp aggOp) {
+    return ImmutableSet.of(AggregationOp.HLL_SKETCH, AggregationOp.QUANTILE_SKETCH).contains(aggOp);
+  }
+
+  @Override
+  protected Type getOutputType() {
+    return Type.BLOB_TYPE;
+  }
+
+  @Override
+  protected void appendInitValue(final AppendableTable data, final int column) {
+    data.putBlob(column, ByteBuffer.allocate(0));
+  }
+}
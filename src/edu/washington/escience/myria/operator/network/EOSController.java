@@ -3,8 +3,10 @@ package edu.washington.escience.myria.operator.network;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import edu.washington.escience.myria.DbException;
@@ -41,6 +43,11 @@ public class EOSController extends Producer {
    * */
   private final ArrayList<Integer> zeroCol;
 
+  /**
+   * The per-iteration progress of the EOI reports, from the time this operator was initialized.
+   * */
+  private transient IterationProgress iterationProgress;
+
   /**
    * If the number of empty reports at a time stamp is the same as this value, the iteration is done.
    * */
@@ -81,6 +88,12 @@ public class EOSController extends Producer {
     workerIdToIndex = ImmutableMap.copyOf(tmp);
   }
 
+  @Override
+  public void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
+    super.init(execEnvVars);
+    iterationProgress = new IterationProgress(System.nanoTime());
+  }
+
   @Override
   protected final void consumeTuples(final TupleBatch otb) throws DbException {
     if (isEOSSent) {
@@ -121,6 +134,8 @@ public class EOSController extends Producer {
       expectingWorkers.removeAll(missingWorkers);
       /* only count EOI reports from alive workers. */
       numExpecting = expectingWorkers.size() * numEOI.length;
+      /* iterations that already hold the reports of all alive workers are finished. */
+      iterationProgress.finishIterations(numExpecting, System.nanoTime());
     }
     ExchangeTupleBatch etb = (ExchangeTupleBatch) otb;
     for (int i = 0; i < etb.numTuples(); ++i) {
@@ -134,6 +149,7 @@ public class EOSController extends Producer {
       while (numEOI[idbIdx][workerIdx] >= zeroCol.size()) {
         zeroCol.add(0);
       }
+      iterationProgress.report(numEOI[idbIdx][workerIdx], isEmpty, numExpecting, System.nanoTime());
       int tmp = zeroCol.get(numEOI[idbIdx][workerIdx]);
       if (!isEmpty) {
         zeroCol.set(numEOI[idbIdx][workerIdx], -1);
@@ -155,6 +171,19 @@ public class EOSController extends Producer {
     }
   }
 
+  /**
+   * @return the duration in milliseconds of each iteration finished so far. The first iteration is measured from the
+   *         initialization of this operator, and the others between the arrivals of the last EOI reports of
+   *         consecutive iterations.
+   */
+  public final List<Long> getIterationLatenciesMillis() {
+    IterationProgress progress = iterationProgress;
+    if (progress == null) {
+      return ImmutableList.of();
+    }
+    return progress.getLatenciesMillis();
+  }
+
   /**
    * EOS report schema.
    * */
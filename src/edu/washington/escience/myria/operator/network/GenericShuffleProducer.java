@@ -1,6 +1,9 @@
 package edu.washington.escience.myria.operator.network;
 
 import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
 
 import edu.washington.escience.myria.DbException;
 import edu.washington.escience.myria.MyriaConstants.ProfilingMode;
@@ -54,6 +57,30 @@ public class GenericShuffleProducer extends Producer {
       }
     }
     writePartitionsIntoChannels(partitions);
+    release(tup, partitions);
+  }
+
+  /**
+   * Drops the references of this producer to the pooled column arrays of a batch of its child and of the partitions
+   * of the batch, which the channels hold their own references to. A partition may be the batch itself, or appear in
+   * several channels, but holds only one reference.
+   *
+   * @param tup the batch.
+   * @param partitions the partitions of the batch for each channel.
+   */
+  private static void release(final TupleBatch tup, final List<List<TupleBatch>> partitions) {
+    final Set<TupleBatch> batches = Sets.newIdentityHashSet();
+    batches.add(tup);
+    for (List<TupleBatch> channelPartitions : partitions) {
+      for (TupleBatch tb : channelPartitions) {
+        if (tb != null) {
+          batches.add(tb);
+        }
+      }
+    }
+    for (TupleBatch tb : batches) {
+      tb.release();
+    }
   }
 
   @Override
@@ -0,0 +1,96 @@
+package edu.washington.escience.myria.operator.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+
+/**
+ * The per-iteration progress of the EOI reports received by an {@link EOSController}. An iteration is finished once at
+ * least the expected number of reports are in, and the iterations finish in order since each IDBController reports
+ * them in order. The expected number of reports may shrink, e.g., when workers go missing in ABANDON mode, which may
+ * finish the iterations that already hold enough reports. The methods are synchronized since the latencies are read by
+ * the thread that collects resource measurements.
+ */
+final class IterationProgress {
+  /** The logger for this class. */
+  private static final org.slf4j.Logger LOGGER =
+      org.slf4j.LoggerFactory.getLogger(IterationProgress.class);
+
+  /** The number of EOI reports received for each iteration, empty or not. */
+  private final IntArrayList numReports;
+  /** The number of non-empty EOI reports received for each iteration. */
+  private final IntArrayList numNonEmptyReports;
+  /** The time, in nanoseconds, at which each finished iteration finished. */
+  private final LongArrayList iterationEndNanos;
+  /** The time, in nanoseconds, at which the first iteration started. */
+  private final long startNanos;
+
+  /**
+   * @param startNanos the time, in nanoseconds, at which the first iteration started.
+   */
+  IterationProgress(final long startNanos) {
+    this.startNanos = startNanos;
+    numReports = new IntArrayList();
+    numNonEmptyReports = new IntArrayList();
+    iterationEndNanos = new LongArrayList();
+  }
+
+  /**
+   * Records an EOI report.
+   *
+   * @param iteration the iteration the report belongs to.
+   * @param isEmpty if the reported delta is empty.
+   * @param numExpecting the number of reports expected per iteration.
+   * @param nowNanos the time, in nanoseconds, at which the report was received.
+   */
+  synchronized void report(
+      final int iteration, final boolean isEmpty, final int numExpecting, final long nowNanos) {
+    while (iteration >= numReports.size()) {
+      numReports.add(0);
+      numNonEmptyReports.add(0);
+    }
+    numReports.set(iteration, numReports.get(iteration) + 1);
+    if (!isEmpty) {
+      numNonEmptyReports.set(iteration, numNonEmptyReports.get(iteration) + 1);
+    }
+    finishIterations(numExpecting, nowNanos);
+  }
+
+  /**
+   * Finishes the iterations, in order, that hold at least the expected number of reports.
+   *
+   * @param numExpecting the number of reports expected per iteration.
+   * @param nowNanos the current time, in nanoseconds.
+   */
+  synchronized void finishIterations(final int numExpecting, final long nowNanos) {
+    while (iterationEndNanos.size() < numReports.size()
+        && numReports.get(iterationEndNanos.size()) >= numExpecting) {
+      int iteration = iterationEndNanos.size();
+      long previous = iteration == 0 ? startNanos : iterationEndNanos.get(iteration - 1);
+      iterationEndNanos.add(nowNanos);
+      LOGGER.debug(
+          "Iteration {} finished in {} ms, {} of {} reports had a non-empty delta",
+          iteration,
+          TimeUnit.NANOSECONDS.toMillis(nowNanos - previous),
+          numNonEmptyReports.get(iteration),
+          numReports.get(iteration));
+    }
+  }
+
+  /**
+   * @return the duration in milliseconds of each iteration finished so far, the first one measured from the start.
+   */
+  synchronized List<Long> getLatenciesMillis() {
+    List<Long> ret = new ArrayList<>(iterationEndNanos.size());
+    long previous = startNanos;
+    for (int i = 0; i < iterationEndNanos.size(); ++i) {
+      long end = iterationEndNanos.get(i);
+      ret.add(TimeUnit.NANOSECONDS.toMillis(end - previous));
+      previous = end;
+    }
+    return ret;
+  }
+}
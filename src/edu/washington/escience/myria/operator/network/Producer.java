@@ -38,6 +38,9 @@ public abstract class Producer extends RootOperator implements StreamingStateful
   /** Required for Java serialization. */
   private static final long serialVersionUID = 1L;
 
+  /** The logger for this class. */
+  private static final org.slf4j.Logger LOGGER = org.slf4j.LoggerFactory.getLogger(Producer.class);
+
   /** The worker where this operator is located. */
   private transient LocalFragmentResourceManager taskResourceManager;
 
@@ -53,6 +56,8 @@ public abstract class Producer extends RootOperator implements StreamingStateful
   private List<StreamingState> triedToSendTuples;
   /** pending tuples to be sent for each channel. */
   private transient List<LinkedList<TupleBatch>> pendingTuplesToSend;
+  /** coalescers of small batches for each channel, null for channels to this worker. */
+  private transient TupleBatchCoalescer[] coalescers;
 
   /** output channel IDs. */
   private final StreamIOChannelID[] outputIDs;
@@ -117,7 +122,7 @@ public abstract class Producer extends RootOperator implements StreamingStateful
 
   @SuppressWarnings("unchecked")
   @Override
-  public final void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
+  public void init(final ImmutableMap<String, Object> execEnvVars) throws DbException {
     taskResourceManager =
         (LocalFragmentResourceManager)
             execEnvVars.get(MyriaConstants.EXEC_ENV_VAR_FRAGMENT_RESOURCE_MANAGER);
@@ -128,6 +133,7 @@ public abstract class Producer extends RootOperator implements StreamingStateful
     ioChannels = new StreamOutputChannel[outputIDs.length];
     ioChannelsAvail = new boolean[outputIDs.length];
     pendingTuplesToSend = new ArrayList<LinkedList<TupleBatch>>();
+    coalescers = new TupleBatchCoalescer[outputIDs.length];
     localizedOutputIDs = new StreamIOChannelID[outputIDs.length];
     for (int i = 0; i < outputIDs.length; i++) {
       if (outputIDs[i].getRemoteID() == IPCConnectionPool.SELF_IPC_ID) {
@@ -140,6 +146,10 @@ public abstract class Producer extends RootOperator implements StreamingStateful
     for (int i = 0; i < localizedOutputIDs.length; i++) {
       createANewChannel(i);
       pendingTuplesToSend.add(i, new LinkedList<TupleBatch>());
+      if (localizedOutputIDs[i].getRemoteID() != taskResourceManager.getNodeId()) {
+        /* batches to this worker are not serialized, so there is no point coalescing them. */
+        coalescers[i] = new TupleBatchCoalescer(getSchema());
+      }
       triedToSendTuples.get(i).init(execEnvVars);
     }
     nonBlockingExecution =
@@ -217,7 +227,7 @@ public abstract class Producer extends RootOperator implements StreamingStateful
   /**
    * @param chIdx the channel to write
    * @param msg the message.
-   * @return write future
+   * @return write future, or null if the fragment is killed or interrupted while it waits for the channel.
    */
   protected final ChannelFuture writeMessage(final int chIdx, final TupleBatch msg) {
     StreamOutputChannel<TupleBatch> ch = ioChannels[chIdx];
@@ -225,33 +235,33 @@ public abstract class Producer extends RootOperator implements StreamingStateful
       numTuplesWrittenToChannels += msg.numTuples();
       return ch.write(msg);
     } else {
-      int sleepTime = 1;
-      int maxSleepTime = MyriaConstants.SHORT_WAITING_INTERVAL_MS;
-      while (true) {
-        if (ch.isWritable()) {
-          numTuplesWrittenToChannels += msg.numTuples();
-          return ch.write(msg);
-        } else {
-          int toSleep = sleepTime - 1;
-          if (maxSleepTime < sleepTime) {
-            toSleep = maxSleepTime;
+      try {
+        while (!ch.awaitWritable(MyriaConstants.SHORT_WAITING_INTERVAL_MS)) {
+          /* wait for the consumer to grant credits or for the physical channel to drain. */
+          if (ch.isReleasedOrDetached()) {
+            /* the write below fails, as it does without waiting. */
+            break;
           }
-          try {
-            Thread.sleep(toSleep);
-          } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+          if (taskResourceManager.getFragment().isKilled()) {
             return null;
           }
-          sleepTime *= 2;
         }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
       }
+      numTuplesWrittenToChannels += msg.numTuples();
+      return ch.write(msg);
     }
   }
 
   /**
-   * Pop tuple batches from each of the buffers and try to write them to corresponding channels if possible.
+   * Pop tuple batches from each of the buffers and try to write them to corresponding channels if possible. Small
+   * batches to remote workers may be held back to be coalesced with the next ones. Each channel takes its own reference
+   * to the pooled column arrays of the batches it is given, and releases it once a batch is serialized; the caller
+   * keeps its references.
    *
-   * @param partitions the list of partitions as tuple batches.
+   * @param partitions the list of partitions as tuple batches, or null to flush the batches held back.
    */
   protected final void writePartitionsIntoChannels(final List<List<TupleBatch>> partitions) {
     FTMode mode = taskResourceManager.getFragment().getLocalSubQuery().getFTMode();
@@ -259,12 +269,22 @@ public abstract class Producer extends RootOperator implements StreamingStateful
       if (!ioChannelsAvail[i] && mode.equals(FTMode.ABANDON)) {
         continue;
       }
-      if (partitions != null)
+      if (partitions != null) {
         for (TupleBatch tb : partitions.get(i)) {
-          if (tb != null) {
+          if (tb == null) {
+            continue;
+          }
+          /* the channel holds its own reference to the pooled column arrays of the batch. */
+          tb.retain();
+          if (coalescers[i] != null) {
+            coalescers[i].add(tb, pendingTuplesToSend.get(i));
+          } else {
             pendingTuplesToSend.get(i).add(tb);
           }
         }
+      } else if (coalescers[i] != null) {
+        coalescers[i].flush(pendingTuplesToSend.get(i));
+      }
       if (!ioChannelsAvail[i] && mode.equals(FTMode.REJOIN)) {
         continue;
       }
@@ -278,8 +298,12 @@ public abstract class Producer extends RootOperator implements StreamingStateful
           tb = triedToSendTuples.get(i).update(tb);
         }
         try {
-          if (tb != null) {
-            writeMessage(i, tb);
+          if (tb != null
+              && writeMessage(i, tb) != null
+              && coalescers[i] != null
+              && !mode.equals(FTMode.REJOIN)) {
+            /* the batch is serialized and kept by nobody, so its column arrays can be reused. */
+            tb.release();
           }
         } catch (IllegalStateException e) {
           if (mode.equals(FTMode.ABANDON) || mode.equals(FTMode.REJOIN)) {
@@ -313,10 +337,28 @@ public abstract class Producer extends RootOperator implements StreamingStateful
     return null;
   }
 
+  /**
+   * The child has no tuples ready, so send the batches held back instead of delaying them.
+   *
+   * @throws DbException if any error occurs.
+   */
+  @Override
+  protected final void childNotReady() throws DbException {
+    writePartitionsIntoChannels(null);
+  }
+
   @Override
   public final void cleanup() throws DbException {
     for (int i = 0; i < localizedOutputIDs.length; i++) {
       if (ioChannels[i] != null) {
+        if (LOGGER.isDebugEnabled()) {
+          LOGGER.debug(
+              "{} wrote {} frames, {} bytes per frame, {} frames per second",
+              ioChannels[i],
+              ioChannels[i].getNumFramesWritten(),
+              ioChannels[i].getBytesPerFrame(),
+              ioChannels[i].getFramesPerSecond());
+        }
         /* RecoverProducer may detach & set its channel to be null, shouldn't call release here */
         ioChannels[i].release();
       }
@@ -0,0 +1,88 @@
+package edu.washington.escience.myria.operator.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import edu.washington.escience.myria.MyriaConstants;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleUtils;
+
+/**
+ * Merges consecutive small {@link TupleBatch}es sent through one output channel of a {@link Producer}, so that they
+ * go out as one frame instead of one frame, and often one system call, each. Small batches are held back until they
+ * add up to {@link MyriaConstants#TUPLE_BATCH_DEFAULT_SIZE} tuples or {@link MyriaConstants#PRODUCER_COALESCE_BYTES}
+ * bytes, until the first of them is {@link MyriaConstants#PRODUCER_COALESCE_DELAY_MS} old, or until the producer
+ * {@link #flush}es them, e.g., because its child has no more tuples ready.
+ */
+final class TupleBatchCoalescer {
+
+  /** The schema of the batches. */
+  private final Schema schema;
+  /** The batches held back, in order. */
+  private final List<TupleBatch> held;
+  /** The number of tuples held back. */
+  private int heldTuples;
+  /** The estimated size of the tuples held back, in bytes. */
+  private long heldBytes;
+  /** When the first batch held back arrived, in nanoseconds. */
+  private long firstHeldNanos;
+
+  /**
+   * @param schema the schema of the batches.
+   */
+  TupleBatchCoalescer(final Schema schema) {
+    this.schema = schema;
+    held = new ArrayList<>();
+  }
+
+  /**
+   * Offers a batch to be sent, after the batches held back.
+   *
+   * @param tb the batch.
+   * @param out the queue of batches to be sent, to which the batch, or batches merged with it, are added.
+   */
+  void add(final TupleBatch tb, final Queue<TupleBatch> out) {
+    if (tb.isEOI()) {
+      flush(out);
+      out.add(tb);
+      return;
+    }
+    final long bytes = TupleUtils.sizeOf(tb);
+    if (held.isEmpty()
+        && (tb.numTuples() >= MyriaConstants.TUPLE_BATCH_DEFAULT_SIZE
+            || bytes >= MyriaConstants.PRODUCER_COALESCE_BYTES)) {
+      out.add(tb);
+      return;
+    }
+    if (held.isEmpty()) {
+      firstHeldNanos = System.nanoTime();
+    }
+    held.add(tb);
+    heldTuples += tb.numTuples();
+    heldBytes += bytes;
+    if (heldTuples >= MyriaConstants.TUPLE_BATCH_DEFAULT_SIZE
+        || heldBytes >= MyriaConstants.PRODUCER_COALESCE_BYTES
+        || System.nanoTime() - firstHeldNanos
+            >= TimeUnit.MILLISECONDS.toNanos(MyriaConstants.PRODUCER_COALESCE_DELAY_MS)) {
+      flush(out);
+    }
+  }
+
+  /**
+   * Sends the batches held back, merged into one, which takes over their references to pooled column arrays.
+   *
+   * @param out the queue of batches to be sent.
+   */
+  void flush(final Queue<TupleBatch> out) {
+    if (held.isEmpty()) {
+      return;
+    }
+    out.add(TupleBatch.concat(schema, held));
+    held.clear();
+    heldTuples = 0;
+    heldBytes = 0;
+  }
+}
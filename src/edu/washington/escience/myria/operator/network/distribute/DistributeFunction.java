@@ -25,6 +25,8 @@ import edu.washington.escience.myria.storage.TupleBatch;
   @Type(value = BroadcastDistributeFunction.class, name = "Broadcast"),
   @Type(value = HyperCubeDistributeFunction.class, name = "HyperCube"),
   @Type(value = HashDistributeFunction.class, name = "Hash"),
+  @Type(value = RangeDistributeFunction.class, name = "Range"),
+  @Type(value = SkewAwareHashDistributeFunction.class, name = "SkewAwareHash"),
   @Type(value = RoundRobinDistributeFunction.class, name = "RoundRobin"),
   @Type(value = IdentityDistributeFunction.class, name = "Identity")
 })
@@ -4,11 +4,14 @@ import java.io.Serializable;
 
 import javax.annotation.Nonnull;
 
+import org.joda.time.DateTime;
+
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonSubTypes.Type;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.google.common.base.Preconditions;
 
+import edu.washington.escience.myria.storage.AppendableTable;
 import edu.washington.escience.myria.storage.TupleBatch;
 
 /** The ShuffleProducer class uses an instance of the PartitionFunction class to decide which worker a tuple should be
@@ -47,4 +50,39 @@ public abstract class PartitionFunction implements Serializable {
     Preconditions.checkArgument(numPartitions > 0, "numPartitions must be > 0");
     this.numPartitions = numPartitions;
   }
+
+  /** Appends a string-encoded key value, e.g., given in a plan, to a column of a table of keys.
+   *
+   * @param keys the table of keys.
+   * @param column the column.
+   * @param value the string-encoded value. */
+  protected static void putKeyValue(
+      final AppendableTable keys, final int column, final String value) {
+    switch (keys.getSchema().getColumnType(column)) {
+      case BOOLEAN_TYPE:
+        keys.putBoolean(column, Boolean.parseBoolean(value));
+        break;
+      case DOUBLE_TYPE:
+        keys.putDouble(column, Double.parseDouble(value));
+        break;
+      case FLOAT_TYPE:
+        keys.putFloat(column, Float.parseFloat(value));
+        break;
+      case INT_TYPE:
+        keys.putInt(column, Integer.parseInt(value));
+        break;
+      case LONG_TYPE:
+        keys.putLong(column, Long.parseLong(value));
+        break;
+      case STRING_TYPE:
+        keys.putString(column, value);
+        break;
+      case DATETIME_TYPE:
+        keys.putDateTime(column, DateTime.parse(value));
+        break;
+      default:
+        throw new IllegalArgumentException(
+            "keys of type " + keys.getSchema().getColumnType(column) + " are not supported");
+    }
+  }
 }
@@ -0,0 +1,94 @@
+package edu.washington.escience.myria.operator.network.distribute;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.util.MyriaArrayUtils;
+
+/**
+ * Range distribute function: worker i gets the i-th key range cut by the splitters, so a relation distributed by it and
+ * sorted on each worker is sorted across the sequence of workers. With fewer ranges than workers, the last workers get
+ * no tuples. See {@link RangePartitionFunction}.
+ */
+public final class RangeDistributeFunction extends DistributeFunction {
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** The columns of the sort key. */
+  @JsonProperty private final int[] indexes;
+
+  /** True for each column of the sort key that is sorted ascending. */
+  @JsonProperty private final boolean[] ascending;
+
+  /** The splitter keys, in order, each a list of one value per index. */
+  @JsonProperty private final List<List<String>> splitters;
+
+  /**
+   * @param indexes the columns of the sort key.
+   * @param ascending true for each column of the sort key that is sorted ascending. Null means all ascending.
+   * @param splitters the splitter keys, in order, each a list of one value per index, e.g., as chosen by
+   *        {@link RangePartitionFunction#splittersOf} from a sample. There must be fewer splitters than workers.
+   */
+  @JsonCreator
+  public RangeDistributeFunction(
+      @JsonProperty("indexes") final int[] indexes,
+      @JsonProperty("ascending") final boolean[] ascending,
+      @JsonProperty("splitters") final List<List<String>> splitters) {
+    super(
+        new RangePartitionFunction(
+            indexes,
+            MoreObjects.firstNonNull(ascending, allAscending(indexes.length)),
+            MoreObjects.firstNonNull(splitters, ImmutableList.<List<String>>of())));
+    this.indexes = indexes;
+    this.ascending = MoreObjects.firstNonNull(ascending, allAscending(indexes.length));
+    this.splitters = MoreObjects.firstNonNull(splitters, ImmutableList.<List<String>>of());
+  }
+
+  /**
+   * @param length the number of columns.
+   * @return ascending flags for all the columns.
+   */
+  private static boolean[] allAscending(final int length) {
+    boolean[] ret = new boolean[length];
+    Arrays.fill(ret, true);
+    return ret;
+  }
+
+  @Override
+  public void setDestinations(final int numWorker, final int numOperatorId) {
+    Preconditions.checkArgument(
+        splitters.size() < numWorker,
+        "%s splitters make more ranges than the %s workers",
+        splitters.size(),
+        numWorker);
+    partitionToDestination = MyriaArrayUtils.create2DVerticalIndexList(numWorker);
+    partitionFunction.setNumPartitions(numWorker);
+  }
+
+  /**
+   * @return indexes
+   */
+  public int[] getIndexes() {
+    return indexes;
+  }
+
+  /**
+   * @return true for each column of the sort key that is sorted ascending.
+   */
+  public boolean[] getAscending() {
+    return ascending;
+  }
+
+  /**
+   * @return the splitter keys, in order.
+   */
+  public List<List<String>> getSplitters() {
+    return splitters;
+  }
+}
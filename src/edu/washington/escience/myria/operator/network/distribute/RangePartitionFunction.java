@@ -0,0 +1,235 @@
+package edu.washington.escience.myria.operator.network.distribute;
+
+import java.util.BitSet;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.storage.MutableTupleBuffer;
+import edu.washington.escience.myria.storage.ReadableTable;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleUtils;
+import edu.washington.escience.myria.util.MyriaArrayUtils;
+
+/**
+ * Range partitioning on a sort key: given k ordered splitter keys, partition i gets the tuples whose key is at or after
+ * the (i-1)-th splitter and before the i-th one, so the k+1 partitions are disjoint, ordered key ranges. Sorting each
+ * partition then sorts the whole relation, with no merge on a single node. Any partitions after the last range are
+ * empty.
+ *
+ * The splitters are usually chosen by {@link #splittersOf} from a sample of the relation, so that the partitions have
+ * about the same size.
+ */
+public final class RangePartitionFunction extends PartitionFunction {
+
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** The columns of the sort key. */
+  private final int[] indexes;
+
+  /** True for each column of the sort key that is sorted ascending. */
+  private final boolean[] ascending;
+
+  /** The splitter keys, in order, one string-encoded value per index. */
+  private final ImmutableList<ImmutableList<String>> splitters;
+
+  /** The splitter keys, parsed with the schema of the first partitioned batch. */
+  private transient MutableTupleBuffer splitterKeys;
+
+  /** The columns of {@link #splitterKeys}. */
+  private transient int[] keyColumns;
+
+  /**
+   * @param indexes the columns of the sort key.
+   * @param ascending true for each column of the sort key that is sorted ascending.
+   * @param splitters the splitter keys, in order, each a list of one string-encoded value per index.
+   */
+  public RangePartitionFunction(
+      final int[] indexes,
+      final boolean[] ascending,
+      final List<? extends List<String>> splitters) {
+    Preconditions.checkArgument(
+        indexes.length > 0, "RangePartitionFunction requires at least 1 field to partition on");
+    Preconditions.checkArgument(
+        indexes.length == ascending.length,
+        "RangePartitionFunction requires one ascending flag for each of the %s fields",
+        indexes.length);
+    for (int i = 0; i < indexes.length; ++i) {
+      Preconditions.checkArgument(
+          indexes[i] >= 0,
+          "RangePartitionFunction field index %s cannot take negative value %s",
+          i,
+          indexes[i]);
+    }
+    MyriaArrayUtils.checkSet(indexes);
+    ImmutableList.Builder<ImmutableList<String>> keys = ImmutableList.builder();
+    for (List<String> key : splitters) {
+      Preconditions.checkArgument(
+          key.size() == indexes.length,
+          "splitter %s does not have one value for each of the %s partitioning fields",
+          key,
+          indexes.length);
+      keys.add(ImmutableList.copyOf(key));
+    }
+    this.indexes = indexes;
+    this.ascending = ascending;
+    this.splitters = keys.build();
+  }
+
+  /**
+   * @return the columns of the sort key.
+   */
+  public int[] getIndexes() {
+    return indexes;
+  }
+
+  /**
+   * @return true for each column of the sort key that is sorted ascending.
+   */
+  public boolean[] getAscending() {
+    return ascending;
+  }
+
+  /**
+   * @return the splitter keys, in order.
+   */
+  public List<? extends List<String>> getSplitters() {
+    return splitters;
+  }
+
+  /**
+   * Parse the splitter keys with the types of the key fields of the given schema, and check that they are in order.
+   *
+   * @param schema the schema of the partitioned data.
+   */
+  private void parseSplitters(final Schema schema) {
+    Preconditions.checkState(
+        numPartitions() > splitters.size(),
+        "%s splitters make more ranges than the %s partitions",
+        splitters.size(),
+        numPartitions());
+    Schema keySchema = schema.getSubSchema(indexes);
+    MutableTupleBuffer keys = new MutableTupleBuffer(keySchema);
+    for (List<String> key : splitters) {
+      for (int i = 0; i < indexes.length; ++i) {
+        putKeyValue(keys, i, key.get(i));
+      }
+    }
+    keyColumns = MyriaArrayUtils.range(0, indexes.length);
+    for (int i = 1; i < keys.numTuples(); ++i) {
+      Preconditions.checkArgument(
+          TupleUtils.tupleCompare(keys, keyColumns, i - 1, keys, keyColumns, i, ascending) <= 0,
+          "splitter %s is before the previous splitter %s",
+          splitters.get(i),
+          splitters.get(i - 1));
+    }
+    splitterKeys = keys;
+  }
+
+  /**
+   * @param tb the batch of the tuple.
+   * @param row the row of the tuple.
+   * @return the partition of the tuple, i.e., the number of splitters at or before its key.
+   */
+  private int partitionOf(final TupleBatch tb, final int row) {
+    int low = 0;
+    int high = splitterKeys.numTuples();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (TupleUtils.tupleCompare(tb, indexes, row, splitterKeys, keyColumns, mid, ascending)
+          >= 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public TupleBatch[] partition(@Nonnull final TupleBatch tb) {
+    if (splitterKeys == null) {
+      parseSplitters(tb.getSchema());
+    }
+    BitSet[] partitions = new BitSet[numPartitions()];
+    for (int i = 0; i < partitions.length; ++i) {
+      partitions[i] = new BitSet();
+    }
+    for (int i = 0; i < tb.numTuples(); i++) {
+      partitions[partitionOf(tb, i)].set(i);
+    }
+    TupleBatch[] tbs = new TupleBatch[numPartitions()];
+    for (int i = 0; i < tbs.length; ++i) {
+      tbs[i] = tb.filter(partitions[i]);
+    }
+    return tbs;
+  }
+
+  /**
+   * Choose the splitters that cut a sample of a relation into ranges of equal size, which estimate ranges of about
+   * equal size of the whole relation, e.g., from the output of a {@link edu.washington.escience.myria.operator.Sample}
+   * of each worker.
+   *
+   * @param sample the sample.
+   * @param indexes the columns of the sort key.
+   * @param ascending true for each column of the sort key that is sorted ascending.
+   * @param numPartitions the number of ranges.
+   * @return numPartitions - 1 splitter keys, in order, each a list of one string-encoded value per index, or fewer if
+   *         the sample is too small.
+   */
+  public static List<List<String>> splittersOf(
+      final List<TupleBatch> sample,
+      final int[] indexes,
+      final boolean[] ascending,
+      final int numPartitions) {
+    Preconditions.checkArgument(numPartitions > 0, "numPartitions must be positive");
+    if (sample.isEmpty()) {
+      return ImmutableList.of();
+    }
+    final int[] keyColumns = MyriaArrayUtils.range(0, indexes.length);
+    final MutableTupleBuffer keys =
+        new MutableTupleBuffer(sample.get(0).getSchema().getSubSchema(indexes));
+    for (TupleBatch tb : sample) {
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        for (int i = 0; i < indexes.length; ++i) {
+          keys.put(i, tb.asColumn(indexes[i]), row);
+        }
+      }
+    }
+    final List<Integer> rows = Ints.asList(MyriaArrayUtils.range(0, keys.numTuples()));
+    rows.sort(
+        (row1, row2) ->
+            TupleUtils.tupleCompare(keys, keyColumns, row1, keys, keyColumns, row2, ascending));
+
+    ImmutableList.Builder<List<String>> ret = ImmutableList.builder();
+    int previous = -1;
+    for (int p = 1; p < numPartitions; ++p) {
+      final int position = (int) ((long) p * rows.size() / numPartitions);
+      if (position >= rows.size() || position == previous) {
+        continue;
+      }
+      previous = position;
+      ret.add(keyOf(keys, rows.get(position)));
+    }
+    return ret.build();
+  }
+
+  /**
+   * @param keys the table of the key.
+   * @param row the row of the key.
+   * @return the string-encoded values of the key.
+   */
+  private static List<String> keyOf(final ReadableTable keys, final int row) {
+    ImmutableList.Builder<String> key = ImmutableList.builder();
+    for (int column = 0; column < keys.numColumns(); ++column) {
+      key.add(String.valueOf(keys.getObject(column, row)));
+    }
+    return key.build();
+  }
+}
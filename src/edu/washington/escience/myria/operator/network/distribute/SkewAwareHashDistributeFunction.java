@@ -0,0 +1,90 @@
+package edu.washington.escience.myria.operator.network.distribute;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.util.MyriaArrayUtils;
+
+/**
+ * Hash distribute function that splits the given heavy hitter keys instead of sending each of them to a single worker.
+ * See {@link SkewAwareHashPartitionFunction}.
+ */
+public final class SkewAwareHashDistributeFunction extends DistributeFunction {
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** The indices used for partitioning. */
+  @JsonProperty private final int[] indexes;
+
+  /** The index of the chosen hashcode in <code>HashUtils</code>. */
+  @JsonProperty private final int seedIndex;
+
+  /** The heavy hitter keys, each a list of one value per index. */
+  @JsonProperty private final List<List<String>> heavyHitters;
+
+  /** If tuples with a heavy hitter key are sent to all workers instead of being spread over them. */
+  @JsonProperty private final boolean broadcastHeavyHitters;
+
+  /**
+   * @param indexes the indices used for partitioning.
+   * @param seedIndex the index of chosen hash seed, 0 if null.
+   * @param heavyHitters the heavy hitter keys, each a list of one value per index.
+   * @param broadcastHeavyHitters if tuples with a heavy hitter key are sent to all workers, e.g. for the side of a join
+   *        that does not have the skew. Otherwise they are spread round-robin over all workers.
+   */
+  @JsonCreator
+  public SkewAwareHashDistributeFunction(
+      @JsonProperty("indexes") final int[] indexes,
+      @JsonProperty("seedIndex") final Integer seedIndex,
+      @JsonProperty("heavyHitters") final List<List<String>> heavyHitters,
+      @JsonProperty("broadcastHeavyHitters") final Boolean broadcastHeavyHitters) {
+    super(
+        new SkewAwareHashPartitionFunction(
+            indexes,
+            MoreObjects.firstNonNull(seedIndex, 0),
+            MoreObjects.firstNonNull(heavyHitters, ImmutableList.<List<String>>of()),
+            MoreObjects.firstNonNull(broadcastHeavyHitters, Boolean.FALSE)));
+    this.indexes = indexes;
+    this.seedIndex = MoreObjects.firstNonNull(seedIndex, 0);
+    this.heavyHitters = MoreObjects.firstNonNull(heavyHitters, ImmutableList.<List<String>>of());
+    this.broadcastHeavyHitters = MoreObjects.firstNonNull(broadcastHeavyHitters, Boolean.FALSE);
+  }
+
+  @Override
+  public void setDestinations(final int numWorker, final int numOperatorId) {
+    partitionToDestination = MyriaArrayUtils.create2DVerticalIndexList(numWorker);
+    partitionFunction.setNumPartitions(numWorker);
+  }
+
+  /**
+   * @return indexes
+   */
+  public int[] getIndexes() {
+    return indexes;
+  }
+
+  /**
+   * @return the index of the chosen hash seed.
+   */
+  public int getSeedIndex() {
+    return seedIndex;
+  }
+
+  /**
+   * @return the heavy hitter keys.
+   */
+  public List<List<String>> getHeavyHitters() {
+    return heavyHitters;
+  }
+
+  /**
+   * @return if tuples with a heavy hitter key are sent to all workers.
+   */
+  public boolean isBroadcastHeavyHitters() {
+    return broadcastHeavyHitters;
+  }
+}
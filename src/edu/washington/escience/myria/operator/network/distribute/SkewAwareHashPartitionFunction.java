@@ -0,0 +1,177 @@
+package edu.washington.escience.myria.operator.network.distribute;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.Nonnull;
+
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+import edu.washington.escience.myria.util.HashUtils;
+import edu.washington.escience.myria.util.MyriaArrayUtils;
+
+/**
+ * Hash partitioning that treats a given set of heavy hitter keys specially. Tuples with any other key go to the same
+ * partition as with {@link HashPartitionFunction}, so the two functions are co-partitioned on those keys. Tuples with a
+ * heavy hitter key are either spread round-robin over all partitions, or copied to all partitions.
+ *
+ * To join a skewed relation R with S, R is distributed by spreading its heavy hitters and S by copying them: every
+ * spread R tuple still finds all of its matches, and the load of a hot key is shared by all workers.
+ */
+public final class SkewAwareHashPartitionFunction extends PartitionFunction {
+
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** The indices used for partitioning. */
+  private final int[] indexes;
+
+  /** The heavy hitter keys, one string-encoded value per index. */
+  private final ImmutableList<ImmutableList<String>> heavyHitters;
+
+  /** The index of the chosen hashcode in <code>HashUtils</code>. */
+  private final int seedIndex;
+
+  /** If true, tuples with a heavy hitter key are copied to all partitions instead of spread over them. */
+  private final boolean broadcastHeavyHitters;
+
+  /** Hash codes of the heavy hitter keys, computed from the schema of the first partitioned batch. */
+  private transient IntHashSet heavyHitterHashCodes;
+
+  /** The partition the next spread tuple goes to. */
+  private transient int nextSpreadPartition;
+
+  /**
+   * @param indexes the indices used for partitioning.
+   * @param heavyHitters the heavy hitter keys, each a list of one string-encoded value per index.
+   * @param broadcastHeavyHitters if tuples with a heavy hitter key are copied to all partitions, instead of being
+   *        spread round-robin over them.
+   */
+  public SkewAwareHashPartitionFunction(
+      final int[] indexes,
+      final List<? extends List<String>> heavyHitters,
+      final boolean broadcastHeavyHitters) {
+    this(indexes, 0, heavyHitters, broadcastHeavyHitters);
+  }
+
+  /**
+   * @param indexes the indices used for partitioning.
+   * @param seedIndex the index of chosen hash seed, the same as the {@link HashPartitionFunction} to be co-partitioned
+   *        with.
+   * @param heavyHitters the heavy hitter keys, each a list of one string-encoded value per index.
+   * @param broadcastHeavyHitters if tuples with a heavy hitter key are copied to all partitions, instead of being
+   *        spread round-robin over them.
+   */
+  public SkewAwareHashPartitionFunction(
+      final int[] indexes,
+      final int seedIndex,
+      final List<? extends List<String>> heavyHitters,
+      final boolean broadcastHeavyHitters) {
+    Preconditions.checkArgument(
+        indexes.length > 0, "SkewAwareHashPartitionFunction requires at least 1 field to hash");
+    for (int i = 0; i < indexes.length; ++i) {
+      Preconditions.checkArgument(
+          indexes[i] >= 0,
+          "SkewAwareHashPartitionFunction field index %s cannot take negative value %s",
+          i,
+          indexes[i]);
+    }
+    MyriaArrayUtils.checkSet(indexes);
+    ImmutableList.Builder<ImmutableList<String>> keys = ImmutableList.builder();
+    for (List<String> key : heavyHitters) {
+      Preconditions.checkArgument(
+          key.size() == indexes.length,
+          "heavy hitter %s does not have one value for each of the %s partitioning fields",
+          key,
+          indexes.length);
+      keys.add(ImmutableList.copyOf(key));
+    }
+    this.indexes = indexes;
+    this.seedIndex = seedIndex % HashUtils.NUM_OF_HASHFUNCTIONS;
+    this.heavyHitters = keys.build();
+    this.broadcastHeavyHitters = broadcastHeavyHitters;
+  }
+
+  /**
+   * @return the field indexes on which tuples will be hash partitioned.
+   */
+  public int[] getIndexes() {
+    return indexes;
+  }
+
+  /**
+   * @return the heavy hitter keys.
+   */
+  public List<? extends List<String>> getHeavyHitters() {
+    return heavyHitters;
+  }
+
+  /**
+   * @return if tuples with a heavy hitter key are copied to all partitions.
+   */
+  public boolean isBroadcastHeavyHitters() {
+    return broadcastHeavyHitters;
+  }
+
+  /**
+   * Hash the heavy hitter keys the same way the key fields of a tuple of the given schema are hashed.
+   *
+   * @param schema the schema of the partitioned data.
+   */
+  private void hashHeavyHitters(final Schema schema) {
+    heavyHitterHashCodes = new IntHashSet();
+    nextSpreadPartition = ThreadLocalRandom.current().nextInt(numPartitions());
+    if (heavyHitters.isEmpty()) {
+      return;
+    }
+    Schema keySchema = schema.getSubSchema(indexes);
+    TupleBatchBuffer keys = new TupleBatchBuffer(keySchema);
+    for (List<String> key : heavyHitters) {
+      for (int i = 0; i < indexes.length; ++i) {
+        putKeyValue(keys, i, key.get(i));
+      }
+    }
+    int[] keyColumns = MyriaArrayUtils.range(0, indexes.length);
+    for (TupleBatch tb : keys.getAll()) {
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        heavyHitterHashCodes.add(HashUtils.hashSubRow(tb, keyColumns, row, seedIndex));
+      }
+    }
+  }
+
+  @Override
+  public TupleBatch[] partition(@Nonnull final TupleBatch tb) {
+    if (heavyHitterHashCodes == null) {
+      hashHeavyHitters(tb.getSchema());
+    }
+    BitSet[] partitions = new BitSet[numPartitions()];
+    for (int i = 0; i < partitions.length; ++i) {
+      partitions[i] = new BitSet();
+    }
+    for (int i = 0; i < tb.numTuples(); i++) {
+      int hashCode = HashUtils.hashSubRow(tb, indexes, i, seedIndex);
+      if (!heavyHitterHashCodes.contains(hashCode)) {
+        partitions[Math.floorMod(hashCode, numPartitions())].set(i);
+      } else if (broadcastHeavyHitters) {
+        for (BitSet partition : partitions) {
+          partition.set(i);
+        }
+      } else {
+        partitions[nextSpreadPartition].set(i);
+        nextSpreadPartition = (nextSpreadPartition + 1) % numPartitions();
+      }
+    }
+    TupleBatch[] tbs = new TupleBatch[numPartitions()];
+    for (int i = 0; i < tbs.length; ++i) {
+      tbs[i] = tb.filter(partitions[i]);
+    }
+    return tbs;
+  }
+}
@@ -11,6 +11,7 @@ import org.jboss.netty.handler.execution.ExecutionHandler;
 
 import edu.washington.escience.myria.parallel.ipc.IPCConnectionPool;
 import edu.washington.escience.myria.parallel.ipc.IPCMessageHandler;
+import edu.washington.escience.myria.parallel.ipc.SharedMemoryFrameHandler;
 
 /**
  * Factories of pipelines.
@@ -59,6 +60,11 @@ public final class IPCPipelineFactories {
    * Client side pipeline factory for the master.
    * */
   public static class MasterClientPipelineFactory implements ChannelPipelineFactory {
+    /**
+     * the owner IPCConnectionPool.
+     * */
+    private final IPCConnectionPool pool;
+
     /**
      * IPC session management.
      * */
@@ -75,6 +81,7 @@ public final class IPCPipelineFactories {
      * */
     MasterClientPipelineFactory(
         final IPCConnectionPool pool, final ExecutorService pipelineExecutor) {
+      this.pool = pool;
       ipcMessageHandler = new IPCMessageHandler(pool);
       if (pipelineExecutor != null) {
         pipelineExecutionHandler = new ExecutionHandler(pipelineExecutor);
@@ -88,6 +95,7 @@ public final class IPCPipelineFactories {
       final ChannelPipeline p = Channels.pipeline();
       p.addLast("frameDecoder", new ProtobufVarint32FrameDecoder()); // upstream 2
       p.addLast("frameEncoder", FRAME_ENCODER); // downstream 2
+      p.addLast("sharedMemory", new SharedMemoryFrameHandler(pool)); // upstream 3, downstream 1
 
       if (pipelineExecutionHandler != null) {
         p.addLast("executor", pipelineExecutionHandler);
@@ -27,6 +27,7 @@ import edu.washington.escience.myria.operator.Operator;
 import edu.washington.escience.myria.operator.RootOperator;
 import edu.washington.escience.myria.operator.SymmetricHashJoin;
 import edu.washington.escience.myria.operator.network.Consumer;
+import edu.washington.escience.myria.operator.network.EOSController;
 import edu.washington.escience.myria.operator.network.Producer;
 import edu.washington.escience.myria.parallel.ipc.IPCConnectionPool;
 import edu.washington.escience.myria.parallel.ipc.StreamIOChannelID;
@@ -841,6 +842,20 @@ public final class LocalFragment {
       final long timestamp,
       final Operator op,
       final SubQueryId subQueryId) {
+    if (op instanceof EOSController) {
+      List<Long> latencies = ((EOSController) op).getIterationLatenciesMillis();
+      addResourceReport(
+          stats, timestamp, op, "numIterationsFinished", latencies.size(), subQueryId);
+      if (!latencies.isEmpty()) {
+        addResourceReport(
+            stats,
+            timestamp,
+            op,
+            "lastIterationMillis",
+            latencies.get(latencies.size() - 1),
+            subQueryId);
+      }
+    }
     if (op instanceof Producer) {
       addResourceReport(
           stats,
@@ -0,0 +1,230 @@
+package edu.washington.escience.myria.parallel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+import edu.washington.escience.myria.parallel.ipc.StreamIOChannelID;
+
+/**
+ * A {@link SubQueryPlan} in the form it is shipped to a worker: a template, i.e., the serialized plan with its
+ * {@link ExchangePairID}s and the {@link StreamIOChannelID}s built from them replaced by placeholders, and the
+ * parameters that fill in the placeholders.
+ *
+ * The subqueries of an iterative program, e.g., the iterations of a DoWhile, differ only in the IDs of their
+ * exchange operators, so they share templates. Workers cache the templates they receive, and the master only ships a
+ * template to a worker that does not hold it yet; otherwise it sends the hash of the template and the parameters.
+ */
+public final class PlanTemplate implements Serializable {
+
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** The hash of the template. */
+  private final String hash;
+  /** The template, or null if the worker already holds it. */
+  @Nullable private final byte[] template;
+  /** The ExchangePairIDs of the plan, in the order of their placeholders. */
+  private final long[] exchangePairIds;
+
+  /**
+   * @param hash the hash of the template.
+   * @param template the template, or null if the worker already holds it.
+   * @param exchangePairIds the ExchangePairIDs of the plan, in the order of their placeholders.
+   */
+  private PlanTemplate(
+      final String hash, @Nullable final byte[] template, final long[] exchangePairIds) {
+    this.hash = hash;
+    this.template = template;
+    this.exchangePairIds = exchangePairIds;
+  }
+
+  /** Stands for the ExchangePairID with the given index in a template. */
+  private static final class Placeholder implements Serializable {
+    /** Required for Java serialization. */
+    private static final long serialVersionUID = 1L;
+    /** The index of the ExchangePairID. */
+    private final int index;
+
+    /**
+     * @param index the index of the ExchangePairID.
+     */
+    private Placeholder(final int index) {
+      this.index = index;
+    }
+  }
+
+  /** Stands for a StreamIOChannelID whose stream is the ExchangePairID with the given index in a template. */
+  private static final class ChannelPlaceholder implements Serializable {
+    /** Required for Java serialization. */
+    private static final long serialVersionUID = 1L;
+    /** The index of the ExchangePairID. */
+    private final int index;
+    /** The remote worker of the channel. */
+    private final int remoteID;
+
+    /**
+     * @param index the index of the ExchangePairID.
+     * @param remoteID the remote worker of the channel.
+     */
+    private ChannelPlaceholder(final int index, final int remoteID) {
+      this.index = index;
+      this.remoteID = remoteID;
+    }
+  }
+
+  /** Serializes a plan, replacing its ExchangePairIDs and StreamIOChannelIDs by placeholders. */
+  private static final class TemplateOutputStream extends ObjectOutputStream {
+    /** The index of each ExchangePairID found so far. */
+    private final Map<Long, Integer> indexes = new LinkedHashMap<>();
+
+    /**
+     * @param out the stream the template is written to.
+     * @throws IOException if there is an error writing the stream header.
+     */
+    private TemplateOutputStream(final OutputStream out) throws IOException {
+      super(out);
+      enableReplaceObject(true);
+    }
+
+    /**
+     * @param id an ExchangePairID.
+     * @return the index of its placeholder.
+     */
+    private int indexOf(final long id) {
+      Integer index = indexes.get(id);
+      if (index == null) {
+        index = indexes.size();
+        indexes.put(id, index);
+      }
+      return index;
+    }
+
+    @Override
+    protected Object replaceObject(final Object obj) {
+      if (obj instanceof ExchangePairID) {
+        return new Placeholder(indexOf(((ExchangePairID) obj).getLong()));
+      }
+      if (obj instanceof StreamIOChannelID) {
+        final StreamIOChannelID channel = (StreamIOChannelID) obj;
+        return new ChannelPlaceholder(indexOf(channel.getStreamID()), channel.getRemoteID());
+      }
+      return obj;
+    }
+  }
+
+  /** Deserializes a plan, replacing the placeholders of a template by ExchangePairIDs. */
+  private static final class TemplateInputStream extends ObjectInputStream {
+    /** The ExchangePairIDs, in the order of their placeholders. */
+    private final long[] exchangePairIds;
+
+    /**
+     * @param in the stream the template is read from.
+     * @param exchangePairIds the ExchangePairIDs, in the order of their placeholders.
+     * @throws IOException if there is an error reading the stream header.
+     */
+    private TemplateInputStream(final InputStream in, final long[] exchangePairIds)
+        throws IOException {
+      super(in);
+      this.exchangePairIds = exchangePairIds;
+      enableResolveObject(true);
+    }
+
+    /**
+     * @param index the index of a placeholder.
+     * @return the ExchangePairID that fills in the placeholder.
+     * @throws InvalidObjectException if there is no such ExchangePairID.
+     */
+    private long idOf(final int index) throws InvalidObjectException {
+      if (index >= exchangePairIds.length) {
+        throw new InvalidObjectException("No ExchangePairID for placeholder " + index);
+      }
+      return exchangePairIds[index];
+    }
+
+    @Override
+    protected Object resolveObject(final Object obj) throws IOException {
+      if (obj instanceof Placeholder) {
+        return ExchangePairID.fromExisting(idOf(((Placeholder) obj).index));
+      }
+      if (obj instanceof ChannelPlaceholder) {
+        final ChannelPlaceholder channel = (ChannelPlaceholder) obj;
+        return new StreamIOChannelID(idOf(channel.index), channel.remoteID);
+      }
+      return obj;
+    }
+  }
+
+  /**
+   * @param plan a plan.
+   * @return the template of the plan and its parameters.
+   * @throws IOException if the plan cannot be serialized.
+   */
+  public static PlanTemplate of(final SubQueryPlan plan) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final TemplateOutputStream out = new TemplateOutputStream(bytes);
+    out.writeObject(plan);
+    out.close();
+    final byte[] template = bytes.toByteArray();
+    return new PlanTemplate(
+        Hashing.sha256().hashBytes(template).toString(),
+        template,
+        Longs.toArray(out.indexes.keySet()));
+  }
+
+  /**
+   * @return the hash of the template.
+   */
+  public String getHash() {
+    return hash;
+  }
+
+  /**
+   * @return this plan without its template, for a worker that already holds the template.
+   */
+  public PlanTemplate withoutTemplate() {
+    return new PlanTemplate(hash, null, exchangePairIds);
+  }
+
+  /**
+   * Instantiates the plan at a worker, caching the template if it was shipped.
+   *
+   * @param cache the templates cached by the worker.
+   * @return the plan.
+   * @throws UnknownPlanTemplateException if the template was not shipped and is not cached.
+   * @throws IOException if the template cannot be deserialized.
+   * @throws ClassNotFoundException if the template refers to an unknown class.
+   */
+  public SubQueryPlan instantiate(final PlanTemplateCache<byte[]> cache)
+      throws IOException, ClassNotFoundException {
+    byte[] bytes;
+    synchronized (cache) {
+      if (template != null) {
+        cache.put(hash, template);
+        bytes = template;
+      } else {
+        bytes = cache.get(hash);
+      }
+    }
+    if (bytes == null) {
+      throw new UnknownPlanTemplateException(hash);
+    }
+    try (ObjectInputStream in =
+        new TemplateInputStream(new ByteArrayInputStream(bytes), exchangePairIds)) {
+      return (SubQueryPlan) in.readObject();
+    }
+  }
+}
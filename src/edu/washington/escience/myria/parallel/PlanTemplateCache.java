@@ -0,0 +1,33 @@
+package edu.washington.escience.myria.parallel;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link PlanTemplate}s cached by a worker, keyed by their hashes and evicted in least recently used order. The
+ * master mirrors the cache of every worker with a cache of the same capacity: since both sides look up and insert the
+ * same templates in the same order, the master knows which templates a worker holds without asking it.
+ *
+ * @param <V> the type of the cached values, the templates themselves at the worker.
+ */
+public final class PlanTemplateCache<V> extends LinkedHashMap<String, V> {
+
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** The maximum number of cached templates. */
+  private final int capacity;
+
+  /**
+   * @param capacity the maximum number of cached templates.
+   */
+  public PlanTemplateCache(final int capacity) {
+    super(capacity + 1, 1.0f, true);
+    this.capacity = capacity;
+  }
+
+  @Override
+  protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+    return size() > capacity;
+  }
+}
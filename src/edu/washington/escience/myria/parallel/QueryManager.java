@@ -1,12 +1,15 @@
 package edu.washington.escience.myria.parallel;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -61,6 +64,11 @@ public class QueryManager {
   /** The Server on which this manager runs. */
   private final Server server;
 
+  /**
+   * The plan templates cached by each worker, mirrored from the workers.
+   */
+  private final ConcurrentHashMap<Integer, PlanTemplateCache<Boolean>> workerPlanTemplates;
+
   /**
    * This class encapsulates all the work of keeping track of queries. This includes dispatching query plans to workers,
    * starting the queries, killing queries, restarting queries, etc.
@@ -74,6 +82,7 @@ public class QueryManager {
     queryQueue = Maps.newTreeMap();
     runningQueries = new ConcurrentHashMap<>();
     executingSubQueries = new ConcurrentHashMap<>();
+    workerPlanTemplates = new ConcurrentHashMap<>();
   }
 
   /**
@@ -117,6 +126,12 @@ public class QueryManager {
   private void finishQuery(final Query queryState) throws DbException {
     LOGGER.info(
         "Finishing query {} with status {}", queryState.getQueryId(), queryState.getStatus());
+    /* Let the workers release what they keep for the query, e.g., its temporary relations. */
+    for (final Integer workerId : server.getAliveWorkers()) {
+      server
+          .getIPCConnectionPool()
+          .sendShortMessage(workerId, IPCUtils.cleanupQueryTM(queryState.getQueryId()));
+    }
     try {
       catalog.queryFinished(queryState);
     } catch (CatalogException e) {
@@ -450,19 +465,93 @@ public class QueryManager {
     }
     // directly set the master part as already received.
     mqp.queryReceivedByWorker(MyriaConstants.MASTER_ID);
+    /* Encode and send the plans of all workers in parallel, on the query executor of the server. */
+    final List<Future<?>> sends = new ArrayList<>();
     for (final Map.Entry<Integer, SubQueryPlan> e : mqp.getWorkerPlans().entrySet()) {
-      int workerId = e.getKey();
+      sends.add(
+          server
+              .getQueryExecutor()
+              .submit(
+                  () -> {
+                    sendWorkerPlan(mqp.getSubQueryId(), e.getKey(), e.getValue());
+                    return null;
+                  }));
+    }
+    for (final Future<?> send : sends) {
       try {
-        server
-            .getIPCConnectionPool()
-            .sendShortMessage(workerId, IPCUtils.queryMessage(mqp.getSubQueryId(), e.getValue()));
-      } catch (final IOException ee) {
-        throw new DbException(ee);
+        send.get();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DbException(e);
+      } catch (final ExecutionException e) {
+        throw new DbException(e.getCause());
       }
     }
     return mqp.getWorkerReceiveFuture();
   }
 
+  /**
+   * Sends a worker its plan of a subquery, without the template if the worker holds it already.
+   *
+   * @param subQueryId the subquery.
+   * @param workerId the worker.
+   * @param plan the plan of the worker.
+   * @throws IOException if the plan cannot be serialized.
+   */
+  private void sendWorkerPlan(
+      final SubQueryId subQueryId, final int workerId, final SubQueryPlan plan) throws IOException {
+    server
+        .getIPCConnectionPool()
+        .sendShortMessage(
+            workerId, IPCUtils.queryMessage(subQueryId, planTemplate(workerId, plan)));
+  }
+
+  /**
+   * Resends a worker the full plan of a subquery, because the worker does not hold the template that the master
+   * expected it to. The copy of the worker's template cache is cleared, so that the templates of the next plans are
+   * shipped again too.
+   *
+   * @param subQueryId the subquery.
+   * @param workerId the worker.
+   * @throws DbException if the plan cannot be serialized.
+   */
+  public void resendWorkerPlan(@Nonnull final SubQueryId subQueryId, final int workerId)
+      throws DbException {
+    final MasterSubQuery mqp = executingSubQueries.get(subQueryId);
+    final SubQueryPlan plan = mqp == null ? null : mqp.getWorkerPlans().get(workerId);
+    if (plan == null) {
+      LOGGER.warn("Worker #{} asked for the plan of unknown subquery #{}", workerId, subQueryId);
+      return;
+    }
+    workerPlanTemplates.remove(workerId);
+    try {
+      sendWorkerPlan(subQueryId, workerId, plan);
+    } catch (final IOException e) {
+      throw new DbException(e);
+    }
+  }
+
+  /**
+   * @param workerId the worker that will run a plan.
+   * @param plan the plan.
+   * @return the plan as it is shipped to the worker, without the template if the worker holds it already.
+   * @throws IOException if the plan cannot be serialized.
+   */
+  private PlanTemplate planTemplate(final int workerId, final SubQueryPlan plan)
+      throws IOException {
+    final PlanTemplate template = PlanTemplate.of(plan);
+    final PlanTemplateCache<Boolean> cached =
+        workerPlanTemplates.computeIfAbsent(
+            workerId, id -> new PlanTemplateCache<>(MyriaConstants.PLAN_TEMPLATE_CACHE_SIZE));
+    synchronized (cached) {
+      if (cached.get(template.getHash()) != null) {
+        return template.withoutTemplate();
+      }
+      cached.put(template.getHash(), Boolean.TRUE);
+      return template;
+    }
+  }
+
   /**
    * Tells all the workers to begin executing the specified {@link SubQuery}.
    *
@@ -598,6 +687,8 @@ public class QueryManager {
    * @param cause the exception describing why the worker died.
    */
   protected synchronized void workerDied(final int workerId, @Nullable final Throwable cause) {
+    /* A restarted worker starts with an empty plan template cache. */
+    workerPlanTemplates.remove(workerId);
     for (MasterSubQuery mqp : executingSubQueries.values()) {
       /* for each alive query that the failed worker is assigned to, tell the query that the worker failed. */
       if (mqp.getWorkerAssigned().contains(workerId)) {
@@ -629,6 +720,7 @@ public class QueryManager {
           && workersAcked.containsAll(mqp.getWorkerAssigned())) {
         /* so a following ADD_WORKER_ACK won't cause queryMessage to be sent again */
         mqp.getMissingWorkers().remove(workerId);
+        workerPlanTemplates.remove(workerId);
         try {
           server
               .getIPCConnectionPool()
@@ -91,9 +91,9 @@ import edu.washington.escience.myria.expression.Expression;
 import edu.washington.escience.myria.expression.MinusExpression;
 import edu.washington.escience.myria.expression.VariableExpression;
 import edu.washington.escience.myria.expression.WorkerIdExpression;
-import edu.washington.escience.myria.io.AmazonS3Source;
 import edu.washington.escience.myria.io.ByteSink;
 import edu.washington.escience.myria.io.DataSink;
+import edu.washington.escience.myria.io.RangedDataSource;
 import edu.washington.escience.myria.io.UriSink;
 import edu.washington.escience.myria.operator.Apply;
 import edu.washington.escience.myria.operator.CSVFragmentTupleSource;
@@ -112,12 +112,14 @@ import edu.washington.escience.myria.operator.Limit;
 import edu.washington.escience.myria.operator.Operator;
 import edu.washington.escience.myria.operator.RootOperator;
 import edu.washington.escience.myria.operator.TupleSink;
+import edu.washington.escience.myria.operator.UnionAll;
 import edu.washington.escience.myria.operator.agg.Aggregate;
 import edu.washington.escience.myria.operator.agg.PrimitiveAggregator.AggregationOp;
 import edu.washington.escience.myria.operator.agg.PrimitiveAggregatorFactory;
 import edu.washington.escience.myria.operator.network.CollectProducer;
 import edu.washington.escience.myria.operator.network.Consumer;
 import edu.washington.escience.myria.operator.network.GenericShuffleProducer;
+import edu.washington.escience.myria.operator.network.LocalMultiwayProducer;
 import edu.washington.escience.myria.operator.network.distribute.BroadcastDistributeFunction;
 import edu.washington.escience.myria.operator.network.distribute.DistributeFunction;
 import edu.washington.escience.myria.operator.network.distribute.HowDistributed;
@@ -195,6 +197,18 @@ public final class Server implements TaskMessageSource, EventHandler<DriverMessa
               final QueryMessage qm = m.getQueryMessage();
               final SubQueryId subQueryId = new SubQueryId(qm.getQueryId(), qm.getSubqueryId());
               switch (qm.getType()) {
+                case QUERY_RESEND:
+                  LOGGER.info(
+                      "Worker #{} lacks the plan template of query #{}, resending it.",
+                      senderID,
+                      subQueryId);
+                  try {
+                    queryManager.resendWorkerPlan(subQueryId, senderID);
+                  } catch (DbException e) {
+                    LOGGER.error(
+                        "Error resending query #{} to worker #{}", subQueryId, senderID, e);
+                  }
+                  break;
                 case QUERY_READY_TO_EXECUTE:
                   LOGGER.info("Worker #{} is ready to execute query #{}.", senderID, subQueryId);
                   queryManager.workerReady(subQueryId, senderID);
@@ -899,25 +913,105 @@ public final class Server implements TaskMessageSource, EventHandler<DriverMessa
       @Nullable final Character quote,
       @Nullable final Character escape,
       @Nullable final Integer numberOfSkippedLines,
-      final AmazonS3Source s3Source,
+      final RangedDataSource source,
+      final Set<Integer> workersToIngest,
+      final DistributeFunction distributeFunction)
+      throws URIException, DbException, InterruptedException {
+    return parallelIngestDataset(
+        relationKey,
+        schema,
+        delimiter,
+        quote,
+        escape,
+        numberOfSkippedLines,
+        source,
+        workersToIngest,
+        null,
+        distributeFunction);
+  }
+
+  /**
+   * Parallel Ingest. The file is split into byte ranges, and every worker reads its ranges directly from the source,
+   * several of them concurrently, so no data goes through the master.
+   *
+   * @param relationKey the name of the dataset.
+   * @param workersToIngest restrict the workers to ingest data (null for all)
+   * @param rangesPerWorker the number of byte ranges each worker reads concurrently (null for the default)
+   * @throws URIException
+   * @throws DbException
+   * @throws InterruptedException
+   */
+  public DatasetStatus parallelIngestDataset(
+      final RelationKey relationKey,
+      final Schema schema,
+      @Nullable final Character delimiter,
+      @Nullable final Character quote,
+      @Nullable final Character escape,
+      @Nullable final Integer numberOfSkippedLines,
+      final RangedDataSource source,
       final Set<Integer> workersToIngest,
+      @Nullable final Integer rangesPerWorker,
       final DistributeFunction distributeFunction)
       throws URIException, DbException, InterruptedException {
-    long fileSize = s3Source.getFileSize();
+    long fileSize;
+    try {
+      fileSize = source.getFileSize();
+    } catch (IOException e) {
+      throw new DbException("Error getting the size of the file to ingest", e);
+    }
 
     Set<Integer> potentialWorkers = MoreObjects.firstNonNull(workersToIngest, getAliveWorkers());
 
     /* Select a subset of workers */
     int[] workersArray = parallelIngestComputeNumWorkers(fileSize, potentialWorkers);
 
+    /* Split the partition of each worker further, as long as the ranges stay large enough. */
+    long maxRangesPerWorker =
+        fileSize / workersArray.length / MyriaConstants.PARALLEL_INGEST_MINIMUM_RANGE_SIZE;
+    int numRanges =
+        (int)
+            Math.max(
+                1,
+                Math.min(
+                    MoreObjects.firstNonNull(
+                        rangesPerWorker, MyriaConstants.PARALLEL_INGEST_RANGES_PER_WORKER),
+                    maxRangesPerWorker));
+
     Map<Integer, SubQueryPlan> workerPlans = new HashMap<>();
-    for (int workerID = 1; workerID <= workersArray.length; workerID++) {
-      CSVFragmentTupleSource scanFragment =
-          new CSVFragmentTupleSource(
-              s3Source, schema, workersArray, delimiter, quote, escape, numberOfSkippedLines);
-      workerPlans.put(
-          workersArray[workerID - 1],
-          new SubQueryPlan(new DbInsert(scanFragment, relationKey, true)));
+    if (numRanges == 1) {
+      for (int workerId : workersArray) {
+        CSVFragmentTupleSource scanFragment =
+            new CSVFragmentTupleSource(
+                source, schema, workersArray, delimiter, quote, escape, numberOfSkippedLines);
+        workerPlans.put(workerId, new SubQueryPlan(new DbInsert(scanFragment, relationKey, true)));
+      }
+    } else {
+      /* Each range is read by its own fragment, and one fragment inserts the union of the ranges of its worker. */
+      ExchangePairID[] rangeIds = new ExchangePairID[numRanges];
+      for (int i = 0; i < numRanges; ++i) {
+        rangeIds[i] = ExchangePairID.newID();
+      }
+      for (int workerId : workersArray) {
+        RootOperator[] rootOps = new RootOperator[numRanges + 1];
+        Operator[] ranges = new Operator[numRanges];
+        for (int i = 0; i < numRanges; ++i) {
+          CSVFragmentTupleSource scanFragment =
+              new CSVFragmentTupleSource(
+                  source,
+                  schema,
+                  workersArray,
+                  numRanges,
+                  i,
+                  delimiter,
+                  quote,
+                  escape,
+                  numberOfSkippedLines);
+          rootOps[i] = new LocalMultiwayProducer(scanFragment, new ExchangePairID[] {rangeIds[i]});
+          ranges[i] = new Consumer(schema, rangeIds[i], new int[] {workerId});
+        }
+        rootOps[numRanges] = new DbInsert(new UnionAll(ranges), relationKey, true);
+        workerPlans.put(workerId, new SubQueryPlan(rootOps));
+      }
     }
 
     ListenableFuture<Query> qf;
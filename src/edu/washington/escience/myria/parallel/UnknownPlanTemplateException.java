@@ -0,0 +1,21 @@
+package edu.washington.escience.myria.parallel;
+
+import java.io.InvalidObjectException;
+
+/**
+ * Thrown when a worker receives a plan without its template and does not hold the template, i.e., the copy of the
+ * worker's {@link PlanTemplateCache} kept by the master diverged from it. The worker then asks the master to resend the
+ * full plan.
+ */
+public final class UnknownPlanTemplateException extends InvalidObjectException {
+
+  /** Required for Java serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * @param hash the hash of the unknown template.
+   */
+  public UnknownPlanTemplateException(final String hash) {
+    super("Unknown plan template " + hash);
+  }
+}
@@ -67,6 +67,8 @@ import edu.washington.escience.myria.profiling.ProfilingLogger;
 import edu.washington.escience.myria.proto.ControlProto.ControlMessage;
 import edu.washington.escience.myria.proto.QueryProto.QueryMessage;
 import edu.washington.escience.myria.proto.TransportProto.TransportMessage;
+import edu.washington.escience.myria.storage.HashIndexRegistry;
+import edu.washington.escience.myria.storage.TempRelationStore;
 import edu.washington.escience.myria.tools.MyriaGlobalConfigurationModule.DefaultStorageDbPassword;
 import edu.washington.escience.myria.tools.MyriaGlobalConfigurationModule.DefaultStorageDbPort;
 import edu.washington.escience.myria.tools.MyriaGlobalConfigurationModule.FlowControlWriteBufferHighMarkBytes;
@@ -243,6 +245,9 @@ public final class Worker implements Task, TaskMessageSource {
                 q.q.addRecoveryTasks(q.queryMsg.getWorkerId());
               }
               break;
+            case QUERY_CLEANUP:
+              cleanupQuery(q.queryMsg.getQueryId());
+              break;
             case QUERY_DISTRIBUTE:
               try {
                 receiveQuery(q.q);
@@ -471,6 +476,16 @@ public final class Worker implements Task, TaskMessageSource {
    */
   private final ConcurrentHashMap<String, Object> execEnvVars;
 
+  /**
+   * The temporary relations of the running query that are held in memory.
+   */
+  private final TempRelationStore tempRelationStore;
+
+  /**
+   * The plan templates received from the master.
+   */
+  private final PlanTemplateCache<byte[]> planTemplateCache;
+
   /** */
   private final HttpServer apiServer;
 
@@ -580,6 +595,7 @@ public final class Worker implements Task, TaskMessageSource {
     activeQueries = new ConcurrentHashMap<>();
     executingSubQueries = new ConcurrentHashMap<>();
     execEnvVars = new ConcurrentHashMap<String, Object>();
+    planTemplateCache = new PlanTemplateCache<>(MyriaConstants.PLAN_TEMPLATE_CACHE_SIZE);
 
     final Map<Integer, SocketInfo> computingUnits =
         getComputingUnits(masterHost, masterPort, workerConfs);
@@ -614,9 +630,21 @@ public final class Worker implements Task, TaskMessageSource {
         ConnectionInfo.toJson(
             databaseSystem, workerHost, workingDirectory, workerID, dbName, dbPassword, dbPort);
     LOGGER.info("Worker: Connection info " + jsonConnInfo);
+    ConnectionInfo connectionInfo = ConnectionInfo.of(databaseSystem, jsonConnInfo);
+    execEnvVars.put(MyriaConstants.EXEC_ENV_VAR_DATABASE_CONN_INFO, connectionInfo);
+    tempRelationStore =
+        new TempRelationStore(
+            connectionInfo,
+            (long)
+                (Runtime.getRuntime().maxMemory()
+                    * MyriaConstants.TEMP_RELATION_STORE_HEAP_FRACTION));
+    execEnvVars.put(MyriaConstants.EXEC_ENV_VAR_TEMP_RELATION_STORE, tempRelationStore);
     execEnvVars.put(
-        MyriaConstants.EXEC_ENV_VAR_DATABASE_CONN_INFO,
-        ConnectionInfo.of(databaseSystem, jsonConnInfo));
+        MyriaConstants.EXEC_ENV_VAR_HASH_INDEX_REGISTRY,
+        new HashIndexRegistry(
+            (long)
+                (Runtime.getRuntime().maxMemory()
+                    * MyriaConstants.HASH_INDEX_REGISTRY_HEAP_FRACTION)));
 
     URI baseUri = UriBuilder.fromUri("http://0.0.0.0/").port(workerStatsPort).build();
     ResourceConfig workerApplication = new WorkerApplication(this);
@@ -652,6 +680,12 @@ public final class Worker implements Task, TaskMessageSource {
     final SubQueryId subQueryId = subQuery.getSubQueryId();
     LOGGER.info("SubQuery #{} received.", subQueryId);
 
+    /*
+     * The master runs one query at a time, so the temporary relations of other queries are no longer needed. They are
+     * normally dropped by cleanupQuery already, this only catches those whose cleanup message was lost.
+     */
+    tempRelationStore.retainQuery(subQueryId.getQueryId());
+
     activeQueries.put(subQueryId.getQueryId(), subQueryId);
     executingSubQueries.put(subQueryId, subQuery);
     subQuery
@@ -715,6 +749,21 @@ public final class Worker implements Task, TaskMessageSource {
             });
   }
 
+  /**
+   * Releases what the worker keeps for a query once the master reports that it finished, i.e., its temporary
+   * relations.
+   *
+   * @param queryId the query that finished.
+   */
+  void cleanupQuery(final long queryId) {
+    LOGGER.info("Query #{} finished, dropping its temporary relations.", queryId);
+    try {
+      tempRelationStore.dropQuery(queryId);
+    } catch (DbException e) {
+      LOGGER.error("Error dropping the temporary relations of query #{}", queryId, e);
+    }
+  }
+
   /**
    * Finish the subquery by removing it from the data structures.
    *
@@ -832,6 +881,13 @@ public final class Worker implements Task, TaskMessageSource {
     return myID;
   }
 
+  /**
+   * @return the plan templates received from the master.
+   */
+  PlanTemplateCache<byte[]> getPlanTemplateCache() {
+    return planTemplateCache;
+  }
+
   /**
    * @return the profilingLogger
    * @throws DbException if there is an error initializing the profiling logger
@@ -17,6 +17,7 @@ import edu.washington.escience.myria.proto.QueryProto.QueryMessage;
 import edu.washington.escience.myria.proto.QueryProto.QueryMessage.Type;
 import edu.washington.escience.myria.proto.TransportProto.TransportMessage;
 import edu.washington.escience.myria.util.AttachmentableAdapter;
+import edu.washington.escience.myria.util.IPCUtils;
 
 /**
  * Message handler for workers.
@@ -76,13 +77,34 @@ public final class WorkerShortMessageProcessor extends AttachmentableAdapter
       try {
         osis =
             new ObjectInputStream(new ByteArrayInputStream(qm.getQuery().getQuery().toByteArray()));
-        final SubQueryPlan operators = (SubQueryPlan) (osis.readObject());
+        final Object query = osis.readObject();
+        final SubQueryPlan operators;
+        if (query instanceof PlanTemplate) {
+          operators = ((PlanTemplate) query).instantiate(ownerWorker.getPlanTemplateCache());
+        } else {
+          operators = (SubQueryPlan) query;
+        }
         q = new WorkerSubQuery(operators, subQueryId, ownerWorker);
         if (!ownerWorker.getQueryQueue().offer(new QueryCommand(q, qm))) {
           return false;
         }
+      } catch (UnknownPlanTemplateException e) {
+        LOGGER.warn("Asking the master to resend subquery {}: {}", subQueryId, e.getMessage());
+        ownerWorker.sendMessageToMaster(IPCUtils.resendQueryTM(subQueryId));
       } catch (IOException | ClassNotFoundException e) {
         LOGGER.error("Error decoding query", e);
+        /* Fail the subquery, otherwise the master waits for this worker forever. */
+        try {
+          ownerWorker.sendMessageToMaster(
+              IPCUtils.queryFailureTM(subQueryId, e, new ExecutionStatistics()));
+        } catch (IOException ee) {
+          LOGGER.error("Error reporting the failure of subquery {}", subQueryId, ee);
+        }
+      }
+    } else if (qm.getType() == Type.QUERY_CLEANUP) {
+      /* The query finished, so it has no active subquery. */
+      if (!ownerWorker.getQueryQueue().offer(new QueryCommand(null, qm))) {
+        return false;
       }
     } else {
       q = ownerWorker.getActiveQueries().get(subQueryId);
@@ -365,6 +365,7 @@ public abstract class BagInputBufferAdapter<PAYLOAD> extends AttachmentableAdapt
       }
     }
     IPCMessage.StreamData<PAYLOAD> m = storage.poll();
+    consumed(m);
     postTake(m);
 
     return m;
@@ -415,6 +416,7 @@ public abstract class BagInputBufferAdapter<PAYLOAD> extends AttachmentableAdapt
       this.size -= 1;
     }
     IPCMessage.StreamData<PAYLOAD> m = this.storage.poll();
+    consumed(m);
 
     postTimeoutPoll(time, unit, m);
 
@@ -428,6 +430,21 @@ public abstract class BagInputBufferAdapter<PAYLOAD> extends AttachmentableAdapt
    * */
   protected void prePoll() throws IllegalStateException {}
 
+  /**
+   * Let the input channel of a consumed message grant credits to its stream.
+   *
+   * @param msg a message taken out of the buffer, may be null.
+   * */
+  private void consumed(final IPCMessage.StreamData<PAYLOAD> msg) {
+    if (msg != null && msg.getPayload() != null) {
+      InputChannelState ics =
+          inputChannels.get(new StreamIOChannelID(msg.getStreamID(), msg.getRemoteID()));
+      if (ics != null) {
+        ics.inputChannel.messageConsumed();
+      }
+    }
+  }
+
   /**
    * Called after {@link #poll()} operations are conducted.
    *
@@ -447,6 +464,7 @@ public abstract class BagInputBufferAdapter<PAYLOAD> extends AttachmentableAdapt
       size -= 1;
     }
     IPCMessage.StreamData<PAYLOAD> m = storage.poll();
+    consumed(m);
     postPoll(m);
 
     return m;
@@ -23,7 +23,7 @@ import edu.washington.escience.myria.util.concurrent.ThreadStackDump;
  * An flow control aware InputBuffer implementation. This type of InputBuffer has a soft capacity. The number of
  * messages held in this InputBuffer can be as large as {@link Integer.MAX_VALUE}. But the soft capacity is a trigger.<br>
  * If the soft capacity is meet, an IOEvent representing the buffer full event is triggered. <br>
- * If the
+ * Each input stream is granted an equal share of the soft capacity as credits, see {@link StreamInputChannel}.
  *
  * @param <PAYLOAD> the type of application defined data the input buffer is going to hold.
  * */
@@ -46,6 +46,12 @@ public final class FlowControlBagInputBuffer<PAYLOAD> extends BagInputBufferAdap
    * */
   private final int softCapacity;
 
+  /**
+   * The least number of credits granted to an input stream, so that its producer does not wait for a round trip after
+   * every message.
+   * */
+  private static final int MIN_STREAM_CREDITS = 4;
+
   /**
    * serialize the events.
    * */
@@ -110,9 +116,22 @@ public final class FlowControlBagInputBuffer<PAYLOAD> extends BagInputBufferAdap
 
   @Override
   public void postStop() {
+    for (final StreamIOChannelID inputID : getSourceChannels()) {
+      getInputChannel(inputID).grantUnlimitedCredits();
+    }
     this.resumeRead();
   }
 
+  /**
+   * {@inheritDoc}.
+   *
+   * The soft capacity is split among the input streams.
+   * */
+  @Override
+  public int getStreamCredits() {
+    return Math.max(MIN_STREAM_CREDITS, softCapacity / Math.max(1, getSourceChannels().size()));
+  }
+
   /**
    * Resume the read of all IO channels that are inputs of this input buffer.
    *
@@ -165,30 +184,10 @@ public final class FlowControlBagInputBuffer<PAYLOAD> extends BagInputBufferAdap
       throw new IllegalStateException("Already attached to a processor: " + processor);
     }
 
-    addListener(
-        INPUT_BUFFER_FULL,
-        new IPCEventListener() {
-          @Override
-          public void triggered(final IPCEvent e) {
-            pauseRead();
-          }
-        });
-    addListener(
-        INPUT_BUFFER_RECOVER,
-        new IPCEventListener() {
-          @Override
-          public void triggered(final IPCEvent e) {
-            resumeRead();
-          }
-        });
-    addListener(
-        INPUT_BUFFER_EMPTY,
-        new IPCEventListener() {
-          @Override
-          public void triggered(final IPCEvent e) {
-            resumeRead();
-          }
-        });
+    /*
+     * A full buffer does not pause reading the physical channels, which would stall every message sharing them: the
+     * input streams are flow controlled by the credits their input channels grant.
+     */
   }
 
   /**
@@ -1,6 +1,10 @@
 package edu.washington.escience.myria.parallel.ipc;
 
+import java.net.InetAddress;
+import java.net.NetworkInterface;
 import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
 import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -426,6 +430,11 @@ public final class IPCConnectionPool implements ExternalResourceReleasable {
    * */
   private final Map<Integer, SocketInfo> intialRemoteAddresses;
 
+  /**
+   * If each remote runs on the same host as this IPC entity, computed on demand.
+   * */
+  private final ConcurrentHashMap<Integer, Boolean> colocatedRemotes;
+
   /**
    * IPC event processor. All IPC events will be executed by this executor service.
    * */
@@ -485,6 +494,7 @@ public final class IPCConnectionPool implements ExternalResourceReleasable {
     channelPool = new ConcurrentHashMap<Integer, IPCRemote>();
 
     intialRemoteAddresses = remoteAddresses;
+    colocatedRemotes = new ConcurrentHashMap<Integer, Boolean>();
 
     recyclableRegisteredChannels = new ConcurrentHashMap<Channel, Channel>();
     unregisteredChannels = new ConcurrentHashMap<Channel, Channel>();
@@ -542,6 +552,38 @@ public final class IPCConnectionPool implements ExternalResourceReleasable {
     return channelPool.containsKey(remoteID);
   }
 
+  /**
+   * Check if the remote IPC entity runs on the same host as this IPC entity, i.e., if its host resolves to a loopback
+   * address or to an address of a local network interface.
+   *
+   * @param remoteID remote ID.
+   * @return true if the remote is co-located, false if it is not or if it is unknown.
+   * */
+  public boolean isColocated(final int remoteID) {
+    if (remoteID == myID) {
+      return false;
+    }
+    Boolean colocated = colocatedRemotes.get(remoteID);
+    if (colocated == null) {
+      final IPCRemote remote = channelPool.get(remoteID);
+      if (remote == null) {
+        return false;
+      }
+      colocated = false;
+      try {
+        final InetAddress addr = InetAddress.getByName(remote.address.getHost());
+        colocated =
+            addr.isLoopbackAddress()
+                || addr.isAnyLocalAddress()
+                || NetworkInterface.getByInetAddress(addr) != null;
+      } catch (UnknownHostException | SocketException e) {
+        LOGGER.debug("Unable to resolve the host of remote {}", remoteID, e);
+      }
+      colocatedRemotes.put(remoteID, colocated);
+    }
+    return colocated;
+  }
+
   /**
    * Detect if the remote IPC entity is still alive or not.
    *
@@ -1101,10 +1143,13 @@ public final class IPCConnectionPool implements ExternalResourceReleasable {
     try {
       checkShutdown();
       Channel ch = getAConnection(id);
-      // write bos even a recovery channel otherwise EOS from a non-stream
-      ch.write(new IPCMessage.Meta.BOS(streamID));
       ChannelContext cc = ((ChannelContext) (ch.getAttachment()));
       int remoteID = cc.getRegisteredChannelContext().getRemoteID();
+      // map the output channel before the BOS, so that it is there when the consumer grants credits
+      StreamOutputChannel<PAYLOAD> oc =
+          new StreamOutputChannel<PAYLOAD>(new StreamIOChannelID(streamID, remoteID), this, ch);
+      // write bos even a recovery channel otherwise EOS from a non-stream
+      ch.write(new IPCMessage.Meta.BOS(streamID));
       if (LOGGER.isTraceEnabled()) {
         LOGGER.trace(
             "reserve long term connection for ({},{}), attached to physical connection {}",
@@ -1113,7 +1158,7 @@ public final class IPCConnectionPool implements ExternalResourceReleasable {
             ChannelContext.channelToString(ch),
             new ThreadStackDump());
       }
-      return new StreamOutputChannel<PAYLOAD>(new StreamIOChannelID(streamID, remoteID), this, ch);
+      return oc;
     } catch (ChannelException e) {
       LOGGER.warn("Unable to connect to remote. Cause is: ", e);
     } finally {
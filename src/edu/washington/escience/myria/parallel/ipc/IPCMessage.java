@@ -20,7 +20,15 @@ public interface IPCMessage {
     CONNECT,
     DISCONNECT,
     PING,
-    DATA
+    DATA,
+    /** Attach the shared memory ring of a channel, consumed by {@link SharedMemoryFrameHandler}. */
+    SHM_ATTACH,
+    /** The shared memory ring of a channel is attached, consumed by {@link SharedMemoryFrameHandler}. */
+    SHM_ACK,
+    /** A frame was put in the shared memory ring of a channel, consumed by {@link SharedMemoryFrameHandler}. */
+    SHM_FRAME,
+    /** Credits granted to a stream by its consumer. */
+    CREDIT
   }
 
   /**
@@ -118,6 +126,66 @@ public interface IPCMessage {
       }
     }
 
+    /**
+     * CREDIT, sent by the consumer of a stream to let the producer send more messages.
+     * */
+    static final class CREDIT extends Meta {
+      /**
+       * stream ID.
+       * */
+      private final long streamID;
+      /**
+       * the number of messages the producer may send in addition.
+       * */
+      private final int credits;
+
+      /**
+       * @param streamID stream id.
+       * @param credits the number of messages the producer may send in addition.
+       * */
+      public CREDIT(final long streamID, final int credits) {
+        this.streamID = streamID;
+        this.credits = credits;
+      }
+
+      /**
+       * @return the stream id.
+       * */
+      long getStreamID() {
+        return streamID;
+      }
+
+      /**
+       * @return the number of messages the producer may send in addition.
+       * */
+      int getCredits() {
+        return credits;
+      }
+
+      @Override
+      public ChannelBuffer serialize() {
+        ChannelBuffer bb =
+            ChannelBuffers.buffer(1 + Long.SIZE / Byte.SIZE + Integer.SIZE / Byte.SIZE);
+        bb.writeByte((byte) Header.CREDIT.ordinal());
+        bb.writeLong(streamID);
+        bb.writeInt(credits);
+        return bb;
+      }
+
+      /**
+       * @return De-serialize the CREDIT message.
+       * @param bb serialized data.
+       * */
+      public static CREDIT deSerialize(final ChannelBuffer bb) {
+        return new CREDIT(bb.readLong(), bb.readInt());
+      }
+
+      @Override
+      public String toString() {
+        return "IPCMessage.Meta.CREDIT(" + streamID + ", " + credits + ")";
+      }
+    }
+
     /**
      * CONNECT.
      * */
@@ -211,6 +279,8 @@ public interface IPCMessage {
         return EOS;
       } else if (type == Header.PING.ordinal()) {
         return PING;
+      } else if (type == Header.CREDIT.ordinal()) {
+        return CREDIT.deSerialize(bb);
       } else {
         return null;
       }
@@ -169,6 +169,13 @@ public final class IPCMessageHandler extends SimpleChannelHandler {
         }
       }
       return;
+    } else if (metaMessage instanceof IPCMessage.Meta.CREDIT) {
+      IPCMessage.Meta.CREDIT credit = (IPCMessage.Meta.CREDIT) metaMessage;
+      StreamOutputChannel<?> oc = cc.getRegisteredChannelContext().getIOPair().getOutputChannel();
+      if (oc != null) {
+        oc.creditsGrantedCallback(credit.getStreamID(), credit.getCredits());
+      }
+      return;
     } else if (metaMessage == IPCMessage.Meta.DISCONNECT) {
       if (existingIChannel != null) {
         LOGGER.error(
@@ -389,6 +396,22 @@ public final class IPCMessageHandler extends SimpleChannelHandler {
     cs.updateLastIOTimestamp();
   }
 
+  /**
+   * Record a data frame written through a channel in the stats of its output stream, if any.
+   *
+   * @param cc the channel context.
+   * @param numBytes the size of the serialized frame.
+   * */
+  private static void frameWritten(final ChannelContext cc, final int numBytes) {
+    ChannelContext.RegisteredChannelContext rcc = cc.getRegisteredChannelContext();
+    if (rcc != null) {
+      StreamOutputChannel<?> oc = rcc.getIOPair().getOutputChannel();
+      if (oc != null) {
+        oc.frameWrittenCallback(numBytes);
+      }
+    }
+  }
+
   @Override
   public void writeRequested(final ChannelHandlerContext ctx, final MessageEvent e)
       throws Exception {
@@ -398,6 +421,9 @@ public final class IPCMessageHandler extends SimpleChannelHandler {
 
     if (ch instanceof LocalChannel) {
       // local channels do no serialization
+      if (!(e.getMessage() instanceof IPCMessage.Meta)) {
+        frameWritten(cc, 0);
+      }
       ctx.sendDownstream(e);
     } else {
       // remote channels do serialization
@@ -415,6 +441,7 @@ public final class IPCMessageHandler extends SimpleChannelHandler {
             ChannelBuffers.wrappedBuffer(
                 IPCMessage.Data.SERIALIZE_HEAD,
                 ownerConnectionPool.getPayloadSerializer().serialize(m));
+        frameWritten(cc, codedMsg.readableBytes());
       }
       ctx.sendDownstream(
           new DownstreamMessageEvent(ch, e.getFuture(), codedMsg, e.getRemoteAddress()));
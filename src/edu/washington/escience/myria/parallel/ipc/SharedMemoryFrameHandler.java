@@ -0,0 +1,265 @@
+package edu.washington.escience.myria.parallel.ipc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.annotation.Nullable;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DownstreamMessageEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.channel.UpstreamMessageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves the frames of a channel between two IPC entities that run on the same host through a {@link SharedMemoryRing}
+ * instead of the TCP connection. This handler sits right after the frame codec, so it sees serialized frames.
+ *
+ * Each side of a channel owns the ring of the frames it sends. The first time a side sends a large frame to a
+ * co-located remote, it creates the ring in <code>/dev/shm</code> and tells the remote where it is; once the remote
+ * acknowledges that it mapped the ring, large frames are copied into the ring and only a small marker with their
+ * length goes through the TCP connection. Frames that do not fit in the free part of the ring go through the TCP
+ * connection as before. Since every frame, or its marker, still travels the channel in order, the channel keeps its
+ * ordering and its flow control: a receiver that stops reading stops consuming the ring, and the sender falls back to
+ * the TCP connection until its socket buffer fills up and the channel becomes unwritable.
+ */
+public final class SharedMemoryFrameHandler extends SimpleChannelHandler {
+
+  /** The logger for this class. */
+  private static final Logger LOGGER = LoggerFactory.getLogger(SharedMemoryFrameHandler.class);
+
+  /** The default capacity of a ring, in bytes. */
+  private static final int RING_CAPACITY = 4 * 1024 * 1024;
+
+  /** Frames smaller than this go through the TCP connection. */
+  private static final int MIN_FRAME_SIZE = 4 * 1024;
+
+  /** The directory rings are created in. */
+  private static final Path RING_DIRECTORY =
+      Files.isWritable(Paths.get("/dev/shm"))
+          ? Paths.get("/dev/shm")
+          : Paths.get(System.getProperty("java.io.tmpdir"));
+
+  /** Finds the remote of a channel and whether it runs on the same host. */
+  interface Colocation {
+    /**
+     * @param ch a channel.
+     * @return the IPC ID of the remote of the channel, or null if the channel is not registered yet.
+     */
+    @Nullable
+    Integer getRemoteID(Channel ch);
+
+    /**
+     * @param remoteID the IPC ID of a remote.
+     * @return if the remote runs on the same host.
+     */
+    boolean isColocated(int remoteID);
+  }
+
+  /** The IPC ID of this side of the channel. */
+  private final int myID;
+  /** Finds the co-located remote of the channel. */
+  private final Colocation colocation;
+  /** The directory rings are created in. */
+  private final Path ringDirectory;
+  /** The capacity of the ring of sent frames, in bytes. */
+  private final int ringCapacity;
+
+  /** The ring of sent frames, null if it is not created. */
+  private SharedMemoryRing outgoing;
+  /** If the remote has mapped the ring of sent frames. */
+  private boolean outgoingAttached;
+  /** If the channel was checked for a co-located remote. */
+  private boolean checkedColocated;
+
+  /** The ring of received frames, null if the remote has not sent one. */
+  private SharedMemoryRing incoming;
+
+  /**
+   * @param ownerConnectionPool the IPC connection pool of the channel.
+   */
+  public SharedMemoryFrameHandler(final IPCConnectionPool ownerConnectionPool) {
+    this(
+        ownerConnectionPool.getMyIPCID(),
+        new Colocation() {
+          @Override
+          public Integer getRemoteID(final Channel ch) {
+            final ChannelContext cc = ChannelContext.getChannelContext(ch);
+            if (cc == null || cc.getRegisteredChannelContext() == null) {
+              return null;
+            }
+            return cc.getRegisteredChannelContext().getRemoteID();
+          }
+
+          @Override
+          public boolean isColocated(final int remoteID) {
+            return ownerConnectionPool.isColocated(remoteID);
+          }
+        },
+        RING_DIRECTORY,
+        RING_CAPACITY);
+  }
+
+  /**
+   * @param myID the IPC ID of this side of the channel.
+   * @param colocation finds the co-located remote of the channel.
+   * @param ringDirectory the directory rings are created in.
+   * @param ringCapacity the capacity of the ring of sent frames, in bytes.
+   */
+  SharedMemoryFrameHandler(
+      final int myID,
+      final Colocation colocation,
+      final Path ringDirectory,
+      final int ringCapacity) {
+    this.myID = myID;
+    this.colocation = colocation;
+    this.ringDirectory = ringDirectory;
+    this.ringCapacity = ringCapacity;
+  }
+
+  /**
+   * @param header a marker header.
+   * @param payloadSize the size of the payload of the marker.
+   * @return a marker frame with the given header and room for the payload.
+   */
+  private static ChannelBuffer marker(final IPCMessage.Header header, final int payloadSize) {
+    ChannelBuffer marker = ChannelBuffers.buffer(1 + payloadSize);
+    marker.writeByte((byte) header.ordinal());
+    return marker;
+  }
+
+  /**
+   * Creates the outgoing ring and asks the remote to map it, if the remote is co-located.
+   *
+   * @param ctx the channel handler context.
+   */
+  private void offerRing(final ChannelHandlerContext ctx) {
+    final Channel ch = ctx.getChannel();
+    final Integer remoteID = colocation.getRemoteID(ch);
+    if (remoteID == null) {
+      return;
+    }
+    checkedColocated = true;
+    if (!colocation.isColocated(remoteID)) {
+      return;
+    }
+    try {
+      outgoing =
+          SharedMemoryRing.create(
+              ringDirectory, "myria-ipc-" + myID + "-" + remoteID + "-", ringCapacity);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to create a shared memory ring for remote {}", remoteID, e);
+      return;
+    }
+    byte[] path = outgoing.getFile().getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+    ChannelBuffer attach = marker(IPCMessage.Header.SHM_ATTACH, path.length);
+    attach.writeBytes(path);
+    ctx.sendDownstream(
+        new DownstreamMessageEvent(ch, Channels.future(ch), attach, ch.getRemoteAddress()));
+  }
+
+  @Override
+  public synchronized void writeRequested(final ChannelHandlerContext ctx, final MessageEvent e)
+      throws Exception {
+    if (!(e.getMessage() instanceof ChannelBuffer)) {
+      ctx.sendDownstream(e);
+      return;
+    }
+    final ChannelBuffer frame = (ChannelBuffer) e.getMessage();
+    final int length = frame.readableBytes();
+    if (length < MIN_FRAME_SIZE) {
+      ctx.sendDownstream(e);
+      return;
+    }
+    if (!checkedColocated) {
+      offerRing(ctx);
+    }
+    if (!outgoingAttached || !outgoing.write(frame)) {
+      /* No ring yet, or the receiver is behind: send the frame through the TCP connection. */
+      ctx.sendDownstream(e);
+      return;
+    }
+    ChannelBuffer inRing = marker(IPCMessage.Header.SHM_FRAME, Integer.BYTES);
+    inRing.writeInt(length);
+    ctx.sendDownstream(
+        new DownstreamMessageEvent(e.getChannel(), e.getFuture(), inRing, e.getRemoteAddress()));
+  }
+
+  @Override
+  public void messageReceived(final ChannelHandlerContext ctx, final MessageEvent e)
+      throws Exception {
+    if (!(e.getMessage() instanceof ChannelBuffer)) {
+      ctx.sendUpstream(e);
+      return;
+    }
+    final ChannelBuffer frame = (ChannelBuffer) e.getMessage();
+    if (!frame.readable()) {
+      ctx.sendUpstream(e);
+      return;
+    }
+    final byte header = frame.getByte(frame.readerIndex());
+    if (header == IPCMessage.Header.SHM_FRAME.ordinal()) {
+      frame.skipBytes(1);
+      ctx.sendUpstream(
+          new UpstreamMessageEvent(
+              e.getChannel(), incoming.read(frame.readInt()), e.getRemoteAddress()));
+    } else if (header == IPCMessage.Header.SHM_ATTACH.ordinal()) {
+      frame.skipBytes(1);
+      final File file = new File(frame.toString(StandardCharsets.UTF_8));
+      try {
+        incoming = SharedMemoryRing.attach(file);
+      } catch (IOException ex) {
+        /* Not acknowledged: the remote keeps sending frames through the TCP connection. */
+        LOGGER.warn("Unable to map shared memory ring {}", file, ex);
+        return;
+      }
+      final Channel ch = ctx.getChannel();
+      ctx.sendDownstream(
+          new DownstreamMessageEvent(
+              ch,
+              Channels.future(ch),
+              marker(IPCMessage.Header.SHM_ACK, 0),
+              ch.getRemoteAddress()));
+    } else if (header == IPCMessage.Header.SHM_ACK.ordinal()) {
+      synchronized (this) {
+        outgoingAttached = true;
+        /* Both sides have the ring mapped; the file itself is no longer needed. */
+        outgoing.deleteFile();
+      }
+    } else {
+      ctx.sendUpstream(e);
+    }
+  }
+
+  @Override
+  public void channelClosed(final ChannelHandlerContext ctx, final ChannelStateEvent e)
+      throws Exception {
+    synchronized (this) {
+      if (outgoing != null) {
+        if (!outgoing.deleteFile()) {
+          LOGGER.warn("Unable to delete shared memory ring {}", outgoing.getFile());
+        }
+        outgoing.close();
+      }
+      outgoing = null;
+      outgoingAttached = false;
+    }
+    /* Received frames are read in the IO thread of the channel, which is running this. */
+    if (incoming != null) {
+      incoming.close();
+    }
+    incoming = null;
+    ctx.sendUpstream(e);
+  }
+}
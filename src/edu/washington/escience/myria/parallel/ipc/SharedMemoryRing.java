@@ -0,0 +1,222 @@
+package edu.washington.escience.myria.parallel.ipc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A single-producer single-consumer ring of bytes in a memory-mapped file. The file starts with the number of bytes
+ * the consumer has read so far, which tells the producer how much of the ring is free. The producer tells the consumer
+ * the length of every frame it writes by other means, i.e., the TCP connection of the channel.
+ *
+ * Memory ordering: the producer and the consumer may be threads of different processes, so the ring does not rely on
+ * the ordering of plain accesses to the mapped buffer. Instead, each side fences its accesses with a volatile store
+ * followed by a volatile load of a field of its own, which the JVM compiles to a full memory barrier that the
+ * processor applies to every access, including those to the mapped buffer. The producer fences after it copies a
+ * frame into the ring and before it announces the frame, and after it reads the position of the consumer and before it
+ * copies the frame in; the consumer fences after it learns about a frame and before it copies the frame out, and after
+ * it copies the frame out and before it publishes its position. The position is an aligned long, which is read and
+ * written atomically.
+ */
+final class SharedMemoryRing {
+
+  /** The logger for this class. */
+  private static final Logger LOGGER = LoggerFactory.getLogger(SharedMemoryRing.class);
+
+  /** The size of the header of a ring: the number of bytes the consumer has read. */
+  private static final int HEADER_SIZE = Long.BYTES;
+
+  /** The file of the ring. */
+  private final File file;
+  /** The capacity of the ring, in bytes. */
+  private final int capacity;
+  /** The ring, mapped in memory, or null once the ring is closed. */
+  private MappedByteBuffer buffer;
+  /** The number of bytes written, at the producer, or read, at the consumer. */
+  private long position;
+  /** Stored and loaded by {@link #fence()}. */
+  private volatile boolean fenced;
+
+  /**
+   * @param file the file of the ring.
+   * @param capacity the capacity of the ring, in bytes.
+   * @throws IOException if the file cannot be mapped.
+   */
+  private SharedMemoryRing(final File file, final int capacity) throws IOException {
+    this.file = file;
+    this.capacity = capacity;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+    }
+  }
+
+  /**
+   * Creates a ring, at the producer.
+   *
+   * @param directory the directory of the file of the ring.
+   * @param prefix the prefix of the name of the file.
+   * @param capacity the capacity of the ring, in bytes.
+   * @return the ring.
+   * @throws IOException if the file cannot be created.
+   */
+  static SharedMemoryRing create(final Path directory, final String prefix, final int capacity)
+      throws IOException {
+    final File file = Files.createTempFile(directory, prefix, ".ring").toFile();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(HEADER_SIZE + capacity);
+      return new SharedMemoryRing(file, capacity);
+    } catch (IOException e) {
+      file.delete();
+      throw e;
+    }
+  }
+
+  /**
+   * Maps a ring created by a producer, at the consumer.
+   *
+   * @param file the file of the ring.
+   * @return the ring.
+   * @throws IOException if the file cannot be mapped.
+   */
+  static SharedMemoryRing attach(final File file) throws IOException {
+    return new SharedMemoryRing(file, (int) (file.length() - HEADER_SIZE));
+  }
+
+  /**
+   * @return the file of the ring.
+   */
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Deletes the file of the ring. The ring stays mapped at both sides.
+   *
+   * @return true if the file was deleted or did not exist.
+   */
+  boolean deleteFile() {
+    return file.delete() || !file.exists();
+  }
+
+  /**
+   * Copies a frame into the ring, at the producer.
+   *
+   * @param frame the frame; its reader index is not modified.
+   * @return false if the free part of the ring is too small for the frame.
+   */
+  boolean write(final ChannelBuffer frame) {
+    Preconditions.checkState(buffer != null, "the ring is closed");
+    final int length = frame.readableBytes();
+    if (position - buffer.getLong(0) + length > capacity) {
+      return false;
+    }
+    /* The bytes the consumer has read are not overwritten before it has read them. */
+    fence();
+    final int offset = (int) (position % capacity);
+    final int first = Math.min(length, capacity - offset);
+    final ByteBuffer dst = buffer.duplicate();
+    dst.position(HEADER_SIZE + offset).limit(HEADER_SIZE + offset + first);
+    frame.getBytes(frame.readerIndex(), dst);
+    if (first < length) {
+      dst.position(HEADER_SIZE).limit(HEADER_SIZE + length - first);
+      frame.getBytes(frame.readerIndex() + first, dst);
+    }
+    /* The frame is announced after this returns. */
+    fence();
+    position += length;
+    return true;
+  }
+
+  /**
+   * Copies the next frame out of the ring and frees its space, at the consumer.
+   *
+   * @param length the length of the frame.
+   * @return the frame.
+   */
+  ChannelBuffer read(final int length) {
+    Preconditions.checkState(buffer != null, "the ring is closed");
+    /* The frame was announced before this is called. */
+    fence();
+    final ChannelBuffer frame = ChannelBuffers.buffer(length);
+    final int offset = (int) (position % capacity);
+    final int first = Math.min(length, capacity - offset);
+    final ByteBuffer src = buffer.duplicate();
+    src.position(HEADER_SIZE + offset).limit(HEADER_SIZE + offset + first);
+    frame.writeBytes(src);
+    if (first < length) {
+      src.position(HEADER_SIZE).limit(HEADER_SIZE + length - first);
+      frame.writeBytes(src);
+    }
+    position += length;
+    /* The frame is copied out before its space is freed. */
+    fence();
+    buffer.putLong(0, position);
+    return frame;
+  }
+
+  /**
+   * Keeps the accesses before this before the accesses after this: the volatile store keeps the accesses before it
+   * before it, and the volatile load that follows it keeps the accesses after it after it.
+   */
+  private void fence() {
+    fenced = true;
+    Preconditions.checkState(fenced);
+  }
+
+  /**
+   * Unmaps the ring at this side, without waiting for the buffer to be collected. The ring must not be used afterwards.
+   */
+  void close() {
+    if (buffer == null) {
+      return;
+    }
+    final MappedByteBuffer mapped = buffer;
+    buffer = null;
+    unmap(mapped);
+  }
+
+  /**
+   * Unmaps a buffer through <code>sun.misc.Unsafe.invokeCleaner</code> on Java 9 and later, or through the cleaner of
+   * the buffer on Java 8. Both are internal APIs, so they are looked up by reflection; if neither is accessible, the
+   * buffer is unmapped when it is collected.
+   *
+   * @param mapped the buffer.
+   */
+  private static void unmap(final MappedByteBuffer mapped) {
+    try {
+      final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner;
+      try {
+        invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      } catch (NoSuchMethodException e) {
+        invokeCleaner = null;
+      }
+      if (invokeCleaner != null) {
+        final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        invokeCleaner.invoke(theUnsafe.get(null), mapped);
+      } else {
+        final Method getCleaner = mapped.getClass().getMethod("cleaner");
+        getCleaner.setAccessible(true);
+        final Object cleaner = getCleaner.invoke(mapped);
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOGGER.debug("Unable to unmap a shared memory ring; it is unmapped when it is collected", e);
+    }
+  }
+}
@@ -88,6 +88,16 @@ public class SimpleBagInputBuffer<PAYLOAD> extends BagInputBufferAdapter<PAYLOAD
     newArrivalListeners = new ConcurrentLinkedQueue<IPCEventListener>();
   }
 
+  /**
+   * {@inheritDoc}.
+   *
+   * A simple input buffer is not bounded.
+   * */
+  @Override
+  public final int getStreamCredits() {
+    return StreamInputChannel.UNLIMITED_CREDITS;
+  }
+
   /**
    * {@inheritDoc}.
    *
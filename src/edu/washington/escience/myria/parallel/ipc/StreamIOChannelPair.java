@@ -104,6 +104,7 @@ class StreamIOChannelPair {
     } finally {
       inputMappingLock.unlock();
     }
+    inputChannel.grantInitialCredits();
     if (LOGGER.isTraceEnabled()) {
       LOGGER.trace(
           "Stream input channel {} associates to physical channel {}.",
@@ -172,6 +173,7 @@ class StreamIOChannelPair {
     try {
       if (outputStreamChannel != null) {
         outputStreamChannel.detachIOChannel();
+        outputStreamChannel.ioChannelDetachedCallback();
         outputStreamChannel = null;
       }
     } finally {
@@ -132,6 +132,12 @@ public interface StreamInputBuffer<PAYLOAD> extends Attachmentable {
    * */
   StreamInputChannel<PAYLOAD> getInputChannel(final StreamIOChannelID sourceChannelID);
 
+  /**
+   * @return the number of messages each input stream may send before the buffer consumes them, i.e., the credits
+   *         granted to each stream by {@link StreamInputChannel}.
+   * */
+  int getStreamCredits();
+
   /**
    * @return owner connection pool.
    * */
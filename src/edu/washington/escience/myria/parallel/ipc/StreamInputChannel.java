@@ -31,6 +31,26 @@ public class StreamInputChannel<PAYLOAD> extends StreamIOChannel {
    */
   private final AtomicBoolean paused = new AtomicBoolean(false);
 
+  /**
+   * Credits that let a producer send as many messages as it wants.
+   * */
+  public static final int UNLIMITED_CREDITS = Integer.MAX_VALUE / 2;
+
+  /**
+   * The number of messages the producer may send before the input buffer consumes them.
+   * */
+  private int credits;
+
+  /**
+   * The number of messages consumed since credits were last granted.
+   * */
+  private int consumedSinceGrant;
+
+  /**
+   * If the producer may send as many messages as it wants, e.g., because the input buffer is stopped.
+   * */
+  private boolean unlimited;
+
   /**
    * release this logical input channel.
    */
@@ -66,6 +86,55 @@ public class StreamInputChannel<PAYLOAD> extends StreamIOChannel {
     return inputBuffer;
   }
 
+  /**
+   * Grant the producer of the stream as many credits as the input buffer allows for a stream. Called when the stream
+   * begins.
+   * */
+  final synchronized void grantInitialCredits() {
+    consumedSinceGrant = 0;
+    if (unlimited) {
+      credits = UNLIMITED_CREDITS;
+    } else {
+      credits = inputBuffer.getStreamCredits();
+    }
+    grant(credits);
+  }
+
+  /**
+   * Called when the input buffer consumes a message of this channel. Once half of the credits are consumed, grant them
+   * again, so that the producer of this stream, and no other stream, stops only if the consumer falls behind.
+   * */
+  final synchronized void messageConsumed() {
+    if (unlimited) {
+      return;
+    }
+    consumedSinceGrant++;
+    if (consumedSinceGrant >= (credits + 1) / 2) {
+      grant(consumedSinceGrant);
+      consumedSinceGrant = 0;
+    }
+  }
+
+  /**
+   * Let the producer send as many messages as it wants, e.g., because the input buffer is stopped and drops them.
+   * */
+  final synchronized void grantUnlimitedCredits() {
+    if (!unlimited) {
+      unlimited = true;
+      grant(UNLIMITED_CREDITS);
+    }
+  }
+
+  /**
+   * @param n the number of credits to grant to the producer, through the physical channel, if any.
+   * */
+  private void grant(final int n) {
+    Channel ch = getIOChannel();
+    if (ch != null) {
+      ch.write(new IPCMessage.Meta.CREDIT(getID().getStreamID(), n));
+    }
+  }
+
   /**
    * pause the read from this logical input channel, no matter the state of the underlying physical input channel.
    *
@@ -1,6 +1,8 @@
 package edu.washington.escience.myria.parallel.ipc;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
@@ -52,6 +54,37 @@ public class StreamOutputChannel<PAYLOAD> extends StreamIOChannel {
    * */
   private ChannelFuture releaseFuture = null;
 
+  /**
+   * The number of frames written, i.e., the number of messages.
+   * */
+  private final AtomicLong numFramesWritten = new AtomicLong();
+
+  /**
+   * The number of serialized bytes written. Messages to the local IPC entity are not serialized and count no bytes.
+   * */
+  private final AtomicLong numBytesWritten = new AtomicLong();
+
+  /**
+   * When the first frame was written, in nanoseconds.
+   * */
+  private volatile long firstWriteNanos;
+
+  /**
+   * The number of messages the consumer of the stream lets this channel send, granted through
+   * {@link IPCMessage.Meta.CREDIT} messages.
+   * */
+  private final AtomicLong credits = new AtomicLong();
+
+  /**
+   * Notified when the output channel is recovered, released or detached from its physical channel.
+   * */
+  private final Object writableMonitor = new Object();
+
+  /**
+   * If the output channel is released.
+   * */
+  private volatile boolean released = false;
+
   /**
    * @param ecID stream output channel ID
    * @param ownerPool the owner of this output channel.
@@ -75,21 +108,78 @@ public class StreamOutputChannel<PAYLOAD> extends StreamIOChannel {
    * Callback from the physical IO layer if the channel interest changed.
    * */
   final void channelInterestChangedCallback() {
-    Channel ch = getIOChannel();
-    if (ch != null) {
-      boolean writable = ch.isWritable();
+    checkWritability();
+  }
 
-      eventSerializeLock.lock();
-      try {
-        if (previousEvent == OUTPUT_DISABLED && writable) {
-          fireOutputRecovered();
-        } else if (previousEvent == OUTPUT_RECOVERED && !writable) {
-          fireOutputDisabled();
-        }
-      } finally {
-        eventSerializeLock.unlock();
+  /**
+   * Callback from the physical IO layer if the consumer of a stream granted credits.
+   *
+   * @param streamID the stream.
+   * @param numCredits the number of credits.
+   * */
+  final void creditsGrantedCallback(final long streamID, final int numCredits) {
+    if (streamID != getID().getStreamID()) {
+      /* credits of a stream that used the physical channel before. */
+      return;
+    }
+    credits.addAndGet(numCredits);
+    checkWritability();
+  }
+
+  /**
+   * Callback from the physical IO layer if this output channel is detached from its physical channel.
+   * */
+  final void ioChannelDetachedCallback() {
+    notifyWritableMonitor();
+  }
+
+  /**
+   * Wake up the threads waiting for the output channel to become writable.
+   * */
+  private void notifyWritableMonitor() {
+    synchronized (writableMonitor) {
+      writableMonitor.notifyAll();
+    }
+  }
+
+  /**
+   * Fire output disabled or recovered events if the writability changed.
+   * */
+  private void checkWritability() {
+    if (getIOChannel() == null) {
+      return;
+    }
+    boolean writable = isWritable();
+    eventSerializeLock.lock();
+    try {
+      if (previousEvent == OUTPUT_DISABLED && writable) {
+        fireOutputRecovered();
+      } else if (previousEvent == OUTPUT_RECOVERED && !writable) {
+        fireOutputDisabled();
+      }
+    } finally {
+      eventSerializeLock.unlock();
+    }
+    if (writable) {
+      notifyWritableMonitor();
+    }
+  }
+
+  /**
+   * Wait until the output channel is writable. Returns at once if the output channel is released or detached from its
+   * physical channel, since it does not become writable afterwards.
+   *
+   * @param timeoutMS the longest time to wait, in milliseconds.
+   * @return if the output channel is writable.
+   * @throws InterruptedException if interrupted.
+   * */
+  public final boolean awaitWritable(final long timeoutMS) throws InterruptedException {
+    synchronized (writableMonitor) {
+      if (!isWritable() && !isReleasedOrDetached()) {
+        writableMonitor.wait(timeoutMS);
       }
     }
+    return isWritable();
   }
 
   @Override
@@ -222,6 +312,12 @@ public class StreamOutputChannel<PAYLOAD> extends StreamIOChannel {
               getID(),
               ChannelContext.channelToString(ch));
         }
+        if (numFramesWritten.get() == 0) {
+          firstWriteNanos = System.nanoTime();
+        }
+        if (credits.decrementAndGet() <= 0) {
+          checkWritability();
+        }
         return ch.write(message);
       } finally {
         this.ownerPool.getShutdownLock().readLock().unlock();
@@ -232,21 +328,79 @@ public class StreamOutputChannel<PAYLOAD> extends StreamIOChannel {
     }
   }
 
+  /**
+   * Callback from the physical IO layer when a message of this channel is written.
+   *
+   * @param numBytes the size of the serialized message, 0 if the message is not serialized.
+   * */
+  final void frameWrittenCallback(final int numBytes) {
+    numFramesWritten.incrementAndGet();
+    numBytesWritten.addAndGet(numBytes);
+  }
+
+  /**
+   * @return the number of frames written.
+   * */
+  public final long getNumFramesWritten() {
+    return numFramesWritten.get();
+  }
+
+  /**
+   * @return the number of serialized bytes written.
+   * */
+  public final long getNumBytesWritten() {
+    return numBytesWritten.get();
+  }
+
+  /**
+   * @return the average number of serialized bytes per frame written.
+   * */
+  public final double getBytesPerFrame() {
+    long frames = numFramesWritten.get();
+    if (frames == 0) {
+      return 0;
+    }
+    return (double) numBytesWritten.get() / frames;
+  }
+
+  /**
+   * @return the average number of frames written per second since the first frame was written.
+   * */
+  public final double getFramesPerSecond() {
+    long frames = numFramesWritten.get();
+    if (frames == 0) {
+      return 0;
+    }
+    long elapsed = Math.max(System.nanoTime() - firstWriteNanos, 1);
+    return frames * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
   /**
    * @return release future.
    * */
   public final synchronized ChannelFuture release() {
     if (releaseFuture == null) {
+      released = true;
+      notifyWritableMonitor();
       releaseFuture = ownerPool.releaseLongTermConnection(this);
     }
     return releaseFuture;
   }
 
   /**
-   * @return If the output channel is writable.
+   * @return If the output channel is released or detached from its physical channel, so that it will not become
+   *         writable.
+   * */
+  public final boolean isReleasedOrDetached() {
+    return released || getIOChannel() == null;
+  }
+
+  /**
+   * @return If the output channel is writable, i.e., the physical channel is writable and the consumer of the stream
+   *         granted credits.
    * */
   public final boolean isWritable() {
     Channel ch = getIOChannel();
-    return ch != null && ch.isWritable();
+    return ch != null && ch.isWritable() && credits.get() > 0;
   }
 }
@@ -3,18 +3,14 @@
  */
 package edu.washington.escience.myria.perfenforce;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.LoggerFactory;
 
@@ -28,12 +24,16 @@ import edu.washington.escience.myria.parallel.Server;
  */
 public class PerfEnforceOnlineLearning {
 
+  /** The number of features collected per query, not counting the runtime. */
+  private static final int NUM_FEATURES = 6;
+
   private final Server server;
 
-  List<String> previousDataPoints;
   private PerfEnforceQueryMetadataEncoding currentQuery;
   private final String onlineLearningPath;
-  private final Double[] queryPredictions;
+  private final String[] queryFeatures;
+  private PerfEnforceRegressionModel slaModel;
+  private PerfEnforceRegressionModel onlineModel;
   private int currentConfiguration;
   private int selectedTier;
   private int queryCounter;
@@ -51,10 +51,9 @@ public class PerfEnforceOnlineLearning {
     selectedTier = tier;
     currentConfiguration = PerfEnforceDriver.configurations.get(tier);
     currentQuery = new PerfEnforceQueryMetadataEncoding();
-    queryPredictions = new Double[PerfEnforceDriver.configurations.size()];
+    queryFeatures = new String[PerfEnforceDriver.configurations.size()];
     onlineLearningPath =
         PerfEnforceDriver.configurationPath.resolve("PerfEnforceScaling").toString();
-    previousDataPoints = new ArrayList<String>();
     this.server = server;
   }
 
@@ -82,8 +81,6 @@ public class PerfEnforceOnlineLearning {
    * @throws PerfEnforceException if there is an error computing the query's SLA
    */
   public void findSLA(final String querySQL) throws PerfEnforceException {
-    String pslaPath = PerfEnforceDriver.configurationPath.resolve("PSLAGeneration").toString();
-
     int currentConfigurationSize = PerfEnforceDriver.configurations.get(selectedTier);
     String currentQueryForConfiguration =
         convertQueryForConfiguration(querySQL, currentConfigurationSize);
@@ -91,60 +88,9 @@ public class PerfEnforceOnlineLearning {
         PerfEnforceUtils.getMaxFeature(
             server, currentQueryForConfiguration, currentConfigurationSize);
 
-    try (PrintWriter featureWriter =
-            new PrintWriter(Paths.get(pslaPath, "current-q-features.arff").toString(), "UTF-8")) {
-
-      featureWriter.write("@relation testing \n");
-
-      featureWriter.write("@attribute numberTables numeric \n");
-      featureWriter.write("@attribute postgesEstCostMin numeric \n");
-      featureWriter.write("@attribute postgesEstCostMax numeric \n");
-      featureWriter.write("@attribute postgesEstNumRows numeric \n");
-      featureWriter.write("@attribute postgesEstWidth numeric \n");
-      featureWriter.write("@attribute numberOfWorkers numeric \n");
-      featureWriter.write("@attribute realTime numeric \n");
-
-      featureWriter.write("\n");
-      featureWriter.write("@data \n");
-      featureWriter.write(currentQueryFeatures + "\n");
-      featureWriter.close();
-
-      // predict the runtime
-      String[] cmd = {
-        "java",
-        "-classpath",
-        Paths.get(pslaPath, "weka.jar").toString(),
-        "weka.classifiers.rules.M5Rules",
-        "-M",
-        "4.0",
-        "-t",
-        Paths.get(pslaPath, "training.arff").toString(),
-        "-T",
-        Paths.get(pslaPath, "current-q-features.arff").toString(),
-        "-p",
-        "0",
-        "-classifications",
-        "weka.classifiers.evaluation.output.prediction.CSV -file \""
-            + Paths.get(pslaPath, "current-q-results.txt").toString()
-            + "\""
-      };
-
-      Process p = Runtime.getRuntime().exec(cmd);
-      try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
-        while ((reader.readLine()) != null) {}
-      }
-
-      String querySLA = "";
-      try (BufferedReader predictionReader =
-              new BufferedReader(
-                  new FileReader(Paths.get(pslaPath, "current-q-results.txt").toString()));) {
-        predictionReader.readLine();
-        querySLA = predictionReader.readLine().split(",")[2];
-      }
-
-      currentQuery =
-          new PerfEnforceQueryMetadataEncoding(
-              queryCounter, Double.parseDouble(querySLA), querySQL);
+    try {
+      double querySLA = getSLAModel().predict(currentQueryFeatures);
+      currentQuery = new PerfEnforceQueryMetadataEncoding(queryCounter, querySLA, querySQL);
     } catch (Exception e) {
       throw new PerfEnforceException("Error finding SLA");
     }
@@ -155,62 +101,20 @@ public class PerfEnforceOnlineLearning {
    * @throws PerfEnforceException if there is an error selecting the best configuration size
    */
   public void findBestConfigurationSize() throws PerfEnforceException {
-    try {
-      for (int c : PerfEnforceDriver.configurations) {
-
-        int currentConfigurationSize = c;
-        String currentQueryForConfiguration =
-            convertQueryForConfiguration(currentQuery.getQueryText(), currentConfigurationSize);
-        String currentQueryFeatures =
-            PerfEnforceUtils.getMaxFeature(
-                server, currentQueryForConfiguration, currentConfigurationSize);
-
-        FileWriter featureWriterForConfiguration;
-        featureWriterForConfiguration =
-            new FileWriter(Paths.get(onlineLearningPath, "features", String.valueOf(c)).toString());
-        featureWriterForConfiguration.write(currentQueryFeatures + '\n');
-        featureWriterForConfiguration.close();
-      }
-    } catch (Exception e) {
-      throw new PerfEnforceException("Error selecting best configuration size");
-    }
-
-    List<Thread> threadList = new ArrayList<Thread>();
-    for (int i = 0; i < PerfEnforceDriver.configurations.size(); i++) {
-      final int configurationIndex = i;
-      Thread thread =
-          new Thread(
-              new Runnable() {
-                @Override
-                public void run() {
-                  try {
-                    trainOnlineQueries(configurationIndex);
-                  } catch (Exception e) {
-                    e.printStackTrace();
-                  }
-                }
-              });
-      threadList.add(thread);
-    }
-
-    for (Thread t : threadList) {
-      t.start();
-    }
-
-    for (Thread t : threadList) {
-      try {
-        t.join();
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      }
-    }
+    collectQueryFeatures();
+    PerfEnforceRegressionModel model = getOnlineModel();
 
     double maxScore = 0;
     int winnerIndex = 0;
     for (int currentState = 0;
         currentState < PerfEnforceDriver.configurations.size();
         currentState++) {
-      double onlinePrediction = queryPredictions[currentState];
+      double onlinePrediction;
+      try {
+        onlinePrediction = model.predict(queryFeatures[currentState]);
+      } catch (Exception e) {
+        throw new PerfEnforceException("Error predicting the query runtime");
+      }
 
       onlinePrediction = (onlinePrediction < 0) ? 0 : onlinePrediction;
       double currentRatio = 0;
@@ -231,84 +135,66 @@ public class PerfEnforceOnlineLearning {
   }
 
   /**
-   * Given a configuration size, this method predicts the runtime of the currentQuery
+   * Collects the features of currentQuery for every configuration. The EXPLAIN statements of the different
+   * configurations run on different sets of workers, so they are issued concurrently.
    *
-   * @param configurationIndex the configuration size in consideration
-   * @throws PerfEnforceException if there is an error during the training phase
+   * @throws PerfEnforceException if there is an error collecting the features
    */
-  public void trainOnlineQueries(final int configurationIndex) throws PerfEnforceException {
-    String MOAFileName = Paths.get(onlineLearningPath, "moa.jar").toString();
-    String trainingFileName = Paths.get(onlineLearningPath, "training.arff").toString();
-    String modifiedTrainingFileName =
-        Paths.get(onlineLearningPath, "training-modified-" + configurationIndex + ".arff")
-            .toString();
-    String predictionsFileName =
-        Paths.get(onlineLearningPath, "predictions" + configurationIndex + ".txt").toString();
-
+  private void collectQueryFeatures() throws PerfEnforceException {
+    int numConfigurations = PerfEnforceDriver.configurations.size();
+    ExecutorService executor = Executors.newFixedThreadPool(numConfigurations);
     try {
-      PrintWriter outputWriter = new PrintWriter(modifiedTrainingFileName);
-      outputWriter.close();
-      PrintWriter predictionWriter = new PrintWriter(predictionsFileName);
-      predictionWriter.close();
-
-      // copy training file to new file
-      FileChannel src = new FileInputStream(trainingFileName).getChannel();
-      FileChannel dest = new FileOutputStream(modifiedTrainingFileName).getChannel();
-      dest.transferFrom(src, 0, src.size());
-      src.close();
-      dest.close();
-
-      // Append all previous data points
-      FileWriter appendDataWriter = new FileWriter(modifiedTrainingFileName, true);
-      for (String s : previousDataPoints) {
-        appendDataWriter.write(s + "\n");
+      List<Future<String>> features = new ArrayList<>(numConfigurations);
+      for (final int c : PerfEnforceDriver.configurations) {
+        final String currentQueryForConfiguration =
+            convertQueryForConfiguration(currentQuery.getQueryText(), c);
+        features.add(
+            executor.submit(
+                new Callable<String>() {
+                  @Override
+                  public String call() throws PerfEnforceException {
+                    return PerfEnforceUtils.getMaxFeature(server, currentQueryForConfiguration, c);
+                  }
+                }));
       }
-
-      // Append the current point
-      String newPoint = getQueryFeature(configurationIndex, 0);
-      appendDataWriter.write(newPoint + "\n");
-      appendDataWriter.close();
-
-      String moaCommand =
-          String.format(
-              "EvaluatePrequentialRegression -l (rules.functions.Perceptron  -d -l %s) -s (ArffFileStream -f %s) -e (WindowRegressionPerformanceEvaluator -w 1) -f 1 -o %s",
-              .04,
-              modifiedTrainingFileName,
-              predictionsFileName);
-
-      String[] arrayCommand =
-          new String[] {"java", "-classpath", MOAFileName, "moa.DoTask", moaCommand};
-
-      Process p = Runtime.getRuntime().exec(arrayCommand);
-
-      try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
-        while ((reader.readLine()) != null) {}
+      for (int i = 0; i < numConfigurations; i++) {
+        queryFeatures[i] = features.get(i).get();
       }
-      parsingOnlineFile(configurationIndex, predictionsFileName);
     } catch (Exception e) {
-      throw new PerfEnforceException("Error during training");
+      throw new PerfEnforceException("Error selecting best configuration size");
+    } finally {
+      executor.shutdownNow();
     }
   }
 
   /**
-   * Helps parse the output file from MOA to read the runtime prediction
-   *
-   * @param configurationIndex the configuration size in consideration
-   * @param predictionFileName the file that contains the prediction
-   * @throws PerfEnforceException if there is an error from the parsing the predictions output
+   * @return the model predicting the SLA of a query, trained on the PSLA generation data.
+   * @throws PerfEnforceException if there is an error reading the training data
    */
-  public void parsingOnlineFile(final int configurationIndex, final String predictionFileName)
-      throws PerfEnforceException {
-    try (BufferedReader streamReader = new BufferedReader(new FileReader(predictionFileName))) {
-      String currentLine = "";
-      double nextQueryPrediction = 0;
-      while ((currentLine = streamReader.readLine()) != null) {
-        nextQueryPrediction = Double.parseDouble((currentLine.split(",")[0]).split(":")[1]);
-      }
-      queryPredictions[configurationIndex] = nextQueryPrediction;
-    } catch (Exception e) {
-      throw new PerfEnforceException("Error parsing online predictions file");
+  private synchronized PerfEnforceRegressionModel getSLAModel() throws PerfEnforceException {
+    if (slaModel == null) {
+      slaModel =
+          PerfEnforceRegressionModel.fromArff(
+              PerfEnforceDriver.configurationPath
+                  .resolve("PSLAGeneration")
+                  .resolve("training.arff"),
+              NUM_FEATURES);
     }
+    return slaModel;
+  }
+
+  /**
+   * @return the model predicting the runtime of a query on a configuration, trained on the scaling data and updated
+   *         with the real runtime of every query run so far.
+   * @throws PerfEnforceException if there is an error reading the training data
+   */
+  private synchronized PerfEnforceRegressionModel getOnlineModel() throws PerfEnforceException {
+    if (onlineModel == null) {
+      onlineModel =
+          PerfEnforceRegressionModel.fromArff(
+              Paths.get(onlineLearningPath, "training.arff"), NUM_FEATURES);
+    }
+    return onlineModel;
   }
 
   /**
@@ -321,15 +207,8 @@ public class PerfEnforceOnlineLearning {
    */
   public String getQueryFeature(final int configurationIndex, final double queryRuntime)
       throws PerfEnforceException {
-    String featureFilePath =
-        Paths.get(
-                onlineLearningPath,
-                "features",
-                String.valueOf(PerfEnforceDriver.configurations.get(configurationIndex)))
-            .toString();
-
-    try (BufferedReader featureReader = new BufferedReader(new FileReader(featureFilePath))) {
-      String result = featureReader.readLine();
+    try {
+      String result = queryFeatures[configurationIndex];
       if (queryRuntime != 0) {
         String[] parts = result.split(",");
         result = Joiner.on(",").join(Arrays.copyOfRange(parts, 0, parts.length - 1));
@@ -361,9 +240,14 @@ public class PerfEnforceOnlineLearning {
    * @param queryRuntime the runtime of the query
    */
   public void recordRealRuntime(final double queryRuntime) throws PerfEnforceException {
-    previousDataPoints.add(
+    String dataPoint =
         getQueryFeature(
-            PerfEnforceDriver.configurations.indexOf(currentConfiguration), queryRuntime));
+            PerfEnforceDriver.configurations.indexOf(currentConfiguration), queryRuntime);
+    try {
+      getOnlineModel().addDataPoint(dataPoint);
+    } catch (IllegalArgumentException e) {
+      throw new PerfEnforceException("Error recording the query runtime");
+    }
   }
 
   /**
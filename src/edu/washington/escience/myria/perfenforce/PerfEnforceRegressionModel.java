@@ -0,0 +1,249 @@
+/**
+ *
+ */
+package edu.washington.escience.myria.perfenforce;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Doubles;
+
+/**
+ * An incrementally updated linear regression model that predicts the runtime of a query from its features. The
+ * features are the ones PerfEnforce collects with {@link PerfEnforceUtils#getMaxFeature}: a comma separated line whose
+ * last value is the runtime and all the other values are the features.
+ *
+ * The model keeps the sufficient statistics (X'X and X'y) of ordinary least squares, so adding a data point costs
+ * O(d^2) and the weights are only re-solved, in O(d^3), before the first prediction after an update. Predictions are
+ * cached by feature vector until the next update.
+ */
+public class PerfEnforceRegressionModel {
+
+  /** Ridge term added to the diagonal so that collinear features (e.g. a constant column) do not break the solve. */
+  private static final double RIDGE = 1e-6;
+
+  /** The number of features, not counting the intercept. */
+  private final int numFeatures;
+  /** X'X, including the intercept as the first column. */
+  private final double[][] xtx;
+  /** X'y, including the intercept as the first entry. */
+  private final double[] xty;
+  /** The solved weights, null if the model changed since they were last solved. */
+  private double[] weights;
+  /** The number of data points the model has seen. */
+  private long numDataPoints;
+  /**
+   * Cached predictions, keyed by feature vector. Predictions and updates hold the monitor of the model, so that a
+   * prediction computed from the weights before an update is never cached after it.
+   */
+  private final Map<List<Double>, Double> predictionCache;
+
+  /**
+   * @param numFeatures the number of features of each data point, not counting the runtime.
+   */
+  public PerfEnforceRegressionModel(final int numFeatures) {
+    Preconditions.checkArgument(numFeatures > 0, "the model needs at least one feature");
+    this.numFeatures = numFeatures;
+    xtx = new double[numFeatures + 1][numFeatures + 1];
+    xty = new double[numFeatures + 1];
+    predictionCache = new HashMap<>();
+  }
+
+  /**
+   * Creates a model trained on the data section of an ARFF file whose last attribute is the runtime.
+   *
+   * @param arffPath the path of the ARFF file
+   * @param numFeatures the number of features of each data point, not counting the runtime
+   * @return the trained model
+   * @throws PerfEnforceException if the file cannot be read or parsed
+   */
+  public static PerfEnforceRegressionModel fromArff(final Path arffPath, final int numFeatures)
+      throws PerfEnforceException {
+    PerfEnforceRegressionModel model = new PerfEnforceRegressionModel(numFeatures);
+    try (BufferedReader reader = new BufferedReader(new FileReader(arffPath.toString()))) {
+      boolean inData = false;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("%")) {
+          continue;
+        }
+        if (!inData) {
+          inData = line.toLowerCase().startsWith("@data");
+          continue;
+        }
+        model.addDataPoint(line);
+      }
+    } catch (Exception e) {
+      throw new PerfEnforceException("Error reading training data from " + arffPath);
+    }
+    return model;
+  }
+
+  /**
+   * Parses a comma separated feature line.
+   *
+   * @param featureLine the features followed by the runtime, comma separated
+   * @return all the values of the line
+   */
+  public static double[] parseFeatureLine(final String featureLine) {
+    String[] parts = featureLine.split(",");
+    double[] values = new double[parts.length];
+    for (int i = 0; i < parts.length; ++i) {
+      values[i] = Double.parseDouble(parts[i].trim());
+    }
+    return values;
+  }
+
+  /**
+   * Adds a data point given as a feature line, i.e. the features followed by the runtime.
+   *
+   * @param featureLine the features followed by the runtime, comma separated
+   */
+  public void addDataPoint(final String featureLine) {
+    double[] values = parseFeatureLine(featureLine);
+    Preconditions.checkArgument(
+        values.length == numFeatures + 1,
+        "expected %s features and a runtime, got %s values",
+        numFeatures,
+        values.length);
+    addDataPoint(Arrays.copyOf(values, numFeatures), values[numFeatures]);
+  }
+
+  /**
+   * Adds a data point.
+   *
+   * @param features the features of the query
+   * @param runtime the observed runtime of the query
+   */
+  public synchronized void addDataPoint(final double[] features, final double runtime) {
+    Preconditions.checkArgument(
+        features.length == numFeatures,
+        "expected %s features, got %s",
+        numFeatures,
+        features.length);
+    for (int i = 0; i <= numFeatures; ++i) {
+      double xi = i == 0 ? 1 : features[i - 1];
+      for (int j = 0; j <= numFeatures; ++j) {
+        double xj = j == 0 ? 1 : features[j - 1];
+        xtx[i][j] += xi * xj;
+      }
+      xty[i] += xi * runtime;
+    }
+    numDataPoints++;
+    weights = null;
+    predictionCache.clear();
+  }
+
+  /**
+   * Predicts the runtime of a query given as a feature line. Any values after the features (e.g. the placeholder
+   * runtime) are ignored.
+   *
+   * @param featureLine the features, comma separated
+   * @return the predicted runtime
+   */
+  public double predict(final String featureLine) {
+    return predict(Arrays.copyOf(parseFeatureLine(featureLine), numFeatures));
+  }
+
+  /**
+   * Predicts the runtime of a query.
+   *
+   * @param features the features of the query
+   * @return the predicted runtime
+   */
+  public synchronized double predict(final double[] features) {
+    Preconditions.checkArgument(
+        features.length == numFeatures,
+        "expected %s features, got %s",
+        numFeatures,
+        features.length);
+    List<Double> key = Doubles.asList(features.clone());
+    Double cached = predictionCache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    double[] w = getWeights();
+    double prediction = w[0];
+    for (int i = 0; i < numFeatures; ++i) {
+      prediction += w[i + 1] * features[i];
+    }
+    predictionCache.put(key, prediction);
+    return prediction;
+  }
+
+  /**
+   * @return the number of data points the model has seen.
+   */
+  public synchronized long getNumDataPoints() {
+    return numDataPoints;
+  }
+
+  /**
+   * @return the weights of the model, the intercept first. Solves the normal equations if the model changed.
+   */
+  private synchronized double[] getWeights() {
+    if (weights == null) {
+      int n = numFeatures + 1;
+      double[][] a = new double[n][n + 1];
+      for (int i = 0; i < n; ++i) {
+        System.arraycopy(xtx[i], 0, a[i], 0, n);
+        if (i > 0) {
+          /* scale the ridge term with the feature's magnitude so that large features are not over-regularized. */
+          a[i][i] += RIDGE * Math.max(xtx[i][i], 1);
+        }
+        a[i][n] = xty[i];
+      }
+      weights = solve(a);
+    }
+    return weights;
+  }
+
+  /**
+   * Solves a linear system with Gaussian elimination and partial pivoting.
+   *
+   * @param a the augmented n x (n+1) matrix, modified in place
+   * @return the solution, with 0 for variables that cannot be determined
+   */
+  private static double[] solve(final double[][] a) {
+    int n = a.length;
+    for (int col = 0; col < n; ++col) {
+      int pivot = col;
+      for (int row = col + 1; row < n; ++row) {
+        if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+          pivot = row;
+        }
+      }
+      double[] tmp = a[col];
+      a[col] = a[pivot];
+      a[pivot] = tmp;
+      if (a[col][col] == 0) {
+        continue;
+      }
+      for (int row = col + 1; row < n; ++row) {
+        double factor = a[row][col] / a[col][col];
+        for (int k = col; k <= n; ++k) {
+          a[row][k] -= factor * a[col][k];
+        }
+      }
+    }
+    double[] x = new double[n];
+    for (int row = n - 1; row >= 0; --row) {
+      if (a[row][row] == 0) {
+        continue;
+      }
+      double sum = a[row][n];
+      for (int k = row + 1; k < n; ++k) {
+        sum -= a[row][k] * x[k];
+      }
+      x[row] = sum / a[row][row];
+    }
+    return x;
+  }
+}
@@ -0,0 +1,126 @@
+package edu.washington.escience.myria.storage;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+import edu.washington.escience.myria.util.HashUtils;
+
+/**
+ * An immutable hash index of a table on key columns, e.g., of the build side of a hash join. The rows with the same
+ * hash bucket are chained through flat int arrays instead of a map of lists, so a probe touches a few arrays and no
+ * objects, and since nothing changes after construction, any number of threads may probe the same index without
+ * locks once it is safely published, e.g., through a {@link HashIndexRegistry}.
+ */
+public final class HashIndex {
+
+  /** The indexed tuples. */
+  private final MutableTupleBuffer table;
+
+  /** The key columns of {@link #table}. */
+  private final int[] keyColumns;
+
+  /** The hash code of the key of each row. */
+  private final int[] hashes;
+
+  /** The first row of each bucket, or -1. The number of buckets is a power of two. */
+  private final int[] heads;
+
+  /** The next row in the bucket of each row, or -1. */
+  private final int[] next;
+
+  /**
+   * @param table the tuples to index, which must not change afterwards.
+   * @param keyColumns the key columns of the table.
+   * @param hashes the hash code of the key of each row, as computed by {@link HashUtils#hashSubRow}.
+   */
+  public HashIndex(final MutableTupleBuffer table, final int[] keyColumns, final int[] hashes) {
+    Preconditions.checkArgument(
+        hashes.length == table.numTuples(), "there must be one hash code for each row");
+    this.table = table;
+    this.keyColumns = keyColumns;
+    this.hashes = hashes;
+    heads = new int[Integer.highestOneBit(Math.max(1, hashes.length)) * 2];
+    Arrays.fill(heads, -1);
+    next = new int[hashes.length];
+    /* Insert backwards so that each chain lists its rows in the order of the table. */
+    for (int row = hashes.length - 1; row >= 0; --row) {
+      final int bucket = hashes[row] & (heads.length - 1);
+      next[row] = heads[bucket];
+      heads[bucket] = row;
+    }
+  }
+
+  /**
+   * @return the indexed tuples.
+   */
+  public MutableTupleBuffer getTable() {
+    return table;
+  }
+
+  /**
+   * @return the number of indexed tuples.
+   */
+  public int numTuples() {
+    return hashes.length;
+  }
+
+  /**
+   * @return the estimated number of bytes of the index itself, not counting the indexed tuples.
+   */
+  public long indexBytes() {
+    return (long) Integer.BYTES * (hashes.length + heads.length + next.length);
+  }
+
+  /**
+   * @param probe the table of the probing tuple.
+   * @param probeColumns the key columns of the probing tuple, compared with the key columns of the index in order.
+   * @param probeRow the row of the probing tuple.
+   * @param hash the hash code of the key of the probing tuple, as computed by {@link HashUtils#hashSubRow}.
+   * @return the first row of the index whose key equals the key of the probing tuple, or -1.
+   */
+  public int firstMatch(
+      final ReadableTable probe, final int[] probeColumns, final int probeRow, final int hash) {
+    return match(probe, probeColumns, probeRow, hash, heads[hash & (heads.length - 1)]);
+  }
+
+  /**
+   * @param probe the table of the probing tuple.
+   * @param probeColumns the key columns of the probing tuple, compared with the key columns of the index in order.
+   * @param probeRow the row of the probing tuple.
+   * @param hash the hash code of the key of the probing tuple, as computed by {@link HashUtils#hashSubRow}.
+   * @param previous a row returned by {@link #firstMatch} or by this method for the same probing tuple.
+   * @return the next row of the index whose key equals the key of the probing tuple, or -1.
+   */
+  public int nextMatch(
+      final ReadableTable probe,
+      final int[] probeColumns,
+      final int probeRow,
+      final int hash,
+      final int previous) {
+    return match(probe, probeColumns, probeRow, hash, next[previous]);
+  }
+
+  /**
+   * @param probe the table of the probing tuple.
+   * @param probeColumns the key columns of the probing tuple.
+   * @param probeRow the row of the probing tuple.
+   * @param hash the hash code of the key of the probing tuple.
+   * @param from the row of the chain to start from, or -1.
+   * @return the first row of the chain, from the given one, whose key equals the key of the probing tuple, or -1.
+   */
+  private int match(
+      final ReadableTable probe,
+      final int[] probeColumns,
+      final int probeRow,
+      final int hash,
+      final int from) {
+    for (int row = from; row >= 0; row = next[row]) {
+      if (hashes[row] == hash
+          && TupleUtils.tupleEquals(probe, probeColumns, probeRow, table, keyColumns, row)) {
+        return row;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,212 @@
+package edu.washington.escience.myria.storage;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import edu.washington.escience.myria.Schema;
+
+/**
+ * A worker-wide registry of the {@link HashIndex}es of relations that many fragments join against, e.g., the dimension
+ * tables of a star schema, which a broadcast join replicates to every worker. The first join that builds the index of
+ * a relation on some key columns reserves it here, and publishes it once built. The joins of the other fragments, of
+ * the same or of another query, wait for the reserved index and probe it instead of building their own.
+ *
+ * Indexes are keyed by a name of the relation that must change whenever its tuples do, e.g., the relation key and the
+ * id of the query that last wrote it, so a stale index is never found and ages out. Looking up an index takes no lock.
+ * The registry holds a bounded number of bytes, and evicts the indexes that were used least recently when it is full;
+ * the joins that probe an evicted index keep it until they finish.
+ */
+@ThreadSafe
+public final class HashIndexRegistry {
+  /** The logger for this class. */
+  private static final org.slf4j.Logger LOGGER =
+      org.slf4j.LoggerFactory.getLogger(HashIndexRegistry.class);
+
+  /** A relation, its schema, and the key columns of an index of it. */
+  private static final class Key {
+    /** The name of the version of the relation. */
+    private final String relation;
+    /** The schema of the relation, names and types. */
+    private final Schema schema;
+    /** The key columns. */
+    private final int[] columns;
+
+    /**
+     * @param relation the name of the version of the relation.
+     * @param schema the schema of the relation.
+     * @param columns the key columns.
+     */
+    private Key(final String relation, final Schema schema, final int[] columns) {
+      this.relation = Objects.requireNonNull(relation, "relation");
+      this.schema = Objects.requireNonNull(schema, "schema");
+      this.columns = columns.clone();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return relation.equals(other.relation)
+          && schema.equals(other.schema)
+          && Arrays.equals(columns, other.columns);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(relation, schema, Arrays.hashCode(columns));
+    }
+
+    @Override
+    public String toString() {
+      return relation + Arrays.toString(columns);
+    }
+  }
+
+  /** A reserved index, published once its future is done. */
+  private static final class Entry {
+    /** The index, or null if its builder abandoned it. */
+    private final SettableFuture<HashIndex> index;
+    /** The estimated size of the index and its tuples, in bytes, once published. */
+    @GuardedBy("HashIndexRegistry.this")
+    private long bytes;
+    /** When the index was last used, on the clock of the registry. */
+    private volatile long lastUse;
+
+    /**
+     * @param lastUse when the index was reserved, on the clock of the registry.
+     */
+    private Entry(final long lastUse) {
+      index = SettableFuture.create();
+      this.lastUse = lastUse;
+    }
+  }
+
+  /** The maximum number of bytes held. */
+  private final long capacity;
+  /** The reserved and the published indexes. */
+  private final ConcurrentHashMap<Key, Entry> indexes;
+  /** Orders the uses of the indexes. */
+  private final AtomicLong clock;
+  /** The number of bytes held. */
+  @GuardedBy("this")
+  private long used;
+
+  /**
+   * @param capacity the maximum number of bytes held.
+   */
+  public HashIndexRegistry(final long capacity) {
+    this.capacity = capacity;
+    indexes = new ConcurrentHashMap<>();
+    clock = new AtomicLong();
+  }
+
+  /**
+   * Looks up the index of a relation on key columns. If there is none, it is reserved for the caller, who must then
+   * either {@link #publish} it or {@link #abandon} it.
+   *
+   * @param relation the name of the version of a relation.
+   * @param schema the schema of the relation.
+   * @param keyColumns the key columns of the index.
+   * @return the future index of the relation on the key columns, done once its builder publishes it, and null if the
+   *         builder abandons it; or null if the index is reserved for the caller.
+   */
+  @Nullable
+  public ListenableFuture<HashIndex> getOrReserve(
+      final String relation, final Schema schema, final int[] keyColumns) {
+    Key key = new Key(relation, schema, keyColumns);
+    Entry entry = indexes.get(key);
+    if (entry == null) {
+      Entry reserved = new Entry(clock.incrementAndGet());
+      entry = indexes.putIfAbsent(key, reserved);
+      if (entry == null) {
+        return null;
+      }
+    }
+    entry.lastUse = clock.incrementAndGet();
+    return entry.index;
+  }
+
+  /**
+   * Publishes an index reserved by the caller, evicting the published indexes that were used least recently if needed.
+   * An index larger than the registry is handed to the joins waiting for it, but not kept.
+   *
+   * @param relation the name of the version of the relation.
+   * @param schema the schema of the relation.
+   * @param keyColumns the key columns of the index.
+   * @param index the index.
+   * @param bytes the estimated size of the index and its tuples, in bytes.
+   */
+  public synchronized void publish(
+      final String relation,
+      final Schema schema,
+      final int[] keyColumns,
+      final HashIndex index,
+      final long bytes) {
+    Key key = new Key(relation, schema, keyColumns);
+    Entry entry = indexes.get(key);
+    Preconditions.checkState(
+        entry != null && !entry.index.isDone(), "the index of %s is not reserved", key);
+    if (bytes > capacity) {
+      indexes.remove(key);
+      entry.index.set(index);
+      return;
+    }
+    while (used + bytes > capacity) {
+      Map.Entry<Key, Entry> victim = null;
+      for (Map.Entry<Key, Entry> e : indexes.entrySet()) {
+        /* reserved indexes that are not built yet take no space, and are not evicted. */
+        if (e.getValue().index.isDone()
+            && (victim == null || e.getValue().lastUse < victim.getValue().lastUse)) {
+          victim = e;
+        }
+      }
+      LOGGER.info(
+          "Evicting the hash index of {} ({} bytes)", victim.getKey(), victim.getValue().bytes);
+      indexes.remove(victim.getKey());
+      used -= victim.getValue().bytes;
+    }
+    entry.bytes = bytes;
+    entry.lastUse = clock.incrementAndGet();
+    used += bytes;
+    entry.index.set(index);
+  }
+
+  /**
+   * Drops the reservation of an index the caller will not publish, e.g., because its query failed, so that the joins
+   * waiting for it build their own.
+   *
+   * @param relation the name of the version of the relation.
+   * @param schema the schema of the relation.
+   * @param keyColumns the key columns of the index.
+   */
+  public synchronized void abandon(
+      final String relation, final Schema schema, final int[] keyColumns) {
+    Key key = new Key(relation, schema, keyColumns);
+    Entry entry = indexes.get(key);
+    Preconditions.checkState(
+        entry != null && !entry.index.isDone(), "the index of %s is not reserved", key);
+    indexes.remove(key);
+    entry.index.set(null);
+  }
+
+  /**
+   * @return the number of reserved and published indexes.
+   */
+  public int size() {
+    return indexes.size();
+  }
+}
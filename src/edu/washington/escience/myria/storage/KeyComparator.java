@@ -0,0 +1,127 @@
+package edu.washington.escience.myria.storage;
+
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+
+import com.google.common.base.Preconditions;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.MyriaConstants;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+
+/**
+ * Compares tuples on key columns, like {@link TupleUtils#tupleCompare}. An instance is a subclass compiled by Janino
+ * for the types of the schemas, the key columns and the orders, so comparing two tuples reads the values with the
+ * accessors of their types without looking up the schemas, switching on the types or looping over the key columns.
+ * Operators that compare tuples for every tuple they emit, e.g., merges, should compile one when they open.
+ */
+public abstract class KeyComparator {
+
+  /** For the generated subclasses. */
+  protected KeyComparator() {}
+
+  /**
+   * @param table1 the table of the first tuple.
+   * @param row1 the row of the first tuple.
+   * @param table2 the table of the second tuple.
+   * @param row2 the row of the second tuple.
+   * @return a negative integer, zero, or a positive integer as the first tuple is before, equal to, or after the second
+   *         in the order.
+   */
+  public abstract int compare(ReadableTable table1, int row1, ReadableTable table2, int row2);
+
+  /**
+   * @param schema the schema of the tuples.
+   * @param columns the key columns.
+   * @param ascending true for each key column that is ordered ascending.
+   * @return a comparator of the tuples.
+   * @throws DbException if the comparator could not be compiled.
+   */
+  public static KeyComparator compile(
+      final Schema schema, final int[] columns, final boolean[] ascending) throws DbException {
+    return compile(schema, columns, schema, columns, ascending);
+  }
+
+  /**
+   * @param schema1 the schema of the first tuples.
+   * @param columns1 the key columns of the first tuples.
+   * @param schema2 the schema of the second tuples.
+   * @param columns2 the key columns of the second tuples, compared with the key columns of the first tuples in order.
+   * @param ascending true for each key column that is ordered ascending.
+   * @return a comparator of the first tuples with the second tuples.
+   * @throws DbException if the comparator could not be compiled.
+   */
+  public static KeyComparator compile(
+      final Schema schema1,
+      final int[] columns1,
+      final Schema schema2,
+      final int[] columns2,
+      final boolean[] ascending)
+      throws DbException {
+    Preconditions.checkArgument(
+        columns1.length == columns2.length && columns1.length == ascending.length,
+        "the numbers of key columns and orders do not match");
+    final String table = ReadableTable.class.getCanonicalName();
+    final StringBuilder classBody = new StringBuilder();
+    classBody
+        .append("public int compare(final ")
+        .append(table)
+        .append(" table1, final int row1, final ")
+        .append(table)
+        .append(" table2, final int row2) {\nint compared;\n");
+    for (int i = 0; i < columns1.length; ++i) {
+      final Type type = schema1.getColumnType(columns1[i]);
+      Preconditions.checkArgument(
+          type.equals(schema2.getColumnType(columns2[i])),
+          "The types of comparing cells are not matched.");
+      classBody
+          .append("compared = ")
+          .append(String.format(cellComparison(type), columns1[i], columns2[i]))
+          .append(";\nif (compared != 0) {\n  return ")
+          .append(ascending[i] ? "compared" : "-compared")
+          .append(";\n}\n");
+    }
+    classBody.append("return 0;\n}\n");
+
+    try {
+      IClassBodyEvaluator cbe =
+          CompilerFactoryFactory.getDefaultCompilerFactory().newClassBodyEvaluator();
+      cbe.setDefaultImports(MyriaConstants.DEFAULT_JANINO_IMPORTS);
+      cbe.setExtendedClass(KeyComparator.class);
+      cbe.cook(classBody.toString());
+      /* getClazz returns a raw Class. */
+      final Class<?> clazz = cbe.getClazz();
+      return clazz.asSubclass(KeyComparator.class).getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new DbException("Error when compiling " + classBody, e);
+    }
+  }
+
+  /**
+   * @param type the type of the cells.
+   * @return the format of the Java expression that compares the cells in ascending order, given the column of the
+   *         first cell and the column of the second cell.
+   */
+  private static String cellComparison(final Type type) {
+    switch (type) {
+      case BOOLEAN_TYPE:
+        return "Boolean.compare(table1.getBoolean(%d, row1), table2.getBoolean(%d, row2))";
+      case DOUBLE_TYPE:
+        return "Double.compare(table1.getDouble(%d, row1), table2.getDouble(%d, row2))";
+      case FLOAT_TYPE:
+        return "Float.compare(table1.getFloat(%d, row1), table2.getFloat(%d, row2))";
+      case INT_TYPE:
+        return "Integer.compare(table1.getInt(%d, row1), table2.getInt(%d, row2))";
+      case LONG_TYPE:
+        return "Long.compare(table1.getLong(%d, row1), table2.getLong(%d, row2))";
+      case STRING_TYPE:
+        return "table1.getString(%d, row1).compareTo(table2.getString(%d, row2))";
+      case DATETIME_TYPE:
+        return "table1.getDateTime(%d, row1).compareTo(table2.getDateTime(%d, row2))";
+      case BLOB_TYPE:
+        return "table1.getBlob(%d, row1).compareTo(table2.getBlob(%d, row2))";
+    }
+    throw new IllegalStateException("Invalid type.");
+  }
+}
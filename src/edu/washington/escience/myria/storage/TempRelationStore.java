@@ -0,0 +1,325 @@
+package edu.washington.escience.myria.storage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+import javax.annotation.Nullable;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.RelationKey;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.accessmethod.AccessMethod;
+import edu.washington.escience.myria.accessmethod.ConnectionInfo;
+
+/**
+ * A worker-local store of the temporary relations of a query. The subqueries of a program, e.g., the iterations of a
+ * DoWhile, pass their temporary relations to each other through this store as lists of {@link TupleBatch}es instead
+ * of writing them to the database and reading them back.
+ *
+ * The store holds a bounded number of bytes. When it is full, the relations that were written least recently are
+ * spilled to the database of the worker, from where they are read from then on. The temporary relations of a query
+ * are dropped, both from memory and from the database, when the master tells the worker that the query finished. In
+ * case that message is lost, those of every other query are also dropped when a worker receives a subquery of a new
+ * query, since the master runs one query at a time.
+ */
+@ThreadSafe
+public final class TempRelationStore {
+  /** The logger for this class. */
+  private static final org.slf4j.Logger LOGGER =
+      org.slf4j.LoggerFactory.getLogger(TempRelationStore.class);
+
+  /** A temporary relation held in memory. */
+  private static final class Entry {
+    /** The schema of the relation. */
+    private final Schema schema;
+    /** The tuples of the relation. */
+    private final ImmutableList<TupleBatch> batches;
+    /** The estimated size of the tuples, in bytes. */
+    private final long bytes;
+
+    /**
+     * @param schema the schema of the relation.
+     * @param batches the tuples of the relation.
+     * @param bytes the estimated size of the tuples, in bytes.
+     */
+    private Entry(final Schema schema, final List<TupleBatch> batches, final long bytes) {
+      this.schema = schema;
+      this.batches = ImmutableList.copyOf(batches);
+      this.bytes = bytes;
+    }
+  }
+
+  /** The database that relations are spilled to. */
+  private final ConnectionInfo connectionInfo;
+  /** The maximum number of bytes held in memory. */
+  private final long capacity;
+  /** The relations held in memory, least recently written first. */
+  @GuardedBy("this")
+  private final LinkedHashMap<RelationKey, Entry> relations;
+  /** The temporary relations that are stored in the database. */
+  @GuardedBy("this")
+  private final Set<RelationKey> inDatabase;
+  /** The number of bytes held in memory or reserved by writers. */
+  @GuardedBy("this")
+  private long reserved;
+
+  /**
+   * @param connectionInfo the database that relations are spilled to.
+   * @param capacity the maximum number of bytes held in memory.
+   */
+  public TempRelationStore(final ConnectionInfo connectionInfo, final long capacity) {
+    this.connectionInfo = Objects.requireNonNull(connectionInfo, "connectionInfo");
+    this.capacity = capacity;
+    relations = new LinkedHashMap<>();
+    inDatabase = new HashSet<>();
+  }
+
+  /**
+   * @return the database that relations are spilled to.
+   */
+  public ConnectionInfo getConnectionInfo() {
+    return connectionInfo;
+  }
+
+  /**
+   * Reserves memory for tuples that a writer will {@link #put} into the store, spilling the relations that were
+   * written least recently if needed.
+   *
+   * @param bytes the number of bytes to reserve.
+   * @return true if the bytes were reserved, false if the store cannot hold them.
+   * @throws DbException if there is an error spilling a relation.
+   */
+  public synchronized boolean reserve(final long bytes) throws DbException {
+    Iterator<Map.Entry<RelationKey, Entry>> lru = relations.entrySet().iterator();
+    while (reserved + bytes > capacity && lru.hasNext()) {
+      Map.Entry<RelationKey, Entry> victim = lru.next();
+      lru.remove();
+      spill(victim.getKey(), victim.getValue());
+    }
+    if (reserved + bytes > capacity) {
+      return false;
+    }
+    reserved += bytes;
+    return true;
+  }
+
+  /**
+   * Releases memory that was reserved but is not used.
+   *
+   * @param bytes the number of bytes to release.
+   */
+  public synchronized void release(final long bytes) {
+    reserved -= bytes;
+  }
+
+  /**
+   * Stores tuples of a temporary relation, whose memory was {@link #reserve}d.
+   *
+   * @param relationKey the relation.
+   * @param schema the schema of the relation.
+   * @param batches the tuples.
+   * @param bytes the estimated size of the tuples, in bytes.
+   * @param overwrite whether to replace the existing tuples of the relation or to append to them.
+   * @throws DbException if there is an error accessing the database.
+   */
+  public synchronized void put(
+      final RelationKey relationKey,
+      final Schema schema,
+      final List<TupleBatch> batches,
+      final long bytes,
+      final boolean overwrite)
+      throws DbException {
+    Entry old = relations.remove(relationKey);
+    if (overwrite) {
+      if (old != null) {
+        reserved -= old.bytes;
+      }
+      if (inDatabase.remove(relationKey)) {
+        drop(relationKey);
+      }
+      relations.put(relationKey, new Entry(schema, batches, bytes));
+    } else if (inDatabase.contains(relationKey)) {
+      /* The relation was spilled while the tuples were being written. */
+      reserved -= bytes;
+      write(relationKey, schema, batches);
+    } else if (old != null) {
+      List<TupleBatch> all = new ArrayList<>(old.batches);
+      all.addAll(batches);
+      relations.put(relationKey, new Entry(schema, all, old.bytes + bytes));
+    } else {
+      relations.put(relationKey, new Entry(schema, batches, bytes));
+    }
+  }
+
+  /**
+   * @param relationKey a temporary relation.
+   * @return the tuples of the relation, or null if the relation is not held in memory.
+   */
+  @Nullable
+  public synchronized List<TupleBatch> get(final RelationKey relationKey) {
+    Entry entry = relations.get(relationKey);
+    if (entry == null) {
+      return null;
+    }
+    return entry.batches;
+  }
+
+  /**
+   * @param relationKey a temporary relation.
+   * @return true if the relation is stored in the database rather than in memory.
+   */
+  public synchronized boolean isInDatabase(final RelationKey relationKey) {
+    return inDatabase.contains(relationKey);
+  }
+
+  /**
+   * Records that a temporary relation was written to the database, and forgets the tuples held in memory, if any.
+   *
+   * @param relationKey the relation.
+   */
+  public synchronized void storedInDatabase(final RelationKey relationKey) {
+    Entry old = relations.remove(relationKey);
+    if (old != null) {
+      reserved -= old.bytes;
+    }
+    inDatabase.add(relationKey);
+  }
+
+  /**
+   * Spills a temporary relation to the database, if it is held in memory.
+   *
+   * @param relationKey the relation.
+   * @throws DbException if there is an error writing the relation.
+   */
+  public synchronized void spill(final RelationKey relationKey) throws DbException {
+    Entry entry = relations.remove(relationKey);
+    if (entry != null) {
+      spill(relationKey, entry);
+    }
+  }
+
+  /**
+   * Spills every temporary relation of a query to the database, e.g., before a SQL query that may read them runs.
+   *
+   * @param queryId the query.
+   * @throws DbException if there is an error writing the relations.
+   */
+  public synchronized void spillQuery(final long queryId) throws DbException {
+    for (RelationKey relationKey : ImmutableList.copyOf(relations.keySet())) {
+      if (relationKey.tempRelationQueryId() == queryId) {
+        spill(relationKey);
+      }
+    }
+  }
+
+  /**
+   * Drops the temporary relations of a query, from memory and from the database, e.g., once the query finished.
+   *
+   * @param queryId the query.
+   * @throws DbException if there is an error dropping the relations from the database.
+   */
+  public synchronized void dropQuery(final long queryId) throws DbException {
+    dropQueries(id -> id == queryId);
+  }
+
+  /**
+   * Drops the temporary relations of every query other than the given one, from memory and from the database.
+   *
+   * @param queryId the query whose temporary relations are kept.
+   * @throws DbException if there is an error dropping the relations from the database.
+   */
+  public synchronized void retainQuery(final long queryId) throws DbException {
+    dropQueries(id -> id != queryId);
+  }
+
+  /**
+   * Drops the temporary relations of the matching queries, from memory and from the database.
+   *
+   * @param isDropped whether the temporary relations of a query are dropped, by query ID.
+   * @throws DbException if there is an error dropping the relations from the database.
+   */
+  @GuardedBy("this")
+  private void dropQueries(final LongPredicate isDropped) throws DbException {
+    Iterator<Map.Entry<RelationKey, Entry>> it = relations.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<RelationKey, Entry> e = it.next();
+      if (isDropped.test(e.getKey().tempRelationQueryId())) {
+        reserved -= e.getValue().bytes;
+        it.remove();
+      }
+    }
+    Iterator<RelationKey> stored = inDatabase.iterator();
+    while (stored.hasNext()) {
+      RelationKey relationKey = stored.next();
+      if (isDropped.test(relationKey.tempRelationQueryId())) {
+        stored.remove();
+        drop(relationKey);
+      }
+    }
+  }
+
+  /**
+   * Writes a relation that was removed from memory to the database.
+   *
+   * @param relationKey the relation.
+   * @param entry the tuples of the relation.
+   * @throws DbException if there is an error writing the relation.
+   */
+  @GuardedBy("this")
+  private void spill(final RelationKey relationKey, final Entry entry) throws DbException {
+    LOGGER.info(
+        "Spilling temporary relation {} ({} bytes) to the database", relationKey, entry.bytes);
+    reserved -= entry.bytes;
+    inDatabase.add(relationKey);
+    write(relationKey, entry.schema, entry.batches);
+  }
+
+  /**
+   * Appends tuples to a relation in the database, creating it if it does not exist.
+   *
+   * @param relationKey the relation.
+   * @param schema the schema of the relation.
+   * @param batches the tuples.
+   * @throws DbException if there is an error writing the tuples.
+   */
+  private void write(
+      final RelationKey relationKey, final Schema schema, final List<TupleBatch> batches)
+      throws DbException {
+    AccessMethod accessMethod = AccessMethod.of(connectionInfo.getDbms(), connectionInfo, false);
+    try {
+      accessMethod.createTableIfNotExists(relationKey, schema);
+      for (TupleBatch tb : batches) {
+        accessMethod.tupleBatchInsert(relationKey, tb);
+      }
+    } finally {
+      accessMethod.close();
+    }
+  }
+
+  /**
+   * Drops a relation from the database.
+   *
+   * @param relationKey the relation.
+   * @throws DbException if there is an error dropping the relation.
+   */
+  private void drop(final RelationKey relationKey) throws DbException {
+    AccessMethod accessMethod = AccessMethod.of(connectionInfo.getDbms(), connectionInfo, false);
+    try {
+      accessMethod.dropTableIfExists(relationKey);
+    } finally {
+      accessMethod.close();
+    }
+  }
+}
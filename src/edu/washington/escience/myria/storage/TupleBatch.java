@@ -1,6 +1,7 @@
 package edu.washington.escience.myria.storage;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
@@ -15,6 +16,7 @@ import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.Type;
 import edu.washington.escience.myria.column.Column;
 import edu.washington.escience.myria.column.PrefixColumn;
+import edu.washington.escience.myria.column.builder.ColumnBufferPool;
 import edu.washington.escience.myria.operator.network.distribute.PartitionFunction;
 import edu.washington.escience.myria.proto.TransportProto.TransportMessage;
 import edu.washington.escience.myria.util.IPCUtils;
@@ -38,6 +40,8 @@ public class TupleBatch implements ReadableTable, Serializable {
   private final int numTuples;
   /** Whether this TB is an EOI TB. */
   private final boolean isEOI;
+  /** The leases of the pooled arrays the columns are built on, one entry per reference this batch holds. */
+  private final transient ImmutableList<ColumnBufferPool.Lease> leases;
 
   /**
    * EOI TB constructor.
@@ -54,6 +58,7 @@ public class TupleBatch implements ReadableTable, Serializable {
     }
     columns = b.build();
     isEOI = isEoi;
+    leases = ImmutableList.of();
     batchSize = TupleUtils.getBatchSize(schema);
   }
 
@@ -64,7 +69,7 @@ public class TupleBatch implements ReadableTable, Serializable {
   public TupleBatch rename(final List<String> columnNames) {
     Schema newSchema =
         Schema.of(schema.getColumnTypes(), Objects.requireNonNull(columnNames, "columnNames"));
-    return new TupleBatch(newSchema, columns, numTuples, isEOI);
+    return view(newSchema, columns, numTuples);
   }
 
   /**
@@ -102,6 +107,40 @@ public class TupleBatch implements ReadableTable, Serializable {
       final List<? extends Column<?>> columns,
       final int numTuples,
       final boolean isEOI) {
+    this(schema, columns, numTuples, isEOI, ImmutableList.<ColumnBufferPool.Lease>of());
+  }
+
+  /**
+   * Constructor of a batch whose columns are built on arrays borrowed from the {@link ColumnBufferPool}, see
+   * {@link edu.washington.escience.myria.column.builder.ColumnFactory#allocateColumns(Schema,
+   * ColumnBufferPool.Lease)}.
+   *
+   * @param schema schema of the tuples in this batch. Must match columns.
+   * @param columns contains the column-stored data. Must match schema.
+   * @param numTuples the number of tuples in this TupleBatch.
+   * @param lease the lease of the arrays, whose reference the batch takes over from the caller.
+   */
+  public TupleBatch(
+      final Schema schema,
+      final List<? extends Column<?>> columns,
+      final int numTuples,
+      final ColumnBufferPool.Lease lease) {
+    this(schema, columns, numTuples, false, ImmutableList.of(lease));
+  }
+
+  /**
+   * @param schema schema of the tuples in this batch. Must match columns.
+   * @param columns contains the column-stored data. Must match schema.
+   * @param numTuples the number of tuples in this batch. Must match columns.
+   * @param isEOI whether this is an EOI TupleBatch.
+   * @param leases the leases of the pooled arrays of the columns, whose references the batch takes over.
+   */
+  private TupleBatch(
+      final Schema schema,
+      final List<? extends Column<?>> columns,
+      final int numTuples,
+      final boolean isEOI,
+      final ImmutableList<ColumnBufferPool.Lease> leases) {
     this.schema = Objects.requireNonNull(schema, "schema");
     this.columns = ImmutableList.copyOf(Objects.requireNonNull(columns, "columns"));
     Preconditions.checkArgument(
@@ -118,9 +157,81 @@ public class TupleBatch implements ReadableTable, Serializable {
     }
     this.numTuples = numTuples;
     this.isEOI = isEOI;
+    this.leases = leases;
     batchSize = TupleUtils.getBatchSize(schema);
   }
 
+  /**
+   * @param newSchema the schema of the view.
+   * @param newColumns the columns of the view, some of which are columns of this batch.
+   * @param newNumTuples the number of tuples of the view.
+   * @return a batch that shares columns with this batch, and holds its own references to the leases of this batch.
+   */
+  private TupleBatch view(
+      final Schema newSchema, final List<? extends Column<?>> newColumns, final int newNumTuples) {
+    retain();
+    return new TupleBatch(newSchema, newColumns, newNumTuples, isEOI, getLeases());
+  }
+
+  /**
+   * @return the leases this batch holds references to. Deserialized batches hold none.
+   */
+  private ImmutableList<ColumnBufferPool.Lease> getLeases() {
+    if (leases == null) {
+      return ImmutableList.of();
+    }
+    return leases;
+  }
+
+  /**
+   * Adds a reference to the pooled arrays of this batch, for a new holder of the batch, e.g., a queue it is put in
+   * besides being kept by its current holder.
+   */
+  public final void retain() {
+    for (ColumnBufferPool.Lease lease : getLeases()) {
+      lease.retain();
+    }
+  }
+
+  /**
+   * Drops a reference to the pooled arrays of this batch. The holder must not use the batch afterwards, and the arrays
+   * are reused once no holder of this batch, or of a batch sharing its columns, references them. Batches whose arrays
+   * are not pooled are left to the garbage collector.
+   */
+  public final void release() {
+    for (ColumnBufferPool.Lease lease : getLeases()) {
+      lease.release();
+    }
+  }
+
+  /**
+   * Concatenates batches into one, which takes over the references the caller holds to their pooled arrays.
+   *
+   * @param schema the schema of the batches.
+   * @param batches the batches, at least one.
+   * @return one batch with the tuples of all the batches, in order.
+   */
+  public static TupleBatch concat(final Schema schema, final List<TupleBatch> batches) {
+    Preconditions.checkArgument(!batches.isEmpty(), "Cannot concatenate no batches");
+    if (batches.size() == 1) {
+      return batches.get(0);
+    }
+    final List<ConcatColumn<?>> cols = new ArrayList<>(schema.numColumns());
+    for (int i = 0; i < schema.numColumns(); ++i) {
+      cols.add(new ConcatColumn<>(schema.getColumnType(i)));
+    }
+    final ImmutableList.Builder<ColumnBufferPool.Lease> leases = ImmutableList.builder();
+    int numTuples = 0;
+    for (TupleBatch tb : batches) {
+      for (int i = 0; i < cols.size(); ++i) {
+        cols.get(i).addColumn(tb.getDataColumns().get(i));
+      }
+      leases.addAll(tb.getLeases());
+      numTuples += tb.numTuples();
+    }
+    return new TupleBatch(schema, cols, numTuples, false, leases.build());
+  }
+
   /**
    * put the tuple batch into TBB by smashing it into cells and putting them one by one.
    *
@@ -162,7 +273,7 @@ public class TupleBatch implements ReadableTable, Serializable {
     for (Column<?> column : columns) {
       newColumns.add(column.filter(filter));
     }
-    return new TupleBatch(schema, newColumns.build(), newNumTuples, isEOI);
+    return view(schema, newColumns.build(), newNumTuples);
   }
 
   /**
@@ -182,7 +293,7 @@ public class TupleBatch implements ReadableTable, Serializable {
     for (Column<?> column : columns) {
       newColumns.add(new PrefixColumn(column, prefix));
     }
-    return new TupleBatch(schema, newColumns.build(), prefix, isEOI);
+    return view(schema, newColumns.build(), prefix);
   }
 
   @Override
@@ -275,8 +386,7 @@ public class TupleBatch implements ReadableTable, Serializable {
     for (final int i : remainingColumns) {
       newColumns.add(columns.get(i));
     }
-    return new TupleBatch(
-        getSchema().getSubSchema(remainingColumns), newColumns.build(), numTuples, isEOI);
+    return view(getSchema().getSubSchema(remainingColumns), newColumns.build(), numTuples);
   }
 
   /**
@@ -349,7 +459,7 @@ public class TupleBatch implements ReadableTable, Serializable {
     Schema newSchema = Schema.appendColumn(schema, column.getType(), columnName);
     List<Column<?>> newColumns =
         ImmutableList.<Column<?>>builder().addAll(columns).add(column).build();
-    return new TupleBatch(newSchema, newColumns, numTuples, isEOI);
+    return view(newSchema, newColumns, numTuples);
   }
 
   @Override
@@ -13,6 +13,7 @@ import com.google.common.base.Preconditions;
 import edu.washington.escience.myria.MyriaConstants;
 import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.column.Column;
+import edu.washington.escience.myria.column.builder.ColumnBufferPool;
 import edu.washington.escience.myria.column.builder.ColumnBuilder;
 import edu.washington.escience.myria.column.builder.ColumnFactory;
 import edu.washington.escience.myria.column.builder.WritableColumn;
@@ -44,6 +45,10 @@ public class TupleBatchBuffer implements AppendableTable {
   private int readyTuplesNum;
   /** BatchSize*/
   private int batchSize;
+  /** If the columns are built on arrays borrowed from the {@link ColumnBufferPool}. */
+  private final boolean pooled;
+  /** The lease of the arrays of the in-progress columns, null if they are not pooled. */
+  private ColumnBufferPool.Lease currentLease;
 
   /**
    * Constructs an empty TupleBatchBuffer to hold tuples matching the specified Schema.
@@ -51,9 +56,22 @@ public class TupleBatchBuffer implements AppendableTable {
    * @param schema specified the columns of the emitted TupleBatch objects.
    */
   public TupleBatchBuffer(final Schema schema) {
+    this(schema, false);
+  }
+
+  /**
+   * Constructs an empty TupleBatchBuffer to hold tuples matching the specified Schema, whose numeric columns are built
+   * on arrays borrowed from the {@link ColumnBufferPool} if <code>pooled</code>. The batches popped from a pooled buffer
+   * hold the leases of their arrays, so whoever consumes them last should {@link TupleBatch#release} them.
+   *
+   * @param schema specified the columns of the emitted TupleBatch objects.
+   * @param pooled if the columns are built on pooled arrays.
+   */
+  public TupleBatchBuffer(final Schema schema, final boolean pooled) {
     this.schema = Objects.requireNonNull(schema);
+    this.pooled = pooled;
     readyTuples = new LinkedList<TupleBatch>();
-    currentBuildingColumns = ColumnFactory.allocateColumns(schema);
+    currentBuildingColumns = allocateColumns();
     numColumns = schema.numColumns();
     columnsReady = new BitSet(numColumns);
     numColumnsReady = 0;
@@ -67,6 +85,17 @@ public class TupleBatchBuffer implements AppendableTable {
     return batchSize;
   }
 
+  /**
+   * @return new builders for the columns of the next batch.
+   */
+  private List<ColumnBuilder<?>> allocateColumns() {
+    if (!pooled) {
+      return ColumnFactory.allocateColumns(schema);
+    }
+    currentLease = ColumnBufferPool.lease();
+    return ColumnFactory.allocateColumns(schema, currentLease);
+  }
+
   /**
    * Append the tuple batch directly into readyTuples.
    *
@@ -99,6 +128,11 @@ public class TupleBatchBuffer implements AppendableTable {
   public final void clear() {
     columnsReady.clear();
     currentBuildingColumns.clear();
+    if (currentLease != null) {
+      /* the in-progress columns were never handed out. */
+      currentLease.release();
+      currentLease = null;
+    }
     currentInProgressTuples = 0;
     numColumnsReady = 0;
     readyTuples.clear();
@@ -143,11 +177,16 @@ public class TupleBatchBuffer implements AppendableTable {
     for (ColumnBuilder<?> cb : currentBuildingColumns) {
       buildingColumns.add(cb.build());
     }
-    readyTuples.add(new TupleBatch(schema, buildingColumns, currentInProgressTuples));
+    if (currentLease != null) {
+      readyTuples.add(
+          new TupleBatch(schema, buildingColumns, currentInProgressTuples, currentLease));
+    } else {
+      readyTuples.add(new TupleBatch(schema, buildingColumns, currentInProgressTuples));
+    }
 
     /* Update the metadata and refresh the building state. */
     readyTuplesNum += buildingColumns.get(0).size();
-    currentBuildingColumns = ColumnFactory.allocateColumns(schema);
+    currentBuildingColumns = allocateColumns();
     currentInProgressTuples = 0;
     return true;
   }
@@ -159,7 +198,11 @@ public class TupleBatchBuffer implements AppendableTable {
    */
   public final List<TupleBatch> getAll() {
     final List<TupleBatch> output = new ArrayList<TupleBatch>(readyTuples.size() + 1);
-    output.addAll(readyTuples);
+    for (TupleBatch tb : readyTuples) {
+      /* the buffer keeps the batch, so the caller gets its own reference to its pooled arrays. */
+      tb.retain();
+      output.add(tb);
+    }
     if (currentInProgressTuples > 0) {
       output.add(new TupleBatch(schema, getInProgressColumns(), currentInProgressTuples));
     }
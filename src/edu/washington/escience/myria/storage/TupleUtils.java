@@ -13,6 +13,9 @@ import edu.washington.escience.myria.column.builder.ColumnBuilder;
  * Utility functions for dealing with tuples.
  */
 public final class TupleUtils {
+  /** The estimated overhead of an object, e.g., a String or a ByteBuffer, in bytes. */
+  private static final int OBJECT_OVERHEAD = 40;
+
   /** Utility class cannot be instantiated. */
   private TupleUtils() {}
 
@@ -520,4 +523,42 @@ public final class TupleUtils {
     }
     return MyriaConstants.TUPLE_BATCH_DEFAULT_SIZE;
   }
+
+  /**
+   * @param tb a batch of tuples.
+   * @return the estimated number of bytes the batch occupies in memory.
+   */
+  public static long sizeOf(final TupleBatch tb) {
+    final int n = tb.numTuples();
+    long bytes = 0;
+    for (int column = 0; column < tb.numColumns(); ++column) {
+      switch (tb.getSchema().getColumnType(column)) {
+        case BOOLEAN_TYPE:
+          bytes += n / Byte.SIZE + 1;
+          break;
+        case INT_TYPE:
+        case FLOAT_TYPE:
+          bytes += (long) n * Integer.BYTES;
+          break;
+        case LONG_TYPE:
+        case DOUBLE_TYPE:
+          bytes += (long) n * Long.BYTES;
+          break;
+        case DATETIME_TYPE:
+          bytes += (long) n * (Long.BYTES + OBJECT_OVERHEAD);
+          break;
+        case STRING_TYPE:
+          for (int row = 0; row < n; ++row) {
+            bytes += 2L * tb.getString(column, row).length() + OBJECT_OVERHEAD;
+          }
+          break;
+        case BLOB_TYPE:
+          for (int row = 0; row < n; ++row) {
+            bytes += tb.getBlob(column, row).capacity() + OBJECT_OVERHEAD;
+          }
+          break;
+      }
+    }
+    return bytes;
+  }
 }
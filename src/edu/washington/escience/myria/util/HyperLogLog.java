@@ -0,0 +1,251 @@
+package edu.washington.escience.myria.util;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.collections.api.iterator.IntIterator;
+import org.eclipse.collections.impl.map.mutable.primitive.IntByteHashMap;
+
+import com.google.common.base.Preconditions;
+
+import edu.washington.escience.myria.storage.ReadableTable;
+
+/**
+ * A HyperLogLog++ sketch that estimates the number of distinct keys of tuples. It hashes keys to 64 bits with
+ * {@link HashUtils}, using a different seed than hash partitioning and {@link TupleBloomFilter}. Until a few registers
+ * are set, the sketch only stores those registers, so that the sketches of small groups stay small. Sketches with the
+ * same precision built on different workers can be merged and shipped as a blob.
+ */
+public final class HyperLogLog {
+
+  /** The index of the hash function in {@link HashUtils} used by HyperLogLog sketches. */
+  private static final int SEED_INDEX = 2;
+
+  /** The default precision, which estimates with a standard error of 1.04 / sqrt(2^14), i.e., 0.8%. */
+  public static final int DEFAULT_PRECISION = 14;
+  /** The least precision. */
+  private static final int MIN_PRECISION = 4;
+  /** The greatest precision. */
+  private static final int MAX_PRECISION = 18;
+
+  /** The serialized format of a sketch that only stores the registers that are set. */
+  private static final byte SPARSE = 0;
+  /** The serialized format of a sketch that stores every register. */
+  private static final byte DENSE = 1;
+
+  /** The number of bits of the hash that select a register. */
+  private final int precision;
+  /** The number of registers, 2^{@link #precision}. */
+  private final int numRegisters;
+  /** The registers that are set, while there are few of them, otherwise null. */
+  private IntByteHashMap sparse;
+  /** All the registers, once {@link #sparse} has too many of them, otherwise null. */
+  private byte[] dense;
+
+  /**
+   * @param precision the number of bits of the hash that select a register, between 4 and 18.
+   */
+  public HyperLogLog(final int precision) {
+    Preconditions.checkArgument(
+        precision >= MIN_PRECISION && precision <= MAX_PRECISION,
+        "the precision of a HyperLogLog sketch must be between %s and %s",
+        MIN_PRECISION,
+        MAX_PRECISION);
+    this.precision = precision;
+    numRegisters = 1 << precision;
+    sparse = new IntByteHashMap();
+  }
+
+  /** Creates an empty sketch with the {@link #DEFAULT_PRECISION}. */
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * Adds the key of the specified row.
+   *
+   * @param table the table containing the key.
+   * @param keyColumns the key columns.
+   * @param row the row.
+   */
+  public void add(final ReadableTable table, final int[] keyColumns, final int row) {
+    addHash(HashUtils.hashSubRowLong(table, keyColumns, row, SEED_INDEX));
+  }
+
+  /**
+   * @param hash the 64-bit hash of a key.
+   */
+  private void addHash(final long hash) {
+    int register = (int) (hash >>> (Long.SIZE - precision));
+    /* The bit below the hash bits bounds the rank when they are all zero. */
+    byte rank =
+        (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+    set(register, rank);
+  }
+
+  /**
+   * Sets a register to a rank if the rank is greater than the register.
+   *
+   * @param register the register.
+   * @param rank the rank.
+   */
+  private void set(final int register, final byte rank) {
+    if (dense != null) {
+      if (dense[register] < rank) {
+        dense[register] = rank;
+      }
+      return;
+    }
+    if (sparse.getIfAbsent(register, (byte) 0) < rank) {
+      sparse.put(register, rank);
+      /* A map entry takes several times the memory of a dense register. */
+      if (sparse.size() > numRegisters / 16) {
+        toDense();
+      }
+    }
+  }
+
+  /** Stores every register. */
+  private void toDense() {
+    dense = new byte[numRegisters];
+    IntIterator registers = sparse.keySet().intIterator();
+    while (registers.hasNext()) {
+      int register = registers.next();
+      dense[register] = sparse.get(register);
+    }
+    sparse = null;
+  }
+
+  /**
+   * Adds all the keys of another sketch to this one.
+   *
+   * @param other a sketch with the same precision.
+   */
+  public void merge(final HyperLogLog other) {
+    Preconditions.checkArgument(
+        other.precision == precision,
+        "cannot merge a HyperLogLog sketch of precision %s into one of precision %s",
+        other.precision,
+        precision);
+    if (other.dense != null) {
+      if (dense == null) {
+        toDense();
+      }
+      for (int i = 0; i < numRegisters; ++i) {
+        if (dense[i] < other.dense[i]) {
+          dense[i] = other.dense[i];
+        }
+      }
+    } else {
+      IntIterator registers = other.sparse.keySet().intIterator();
+      while (registers.hasNext()) {
+        int register = registers.next();
+        set(register, other.sparse.get(register));
+      }
+    }
+  }
+
+  /**
+   * @return the estimated number of distinct keys.
+   */
+  public long estimate() {
+    if (sparse != null) {
+      return Math.round(linearCounting(numRegisters - sparse.size()));
+    }
+    double sum = 0;
+    int zeros = 0;
+    for (byte rank : dense) {
+      sum += Double.longBitsToDouble((1023L - rank) << 52);
+      if (rank == 0) {
+        ++zeros;
+      }
+    }
+    double m = numRegisters;
+    double alpha;
+    switch (precision) {
+      case 4:
+        alpha = 0.673;
+        break;
+      case 5:
+        alpha = 0.697;
+        break;
+      case 6:
+        alpha = 0.709;
+        break;
+      default:
+        alpha = 0.7213 / (1 + 1.079 / m);
+    }
+    double raw = alpha * m * m / sum;
+    /* Linear counting is more accurate for small cardinalities. 64-bit hashes need no large range correction. */
+    if (raw <= 2.5 * m && zeros > 0) {
+      return Math.round(linearCounting(zeros));
+    }
+    return Math.round(raw);
+  }
+
+  /**
+   * @param zeros the number of registers that are not set.
+   * @return the linear counting estimate of the number of distinct keys.
+   */
+  private double linearCounting(final int zeros) {
+    return numRegisters * Math.log((double) numRegisters / zeros);
+  }
+
+  /**
+   * @return the number of bits of the hash that select a register.
+   */
+  public int getPrecision() {
+    return precision;
+  }
+
+  /**
+   * @return the sketch serialized as: the format, the precision, and either the number of registers that are set and
+   *         each of them as its index and rank, or every register.
+   */
+  public ByteBuffer toByteBuffer() {
+    ByteBuffer ret;
+    if (sparse != null) {
+      ret = ByteBuffer.allocate(2 + Integer.BYTES * (1 + sparse.size()));
+      ret.put(SPARSE).put((byte) precision).putInt(sparse.size());
+      IntIterator registers = sparse.keySet().intIterator();
+      while (registers.hasNext()) {
+        int register = registers.next();
+        ret.putInt(register << Byte.SIZE | sparse.get(register));
+      }
+    } else {
+      ret = ByteBuffer.allocate(2 + numRegisters);
+      ret.put(DENSE).put((byte) precision).put(dense);
+    }
+    ret.rewind();
+    return ret;
+  }
+
+  /**
+   * @param buffer a sketch serialized by {@link #toByteBuffer()}.
+   * @return the deserialized sketch.
+   */
+  public static HyperLogLog fromByteBuffer(final ByteBuffer buffer) {
+    ByteBuffer in = buffer.duplicate();
+    byte format = in.get();
+    HyperLogLog ret = new HyperLogLog(in.get());
+    if (format == SPARSE) {
+      int size = in.getInt();
+      for (int i = 0; i < size; ++i) {
+        int entry = in.getInt();
+        ret.set(entry >>> Byte.SIZE, (byte) entry);
+      }
+    } else {
+      Preconditions.checkArgument(format == DENSE, "unknown HyperLogLog sketch format %s", format);
+      ret.toDense();
+      in.get(ret.dense);
+    }
+    return ret;
+  }
+
+  /**
+   * @param buffer a sketch serialized by {@link #toByteBuffer()}.
+   * @return the estimated number of distinct keys of the sketch.
+   */
+  public static long estimate(final ByteBuffer buffer) {
+    return fromByteBuffer(buffer).estimate();
+  }
+}
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.NotSerializableException;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
@@ -22,6 +23,7 @@ import edu.washington.escience.myria.Schema;
 import edu.washington.escience.myria.column.Column;
 import edu.washington.escience.myria.column.builder.ColumnFactory;
 import edu.washington.escience.myria.parallel.ExecutionStatistics;
+import edu.washington.escience.myria.parallel.PlanTemplate;
 import edu.washington.escience.myria.parallel.ResourceStats;
 import edu.washington.escience.myria.parallel.SocketInfo;
 import edu.washington.escience.myria.parallel.SubQueryId;
@@ -477,6 +479,28 @@ public final class IPCUtils {
    */
   public static TransportMessage queryMessage(final SubQueryId taskId, final SubQueryPlan query)
       throws IOException {
+    return encodeQueryMessage(taskId, query);
+  }
+
+  /**
+   * @param taskId the query/subquery task id
+   * @param query the query to encode, as a template and its parameters.
+   * @throws IOException if error occurs in encoding the query.
+   * @return an encoded query TM
+   */
+  public static TransportMessage queryMessage(final SubQueryId taskId, final PlanTemplate query)
+      throws IOException {
+    return encodeQueryMessage(taskId, query);
+  }
+
+  /**
+   * @param taskId the query/subquery task id
+   * @param query the query to encode, either a {@link SubQueryPlan} or a {@link PlanTemplate}.
+   * @throws IOException if error occurs in encoding the query.
+   * @return an encoded query TM
+   */
+  private static TransportMessage encodeQueryMessage(
+      final SubQueryId taskId, final Serializable query) throws IOException {
     final ByteArrayOutputStream inMemBuffer = new ByteArrayOutputStream();
     final ObjectOutputStream oos = new ObjectOutputStream(inMemBuffer);
     oos.writeObject(query);
@@ -503,6 +527,29 @@ public final class IPCUtils {
         .build();
   }
 
+  /**
+   * @param queryId the query that finished.
+   * @return a query cleanup TM, telling a worker to release what it keeps for the query.
+   * */
+  public static TransportMessage cleanupQueryTM(final long queryId) {
+    return QUERY_TM_BUILDER
+        .get()
+        .setQueryMessage(
+            queryMessageOf(new SubQueryId(queryId, 0), QueryMessage.Type.QUERY_CLEANUP))
+        .build();
+  }
+
+  /**
+   * @param taskId the subquery whose plan came without a template that the worker holds.
+   * @return a query resend TM, asking the master to resend the full plan.
+   * */
+  public static TransportMessage resendQueryTM(final SubQueryId taskId) {
+    return QUERY_TM_BUILDER
+        .get()
+        .setQueryMessage(queryMessageOf(taskId, QueryMessage.Type.QUERY_RESEND))
+        .build();
+  }
+
   /**
    * util classes are not instantiable.
    * */
@@ -0,0 +1,231 @@
+package edu.washington.escience.myria.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.eclipse.collections.impl.list.mutable.primitive.DoubleArrayList;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A KLL sketch that estimates the quantiles of a stream of values. It keeps a hierarchy of compactors: the values of
+ * level h stand for 2^h values each, and a full level is sorted and every other value is promoted to the level above.
+ * With the default accuracy, the rank of an estimated quantile is within about 1.5% of the requested one. Sketches
+ * built on different workers can be merged and shipped as a blob.
+ */
+public final class QuantileSketch {
+
+  /** The default accuracy, i.e., the capacity of the top level. */
+  public static final int DEFAULT_ACCURACY = 200;
+  /** The ratio of the capacities of a level and of the level above. */
+  private static final double CAPACITY_RATIO = 2.0 / 3.0;
+  /** The least capacity of a level. */
+  private static final int MIN_CAPACITY = 2;
+
+  /** The capacity of the top level. */
+  private final int accuracy;
+  /** The values of each level, bottom level first. */
+  private final List<DoubleArrayList> levels;
+  /** The number of values in all levels. */
+  private int size;
+  /** The number of values in all levels at which a level is compacted. */
+  private int maxSize;
+  /** The number of values added to the sketch. */
+  private long count;
+
+  /**
+   * @param accuracy the capacity of the top level. The error of the estimated ranks is inversely proportional to it.
+   */
+  public QuantileSketch(final int accuracy) {
+    Preconditions.checkArgument(
+        accuracy >= MIN_CAPACITY,
+        "the accuracy of a quantile sketch must be at least %s",
+        MIN_CAPACITY);
+    this.accuracy = accuracy;
+    levels = new ArrayList<>();
+    addLevel();
+  }
+
+  /** Creates an empty sketch with the {@link #DEFAULT_ACCURACY}. */
+  public QuantileSketch() {
+    this(DEFAULT_ACCURACY);
+  }
+
+  /**
+   * @param level a level.
+   * @return the number of values of the level at which it is compacted.
+   */
+  private int capacity(final int level) {
+    int depth = levels.size() - level - 1;
+    return Math.max(MIN_CAPACITY, (int) Math.ceil(accuracy * Math.pow(CAPACITY_RATIO, depth)));
+  }
+
+  /** Adds a level on top and updates {@link #maxSize}, since the capacities of the other levels shrink. */
+  private void addLevel() {
+    levels.add(new DoubleArrayList());
+    maxSize = 0;
+    for (int level = 0; level < levels.size(); ++level) {
+      maxSize += capacity(level);
+    }
+  }
+
+  /**
+   * @param value a value.
+   */
+  public void add(final double value) {
+    levels.get(0).add(value);
+    ++size;
+    ++count;
+    if (size >= maxSize) {
+      compress();
+    }
+  }
+
+  /** Compacts the lowest full levels until the sketch is below {@link #maxSize}. */
+  private void compress() {
+    for (int level = 0; level < levels.size() && size >= maxSize; ++level) {
+      DoubleArrayList values = levels.get(level);
+      if (values.size() < capacity(level)) {
+        continue;
+      }
+      if (level + 1 == levels.size()) {
+        addLevel();
+      }
+      DoubleArrayList above = levels.get(level + 1);
+      values.sortThis();
+      /* Of an odd number of values, the least stays. Of each pair of the others, one is promoted at random. */
+      int first = values.size() % 2;
+      int offset = ThreadLocalRandom.current().nextInt(2);
+      for (int i = first; i < values.size(); i += 2) {
+        above.add(values.get(i + offset));
+      }
+      size -= (values.size() - first) / 2;
+      double least = values.get(0);
+      values.clear();
+      if (first == 1) {
+        values.add(least);
+      }
+    }
+  }
+
+  /**
+   * Adds all the values of another sketch to this one.
+   *
+   * @param other a sketch with the same accuracy.
+   */
+  public void merge(final QuantileSketch other) {
+    Preconditions.checkArgument(
+        other.accuracy == accuracy,
+        "cannot merge a quantile sketch of accuracy %s into one of accuracy %s",
+        other.accuracy,
+        accuracy);
+    while (levels.size() < other.levels.size()) {
+      addLevel();
+    }
+    for (int level = 0; level < other.levels.size(); ++level) {
+      levels.get(level).addAll(other.levels.get(level));
+    }
+    size += other.size;
+    count += other.count;
+    while (size >= maxSize) {
+      compress();
+    }
+  }
+
+  /**
+   * @param quantile the quantile, between 0 and 1.
+   * @return the estimated value of the quantile, or NaN if the sketch is empty.
+   */
+  public double quantile(final double quantile) {
+    Preconditions.checkArgument(
+        quantile >= 0 && quantile <= 1, "the quantile %s is not between 0 and 1", quantile);
+    if (size == 0) {
+      return Double.NaN;
+    }
+    /* Sort the values of all levels, each of which stands for 2^level values. */
+    double[] values = new double[size];
+    long[] weights = new long[size];
+    Integer[] order = new Integer[size];
+    int i = 0;
+    long totalWeight = 0;
+    for (int level = 0; level < levels.size(); ++level) {
+      DoubleArrayList levelValues = levels.get(level);
+      for (int j = 0; j < levelValues.size(); ++j) {
+        values[i] = levelValues.get(j);
+        weights[i] = 1L << level;
+        order[i] = i;
+        totalWeight += weights[i];
+        ++i;
+      }
+    }
+    Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+    double rank = quantile * totalWeight;
+    long cumulativeWeight = 0;
+    for (int index : order) {
+      cumulativeWeight += weights[index];
+      if (cumulativeWeight >= rank) {
+        return values[index];
+      }
+    }
+    return values[order[size - 1]];
+  }
+
+  /**
+   * @return the number of values added to the sketch.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @return the sketch serialized as: the accuracy, the number of values added, the number of levels, and the number
+   *         of values of each level followed by the values.
+   */
+  public ByteBuffer toByteBuffer() {
+    ByteBuffer ret =
+        ByteBuffer.allocate(Integer.BYTES * (2 + levels.size()) + Long.BYTES + Double.BYTES * size);
+    ret.putInt(accuracy).putLong(count).putInt(levels.size());
+    for (DoubleArrayList values : levels) {
+      ret.putInt(values.size());
+      for (int i = 0; i < values.size(); ++i) {
+        ret.putDouble(values.get(i));
+      }
+    }
+    ret.rewind();
+    return ret;
+  }
+
+  /**
+   * @param buffer a sketch serialized by {@link #toByteBuffer()}.
+   * @return the deserialized sketch.
+   */
+  public static QuantileSketch fromByteBuffer(final ByteBuffer buffer) {
+    ByteBuffer in = buffer.duplicate();
+    QuantileSketch ret = new QuantileSketch(in.getInt());
+    ret.count = in.getLong();
+    int numLevels = in.getInt();
+    while (ret.levels.size() < numLevels) {
+      ret.addLevel();
+    }
+    for (DoubleArrayList values : ret.levels) {
+      int levelSize = in.getInt();
+      for (int i = 0; i < levelSize; ++i) {
+        values.add(in.getDouble());
+      }
+      ret.size += levelSize;
+    }
+    return ret;
+  }
+
+  /**
+   * @param buffer a sketch serialized by {@link #toByteBuffer()}.
+   * @param quantile the quantile, between 0 and 1.
+   * @return the estimated value of the quantile of the sketch, or NaN if it is empty.
+   */
+  public static double quantile(final ByteBuffer buffer, final double quantile) {
+    return fromByteBuffer(buffer).quantile(quantile);
+  }
+}
@@ -0,0 +1,201 @@
+package edu.washington.escience.myria.util;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.storage.ReadableTable;
+
+/**
+ * A Bloom filter over the key columns of tuples. It hashes keys with {@link HashUtils}, using a different seed than
+ * hash partitioning so that the bits a worker sets are not correlated with the partition of the key. Filters built
+ * with the same parameters on different workers can be merged and shipped as a blob, which records the types of the
+ * keys so that a filter is never probed with keys of other types.
+ */
+public final class TupleBloomFilter {
+
+  /** The index of the hash function in {@link HashUtils} used by Bloom filters. Hash partitioning uses 0. */
+  private static final int SEED_INDEX = 1;
+
+  /** The types of the key columns. */
+  private final ImmutableList<Type> keyTypes;
+
+  /** The bits of the filter. */
+  private final long[] bits;
+
+  /** The number of bits of the filter. */
+  private final int numBits;
+
+  /** The number of bits set for each key. */
+  private final int numHashFunctions;
+
+  /**
+   * @param keyTypes the types of the key columns.
+   * @param numWords the number of 64-bit words of the filter.
+   * @param numHashFunctions the number of bits set for each key.
+   */
+  public TupleBloomFilter(
+      final List<Type> keyTypes, final int numWords, final int numHashFunctions) {
+    Preconditions.checkArgument(
+        !keyTypes.isEmpty(), "a Bloom filter needs at least one key column");
+    Preconditions.checkArgument(numWords > 0, "a Bloom filter needs at least one word");
+    this.keyTypes = ImmutableList.copyOf(keyTypes);
+    Preconditions.checkArgument(numHashFunctions > 0, "a Bloom filter needs a hash function");
+    bits = new long[numWords];
+    numBits = Ints.checkedCast((long) numWords * Long.SIZE);
+    this.numHashFunctions = numHashFunctions;
+  }
+
+  /**
+   * Creates a filter sized for the expected number of distinct keys and false positive probability. The size only
+   * depends on the arguments, so filters created on different workers with the same arguments can be merged.
+   *
+   * @param keyTypes the types of the key columns.
+   * @param expectedNumKeys the expected number of distinct keys.
+   * @param falsePositiveProbability the false positive probability at the expected number of keys.
+   * @return the empty filter.
+   */
+  public static TupleBloomFilter forExpectedKeys(
+      final List<Type> keyTypes,
+      final long expectedNumKeys,
+      final double falsePositiveProbability) {
+    Preconditions.checkArgument(expectedNumKeys > 0, "expectedNumKeys must be positive");
+    Preconditions.checkArgument(
+        falsePositiveProbability > 0 && falsePositiveProbability < 1,
+        "falsePositiveProbability must be in (0, 1)");
+    double optimalBits =
+        -expectedNumKeys * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+    int numWords = Ints.checkedCast(Math.max(1, (long) Math.ceil(optimalBits / Long.SIZE)));
+    int numHashFunctions =
+        (int)
+            Math.max(1, Math.round((double) numWords * Long.SIZE / expectedNumKeys * Math.log(2)));
+    return new TupleBloomFilter(keyTypes, numWords, numHashFunctions);
+  }
+
+  /**
+   * Adds the key of the specified row.
+   *
+   * @param table the table containing the key.
+   * @param keyColumns the key columns.
+   * @param row the row.
+   */
+  public void add(final ReadableTable table, final int[] keyColumns, final int row) {
+    long hash = HashUtils.hashSubRowLong(table, keyColumns, row, SEED_INDEX);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> Integer.SIZE);
+    for (int i = 1; i <= numHashFunctions; ++i) {
+      int bit = bitIndex(hash1 + i * hash2);
+      bits[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  /**
+   * @param table the table containing the key.
+   * @param keyColumns the key columns.
+   * @param row the row.
+   * @return false if the key of the specified row has definitely not been added, true if it might have been.
+   */
+  public boolean mightContain(final ReadableTable table, final int[] keyColumns, final int row) {
+    long hash = HashUtils.hashSubRowLong(table, keyColumns, row, SEED_INDEX);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> Integer.SIZE);
+    for (int i = 1; i <= numHashFunctions; ++i) {
+      int bit = bitIndex(hash1 + i * hash2);
+      if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param combinedHash a combination of the two halves of the key's hash.
+   * @return the index of the bit for this combination.
+   */
+  private int bitIndex(final int combinedHash) {
+    return (combinedHash < 0 ? ~combinedHash : combinedHash) % numBits;
+  }
+
+  /**
+   * Adds all the keys of another filter to this one.
+   *
+   * @param other a filter with the same key types, number of bits and hash functions.
+   */
+  public void merge(final TupleBloomFilter other) {
+    Preconditions.checkArgument(
+        other.keyTypes.equals(keyTypes),
+        "cannot merge a Bloom filter of keys %s into one of keys %s",
+        other.keyTypes,
+        keyTypes);
+    Preconditions.checkArgument(
+        other.bits.length == bits.length && other.numHashFunctions == numHashFunctions,
+        "cannot merge a Bloom filter of %s words and %s hash functions into one of %s words and %s hash functions",
+        other.bits.length,
+        other.numHashFunctions,
+        bits.length,
+        numHashFunctions);
+    for (int i = 0; i < bits.length; ++i) {
+      bits[i] |= other.bits[i];
+    }
+  }
+
+  /**
+   * @return the types of the key columns.
+   */
+  public ImmutableList<Type> getKeyTypes() {
+    return keyTypes;
+  }
+
+  /**
+   * @return the number of bits of the filter.
+   */
+  public int getNumBits() {
+    return numBits;
+  }
+
+  /**
+   * @return the number of bits set for each key.
+   */
+  public int getNumHashFunctions() {
+    return numHashFunctions;
+  }
+
+  /**
+   * @return the filter serialized as: the number of key columns, the ordinal of the type of each key column, the number
+   *         of hash functions, the number of words, the words.
+   */
+  public ByteBuffer toByteBuffer() {
+    ByteBuffer ret =
+        ByteBuffer.allocate(Integer.BYTES * (3 + keyTypes.size()) + Long.BYTES * bits.length);
+    ret.putInt(keyTypes.size());
+    for (Type type : keyTypes) {
+      ret.putInt(type.ordinal());
+    }
+    ret.putInt(numHashFunctions);
+    ret.putInt(bits.length);
+    ret.asLongBuffer().put(bits);
+    ret.rewind();
+    return ret;
+  }
+
+  /**
+   * @param buffer a filter serialized by {@link #toByteBuffer()}.
+   * @return the deserialized filter.
+   */
+  public static TupleBloomFilter fromByteBuffer(final ByteBuffer buffer) {
+    ByteBuffer in = buffer.duplicate();
+    ImmutableList.Builder<Type> keyTypes = ImmutableList.builder();
+    for (int i = in.getInt(); i > 0; --i) {
+      keyTypes.add(Type.values()[in.getInt()]);
+    }
+    int numHashFunctions = in.getInt();
+    int numWords = in.getInt();
+    TupleBloomFilter ret = new TupleBloomFilter(keyTypes.build(), numWords, numHashFunctions);
+    in.asLongBuffer().get(ret.bits);
+    return ret;
+  }
+}
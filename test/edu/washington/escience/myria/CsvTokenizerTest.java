@@ -0,0 +1,87 @@
+package edu.washington.escience.myria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class CsvTokenizerTest {
+
+  private static CsvTokenizer tokenize(final String csv) {
+    return new CsvTokenizer(
+        new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ',', '"', '\\');
+  }
+
+  @Test
+  public void testQuotesAndEscapes() throws IOException {
+    CsvTokenizer tokenizer = tokenize("a,\"b,\"\"c\"\"\",d\\,e\r\n\n\"x\ny\",é\n");
+    assertTrue(tokenizer.nextRecord());
+    assertEquals(3, tokenizer.numFields());
+    assertEquals("a", tokenizer.getString(0));
+    assertEquals("b,\"c\"", tokenizer.getString(1));
+    assertEquals("d,e", tokenizer.getString(2));
+    assertTrue(tokenizer.nextRecord());
+    assertEquals(1, tokenizer.numFields());
+    assertEquals("", tokenizer.getString(0));
+    assertTrue(tokenizer.nextRecord());
+    assertEquals("x\ny", tokenizer.getString(0));
+    assertEquals("é", tokenizer.getString(1));
+    assertFalse(tokenizer.hasNextRecord());
+    assertFalse(tokenizer.nextRecord());
+  }
+
+  @Test
+  public void testNumbers() throws IOException {
+    CsvTokenizer tokenizer =
+        tokenize("-42,9223372036854775807,0.1,-1.5e-3,3.4028235E38,12345678901234567890.5\n");
+    assertTrue(tokenizer.nextRecord());
+    assertEquals(-42, tokenizer.getInt(0));
+    assertEquals(Long.MAX_VALUE, tokenizer.getLong(1));
+    assertEquals(0.1, tokenizer.getDouble(2), 0);
+    assertEquals(-1.5e-3, tokenizer.getDouble(3), 0);
+    assertEquals(Float.MAX_VALUE, tokenizer.getFloat(4), 0);
+    assertEquals(12345678901234567890.5, tokenizer.getDouble(5), 0);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testBadNumber() throws IOException {
+    CsvTokenizer tokenizer = tokenize("12a\n");
+    assertTrue(tokenizer.nextRecord());
+    tokenizer.getInt(0);
+  }
+
+  @Test
+  public void testRecordsAcrossBuffers() throws IOException {
+    StringBuilder csv = new StringBuilder();
+    int numRecords = 200000;
+    for (int i = 0; i < numRecords; ++i) {
+      csv.append(i).append(",\"value ").append(i).append("\"\n");
+    }
+    CsvTokenizer tokenizer = tokenize(csv.toString());
+    long expectedPosition = 0;
+    for (int i = 0; i < numRecords; ++i) {
+      assertTrue(tokenizer.nextRecord());
+      assertEquals(expectedPosition, tokenizer.getRecordPosition());
+      assertEquals(i, tokenizer.getInt(0));
+      assertEquals("value " + i, tokenizer.getString(1));
+      expectedPosition += Integer.toString(i).length() * 2 + 10;
+    }
+    assertFalse(tokenizer.nextRecord());
+  }
+
+  @Test
+  public void testTruncatedQuote() {
+    CsvTokenizer tokenizer = tokenize("1,\"abc\n");
+    try {
+      tokenizer.nextRecord();
+      throw new AssertionError("expected an exception");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains(CsvTokenizer.TRUNCATED_QUOTE_MESSAGE));
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package edu.washington.escience.myria.accessmethod;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.MyriaConstants;
+import edu.washington.escience.myria.RelationKey;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.operator.BatchTupleSource;
+import edu.washington.escience.myria.operator.DbCreateView;
+import edu.washington.escience.myria.operator.DbExecute;
+import edu.washington.escience.myria.operator.DbInsert;
+import edu.washington.escience.myria.operator.DbQueryScan;
+import edu.washington.escience.myria.operator.EmptyRelation;
+import edu.washington.escience.myria.operator.Operator;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+import edu.washington.escience.myria.util.FSUtils;
+import edu.washington.escience.myria.util.TestEnvVars;
+
+public class ColumnarAccessMethodTest {
+
+  private static final Schema SCHEMA =
+      new Schema(
+          ImmutableList.of(
+              Type.INT_TYPE,
+              Type.LONG_TYPE,
+              Type.FLOAT_TYPE,
+              Type.DOUBLE_TYPE,
+              Type.BOOLEAN_TYPE,
+              Type.STRING_TYPE,
+              Type.STRING_TYPE,
+              Type.DATETIME_TYPE,
+              Type.BLOB_TYPE),
+          ImmutableList.of("id", "big", "f", "d", "even", "category", "name", "time", "blob"));
+
+  private static final RelationKey KEY = RelationKey.of("test", "test", "columnar");
+
+  private Path tempDir;
+  private ColumnarInfo info;
+
+  @Before
+  public void setUp() throws Exception {
+    tempDir = Files.createTempDirectory(MyriaConstants.SYSTEM_NAME + "_columnar_test");
+    info = ColumnarInfo.of(tempDir.toString());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FSUtils.blockingDeleteDirectory(tempDir.toString());
+  }
+
+  private static TupleBatchBuffer tuples(final int from, final int to) {
+    TupleBatchBuffer tbb = new TupleBatchBuffer(SCHEMA);
+    for (int i = from; i < to; ++i) {
+      tbb.putInt(0, i);
+      tbb.putLong(1, Long.MAX_VALUE - i * 1000003L);
+      tbb.putFloat(2, i / 8.0f);
+      tbb.putDouble(3, Math.sqrt(i));
+      tbb.putBoolean(4, i % 2 == 0);
+      tbb.putString(5, "category" + (i % 3));
+      tbb.putString(6, "name" + i);
+      tbb.putDateTime(7, new DateTime(1400000000000L + i * 60000L));
+      tbb.putBlob(8, ByteBuffer.wrap(new byte[] {(byte) i, (byte) (i >> 8)}));
+    }
+    return tbb;
+  }
+
+  private static void assertRow(final TupleBatch tb, final int row, final int i) {
+    assertEquals(i, tb.getInt(0, row));
+    assertEquals(Long.MAX_VALUE - i * 1000003L, tb.getLong(1, row));
+    assertEquals(i / 8.0f, tb.getFloat(2, row), 0);
+    assertEquals(Math.sqrt(i), tb.getDouble(3, row), 0);
+    assertEquals(i % 2 == 0, tb.getBoolean(4, row));
+    assertEquals("category" + (i % 3), tb.getString(5, row));
+    assertEquals("name" + i, tb.getString(6, row));
+    assertEquals(1400000000000L + i * 60000L, tb.getDateTime(7, row).getMillis());
+    assertEquals(ByteBuffer.wrap(new byte[] {(byte) i, (byte) (i >> 8)}), tb.getBlob(8, row));
+  }
+
+  private static void run(final Operator op) throws Exception {
+    op.open(TestEnvVars.get());
+    while (!op.eos()) {
+      op.nextReady();
+    }
+    op.close();
+  }
+
+  private void insert(final int from, final int to, final boolean overwrite) throws Exception {
+    run(new DbInsert(new BatchTupleSource(tuples(from, to)), KEY, info, overwrite));
+  }
+
+  @Test
+  public void testInsertAndScan() throws Exception {
+    insert(0, 25000, true);
+    insert(25000, 30000, false);
+
+    DbQueryScan scan = new DbQueryScan(info, KEY, SCHEMA);
+    scan.open(TestEnvVars.get());
+    int next = 0;
+    while (!scan.eos()) {
+      TupleBatch tb = scan.nextReady();
+      if (tb == null) {
+        continue;
+      }
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        assertRow(tb, row, next++);
+      }
+    }
+    scan.close();
+    assertEquals(30000, next);
+  }
+
+  @Test
+  public void testOverwrite() throws Exception {
+    insert(0, 1000, true);
+    insert(500, 600, true);
+
+    AccessMethod am = AccessMethod.of(MyriaConstants.STORAGE_SYSTEM_COLUMNAR, info, true);
+    Iterator<TupleBatch> it =
+        am.tupleBatchIteratorFromQuery(
+            "SELECT * FROM " + KEY.toString(MyriaConstants.STORAGE_SYSTEM_COLUMNAR), SCHEMA);
+    int next = 500;
+    while (it.hasNext()) {
+      TupleBatch tb = it.next();
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        assertRow(tb, row, next++);
+      }
+    }
+    am.close();
+    assertEquals(600, next);
+  }
+
+  private int countMatches(final String where) throws Exception {
+    AccessMethod am = AccessMethod.of(MyriaConstants.STORAGE_SYSTEM_COLUMNAR, info, true);
+    Iterator<TupleBatch> it =
+        am.tupleBatchIteratorFromQuery(
+            "SELECT * FROM " + KEY.toString(MyriaConstants.STORAGE_SYSTEM_COLUMNAR) + " " + where,
+            SCHEMA);
+    int count = 0;
+    while (it.hasNext()) {
+      TupleBatch tb = it.next();
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        assertRow(tb, row, tb.getInt(0, row));
+      }
+      count += tb.numTuples();
+    }
+    am.close();
+    return count;
+  }
+
+  @Test
+  public void testRangePredicates() throws Exception {
+    insert(0, 50000, true);
+
+    assertEquals(50000, countMatches(""));
+    assertEquals(1000, countMatches("WHERE id >= 20000 AND id < 21000"));
+    assertEquals(1, countMatches("WHERE id = 49999"));
+    assertEquals(0, countMatches("WHERE id = 2.5"));
+    assertEquals(3, countMatches("where id > 2.5 and id <= 5"));
+    assertEquals(0, countMatches("WHERE id > 1e30"));
+    assertEquals(100, countMatches("WHERE d < 10"));
+    assertEquals(8, countMatches("WHERE f < 1"));
+    assertEquals(50000, countMatches("WHERE big > 0"));
+  }
+
+  @Test
+  public void testDropTable() throws Exception {
+    insert(0, 10, true);
+    AccessMethod am = AccessMethod.of(MyriaConstants.STORAGE_SYSTEM_COLUMNAR, info, false);
+    am.dropTableIfExists(KEY);
+    am.close();
+    assertFalse(Files.exists(tempDir.resolve(KEY.toString())));
+  }
+
+  @Test(expected = DbException.class)
+  public void testExecuteRejected() throws Exception {
+    run(new DbExecute(EmptyRelation.of(SCHEMA), "DELETE FROM \"" + KEY + "\"", info));
+  }
+
+  @Test(expected = DbException.class)
+  public void testCreateViewRejected() throws Exception {
+    run(
+        new DbCreateView(
+            EmptyRelation.of(SCHEMA), "view", "SELECT * FROM \"" + KEY + "\"", false, info));
+  }
+}
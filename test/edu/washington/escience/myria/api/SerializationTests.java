@@ -2,19 +2,25 @@ package edu.washington.escience.myria.api;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.collect.ImmutableList;
 
 import edu.washington.escience.myria.expression.ConstantExpression;
 import edu.washington.escience.myria.operator.network.distribute.DistributeFunction;
 import edu.washington.escience.myria.operator.network.distribute.HashDistributeFunction;
+import edu.washington.escience.myria.operator.network.distribute.RangeDistributeFunction;
 import edu.washington.escience.myria.operator.network.distribute.RoundRobinDistributeFunction;
+import edu.washington.escience.myria.operator.network.distribute.SkewAwareHashDistributeFunction;
 
 public class SerializationTests {
 
@@ -46,6 +52,38 @@ public class SerializationTests {
     serialized = mapper.writeValueAsString(df);
     deserialized = reader.readValue(serialized);
     assertEquals(df.getClass(), deserialized.getClass());
+
+    /* Skew-aware hash */
+    df =
+        new SkewAwareHashDistributeFunction(
+            multiFieldIndex,
+            1,
+            ImmutableList.<List<String>>of(ImmutableList.of("1", "a", "2.5")),
+            true);
+    serialized = mapper.writeValueAsString(df);
+    deserialized = reader.readValue(serialized);
+    assertEquals(df.getClass(), deserialized.getClass());
+    SkewAwareHashDistributeFunction skewed = (SkewAwareHashDistributeFunction) deserialized;
+    assertArrayEquals(multiFieldIndex, skewed.getIndexes());
+    assertEquals(1, skewed.getSeedIndex());
+    assertEquals(ImmutableList.of(ImmutableList.of("1", "a", "2.5")), skewed.getHeavyHitters());
+    assertTrue(skewed.isBroadcastHeavyHitters());
+
+    /* Skew-aware hash with numeric keys and default options */
+    deserialized =
+        reader.readValue("{\"type\":\"SkewAwareHash\",\"indexes\":[0],\"heavyHitters\":[[7]]}");
+    skewed = (SkewAwareHashDistributeFunction) deserialized;
+    assertEquals(ImmutableList.of(ImmutableList.of("7")), skewed.getHeavyHitters());
+    assertEquals(0, skewed.getSeedIndex());
+    assertFalse(skewed.isBroadcastHeavyHitters());
+
+    /* Range with default ascending order */
+    deserialized =
+        reader.readValue("{\"type\":\"Range\",\"indexes\":[1,0],\"splitters\":[[3,\"a\"]]}");
+    RangeDistributeFunction range = (RangeDistributeFunction) deserialized;
+    assertArrayEquals(new int[] {1, 0}, range.getIndexes());
+    assertArrayEquals(new boolean[] {true, true}, range.getAscending());
+    assertEquals(ImmutableList.of(ImmutableList.of("3", "a")), range.getSplitters());
   }
 
   @Test
@@ -0,0 +1,64 @@
+package edu.washington.escience.myria.column;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.column.builder.ColumnBufferPool;
+import edu.washington.escience.myria.column.builder.ColumnBuilder;
+import edu.washington.escience.myria.column.builder.ColumnFactory;
+import edu.washington.escience.myria.storage.TupleBatch;
+
+public class ColumnBufferPoolTest {
+
+  private static final Schema SCHEMA = Schema.ofFields("x", Type.LONG_TYPE);
+
+  /**
+   * @param size the capacity, distinct for each test so that the tests do not share pooled arrays.
+   * @param value the value of the single tuple.
+   * @return a batch with a single tuple, built on a pooled array.
+   */
+  private static TupleBatch pooledBatch(final int size, final long value) {
+    ColumnBufferPool.Lease lease = ColumnBufferPool.lease();
+    ColumnBuilder<?> builder = ColumnFactory.allocateColumn(Type.LONG_TYPE, size, lease);
+    builder.appendLong(value);
+    return new TupleBatch(SCHEMA, ImmutableList.of(builder.build()), 1, lease);
+  }
+
+  /**
+   * @param size the capacity.
+   * @return the first value of a pooled array of the given capacity, which was written by a released batch if the
+   *         array is reused.
+   */
+  private static long firstOfPooledArray(final int size) {
+    return ColumnFactory.allocateColumn(Type.LONG_TYPE, size, ColumnBufferPool.lease()).getLong(0);
+  }
+
+  @Test
+  public void testReuseAfterLastRelease() {
+    final int size = 1001;
+    TupleBatch tb = pooledBatch(size, 42);
+    TupleBatch view = tb.prefix(1);
+    tb.release();
+    assertEquals(0, firstOfPooledArray(size));
+    assertEquals(42, view.getLong(0, 0));
+    view.release();
+    assertEquals(42, firstOfPooledArray(size));
+  }
+
+  @Test
+  public void testConcatTakesOverReferences() {
+    final int size = 1003;
+    TupleBatch merged =
+        TupleBatch.concat(SCHEMA, ImmutableList.of(pooledBatch(size, 7), pooledBatch(size, 8)));
+    assertEquals(0, firstOfPooledArray(size));
+    merged.release();
+    long first = firstOfPooledArray(size);
+    long second = firstOfPooledArray(size);
+    assertEquals(15, first + second);
+  }
+}
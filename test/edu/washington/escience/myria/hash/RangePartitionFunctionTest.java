@@ -0,0 +1,100 @@
+package edu.washington.escience.myria.hash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.operator.network.distribute.RangePartitionFunction;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+
+public class RangePartitionFunctionTest {
+
+  private static final int NUM_PARTITIONS = 4;
+  private static final int NUM_TUPLES = 1000;
+
+  /** A batch with the keys in [0, NUM_TUPLES) in a scrambled order. */
+  private TupleBatch scrambledBatch() {
+    Schema schema =
+        new Schema(ImmutableList.of(Type.LONG_TYPE, Type.INT_TYPE), ImmutableList.of("k", "v"));
+    TupleBatchBuffer tbb = new TupleBatchBuffer(schema);
+    for (int i = 0; i < NUM_TUPLES; ++i) {
+      tbb.putLong(0, (i * 7919L) % NUM_TUPLES);
+      tbb.putInt(1, i);
+    }
+    return tbb.popAny();
+  }
+
+  private RangePartitionFunction range(
+      final boolean ascending, final List<List<String>> splitters) {
+    RangePartitionFunction pf =
+        new RangePartitionFunction(new int[] {0}, new boolean[] {ascending}, splitters);
+    pf.setNumPartitions(NUM_PARTITIONS);
+    return pf;
+  }
+
+  /** Checks that every key of a partition is in order with every key of the next non-empty partitions. */
+  private void checkOrdered(final TupleBatch[] partitions, final boolean ascending) {
+    long last = ascending ? Long.MIN_VALUE : Long.MAX_VALUE;
+    int total = 0;
+    for (TupleBatch p : partitions) {
+      long max = last;
+      for (int i = 0; i < p.numTuples(); ++i) {
+        long key = p.getLong(0, i);
+        assertTrue(ascending ? key > last : key < last);
+        max = ascending ? Math.max(max, key) : Math.min(max, key);
+      }
+      last = max;
+      total += p.numTuples();
+    }
+    assertEquals(NUM_TUPLES, total);
+  }
+
+  @Test
+  public void testGivenSplitters() {
+    List<List<String>> splitters =
+        ImmutableList.<List<String>>of(
+            ImmutableList.of("100"), ImmutableList.of("500"), ImmutableList.of("501"));
+    TupleBatch[] partitions = range(true, splitters).partition(scrambledBatch());
+    assertEquals(NUM_PARTITIONS, partitions.length);
+    checkOrdered(partitions, true);
+    assertEquals(100, partitions[0].numTuples());
+    assertEquals(400, partitions[1].numTuples());
+    assertEquals(1, partitions[2].numTuples());
+    assertEquals(499, partitions[3].numTuples());
+  }
+
+  @Test
+  public void testFewerRangesThanPartitions() {
+    List<List<String>> splitters = ImmutableList.<List<String>>of(ImmutableList.of("300"));
+    TupleBatch[] partitions = range(false, splitters).partition(scrambledBatch());
+    checkOrdered(partitions, false);
+    assertEquals(699, partitions[0].numTuples());
+    assertEquals(301, partitions[1].numTuples());
+    assertEquals(0, partitions[2].numTuples());
+    assertEquals(0, partitions[3].numTuples());
+  }
+
+  @Test
+  public void testSplittersOfSample() {
+    TupleBatch tb = scrambledBatch();
+    for (boolean ascending : new boolean[] {true, false}) {
+      List<List<String>> splitters =
+          RangePartitionFunction.splittersOf(
+              ImmutableList.of(tb), new int[] {0}, new boolean[] {ascending}, NUM_PARTITIONS);
+      assertEquals(NUM_PARTITIONS - 1, splitters.size());
+      TupleBatch[] partitions = range(ascending, splitters).partition(tb);
+      checkOrdered(partitions, ascending);
+      for (TupleBatch p : partitions) {
+        assertEquals(NUM_TUPLES / NUM_PARTITIONS, p.numTuples());
+      }
+    }
+  }
+}
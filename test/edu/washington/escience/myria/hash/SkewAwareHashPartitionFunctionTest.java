@@ -0,0 +1,113 @@
+package edu.washington.escience.myria.hash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.operator.network.distribute.HashPartitionFunction;
+import edu.washington.escience.myria.operator.network.distribute.SkewAwareHashPartitionFunction;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+
+public class SkewAwareHashPartitionFunctionTest {
+
+  private static final int NUM_PARTITIONS = 4;
+  private static final int HEAVY_KEY = 7;
+  private static final int NUM_HEAVY = 400;
+
+  /** A batch with one tuple for each key in [0, 100) and NUM_HEAVY tuples with HEAVY_KEY. */
+  private TupleBatch skewedBatch() {
+    Schema schema =
+        new Schema(ImmutableList.of(Type.LONG_TYPE, Type.INT_TYPE), ImmutableList.of("k", "v"));
+    TupleBatchBuffer tbb = new TupleBatchBuffer(schema);
+    for (int i = 0; i < 100; ++i) {
+      tbb.putLong(0, i);
+      tbb.putInt(1, i);
+    }
+    for (int i = 0; i < NUM_HEAVY; ++i) {
+      tbb.putLong(0, HEAVY_KEY);
+      tbb.putInt(1, i);
+    }
+    return tbb.popAny();
+  }
+
+  private SkewAwareHashPartitionFunction skewAware(final boolean broadcast) {
+    return skewAware(0, broadcast);
+  }
+
+  private SkewAwareHashPartitionFunction skewAware(final int seedIndex, final boolean broadcast) {
+    List<List<String>> heavyHitters = ImmutableList.<List<String>>of(ImmutableList.of("7"));
+    SkewAwareHashPartitionFunction pf =
+        new SkewAwareHashPartitionFunction(new int[] {0}, seedIndex, heavyHitters, broadcast);
+    pf.setNumPartitions(NUM_PARTITIONS);
+    return pf;
+  }
+
+  private int count(final TupleBatch tb, final long key) {
+    int ret = 0;
+    for (int i = 0; i < tb.numTuples(); ++i) {
+      if (tb.getLong(0, i) == key) {
+        ret++;
+      }
+    }
+    return ret;
+  }
+
+  @Test
+  public void testLightKeysMatchHashPartitioning() {
+    checkLightKeysMatchHashPartitioning(0);
+  }
+
+  @Test
+  public void testLightKeysMatchSeededHashPartitioning() {
+    checkLightKeysMatchHashPartitioning(1);
+  }
+
+  private void checkLightKeysMatchHashPartitioning(final int seedIndex) {
+    TupleBatch tb = skewedBatch();
+    HashPartitionFunction hash = new HashPartitionFunction(new int[] {0}, seedIndex);
+    hash.setNumPartitions(NUM_PARTITIONS);
+    TupleBatch[] expected = hash.partition(tb);
+    TupleBatch[] actual = skewAware(seedIndex, false).partition(tb);
+    assertEquals(NUM_PARTITIONS, actual.length);
+    for (int p = 0; p < NUM_PARTITIONS; ++p) {
+      for (long key = 0; key < 100; ++key) {
+        if (key != HEAVY_KEY) {
+          assertEquals(count(expected[p], key), count(actual[p], key));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSpreadHeavyHitter() {
+    TupleBatch[] partitions = skewAware(false).partition(skewedBatch());
+    int total = 0;
+    for (TupleBatch p : partitions) {
+      int heavy = count(p, HEAVY_KEY);
+      /* the hot key is spread round-robin, so every partition gets its share. */
+      assertTrue(heavy >= (NUM_HEAVY + 1) / NUM_PARTITIONS - 1);
+      assertTrue(heavy <= (NUM_HEAVY + 1) / NUM_PARTITIONS + 1);
+      total += p.numTuples();
+    }
+    assertEquals(100 + NUM_HEAVY, total);
+  }
+
+  @Test
+  public void testBroadcastHeavyHitter() {
+    TupleBatch[] partitions = skewAware(true).partition(skewedBatch());
+    int total = 0;
+    for (TupleBatch p : partitions) {
+      assertEquals(NUM_HEAVY + 1, count(p, HEAVY_KEY));
+      total += p.numTuples();
+    }
+    assertEquals(99 + (NUM_HEAVY + 1) * NUM_PARTITIONS, total);
+  }
+}
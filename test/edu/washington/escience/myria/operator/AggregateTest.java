@@ -973,4 +973,130 @@ public class AggregateTest {
         new LongColumnBuilder(2).appendLong(Long.MIN_VALUE + 1).appendLong(-3);
     doAggOpsToCol(builder, new AggregationOp[] {AggregationOp.SUM}, true);
   }
+
+  /**
+   * @param op the operator
+   * @return all the tuples of the operator
+   */
+  private static TupleBatchBuffer drain(final Operator op) throws DbException {
+    op.open(TestEnvVars.get());
+    TupleBatchBuffer result = new TupleBatchBuffer(op.getSchema());
+    while (!op.eos()) {
+      TupleBatch tb = op.nextReady();
+      if (tb != null) {
+        tb.compactInto(result);
+      }
+    }
+    op.close();
+    return result;
+  }
+
+  @Test
+  public void testApproxCountDistinct() throws DbException {
+    final Schema schema = Schema.ofFields("g", Type.LONG_TYPE, "v", Type.LONG_TYPE);
+    TupleBatchBuffer[] parts = {new TupleBatchBuffer(schema), new TupleBatchBuffer(schema)};
+    TupleBatchBuffer all = new TupleBatchBuffer(schema);
+    /* {worker, group, from, to}: the workers see overlapping values, 50000 distinct ones in group 0, 150 in group 1. */
+    long[][] ranges = {{0, 0, 0, 30000}, {1, 0, 20000, 50000}, {0, 1, 0, 100}, {1, 1, 50, 150}};
+    for (long[] range : ranges) {
+      for (long v = range[2]; v < range[3]; ++v) {
+        for (TupleBatchBuffer tbb : ImmutableList.of(parts[(int) range[0]], all)) {
+          tbb.putLong(0, range[1]);
+          tbb.putLong(1, v);
+        }
+      }
+    }
+
+    /* Each worker builds sketches, and the final aggregate merges them. */
+    TupleBatchBuffer sketches = null;
+    for (TupleBatchBuffer part : parts) {
+      TupleBatchBuffer partial =
+          drain(
+              new Aggregate(
+                  new BatchTupleSource(part),
+                  new int[] {0},
+                  new PrimitiveAggregatorFactory(1, AggregationOp.HLL_SKETCH)));
+      assertEquals(Type.BLOB_TYPE, partial.getSchema().getColumnType(1));
+      if (sketches == null) {
+        sketches = new TupleBatchBuffer(partial.getSchema());
+      }
+      for (TupleBatch tb : partial.getAll()) {
+        for (int row = 0; row < tb.numTuples(); ++row) {
+          if (tb.getLong(0, row) == 1) {
+            assertTrue(tb.getBlob(1, row).remaining() < 1024);
+          }
+        }
+        tb.compactInto(sketches);
+      }
+    }
+    TupleBatchBuffer merged =
+        drain(
+            new Aggregate(
+                new BatchTupleSource(sketches),
+                new int[] {0},
+                new PrimitiveAggregatorFactory(1, AggregationOp.APPROX_COUNT_DISTINCT)));
+    TupleBatchBuffer direct =
+        drain(
+            new Aggregate(
+                new BatchTupleSource(all),
+                new int[] {0},
+                new PrimitiveAggregatorFactory(1, AggregationOp.APPROX_COUNT_DISTINCT)));
+
+    for (TupleBatchBuffer result : ImmutableList.of(merged, direct)) {
+      assertEquals(2, result.numTuples());
+      assertEquals(Type.LONG_TYPE, result.getSchema().getColumnType(1));
+      TupleBatch tb = result.popAny();
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        long estimate = tb.getLong(1, row);
+        if (tb.getLong(0, row) == 0) {
+          assertEquals(50000, estimate, 50000 * 0.03);
+        } else {
+          assertEquals(150, estimate, 3);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testApproxQuantiles() throws DbException {
+    final Schema schema = Schema.ofFields("v", Type.INT_TYPE);
+    TupleBatchBuffer even = new TupleBatchBuffer(schema);
+    TupleBatchBuffer odd = new TupleBatchBuffer(schema);
+    for (int i = 0; i < 100000; ++i) {
+      (i % 2 == 0 ? even : odd).putInt(0, i);
+    }
+
+    TupleBatchBuffer sketches = null;
+    for (TupleBatchBuffer part : ImmutableList.of(even, odd)) {
+      TupleBatchBuffer partial =
+          drain(
+              new Aggregate(
+                  new BatchTupleSource(part),
+                  new int[] {},
+                  new PrimitiveAggregatorFactory(0, AggregationOp.QUANTILE_SKETCH)));
+      assertEquals(1, partial.numTuples());
+      if (sketches == null) {
+        sketches = new TupleBatchBuffer(partial.getSchema());
+      }
+      partial.popAny().compactInto(sketches);
+    }
+    TupleBatchBuffer result =
+        drain(
+            new Aggregate(
+                new BatchTupleSource(sketches),
+                new int[] {},
+                new PrimitiveAggregatorFactory(
+                    0,
+                    new AggregationOp[] {
+                      AggregationOp.APPROX_MEDIAN,
+                      AggregationOp.APPROX_P90,
+                      AggregationOp.APPROX_P99
+                    })));
+    assertEquals(1, result.numTuples());
+    TupleBatch tb = result.popAny();
+    /* The ranks of the estimates are within 3% of the requested ones. */
+    assertEquals(50000, tb.getDouble(0, 0), 3000);
+    assertEquals(90000, tb.getDouble(1, 0), 3000);
+    assertEquals(99000, tb.getDouble(2, 0), 3000);
+  }
 }
@@ -0,0 +1,100 @@
+package edu.washington.escience.myria.operator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+import edu.washington.escience.myria.util.TestEnvVars;
+
+public class BloomFilterTest {
+
+  private static final Schema SCHEMA =
+      new Schema(
+          ImmutableList.of(Type.LONG_TYPE, Type.STRING_TYPE), ImmutableList.of("id", "name"));
+
+  private static TupleBatchBuffer range(final long from, final long to) {
+    TupleBatchBuffer tbb = new TupleBatchBuffer(SCHEMA);
+    for (long i = from; i < to; ++i) {
+      tbb.putLong(0, i);
+      tbb.putString(1, "name" + i);
+    }
+    return tbb;
+  }
+
+  private static TupleBatchBuffer drain(final Operator op) throws Exception {
+    op.open(TestEnvVars.get());
+    TupleBatchBuffer result = new TupleBatchBuffer(op.getSchema());
+    while (!op.eos()) {
+      TupleBatch batch = op.nextReady();
+      if (batch != null) {
+        batch.compactInto(result);
+      }
+    }
+    op.close();
+    return result;
+  }
+
+  @Test
+  public void testSemiJoinFilter() throws Exception {
+    /* Two workers each build a filter over their part of the keys 0 to 1000. */
+    TupleBatchBuffer filters = new TupleBatchBuffer(BloomFilterBuild.BLOOM_FILTER_SCHEMA);
+    for (TupleBatchBuffer part : ImmutableList.of(range(0, 500), range(500, 1000))) {
+      BloomFilterBuild build =
+          new BloomFilterBuild(new BatchTupleSource(part), new int[] {0}, 1000, 0.01);
+      TupleBatchBuffer filter = drain(build);
+      assertEquals(1, filter.numTuples());
+      filter.popAny().compactInto(filters);
+    }
+
+    BloomFilterProbe probe =
+        new BloomFilterProbe(
+            new BatchTupleSource(filters), new BatchTupleSource(range(0, 10000)), new int[] {0});
+    TupleBatchBuffer result = drain(probe);
+
+    boolean[] kept = new boolean[10000];
+    for (TupleBatch tb : result.getAll()) {
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        kept[(int) tb.getLong(0, row)] = true;
+      }
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < kept.length; ++i) {
+      if (i < 1000) {
+        assertTrue("key " + i + " was dropped", kept[i]);
+      } else if (kept[i]) {
+        ++falsePositives;
+      }
+    }
+    /* 9000 absent keys at a 1% false positive rate. */
+    assertTrue("too many false positives: " + falsePositives, falsePositives < 300);
+  }
+
+  @Test(expected = DbException.class)
+  public void testKeyTypesMismatch() throws Exception {
+    /* The filter is built on the LONG ids, but probed with the STRING names. */
+    BloomFilterProbe probe =
+        new BloomFilterProbe(
+            new BloomFilterBuild(new BatchTupleSource(range(0, 100)), new int[] {0}, 100, 0.01),
+            new BatchTupleSource(range(0, 100)),
+            new int[] {1});
+    drain(probe);
+  }
+
+  @Test
+  public void testNoFilter() throws Exception {
+    BloomFilterProbe probe =
+        new BloomFilterProbe(
+            EmptyRelation.of(BloomFilterBuild.BLOOM_FILTER_SCHEMA),
+            new BatchTupleSource(range(0, 100)),
+            new int[] {0});
+    assertEquals(0, drain(probe).numTuples());
+  }
+}
@@ -0,0 +1,74 @@
+package edu.washington.escience.myria.operator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.io.FileSource;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.util.TestEnvVars;
+
+public class CSVFragmentTupleSourceTest {
+
+  private static final Schema SCHEMA =
+      new Schema(
+          ImmutableList.of(Type.LONG_TYPE, Type.STRING_TYPE, Type.DOUBLE_TYPE),
+          ImmutableList.of("id", "name", "value"));
+
+  @Test
+  public void testLocalFileRangesPerWorker() throws Exception {
+    int numRows = 5000;
+    StringBuilder csv = new StringBuilder("id,name,value\n");
+    for (int i = 0; i < numRows; ++i) {
+      csv.append(i).append(",name").append(i).append(',').append(i / 4.0).append('\n');
+    }
+    File file = File.createTempFile(getClass().getSimpleName(), ".csv");
+    file.deleteOnExit();
+    Files.write(file.toPath(), csv.toString().getBytes(StandardCharsets.UTF_8));
+    FileSource source = new FileSource(file.getAbsolutePath());
+
+    int[] workerIds = new int[] {1, 2};
+    for (int rangesPerWorker : new int[] {1, 3, 7}) {
+      checkRanges(source, workerIds, rangesPerWorker, numRows);
+    }
+  }
+
+  private static void checkRanges(
+      final FileSource source, final int[] workerIds, final int rangesPerWorker, final int numRows)
+      throws Exception {
+    int[] counts = new int[numRows];
+    for (int workerId : workerIds) {
+      for (int range = 0; range < rangesPerWorker; ++range) {
+        CSVFragmentTupleSource scan =
+            new CSVFragmentTupleSource(
+                source, SCHEMA, workerIds, rangesPerWorker, range, null, null, null, 1);
+        scan.open(TestEnvVars.get(workerId));
+        while (!scan.eos()) {
+          TupleBatch tb = scan.nextReady();
+          if (tb == null) {
+            continue;
+          }
+          for (int row = 0; row < tb.numTuples(); ++row) {
+            int id = (int) tb.getLong(0, row);
+            assertEquals("name" + id, tb.getString(1, row));
+            assertEquals(id / 4.0, tb.getDouble(2, row), 0);
+            ++counts[id];
+          }
+        }
+        scan.close();
+      }
+    }
+
+    for (int i = 0; i < numRows; ++i) {
+      assertEquals(rangesPerWorker + " ranges per worker, row " + i, 1, counts[i]);
+    }
+  }
+}
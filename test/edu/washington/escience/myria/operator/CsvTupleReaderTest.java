@@ -5,6 +5,7 @@ import static org.junit.Assert.assertEquals;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 
 import org.junit.Test;
@@ -241,6 +242,22 @@ public class CsvTupleReaderTest {
     assertEquals(2 * TupleUtils.getBatchSize(Type.INT_TYPE), getRowCount(scanBytes));
   }
 
+  @Test
+  public void testSkippedLinesLongerThanInput() throws Exception {
+    for (int skipped : new int[] {2, 3, 10}) {
+      TupleSource scanBytes =
+          new TupleSource(
+              new CsvTupleReader(
+                  Schema.of(ImmutableList.of(Type.INT_TYPE), ImmutableList.of("col1")),
+                  null,
+                  null,
+                  null,
+                  skipped),
+              new ByteArraySource("header\n1\n".getBytes(StandardCharsets.UTF_8)));
+      assertEquals(0, getRowCount(scanBytes));
+    }
+  }
+
   @Test
   public void testPipeDelimiter() throws Exception {
     final String filename = "nccdc_100.txt";
@@ -0,0 +1,223 @@
+package edu.washington.escience.myria.operator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteStatement;
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.MyriaConstants;
+import edu.washington.escience.myria.RelationKey;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.accessmethod.SQLiteInfo;
+import edu.washington.escience.myria.storage.TempRelationStore;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+import edu.washington.escience.myria.storage.TupleUtils;
+import edu.washington.escience.myria.util.FSUtils;
+import edu.washington.escience.myria.util.TestEnvVars;
+
+public class DbInsertTempTest {
+
+  private static final Schema SCHEMA =
+      new Schema(ImmutableList.of(Type.INT_TYPE, Type.STRING_TYPE), ImmutableList.of("a", "b"));
+  private static final long QUERY_ID = 7;
+  private static final RelationKey TEMP = RelationKey.ofTemp(QUERY_ID, "x");
+  private static final RelationKey OTHER_TEMP = RelationKey.ofTemp(QUERY_ID, "y");
+
+  private Path tempDir;
+  private File dbFile;
+  private SQLiteInfo info;
+
+  @Before
+  public void setUp() throws Exception {
+    tempDir = Files.createTempDirectory(MyriaConstants.SYSTEM_NAME + "_DbInsertTempTest");
+    dbFile = new File(tempDir.toFile(), "worker.db");
+    info = SQLiteInfo.of(dbFile.getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FSUtils.blockingDeleteDirectory(tempDir.toString());
+  }
+
+  private Map<String, Object> envVars(final TempRelationStore store) {
+    Map<String, Object> vars = TestEnvVars.get();
+    vars.put(MyriaConstants.EXEC_ENV_VAR_DATABASE_SYSTEM, MyriaConstants.STORAGE_SYSTEM_SQLITE);
+    vars.put(MyriaConstants.EXEC_ENV_VAR_DATABASE_CONN_INFO, info);
+    vars.put(MyriaConstants.EXEC_ENV_VAR_TEMP_RELATION_STORE, store);
+    vars.put(MyriaConstants.EXEC_ENV_VAR_QUERY_ID, QUERY_ID);
+    return vars;
+  }
+
+  private static TupleBatchBuffer tuples(final int from, final int to) {
+    TupleBatchBuffer tbb = new TupleBatchBuffer(SCHEMA);
+    for (int i = from; i < to; ++i) {
+      tbb.putInt(0, i);
+      tbb.putString(1, "tuple " + i);
+    }
+    return tbb;
+  }
+
+  private void insert(
+      final TempRelationStore store,
+      final RelationKey key,
+      final int from,
+      final int to,
+      final boolean overwrite)
+      throws Exception {
+    DbInsertTemp insert =
+        new DbInsertTemp(new BatchTupleSource(tuples(from, to)), key, null, overwrite, null);
+    insert.open(envVars(store));
+    while (!insert.eos()) {
+      insert.nextReady();
+    }
+    insert.close();
+  }
+
+  private int scan(final TempRelationStore store, final RelationKey key) throws Exception {
+    DbQueryScan scan = new DbQueryScan(key, SCHEMA);
+    scan.open(envVars(store));
+    int count = 0;
+    while (!scan.eos()) {
+      TupleBatch tb = scan.nextReady();
+      if (tb == null) {
+        continue;
+      }
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        assertEquals("tuple " + tb.getInt(0, row), tb.getString(1, row));
+      }
+      count += tb.numTuples();
+    }
+    scan.close();
+    return count;
+  }
+
+  private boolean tableExists(final RelationKey key) throws Exception {
+    if (!dbFile.exists()) {
+      return false;
+    }
+    SQLiteConnection connection = new SQLiteConnection(dbFile);
+    connection.open(false);
+    SQLiteStatement statement =
+        connection
+            .prepare("SELECT COUNT(*) FROM sqlite_master WHERE type='table' AND name=?")
+            .bind(1, key.toString());
+    statement.step();
+    boolean exists = statement.columnInt(0) > 0;
+    statement.dispose();
+    connection.dispose();
+    return exists;
+  }
+
+  @Test
+  public void testInMemory() throws Exception {
+    TempRelationStore store = new TempRelationStore(info, MyriaConstants.GB);
+    insert(store, TEMP, 0, 3000, true);
+    insert(store, TEMP, 3000, 5000, false);
+    assertNotNull(store.get(TEMP));
+    assertEquals(5000, scan(store, TEMP));
+    assertFalse(tableExists(TEMP));
+
+    insert(store, TEMP, 0, 10, true);
+    assertEquals(10, scan(store, TEMP));
+  }
+
+  @Test
+  public void testSpillWhenFull() throws Exception {
+    TempRelationStore store = new TempRelationStore(info, 1);
+    insert(store, TEMP, 0, 3000, true);
+    assertNull(store.get(TEMP));
+    assertTrue(store.isInDatabase(TEMP));
+    assertTrue(tableExists(TEMP));
+    insert(store, TEMP, 3000, 5000, false);
+    assertEquals(5000, scan(store, TEMP));
+  }
+
+  @Test
+  public void testSpillLeastRecentlyWritten() throws Exception {
+    TempRelationStore store =
+        new TempRelationStore(info, TupleUtils.sizeOf(tuples(0, 3000).popAny()) * 3 / 2);
+    insert(store, TEMP, 0, 3000, true);
+    insert(store, OTHER_TEMP, 0, 3000, true);
+    assertNull(store.get(TEMP));
+    assertTrue(tableExists(TEMP));
+    assertNotNull(store.get(OTHER_TEMP));
+    assertEquals(3000, scan(store, TEMP));
+    assertEquals(3000, scan(store, OTHER_TEMP));
+
+    /* Overwriting a spilled relation brings it back in memory. */
+    insert(store, TEMP, 0, 100, true);
+    assertNotNull(store.get(TEMP));
+    assertFalse(tableExists(TEMP));
+    assertEquals(100, scan(store, TEMP));
+  }
+
+  @Test
+  public void testSqlQueriesSeeTempRelations() throws Exception {
+    TempRelationStore store = new TempRelationStore(info, MyriaConstants.GB);
+    insert(store, TEMP, 0, 100, true);
+    DbQueryScan scan =
+        new DbQueryScan(
+            "SELECT COUNT(*) FROM " + TEMP.toString(MyriaConstants.STORAGE_SYSTEM_SQLITE),
+            Schema.ofFields("count", Type.LONG_TYPE));
+    scan.open(envVars(store));
+    TupleBatch tb = null;
+    while (tb == null) {
+      tb = scan.nextReady();
+    }
+    scan.close();
+    assertEquals(100, tb.getLong(0, 0));
+  }
+
+  @Test
+  public void testRetainQuery() throws Exception {
+    TempRelationStore store = new TempRelationStore(info, 1);
+    insert(store, TEMP, 0, 100, true);
+    assertTrue(tableExists(TEMP));
+    store.retainQuery(QUERY_ID);
+    assertTrue(tableExists(TEMP));
+    store.retainQuery(QUERY_ID + 1);
+    assertFalse(tableExists(TEMP));
+    assertFalse(store.isInDatabase(TEMP));
+  }
+
+  @Test
+  public void testDropQueryWhenFinished() throws Exception {
+    TempRelationStore store =
+        new TempRelationStore(info, TupleUtils.sizeOf(tuples(0, 3000).popAny()) * 3 / 2);
+    /* Two subqueries of the query, the second spilling the relation of the first. */
+    insert(store, TEMP, 0, 3000, true);
+    insert(store, OTHER_TEMP, 0, 3000, true);
+    assertTrue(tableExists(TEMP));
+    assertNotNull(store.get(OTHER_TEMP));
+    RelationKey nextTemp = RelationKey.ofTemp(QUERY_ID + 1, "x");
+    insert(store, nextTemp, 0, 10, true);
+
+    /* The master reports the query finished. */
+    store.dropQuery(QUERY_ID);
+    assertFalse(tableExists(TEMP));
+    assertFalse(store.isInDatabase(TEMP));
+    assertNull(store.get(OTHER_TEMP));
+    /* The relations of other queries stay, and the memory of the dropped ones is free again. */
+    assertEquals(10, scan(store, nextTemp));
+    RelationKey nextOtherTemp = RelationKey.ofTemp(QUERY_ID + 1, "y");
+    insert(store, nextOtherTemp, 0, 3000, true);
+    assertNotNull(store.get(nextTemp));
+    assertNotNull(store.get(nextOtherTemp));
+  }
+}
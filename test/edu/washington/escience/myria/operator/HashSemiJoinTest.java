@@ -0,0 +1,120 @@
+package edu.washington.escience.myria.operator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+import edu.washington.escience.myria.util.TestEnvVars;
+
+public class HashSemiJoinTest {
+
+  private TupleBatchBuffer leftTbb, rightTbb;
+
+  @Before
+  public void setUp() throws Exception {
+    leftTbb =
+        new TupleBatchBuffer(
+            new Schema(
+                ImmutableList.of(Type.LONG_TYPE, Type.STRING_TYPE),
+                ImmutableList.of("id", "name")));
+    long[] leftIds = new long[] {0, 2, 2, 3, 4, 5, 6, 8, 8, 10};
+    String[] leftNames = new String[] {"c", "c", "d", "b", "b", "b", "b", "a", "a", "a"};
+    for (int i = 0; i < leftIds.length; i++) {
+      leftTbb.putLong(0, leftIds[i]);
+      leftTbb.putString(1, leftNames[i]);
+    }
+
+    /* A different schema than the left child, with the key columns swapped. */
+    rightTbb =
+        new TupleBatchBuffer(
+            new Schema(
+                ImmutableList.of(Type.STRING_TYPE, Type.INT_TYPE, Type.LONG_TYPE),
+                ImmutableList.of("name", "x", "id")));
+    long[] rightIds = new long[] {2, 10, 2, 9, 8};
+    String[] rightNames = new String[] {"c", "a", "c", "k", "z"};
+    for (int i = 0; i < rightIds.length; i++) {
+      rightTbb.putString(0, rightNames[i]);
+      rightTbb.putInt(1, i);
+      rightTbb.putLong(2, rightIds[i]);
+    }
+  }
+
+  /** @return the ids of the tuples emitted by the operator, in order. */
+  private List<Long> ids(final Operator op) throws DbException {
+    op.open(TestEnvVars.get());
+    assertEquals(leftTbb.getSchema(), op.getSchema());
+    List<Long> ids = new ArrayList<>();
+    while (!op.eos()) {
+      TupleBatch tb = op.nextReady();
+      if (tb == null) {
+        continue;
+      }
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        ids.add(tb.getLong(0, row));
+      }
+    }
+    op.close();
+    return ids;
+  }
+
+  @Test
+  public void testSingleLongKey() throws DbException {
+    assertEquals(
+        ImmutableList.of(2L, 2L, 8L, 8L, 10L),
+        ids(
+            new HashSemiJoin(
+                new BatchTupleSource(leftTbb),
+                new BatchTupleSource(rightTbb),
+                new int[] {0},
+                new int[] {2})));
+    assertEquals(
+        ImmutableList.of(0L, 3L, 4L, 5L, 6L),
+        ids(
+            new HashAntiJoin(
+                new BatchTupleSource(leftTbb),
+                new BatchTupleSource(rightTbb),
+                new int[] {0},
+                new int[] {2})));
+  }
+
+  @Test
+  public void testCompositeKey() throws DbException {
+    assertEquals(
+        ImmutableList.of(2L, 10L),
+        ids(
+            new HashSemiJoin(
+                new BatchTupleSource(leftTbb),
+                new BatchTupleSource(rightTbb),
+                new int[] {0, 1},
+                new int[] {2, 0})));
+    assertEquals(
+        ImmutableList.of(0L, 2L, 3L, 4L, 5L, 6L, 8L, 8L),
+        ids(
+            new HashAntiJoin(
+                new BatchTupleSource(leftTbb),
+                new BatchTupleSource(rightTbb),
+                new int[] {0, 1},
+                new int[] {2, 0})));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testIncompatibleJoinKeys() throws DbException {
+    new HashSemiJoin(
+            new BatchTupleSource(leftTbb),
+            new BatchTupleSource(rightTbb),
+            new int[] {0},
+            new int[] {1})
+        .open(TestEnvVars.get());
+  }
+}
@@ -0,0 +1,140 @@
+package edu.washington.escience.myria.operator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.MyriaConstants;
+import edu.washington.escience.myria.RelationKey;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.accessmethod.AccessMethod;
+import edu.washington.escience.myria.accessmethod.AccessMethod.IndexRef;
+import edu.washington.escience.myria.accessmethod.ColumnarInfo;
+import edu.washington.escience.myria.accessmethod.SQLiteInfo;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+import edu.washington.escience.myria.util.FSUtils;
+import edu.washington.escience.myria.util.TestEnvVars;
+
+public class IndexLookupJoinTest {
+
+  private static final Schema RELATION_SCHEMA =
+      new Schema(
+          ImmutableList.of(Type.STRING_TYPE, Type.LONG_TYPE), ImmutableList.of("name", "id"));
+  private static final Schema PROBE_SCHEMA =
+      new Schema(ImmutableList.of(Type.LONG_TYPE, Type.INT_TYPE), ImmutableList.of("ref", "i"));
+  private static final RelationKey RELATION = RelationKey.of("public", "adhoc", "names");
+  private static final int NUM_IDS = 5000;
+
+  private Path tempDir;
+  private SQLiteInfo info;
+
+  @Before
+  public void setUp() throws Exception {
+    tempDir = Files.createTempDirectory(MyriaConstants.SYSTEM_NAME + "_IndexLookupJoinTest");
+    info = SQLiteInfo.of(new File(tempDir.toFile(), "worker.db").getAbsolutePath());
+
+    /* Each id in [0, NUM_IDS) has two names, and ids are stored in a scrambled order. */
+    TupleBatchBuffer tbb = new TupleBatchBuffer(RELATION_SCHEMA);
+    for (int i = 0; i < NUM_IDS; ++i) {
+      long id = (i * 7919L) % NUM_IDS;
+      tbb.putString(0, "first " + id);
+      tbb.putLong(1, id);
+      tbb.putString(0, "second " + id);
+      tbb.putLong(1, id);
+    }
+    AccessMethod accessMethod = AccessMethod.of(info.getDbms(), info, false);
+    accessMethod.createTableIfNotExists(RELATION, RELATION_SCHEMA);
+    for (TupleBatch tb : tbb.getAll()) {
+      accessMethod.tupleBatchInsert(RELATION, tb);
+    }
+    accessMethod.createIndexes(
+        RELATION, RELATION_SCHEMA, ImmutableList.of(ImmutableList.of(IndexRef.of(1))));
+    accessMethod.close();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FSUtils.blockingDeleteDirectory(tempDir.toString());
+  }
+
+  private Map<String, Object> envVars() {
+    Map<String, Object> vars = TestEnvVars.get();
+    vars.put(MyriaConstants.EXEC_ENV_VAR_DATABASE_SYSTEM, MyriaConstants.STORAGE_SYSTEM_SQLITE);
+    vars.put(MyriaConstants.EXEC_ENV_VAR_DATABASE_CONN_INFO, info);
+    return vars;
+  }
+
+  @Test
+  public void testLookup() throws Exception {
+    /* Probe every id twice and some ids that are not stored, across several batches. */
+    TupleBatchBuffer probe = new TupleBatchBuffer(PROBE_SCHEMA);
+    int numProbes = 0;
+    for (int round = 0; round < 2; ++round) {
+      for (long id = -10; id < NUM_IDS + 10; ++id) {
+        probe.putLong(0, id);
+        probe.putInt(1, numProbes++);
+      }
+    }
+
+    IndexLookupJoin join =
+        new IndexLookupJoin(
+            null,
+            new BatchTupleSource(probe),
+            0,
+            RELATION,
+            RELATION_SCHEMA,
+            1,
+            new int[] {1, 0},
+            new int[] {0});
+    join.open(envVars());
+    assertEquals(
+        new Schema(
+            ImmutableList.of(Type.INT_TYPE, Type.LONG_TYPE, Type.STRING_TYPE),
+            ImmutableList.of("i", "ref", "name")),
+        join.getSchema());
+    long count = 0;
+    while (!join.eos()) {
+      TupleBatch tb = join.nextReady();
+      if (tb == null) {
+        continue;
+      }
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        String name = tb.getString(2, row);
+        assertEquals(tb.getLong(1, row), Long.parseLong(name.substring(name.indexOf(' ') + 1)));
+      }
+      count += tb.numTuples();
+    }
+    join.close();
+    assertEquals(2L * 2 * NUM_IDS, count);
+  }
+
+  @Test(expected = DbException.class)
+  public void testColumnarStorageRejected() throws Exception {
+    Map<String, Object> vars = TestEnvVars.get();
+    vars.put(MyriaConstants.EXEC_ENV_VAR_DATABASE_SYSTEM, MyriaConstants.STORAGE_SYSTEM_COLUMNAR);
+    vars.put(MyriaConstants.EXEC_ENV_VAR_DATABASE_CONN_INFO, ColumnarInfo.of(tempDir.toString()));
+    IndexLookupJoin join =
+        new IndexLookupJoin(
+            null,
+            new BatchTupleSource(new TupleBatchBuffer(PROBE_SCHEMA)),
+            0,
+            RELATION,
+            RELATION_SCHEMA,
+            1,
+            new int[] {1},
+            new int[] {0});
+    join.open(vars);
+  }
+}
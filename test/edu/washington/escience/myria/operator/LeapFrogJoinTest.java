@@ -380,6 +380,49 @@ public class LeapFrogJoinTest {
     assertEquals(2, batches.numTuples());
   }
 
+  @Test
+  public void intersectStringsWithLongGaps() throws DbException {
+    /* I(x,y) :- A(x),B(x,y), on a join field that is not integral, with long runs without a match. */
+    final Schema aSchema = new Schema(ImmutableList.of(Type.STRING_TYPE), ImmutableList.of("a_x"));
+    final Schema bSchema =
+        new Schema(
+            ImmutableList.of(Type.STRING_TYPE, Type.LONG_TYPE), ImmutableList.of("b_x", "b_y"));
+    TupleBatchBuffer a = new TupleBatchBuffer(aSchema);
+    TupleBatchBuffer b = new TupleBatchBuffer(bSchema);
+    for (int i = 0; i < 20000; ++i) {
+      a.putString(0, String.format("k%05d", i / 2));
+      if (i % 100 == 0) {
+        for (int y = 0; y < 3; ++y) {
+          b.putString(0, String.format("k%05d", i));
+          b.putLong(1, y);
+        }
+      }
+    }
+    int[][][] fieldMap = new int[][][] {{{0, 0}, {1, 0}}};
+    int[][] outputMap = new int[][] {{0, 0}, {1, 1}};
+    final ImmutableList<String> outputColumnNames = ImmutableList.of("x", "y");
+    for (boolean indexOnFirst : new boolean[] {false, true}) {
+      LeapFrogJoin join =
+          new LeapFrogJoin(
+              new Operator[] {new BatchTupleSource(a.getAll()), new BatchTupleSource(b.getAll())},
+              fieldMap,
+              outputMap,
+              outputColumnNames,
+              new boolean[] {indexOnFirst, indexOnFirst});
+      join.open(TestEnvVars.get());
+      int count = 0;
+      while (!join.eos()) {
+        TupleBatch tb = join.nextReady();
+        if (tb != null) {
+          count += tb.numTuples();
+        }
+      }
+      join.close();
+      /* the keys of B below 10000 each match 2 tuples of A. */
+      assertEquals(100 * 2 * 3, count);
+    }
+  }
+
   @Test
   public void outputFreeVariable() throws DbException {
     /* Result(x):- o(k,x), p(x,y), q(y,z) */
@@ -183,6 +183,56 @@ public class MergeJoinTest {
     join.close();
   }
 
+  @Test
+  public void testMergeJoinSparseMatches() throws DbException {
+    final Schema leftSchema = new Schema(ImmutableList.of(Type.LONG_TYPE), ImmutableList.of("id"));
+    final Schema rightSchema =
+        new Schema(ImmutableList.of(Type.LONG_TYPE), ImmutableList.of("id2"));
+    TupleBatchBuffer leftTbb = new TupleBatchBuffer(leftSchema);
+    for (long id = 0; id < 30000; ++id) {
+      leftTbb.putLong(0, id);
+    }
+    // long runs without a match on both sides, and equal keys across batch boundaries on the right
+    TupleBatchBuffer rightTbb = new TupleBatchBuffer(rightSchema);
+    long expected = 0;
+    for (long id = -500; id < 30000; id += 997) {
+      for (int copy = 0; copy < 3; ++copy) {
+        rightTbb.putLong(0, id);
+      }
+      if (id >= 0) {
+        expected += 3;
+      }
+    }
+    for (int i = 0; i < 10000; ++i) {
+      rightTbb.putLong(0, 29999);
+    }
+    expected += 10000;
+    for (long id = 30001; id < 40000; id += 997) {
+      rightTbb.putLong(0, id);
+    }
+
+    BinaryOperator join =
+        new MergeJoin(
+            new BatchTupleSource(leftTbb),
+            new BatchTupleSource(rightTbb),
+            new int[] {0},
+            new int[] {0},
+            new boolean[] {true});
+    join.open(TestEnvVars.get());
+    long count = 0;
+    while (!join.eos()) {
+      TupleBatch tb = join.nextReady();
+      if (tb != null) {
+        for (int i = 0; i < tb.numTuples(); i++) {
+          assertEquals(tb.getLong(0, i), tb.getLong(1, i));
+        }
+        count += tb.numTuples();
+      }
+    }
+    join.close();
+    assertEquals(expected, count);
+  }
+
   @Test
   public void testMergeJoinOnMultipleKeys() throws DbException {
     final Schema leftSchema =
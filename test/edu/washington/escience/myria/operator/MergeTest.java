@@ -84,4 +84,36 @@ public class MergeTest {
       previous = entry;
     }
   }
+
+  @Test
+  public void testMergeManyChildren() throws DbException {
+    final int numChildren = 7;
+    BatchTupleSource[] children = new BatchTupleSource[numChildren];
+    int total = 0;
+    for (int i = 0; i < numChildren; ++i) {
+      // one of the children is empty
+      int numTuples = (i * 3217) % 15000;
+      total += numTuples;
+      children[i] = new BatchTupleSource(TestUtils.generateRandomTuples(numTuples, 3000, true));
+    }
+
+    NAryOperator merge = new Merge(children, new int[] {0, 1}, new boolean[] {true, true});
+    merge.open(TestEnvVars.get());
+    final ArrayList<Entry<Long, String>> entries = new ArrayList<Entry<Long, String>>();
+    while (!merge.eos()) {
+      TupleBatch tb = merge.nextReady();
+      if (tb != null) {
+        for (int i = 0; i < tb.numTuples(); i++) {
+          entries.add(new SimpleEntry<Long, String>(tb.getLong(0, i), tb.getString(1, i)));
+        }
+      }
+    }
+    merge.close();
+
+    assertEquals(total, entries.size());
+    Comparator<Entry<Long, String>> comparator = new TestUtils.EntryComparator();
+    for (int i = 1; i < entries.size(); ++i) {
+      assertTrue(comparator.compare(entries.get(i - 1), entries.get(i)) <= 0);
+    }
+  }
 }
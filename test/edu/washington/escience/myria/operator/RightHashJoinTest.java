@@ -1,25 +1,35 @@
 package edu.washington.escience.myria.operator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+
 import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.MyriaConstants;
 import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.storage.HashIndexRegistry;
 import edu.washington.escience.myria.storage.TupleBatch;
 import edu.washington.escience.myria.util.JoinTestUtils;
 import edu.washington.escience.myria.util.TestEnvVars;
 
 public class RightHashJoinTest {
 
-  @Test
-  public void testRightHashJoin() throws DbException {
-    BatchTupleSource left = new BatchTupleSource(JoinTestUtils.leftInput);
-    BatchTupleSource right = new BatchTupleSource(JoinTestUtils.rightInput);
-    Operator join = new RightHashJoin(left, right, new int[] {0, 1, 2}, new int[] {1, 2, 0});
-    join.open(TestEnvVars.get());
+  private long count(final Operator join, final Map<String, Object> envVars) throws DbException {
+    join.open(envVars);
     assertEquals(
         Schema.merge(JoinTestUtils.leftSchema, JoinTestUtils.rightSchema), join.getSchema());
+    return drain(join);
+  }
+
+  /** @return the number of tuples the open join returns before it is closed. */
+  private long drain(final Operator join) throws DbException {
     long count = 0;
     while (!join.eos()) {
       TupleBatch tb = join.nextReady();
@@ -29,7 +39,107 @@ public class RightHashJoinTest {
       count += tb.numTuples();
     }
     join.close();
-    assertEquals(7L, count);
+    return count;
+  }
+
+  private RightHashJoin sharedJoin(final List<TupleBatch> rightInput, final String sharedRight) {
+    return sharedJoin(rightInput, JoinTestUtils.rightSchema, sharedRight);
+  }
+
+  private RightHashJoin sharedJoin(
+      final List<TupleBatch> rightInput, final Schema rightSchema, final String sharedRight) {
+    return new RightHashJoin(
+        null,
+        new BatchTupleSource(JoinTestUtils.leftInput),
+        new BatchTupleSource(rightInput, rightSchema),
+        new int[] {0, 1, 2},
+        new int[] {1, 2, 0},
+        new int[] {0, 1, 2},
+        new int[] {0, 1, 2},
+        sharedRight);
+  }
+
+  @Test
+  public void testRightHashJoin() throws DbException {
+    BatchTupleSource left = new BatchTupleSource(JoinTestUtils.leftInput);
+    BatchTupleSource right = new BatchTupleSource(JoinTestUtils.rightInput);
+    Operator join = new RightHashJoin(left, right, new int[] {0, 1, 2}, new int[] {1, 2, 0});
+    assertEquals(7L, count(join, TestEnvVars.get()));
+  }
+
+  @Test
+  public void testSharedIndex() throws DbException {
+    HashIndexRegistry registry = new HashIndexRegistry(MyriaConstants.GB);
+    Map<String, Object> envVars = TestEnvVars.get();
+    envVars.put(MyriaConstants.EXEC_ENV_VAR_HASH_INDEX_REGISTRY, registry);
+
+    assertEquals(7L, count(sharedJoin(JoinTestUtils.rightInput, "right@1"), envVars));
+    assertEquals(1, registry.size());
+    /* The later joins probe the published index, not the tuples of their right children. */
+    assertEquals(7L, count(sharedJoin(ImmutableList.<TupleBatch>of(), "right@1"), envVars));
+    assertEquals(0L, count(sharedJoin(ImmutableList.<TupleBatch>of(), "right@2"), envVars));
+    assertEquals(2, registry.size());
+
+    /* An index larger than the registry is used, but not published. */
+    HashIndexRegistry small = new HashIndexRegistry(1);
+    envVars.put(MyriaConstants.EXEC_ENV_VAR_HASH_INDEX_REGISTRY, small);
+    assertEquals(7L, count(sharedJoin(JoinTestUtils.rightInput, "right@1"), envVars));
+    assertEquals(0, small.size());
+  }
+
+  @Test
+  public void testSharedIndexKeyedBySchema() throws DbException {
+    HashIndexRegistry registry = new HashIndexRegistry(MyriaConstants.GB);
+    Map<String, Object> envVars = TestEnvVars.get();
+    envVars.put(MyriaConstants.EXEC_ENV_VAR_HASH_INDEX_REGISTRY, registry);
+    assertEquals(7L, count(sharedJoin(JoinTestUtils.rightInput, "right@1"), envVars));
+
+    /* A right child with the same types but other names does not probe the published index. */
+    Schema renamed =
+        new Schema(JoinTestUtils.rightSchema.getColumnTypes(), ImmutableList.of("x", "y", "z"));
+    RightHashJoin join = sharedJoin(ImmutableList.<TupleBatch>of(), renamed, "right@1");
+    join.open(envVars);
+    assertEquals(0L, drain(join));
+    assertEquals(2, registry.size());
+  }
+
+  @Test
+  public void testJoinWaitsForSharedIndex() throws DbException {
+    HashIndexRegistry registry = new HashIndexRegistry(MyriaConstants.GB);
+    Map<String, Object> envVars = TestEnvVars.get();
+    envVars.put(MyriaConstants.EXEC_ENV_VAR_HASH_INDEX_REGISTRY, registry);
+
+    /* The first join reserves the index, the second waits for it instead of building its own. */
+    RightHashJoin builder = sharedJoin(JoinTestUtils.rightInput, "right@1");
+    builder.open(envVars);
+    RightHashJoin waiter = sharedJoin(ImmutableList.<TupleBatch>of(), "right@1");
+    waiter.open(envVars);
+    assertNull(waiter.nextReady());
+    assertFalse(waiter.eos());
+
+    assertEquals(7L, drain(builder));
+    assertEquals(7L, drain(waiter));
+    assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void testAbandonedSharedIndex() throws DbException {
+    HashIndexRegistry registry = new HashIndexRegistry(MyriaConstants.GB);
+    Map<String, Object> envVars = TestEnvVars.get();
+    envVars.put(MyriaConstants.EXEC_ENV_VAR_HASH_INDEX_REGISTRY, registry);
+
+    RightHashJoin builder = sharedJoin(JoinTestUtils.rightInput, "right@1");
+    builder.open(envVars);
+    RightHashJoin waiter = sharedJoin(JoinTestUtils.rightInput, "right@1");
+    waiter.open(envVars);
+    assertNull(waiter.nextReady());
+    /* The builder stops before publishing the index, so the waiter builds its own from its right child. */
+    builder.close();
+    assertEquals(0, registry.size());
+    assertEquals(7L, drain(waiter));
+    /* The index is reserved again by the next join. */
+    assertEquals(7L, count(sharedJoin(JoinTestUtils.rightInput, "right@1"), envVars));
+    assertEquals(1, registry.size());
   }
 
   @Test(expected = IllegalStateException.class)
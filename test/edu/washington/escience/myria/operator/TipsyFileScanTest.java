@@ -8,6 +8,8 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -123,6 +125,46 @@ public class TipsyFileScanTest {
     assertEquals(4, getRowCount(filter));
   }
 
+  @Test
+  public void testSplitAmongWorkers() throws DbException {
+    String binFilename = "file:./testdata/tipsyfilescan/tipsy3";
+    String iOrderFilename = "./testdata/tipsyfilescan/iOrder3.iord";
+    String grpFilename = "./testdata/tipsyfilescan/grp3.amiga.grp";
+    List<String> expected =
+        readIOrderAndType(new TipsyFileScan(binFilename, iOrderFilename, grpFilename), -1);
+    assertEquals(9, expected.size());
+
+    int[] workerIds = new int[] {4, 2, 7, 5};
+    List<String> actual = new ArrayList<>();
+    for (int workerId : workerIds) {
+      actual.addAll(
+          readIOrderAndType(
+              new TipsyFileScan(binFilename, iOrderFilename, grpFilename, workerIds), workerId));
+    }
+    assertEquals(expected, actual);
+    /* A worker that is not one of the given workers reads nothing. */
+    assertEquals(
+        0,
+        readIOrderAndType(new TipsyFileScan(binFilename, iOrderFilename, grpFilename, workerIds), 1)
+            .size());
+  }
+
+  private static List<String> readIOrderAndType(final Operator fileScan, final int workerId)
+      throws DbException {
+    fileScan.open(TestEnvVars.get(workerId));
+    List<String> ret = new ArrayList<>();
+    while (!fileScan.eos()) {
+      TupleBatch tb = fileScan.nextReady();
+      if (tb != null) {
+        for (int row = 0; row < tb.numTuples(); ++row) {
+          ret.add(tb.getLong(0, row) + " " + tb.getString(16, row));
+        }
+      }
+    }
+    fileScan.close();
+    return ret;
+  }
+
   // @Test
   // the data is stored in /projects/db8/dataset_astro_2011/
   // this test took 161796 ms which is about 2.7 minutes on a i7 processor 8gb ram machine
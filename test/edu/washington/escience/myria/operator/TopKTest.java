@@ -0,0 +1,116 @@
+package edu.washington.escience.myria.operator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+import edu.washington.escience.myria.util.TestEnvVars;
+import edu.washington.escience.myria.util.TestUtils;
+
+public class TopKTest {
+
+  /**
+   * @param root the operator.
+   * @param columns the columns to return, of type LONG or STRING.
+   * @return the values of the given columns of all the tuples of the operator, in order.
+   */
+  private static List<String> drain(final Operator root, final int[] columns) throws DbException {
+    root.open(TestEnvVars.get());
+    final List<String> tuples = new ArrayList<>();
+    while (!root.eos()) {
+      TupleBatch tb = root.nextReady();
+      if (tb != null) {
+        for (int row = 0; row < tb.numTuples(); ++row) {
+          StringBuilder sb = new StringBuilder();
+          for (int column : columns) {
+            switch (tb.getSchema().getColumnType(column)) {
+              case LONG_TYPE:
+                sb.append(tb.getLong(column, row));
+                break;
+              case STRING_TYPE:
+                sb.append(tb.getString(column, row));
+                break;
+              default:
+                throw new IllegalArgumentException("unexpected column " + column);
+            }
+            sb.append('|');
+          }
+          tuples.add(sb.toString());
+        }
+      }
+    }
+    root.close();
+    return tuples;
+  }
+
+  private static void checkAgainstOrderByLimit(
+      final TupleBatchBuffer input, final int[] sortColumns, final boolean[] ascending, final int k)
+      throws DbException {
+    List<String> expected =
+        drain(
+            new Limit(
+                (long) k,
+                new InMemoryOrderBy(new BatchTupleSource(input.getAll()), sortColumns, ascending)),
+            sortColumns);
+    List<String> actual =
+        drain(
+            new TopK(new BatchTupleSource(input.getAll()), sortColumns, ascending, k), sortColumns);
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testTopK() throws DbException {
+    TupleBatchBuffer randomTuples = TestUtils.generateRandomTuples(52300, 5000, false);
+    checkAgainstOrderByLimit(randomTuples, new int[] {0, 1}, new boolean[] {true, true}, 100);
+    checkAgainstOrderByLimit(randomTuples, new int[] {1}, new boolean[] {false}, 12345);
+    checkAgainstOrderByLimit(randomTuples, new int[] {1, 0}, new boolean[] {true, false}, 1);
+  }
+
+  @Test
+  public void testLimitAboveInput() throws DbException {
+    TupleBatchBuffer randomTuples = TestUtils.generateRandomTuples(300, 50, false);
+    checkAgainstOrderByLimit(randomTuples, new int[] {0, 1}, new boolean[] {false, true}, 1000);
+  }
+
+  @Test
+  public void testLimitZero() throws DbException {
+    TupleBatchBuffer randomTuples = TestUtils.generateRandomTuples(300, 50, false);
+    assertEquals(
+        0,
+        drain(
+                new TopK(
+                    new BatchTupleSource(randomTuples), new int[] {0}, new boolean[] {true}, 0),
+                new int[] {0})
+            .size());
+  }
+
+  @Test
+  public void testMergeOfPartitions() throws DbException {
+    final int[] sortColumns = new int[] {0, 1};
+    final boolean[] ascending = new boolean[] {false, true};
+    TupleBatchBuffer first = TestUtils.generateRandomTuples(20000, 5000, false);
+    TupleBatchBuffer second = TestUtils.generateRandomTuples(30000, 5000, false);
+    List<TupleBatch> all = new ArrayList<>(first.getAll());
+    all.addAll(second.getAll());
+
+    Operator merged =
+        new TopK(
+            new UnionAll(
+                new Operator[] {
+                  new TopK(new BatchTupleSource(first.getAll()), sortColumns, ascending, 500),
+                  new TopK(new BatchTupleSource(second.getAll()), sortColumns, ascending, 500)
+                }),
+            sortColumns,
+            ascending,
+            500);
+    assertEquals(
+        drain(new TopK(new BatchTupleSource(all), sortColumns, ascending, 500), sortColumns),
+        drain(merged, sortColumns));
+  }
+}
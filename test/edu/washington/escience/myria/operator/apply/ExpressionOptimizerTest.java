@@ -0,0 +1,164 @@
+package edu.washington.escience.myria.operator.apply;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.expression.ConcatExpression;
+import edu.washington.escience.myria.expression.ConditionalExpression;
+import edu.washington.escience.myria.expression.ConstantExpression;
+import edu.washington.escience.myria.expression.Expression;
+import edu.washington.escience.myria.expression.ExpressionOperator;
+import edu.washington.escience.myria.expression.GreaterThanExpression;
+import edu.washington.escience.myria.expression.LikeExpression;
+import edu.washington.escience.myria.expression.MinusExpression;
+import edu.washington.escience.myria.expression.PlusExpression;
+import edu.washington.escience.myria.expression.SplitExpression;
+import edu.washington.escience.myria.expression.TimesExpression;
+import edu.washington.escience.myria.expression.VariableExpression;
+import edu.washington.escience.myria.expression.evaluate.ExpressionOperatorParameter;
+import edu.washington.escience.myria.expression.evaluate.ExpressionOptimizer;
+import edu.washington.escience.myria.expression.evaluate.GenericEvaluator;
+import edu.washington.escience.myria.operator.Apply;
+import edu.washington.escience.myria.operator.BatchTupleSource;
+import edu.washington.escience.myria.operator.Filter;
+import edu.washington.escience.myria.operator.Operator;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+import edu.washington.escience.myria.storage.TupleBuffer;
+import edu.washington.escience.myria.storage.TupleUtils;
+import edu.washington.escience.myria.util.TestEnvVars;
+
+public class ExpressionOptimizerTest {
+
+  private static final Schema SCHEMA =
+      new Schema(
+          ImmutableList.of(Type.LONG_TYPE, Type.LONG_TYPE, Type.STRING_TYPE),
+          ImmutableList.of("a", "b", "s"));
+  private static final int NUM_TUPLES = 2 * TupleUtils.getBatchSize(SCHEMA) + 1;
+
+  private TupleBatchBuffer input() {
+    TupleBatchBuffer tbb = new TupleBatchBuffer(SCHEMA);
+    for (int i = 0; i < NUM_TUPLES; ++i) {
+      tbb.putLong(0, i);
+      tbb.putLong(1, i % 7);
+      tbb.putString(2, "Row." + i + ",x");
+    }
+    return tbb;
+  }
+
+  /** @return the tuples emitted by the operator. */
+  private TupleBuffer drain(final Operator op) throws DbException {
+    op.open(TestEnvVars.get());
+    TupleBuffer ans = new TupleBuffer(op.getSchema());
+    while (!op.eos()) {
+      TupleBatch tb = op.nextReady();
+      if (tb == null) {
+        continue;
+      }
+      for (int row = 0; row < tb.numTuples(); ++row) {
+        for (int column = 0; column < tb.numColumns(); ++column) {
+          ans.put(column, tb.asColumn(column), row);
+        }
+      }
+    }
+    op.close();
+    return ans;
+  }
+
+  @Test
+  public void testFoldConstants() throws DbException {
+    ExpressionOperator a = new VariableExpression(0);
+    /* a - (2 * 3 - 10) folds the constant to a negative literal. */
+    Expression minus =
+        new Expression(
+            "minus",
+            new MinusExpression(
+                a,
+                new MinusExpression(
+                    new TimesExpression(new ConstantExpression(2L), new ConstantExpression(3L)),
+                    new ConstantExpression(10L))));
+    Expression concat =
+        new Expression(
+            "concat",
+            new ConcatExpression(new ConstantExpression("ab"), new ConstantExpression("cd")));
+    ImmutableList<Expression> exprs = ImmutableList.of(minus, concat);
+
+    ExpressionOperatorParameter parameters =
+        ExpressionOptimizer.foldConstants(exprs, new ExpressionOperatorParameter(SCHEMA));
+    assertEquals(
+        "result.appendLong(com.google.common.math.LongMath.checkedSubtract(input.getLong(0, inputRow),(-4L)));",
+        new GenericEvaluator(minus, parameters).getScript());
+    assertEquals(
+        "result.appendString(\"abcd\");", new GenericEvaluator(concat, parameters).getScript());
+
+    TupleBuffer ans = drain(new Apply(new BatchTupleSource(input()), exprs));
+    assertEquals(NUM_TUPLES, ans.numTuples());
+    for (int i = 0; i < NUM_TUPLES; ++i) {
+      assertEquals(i + 4L, ans.getLong(0, i));
+      assertEquals("abcd", ans.getString(1, i));
+    }
+  }
+
+  @Test
+  public void testHoistPatterns() throws DbException {
+    Expression split =
+        new Expression(
+            "split", new SplitExpression(new VariableExpression(2), new ConstantExpression(",")));
+    GenericEvaluator eval = new GenericEvaluator(split, new ExpressionOperatorParameter(SCHEMA));
+    assertFalse(eval.getScript().contains("compile"));
+    TupleBuffer ans = drain(new Apply(new BatchTupleSource(input()), ImmutableList.of(split)));
+    assertEquals(2 * NUM_TUPLES, ans.numTuples());
+    for (int i = 0; i < NUM_TUPLES; ++i) {
+      assertEquals("Row." + i, ans.getString(0, 2 * i));
+      assertEquals("x", ans.getString(0, 2 * i + 1));
+    }
+
+    /* LIKE matches case-insensitively, with % for any string and ? for any character. */
+    Expression like =
+        new Expression(
+            new LikeExpression(new VariableExpression(2), new ConstantExpression("row.?,%")));
+    assertEquals(
+        Math.min(NUM_TUPLES, 10),
+        drain(new Filter(like, new BatchTupleSource(input()))).numTuples());
+  }
+
+  @Test
+  public void testSharedSubexpressions() throws DbException {
+    ExpressionOperator a = new VariableExpression(0);
+    ExpressionOperator b = new VariableExpression(1);
+    ExpressionOperator product = new TimesExpression(a, b);
+    ExpressionOperator sum = new PlusExpression(a, b);
+    ImmutableList<Expression> exprs =
+        ImmutableList.of(
+            new Expression("plus", new PlusExpression(product, new ConstantExpression(1L))),
+            new Expression("minus", new MinusExpression(product, new ConstantExpression(1L))),
+            /* a + b is only shared in the branches of a conditional, so it is not computed for every row. */
+            new Expression(
+                "cond",
+                new ConditionalExpression(
+                    new GreaterThanExpression(b, new ConstantExpression(3L)), sum, sum)));
+
+    assertEquals(
+        ImmutableList.of(product),
+        ExpressionOptimizer.sharedSubexpressions(exprs, new ExpressionOperatorParameter(SCHEMA)));
+
+    Apply apply = new Apply(new BatchTupleSource(input()), exprs);
+    TupleBuffer ans = drain(apply);
+    assertTrue(apply.getEmitEvaluators().get(0).getScript().contains("input.getLong(3, inputRow)"));
+    assertEquals(NUM_TUPLES, ans.numTuples());
+    for (int i = 0; i < NUM_TUPLES; ++i) {
+      long p = (long) i * (i % 7);
+      assertEquals(p + 1, ans.getLong(0, i));
+      assertEquals(p - 1, ans.getLong(1, i));
+      assertEquals(i + i % 7, ans.getLong(2, i));
+    }
+  }
+}
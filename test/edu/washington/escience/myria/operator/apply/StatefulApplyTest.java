@@ -1,6 +1,7 @@
 package edu.washington.escience.myria.operator.apply;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -15,6 +16,8 @@ import edu.washington.escience.myria.expression.IntDivideExpression;
 import edu.washington.escience.myria.expression.PlusExpression;
 import edu.washington.escience.myria.expression.StateExpression;
 import edu.washington.escience.myria.expression.VariableExpression;
+import edu.washington.escience.myria.expression.evaluate.ExpressionOperatorParameter;
+import edu.washington.escience.myria.expression.evaluate.StatefulBatchEvaluator;
 import edu.washington.escience.myria.operator.SingletonRelation;
 import edu.washington.escience.myria.operator.StatefulApply;
 import edu.washington.escience.myria.operator.BatchTupleSource;
@@ -204,4 +207,58 @@ public class StatefulApplyTest {
     apply.close();
     assertEquals(2, old);
   }
+
+  @Test
+  public void testStatefulApplyUpdatesReadOldState() throws DbException {
+    final Schema schema = Schema.ofFields("i", Type.LONG_TYPE);
+    final TupleBatchBuffer tbb = new TupleBatchBuffer(schema);
+    for (long i = 0; i < NUM_TUPLES; i++) {
+      tbb.putLong(0, i);
+    }
+
+    /* Each row swaps x and y, and adds the input to the running sum. */
+    ImmutableList<Expression> initializers =
+        ImmutableList.of(
+            new Expression("x", new ConstantExpression(0L)),
+            new Expression("y", new ConstantExpression(1L)),
+            new Expression("sum", new ConstantExpression(0L)));
+    ImmutableList<Expression> updaters =
+        ImmutableList.of(
+            new Expression(new StateExpression(1)),
+            new Expression(new StateExpression(0)),
+            new Expression(new PlusExpression(new StateExpression(2), new VariableExpression(0))));
+    ImmutableList<Expression> emitters =
+        ImmutableList.of(
+            new Expression("i", new VariableExpression(0)),
+            new Expression("x", new StateExpression(0)),
+            new Expression("sum", new StateExpression(2)));
+
+    Schema stateSchema =
+        Schema.ofFields("x", Type.LONG_TYPE, "y", Type.LONG_TYPE, "sum", Type.LONG_TYPE);
+    assertTrue(
+        StatefulBatchEvaluator.canEvaluate(
+            updaters,
+            emitters.subList(1, 3),
+            new ExpressionOperatorParameter(schema, stateSchema)));
+
+    StatefulApply apply =
+        new StatefulApply(new BatchTupleSource(tbb), emitters, initializers, updaters);
+    apply.open(TestEnvVars.get());
+    long count = 0;
+    while (!apply.eos()) {
+      TupleBatch result = apply.nextReady();
+      if (result == null) {
+        continue;
+      }
+      for (int row = 0; row < result.numTuples(); ++row) {
+        long i = result.getLong(0, row);
+        assertEquals(count, i);
+        assertEquals((i + 1) % 2, result.getLong(1, row));
+        assertEquals(i * (i + 1) / 2, result.getLong(2, row));
+        ++count;
+      }
+    }
+    apply.close();
+    assertEquals(NUM_TUPLES, count);
+  }
 }
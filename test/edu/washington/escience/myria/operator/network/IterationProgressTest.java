@@ -0,0 +1,53 @@
+package edu.washington.escience.myria.operator.network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class IterationProgressTest {
+
+  private static long millis(final long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  @Test
+  public void testIterationsFinishWithAllReports() {
+    /* The operator starts at 100 ms, before any report. */
+    IterationProgress progress = new IterationProgress(millis(100));
+    progress.report(0, false, 2, millis(110));
+    assertEquals(ImmutableList.of(), progress.getLatenciesMillis());
+    progress.report(0, true, 2, millis(130));
+    progress.report(1, true, 2, millis(140));
+    progress.report(1, true, 2, millis(150));
+    progress.report(2, true, 2, millis(160));
+    assertEquals(ImmutableList.of(30L, 20L), progress.getLatenciesMillis());
+  }
+
+  @Test
+  public void testIterationsFinishWhenExpectingFewerReports() {
+    IterationProgress progress = new IterationProgress(millis(0));
+    progress.report(0, false, 3, millis(10));
+    progress.report(0, false, 3, millis(20));
+    progress.report(0, true, 3, millis(30));
+    /* A worker goes missing after iterations 1 and 2 got three and two reports. */
+    progress.report(1, false, 3, millis(40));
+    progress.report(1, false, 3, millis(45));
+    progress.report(2, false, 3, millis(50));
+    progress.report(1, true, 3, millis(55));
+    progress.report(2, true, 3, millis(60));
+    assertEquals(ImmutableList.of(30L, 25L), progress.getLatenciesMillis());
+    progress.finishIterations(2, millis(70));
+    assertEquals(ImmutableList.of(30L, 25L, 15L), progress.getLatenciesMillis());
+    /* Later iterations expect two reports, and more than the expected reports still count. */
+    progress.report(3, true, 2, millis(80));
+    progress.report(3, true, 2, millis(90));
+    progress.report(3, true, 2, millis(95));
+    progress.report(4, true, 2, millis(100));
+    progress.report(4, true, 2, millis(110));
+    assertEquals(ImmutableList.of(30L, 25L, 15L, 20L, 20L), progress.getLatenciesMillis());
+  }
+}
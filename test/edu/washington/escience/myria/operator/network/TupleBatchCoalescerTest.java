@@ -0,0 +1,71 @@
+package edu.washington.escience.myria.operator.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+
+import org.junit.Test;
+
+import edu.washington.escience.myria.MyriaConstants;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.storage.TupleBatch;
+import edu.washington.escience.myria.storage.TupleBatchBuffer;
+
+public class TupleBatchCoalescerTest {
+
+  private static final Schema SCHEMA = Schema.ofFields("x", Type.LONG_TYPE);
+
+  private static TupleBatch batch(final long first, final int numTuples) {
+    TupleBatchBuffer tbb = new TupleBatchBuffer(SCHEMA);
+    for (int i = 0; i < numTuples; ++i) {
+      tbb.putLong(0, first + i);
+    }
+    return tbb.popAny();
+  }
+
+  @Test
+  public void testMergeSmallBatches() {
+    TupleBatchCoalescer coalescer = new TupleBatchCoalescer(SCHEMA);
+    LinkedList<TupleBatch> out = new LinkedList<>();
+    coalescer.add(batch(0, 10), out);
+    coalescer.add(batch(10, 20), out);
+    assertTrue(out.isEmpty());
+    coalescer.flush(out);
+    assertEquals(1, out.size());
+    TupleBatch merged = out.poll();
+    assertEquals(30, merged.numTuples());
+    for (int i = 0; i < 30; ++i) {
+      assertEquals(i, merged.getLong(0, i));
+    }
+    coalescer.flush(out);
+    assertTrue(out.isEmpty());
+  }
+
+  @Test
+  public void testFullBatches() {
+    TupleBatchCoalescer coalescer = new TupleBatchCoalescer(SCHEMA);
+    LinkedList<TupleBatch> out = new LinkedList<>();
+    int half = MyriaConstants.TUPLE_BATCH_DEFAULT_SIZE / 2;
+    coalescer.add(batch(0, half), out);
+    coalescer.add(batch(half, half), out);
+    assertEquals(1, out.size());
+    assertEquals(2 * half, out.poll().numTuples());
+
+    TupleBatch full = batch(0, MyriaConstants.TUPLE_BATCH_DEFAULT_SIZE);
+    coalescer.add(full, out);
+    assertEquals(full, out.poll());
+  }
+
+  @Test
+  public void testEOIKeepsOrder() {
+    TupleBatchCoalescer coalescer = new TupleBatchCoalescer(SCHEMA);
+    LinkedList<TupleBatch> out = new LinkedList<>();
+    coalescer.add(batch(0, 5), out);
+    coalescer.add(TupleBatch.eoiTupleBatch(SCHEMA), out);
+    assertEquals(2, out.size());
+    assertEquals(5, out.poll().numTuples());
+    assertTrue(out.poll().isEOI());
+  }
+}
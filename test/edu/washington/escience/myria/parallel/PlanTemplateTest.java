@@ -0,0 +1,65 @@
+package edu.washington.escience.myria.parallel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+import edu.washington.escience.myria.operator.network.CollectProducer;
+import edu.washington.escience.myria.operator.network.Consumer;
+
+public class PlanTemplateTest {
+
+  private static final Schema SCHEMA = Schema.ofFields("x", Type.LONG_TYPE);
+
+  private static SubQueryPlan plan(final ExchangePairID in, final ExchangePairID out) {
+    return new SubQueryPlan(
+        new CollectProducer(new Consumer(SCHEMA, in, new int[] {1, 2}), out, 1));
+  }
+
+  private static void assertIds(
+      final SubQueryPlan plan, final ExchangePairID in, final ExchangePairID out) {
+    CollectProducer producer = (CollectProducer) plan.getRootOps().get(0);
+    assertEquals(out.getLong(), producer.getOutputChannelIDs(2)[0].getStreamID());
+    assertEquals(in, ((Consumer) producer.getChild()).getOperatorID());
+  }
+
+  @Test
+  public void testSharedTemplate() throws Exception {
+    ExchangePairID in1 = ExchangePairID.newID();
+    ExchangePairID out1 = ExchangePairID.newID();
+    ExchangePairID in2 = ExchangePairID.newID();
+    ExchangePairID out2 = ExchangePairID.newID();
+    PlanTemplate first = PlanTemplate.of(plan(in1, out1));
+    PlanTemplate second = PlanTemplate.of(plan(in2, out2));
+    assertEquals(first.getHash(), second.getHash());
+    assertNotEquals(first.getHash(), PlanTemplate.of(plan(in1, in1)).getHash());
+
+    PlanTemplateCache<byte[]> cache = new PlanTemplateCache<>(4);
+    assertIds(first.instantiate(cache), in1, out1);
+    assertNotNull(cache.get(first.getHash()));
+    assertIds(second.withoutTemplate().instantiate(cache), in2, out2);
+  }
+
+  @Test(expected = UnknownPlanTemplateException.class)
+  public void testUnknownTemplate() throws Exception {
+    PlanTemplate.of(plan(ExchangePairID.newID(), ExchangePairID.newID()))
+        .withoutTemplate()
+        .instantiate(new PlanTemplateCache<byte[]>(4));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    PlanTemplateCache<Boolean> cache = new PlanTemplateCache<>(2);
+    cache.put("a", true);
+    cache.put("b", true);
+    cache.get("a");
+    cache.put("c", true);
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get("a"));
+    assertNotNull(cache.get("c"));
+  }
+}
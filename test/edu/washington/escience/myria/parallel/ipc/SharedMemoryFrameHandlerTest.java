@@ -0,0 +1,230 @@
+package edu.washington.escience.myria.parallel.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.local.DefaultLocalClientChannelFactory;
+import org.jboss.netty.channel.local.DefaultLocalServerChannelFactory;
+import org.jboss.netty.channel.local.LocalAddress;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Runs two {@link SharedMemoryFrameHandler}s on the ends of an in-VM channel, and checks what goes through the channel
+ * and what the receiver gets.
+ */
+public class SharedMemoryFrameHandlerTest {
+
+  private static final int RING_CAPACITY = 64 * 1024;
+  private static final int LARGE_FRAME = 8 * 1024;
+  private static final int SMALL_FRAME = 100;
+  private static final long TIMEOUT_SECONDS = 10;
+
+  /** Records every frame the receiver gets, before or after its handler. */
+  private static final class Recorder extends SimpleChannelUpstreamHandler {
+    private final BlockingQueue<ChannelBuffer> frames = new LinkedBlockingQueue<>();
+
+    @Override
+    public void messageReceived(final ChannelHandlerContext ctx, final MessageEvent e)
+        throws Exception {
+      final ChannelBuffer frame = (ChannelBuffer) e.getMessage();
+      frames.add(frame.copy());
+      ctx.sendUpstream(e);
+    }
+
+    private ChannelBuffer take() throws InterruptedException {
+      final ChannelBuffer frame = frames.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      assertTrue("timed out waiting for a frame", frame != null);
+      return frame;
+    }
+  }
+
+  private Path directory;
+  private ServerBootstrap serverBootstrap;
+  private ClientBootstrap clientBootstrap;
+  /** The frames on the channel at the receiver, i.e., frames, markers, and handshake messages. */
+  private Recorder wire;
+  /** The frames the receiver gets. */
+  private Recorder delivered;
+  private Channel sender;
+
+  private static SharedMemoryFrameHandler.Colocation colocation(final boolean colocated) {
+    return new SharedMemoryFrameHandler.Colocation() {
+      @Override
+      public Integer getRemoteID(final Channel ch) {
+        return 1;
+      }
+
+      @Override
+      public boolean isColocated(final int remoteID) {
+        return colocated;
+      }
+    };
+  }
+
+  private void connect(final boolean colocated) throws Exception {
+    wire = new Recorder();
+    delivered = new Recorder();
+    final LocalAddress address = new LocalAddress(LocalAddress.EPHEMERAL);
+    serverBootstrap = new ServerBootstrap(new DefaultLocalServerChannelFactory());
+    serverBootstrap.setPipelineFactory(
+        new ChannelPipelineFactory() {
+          @Override
+          public ChannelPipeline getPipeline() {
+            return Channels.pipeline(
+                wire,
+                new SharedMemoryFrameHandler(1, colocation(colocated), directory, RING_CAPACITY),
+                delivered);
+          }
+        });
+    serverBootstrap.bind(address);
+    clientBootstrap = new ClientBootstrap(new DefaultLocalClientChannelFactory());
+    clientBootstrap.setPipelineFactory(
+        new ChannelPipelineFactory() {
+          @Override
+          public ChannelPipeline getPipeline() {
+            return Channels.pipeline(
+                new SharedMemoryFrameHandler(2, colocation(colocated), directory, RING_CAPACITY));
+          }
+        });
+    sender = clientBootstrap.connect(address).awaitUninterruptibly().getChannel();
+    assertTrue(sender.isConnected());
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("shm");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (sender != null) {
+      sender.close().awaitUninterruptibly();
+    }
+    if (clientBootstrap != null) {
+      clientBootstrap.releaseExternalResources();
+    }
+    if (serverBootstrap != null) {
+      serverBootstrap.releaseExternalResources();
+    }
+    /* Every ring file is deleted, once mapped by both sides or once the channel is closed. */
+    assertEquals(0, directory.toFile().list().length);
+    Files.delete(directory);
+  }
+
+  /**
+   * @param length the length of the frame.
+   * @param seed the seed of the content of the frame.
+   * @return a data frame.
+   */
+  private static ChannelBuffer frame(final int length, final int seed) {
+    final ChannelBuffer frame = ChannelBuffers.buffer(length);
+    frame.writeByte(IPCMessage.Header.DATA.ordinal());
+    for (int i = 1; i < length; ++i) {
+      frame.writeByte(seed * 31 + i);
+    }
+    return frame;
+  }
+
+  /**
+   * Sends the frames and checks that the receiver gets them in order.
+   *
+   * @param frames the frames.
+   * @return the header of each message on the channel at the receiver.
+   */
+  private List<IPCMessage.Header> sendAll(final List<ChannelBuffer> frames) throws Exception {
+    for (ChannelBuffer frame : frames) {
+      sender.write(frame.duplicate()).awaitUninterruptibly();
+    }
+    for (ChannelBuffer frame : frames) {
+      assertEquals(frame, delivered.take());
+    }
+    final List<IPCMessage.Header> headers = new ArrayList<>();
+    while (!wire.frames.isEmpty()) {
+      headers.add(IPCMessage.Header.values()[wire.take().getByte(0)]);
+    }
+    return headers;
+  }
+
+  private static int count(final List<IPCMessage.Header> headers, final IPCMessage.Header header) {
+    int ret = 0;
+    for (IPCMessage.Header h : headers) {
+      if (h == header) {
+        ret++;
+      }
+    }
+    return ret;
+  }
+
+  @Test
+  public void testLargeFramesGoThroughRing() throws Exception {
+    connect(true);
+    final List<ChannelBuffer> frames = new ArrayList<>();
+    for (int i = 0; i < 20; ++i) {
+      frames.add(frame(i % 2 == 0 ? LARGE_FRAME : SMALL_FRAME, i));
+    }
+    final List<IPCMessage.Header> headers = sendAll(frames);
+    /* One handshake, then the large frames go through the ring, except the first if it raced the handshake. */
+    assertEquals(1, count(headers, IPCMessage.Header.SHM_ATTACH));
+    final int inRing = count(headers, IPCMessage.Header.SHM_FRAME);
+    assertEquals(20, inRing + count(headers, IPCMessage.Header.DATA));
+    assertTrue(inRing >= 9);
+
+    /* The ring wraps around many times. */
+    frames.clear();
+    for (int i = 0; i < 5 * RING_CAPACITY / LARGE_FRAME; ++i) {
+      frames.add(frame(LARGE_FRAME, i));
+    }
+    assertEquals(frames.size(), count(sendAll(frames), IPCMessage.Header.SHM_FRAME));
+  }
+
+  @Test
+  public void testFramesThatDoNotFitGoThroughChannel() throws Exception {
+    connect(true);
+    final List<ChannelBuffer> frames = new ArrayList<>();
+    frames.add(frame(LARGE_FRAME, 0));
+    sendAll(frames);
+    frames.clear();
+    frames.add(frame(LARGE_FRAME, 1));
+    frames.add(frame(RING_CAPACITY + 1, 2));
+    frames.add(frame(LARGE_FRAME, 3));
+    final List<IPCMessage.Header> headers = sendAll(frames);
+    assertEquals(
+        ImmutableList.of(
+            IPCMessage.Header.SHM_FRAME, IPCMessage.Header.DATA, IPCMessage.Header.SHM_FRAME),
+        headers);
+  }
+
+  @Test
+  public void testRemoteNotColocated() throws Exception {
+    connect(false);
+    final List<ChannelBuffer> frames = new ArrayList<>();
+    for (int i = 0; i < 5; ++i) {
+      frames.add(frame(LARGE_FRAME, i));
+    }
+    assertEquals(5, count(sendAll(frames), IPCMessage.Header.DATA));
+    assertEquals(0, directory.toFile().list().length);
+  }
+}
@@ -0,0 +1,75 @@
+package edu.washington.escience.myria.parallel.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SharedMemoryRingTest {
+
+  private static final int CAPACITY = 100;
+
+  private Path directory;
+  private SharedMemoryRing producer;
+  private SharedMemoryRing consumer;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("ring");
+    producer = SharedMemoryRing.create(directory, "test-", CAPACITY);
+    consumer = SharedMemoryRing.attach(producer.getFile());
+    assertTrue(producer.deleteFile());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    producer.close();
+    consumer.close();
+    Files.delete(directory);
+  }
+
+  private static ChannelBuffer frame(final int length, final int first) {
+    ChannelBuffer frame = ChannelBuffers.buffer(length);
+    for (int i = 0; i < length; ++i) {
+      frame.writeByte(first + i);
+    }
+    return frame;
+  }
+
+  @Test
+  public void testWrapAround() {
+    for (int round = 0; round < 10; ++round) {
+      ChannelBuffer sent = frame(70, round);
+      assertTrue(producer.write(sent));
+      assertEquals(0, sent.readerIndex());
+      assertEquals(sent, consumer.read(70));
+    }
+  }
+
+  @Test
+  public void testFull() {
+    assertTrue(producer.write(frame(60, 0)));
+    assertFalse(producer.write(frame(50, 1)));
+    assertTrue(producer.write(frame(40, 2)));
+    assertFalse(producer.write(frame(1, 3)));
+    assertEquals(frame(60, 0), consumer.read(60));
+    assertTrue(producer.write(frame(50, 1)));
+    assertEquals(frame(40, 2), consumer.read(40));
+    assertEquals(frame(50, 1), consumer.read(50));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testClosed() {
+    producer.close();
+    producer.close();
+    producer.write(frame(10, 0));
+  }
+}
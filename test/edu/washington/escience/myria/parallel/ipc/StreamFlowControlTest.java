@@ -0,0 +1,159 @@
+package edu.washington.escience.myria.parallel.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ServerSocket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import edu.washington.escience.myria.parallel.SocketInfo;
+
+/**
+ * Streams messages from an IPC entity to itself, through an in-JVM channel, into a {@link FlowControlBagInputBuffer}, and
+ * checks the credits the input channel grants to the output channel.
+ */
+public class StreamFlowControlTest {
+
+  private static final int MY_ID = 0;
+  private static final long STREAM_ID = 42;
+  /** The soft capacity of the input buffer, which is also the number of credits of its only stream. */
+  private static final int CAPACITY = 4;
+  private static final long TIMEOUT_MS = 10000;
+  private static final long SHORT_TIMEOUT_MS = 100;
+
+  private IPCConnectionPool pool;
+  private FlowControlBagInputBuffer<Object> inputBuffer;
+  private StreamOutputChannel<Object> output;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    final int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    pool =
+        new IPCConnectionPool(
+            MY_ID,
+            ImmutableMap.of(MY_ID, new SocketInfo("localhost", port)),
+            new ServerBootstrap(),
+            new ClientBootstrap(),
+            null,
+            null,
+            CAPACITY,
+            CAPACITY / 2);
+    final IPCMessageHandler handler = new IPCMessageHandler(pool);
+    final ChannelPipelineFactory pipelineFactory =
+        new ChannelPipelineFactory() {
+          @Override
+          public ChannelPipeline getPipeline() throws Exception {
+            final ChannelPipeline p = Channels.pipeline();
+            p.addLast("ipcMessageHandler", handler);
+            return p;
+          }
+        };
+    pool.start(
+        new NioServerSocketChannelFactory(),
+        pipelineFactory,
+        new NioClientSocketChannelFactory(),
+        pipelineFactory,
+        pipelineFactory,
+        new InJVMLoopbackChannelSink());
+
+    inputBuffer =
+        new FlowControlBagInputBuffer<>(
+            pool, ImmutableSet.of(new StreamIOChannelID(STREAM_ID, MY_ID)), CAPACITY, CAPACITY / 2);
+    inputBuffer.start(this);
+    output = pool.reserveLongTermConnection(MY_ID, STREAM_ID);
+    assertNotNull(output);
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    inputBuffer.stop();
+    pool.shutdown().awaitUninterruptibly();
+    pool.releaseExternalResources();
+  }
+
+  /** Writes messages until the output channel runs out of credits. */
+  private void useAllCredits() throws InterruptedException {
+    for (int i = 0; i < CAPACITY; ++i) {
+      assertTrue(output.awaitWritable(TIMEOUT_MS));
+      output.write(i);
+    }
+    assertEquals(CAPACITY, inputBuffer.size());
+  }
+
+  /** @return a thread that waits for the output channel to become writable. */
+  private Future<Boolean> awaitWritableInBackground() {
+    return executor.submit(() -> output.awaitWritable(TIMEOUT_MS));
+  }
+
+  @Test
+  public void testInitialCreditsOnAttach() throws Exception {
+    /* The BOS maps the input channel, which grants the credits of the stream. */
+    assertEquals(CAPACITY, inputBuffer.getStreamCredits());
+    assertTrue(output.isWritable());
+    useAllCredits();
+  }
+
+  @Test
+  public void testBlockedWithoutCredits() throws Exception {
+    useAllCredits();
+    assertFalse(output.isWritable());
+    assertFalse(output.awaitWritable(SHORT_TIMEOUT_MS));
+    assertFalse(output.isReleasedOrDetached());
+  }
+
+  @Test
+  public void testConsumingGrantsCredits() throws Exception {
+    useAllCredits();
+    final Future<Boolean> writable = awaitWritableInBackground();
+    /* Credits are granted again once half of them are consumed. */
+    assertNotNull(inputBuffer.poll());
+    assertFalse(output.isWritable());
+    assertNotNull(inputBuffer.poll());
+    assertTrue(writable.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    for (int i = 0; i < CAPACITY / 2; ++i) {
+      assertTrue(output.isWritable());
+      output.write(i);
+    }
+    assertFalse(output.isWritable());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testDetachedWhileWaiting() throws Exception {
+    useAllCredits();
+    final Future<Boolean> writable = awaitWritableInBackground();
+    ChannelContext.getChannelContext(output.getIOChannel())
+        .getRegisteredChannelContext()
+        .getIOPair()
+        .deMapOutputChannel();
+    /* The waiting thread returns at once instead of waiting for credits that never come. */
+    assertFalse(writable.get(TIMEOUT_MS / 2, TimeUnit.MILLISECONDS));
+    assertTrue(output.isReleasedOrDetached());
+    assertFalse(output.awaitWritable(TIMEOUT_MS));
+    output.write(0);
+  }
+}
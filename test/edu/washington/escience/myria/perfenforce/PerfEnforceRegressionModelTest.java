@@ -0,0 +1,65 @@
+package edu.washington.escience.myria.perfenforce;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import org.junit.Test;
+
+public class PerfEnforceRegressionModelTest {
+
+  @Test
+  public void testFitsLinearData() {
+    PerfEnforceRegressionModel model = new PerfEnforceRegressionModel(2);
+    for (int i = 0; i < 20; ++i) {
+      double x0 = i;
+      double x1 = (i * 7) % 5;
+      model.addDataPoint(new double[] {x0, x1}, 3 + 2 * x0 - 0.5 * x1);
+    }
+    assertEquals(20, model.getNumDataPoints());
+    assertEquals(3 + 2 * 100 - 0.5 * 4, model.predict(new double[] {100, 4}), 1e-3);
+  }
+
+  @Test
+  public void testIncrementalUpdate() {
+    PerfEnforceRegressionModel model = new PerfEnforceRegressionModel(1);
+    model.addDataPoint("1,10");
+    model.addDataPoint("2,20");
+    assertEquals(30, model.predict("3,0"), 1e-3);
+    /* the cached prediction must be invalidated by new data. */
+    model.addDataPoint("3,60");
+    model.addDataPoint("4,80");
+    assertEquals(80, model.predict("4"), 1e-3);
+    assertEquals(model.predict(new double[] {4}), model.predict("4,0"), 0);
+  }
+
+  @Test
+  public void testConstantFeature() {
+    /* a feature that never changes, like the number of workers of one configuration, must not break the fit. */
+    PerfEnforceRegressionModel model = new PerfEnforceRegressionModel(2);
+    for (int i = 0; i < 10; ++i) {
+      model.addDataPoint(new double[] {i, 4}, 5 * i);
+    }
+    assertEquals(25, model.predict(new double[] {5, 4}), 1e-3);
+  }
+
+  @Test
+  public void testFromArff() throws Exception {
+    File arff = File.createTempFile("training", ".arff");
+    arff.deleteOnExit();
+    try (PrintWriter writer = new PrintWriter(arff, "UTF-8")) {
+      writer.write("@relation testing \n");
+      writer.write("@attribute numberTables numeric \n");
+      writer.write("@attribute realTime numeric \n");
+      writer.write("\n");
+      writer.write("@data \n");
+      writer.write("1,2\n");
+      writer.write("2,4\n");
+      writer.write("3,6\n");
+    }
+    PerfEnforceRegressionModel model = PerfEnforceRegressionModel.fromArff(arff.toPath(), 1);
+    assertEquals(3, model.getNumDataPoints());
+    assertEquals(8, model.predict(new double[] {4}), 1e-3);
+  }
+}
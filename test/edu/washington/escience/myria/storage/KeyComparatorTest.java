@@ -0,0 +1,102 @@
+package edu.washington.escience.myria.storage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.washington.escience.myria.DbException;
+import edu.washington.escience.myria.Schema;
+import edu.washington.escience.myria.Type;
+
+public class KeyComparatorTest {
+
+  private static final Schema SCHEMA =
+      Schema.ofFields(
+          "b",
+          Type.BOOLEAN_TYPE,
+          "d",
+          Type.DOUBLE_TYPE,
+          "f",
+          Type.FLOAT_TYPE,
+          "i",
+          Type.INT_TYPE,
+          "l",
+          Type.LONG_TYPE,
+          "s",
+          Type.STRING_TYPE,
+          "t",
+          Type.DATETIME_TYPE,
+          "x",
+          Type.BLOB_TYPE);
+
+  /** @return tuples with few distinct values in each column, so that keys often tie on their first columns. */
+  private static TupleBatch randomTuples() {
+    final Random random = new Random(42);
+    final TupleBatchBuffer tbb = new TupleBatchBuffer(SCHEMA);
+    for (int row = 0; row < 100; ++row) {
+      tbb.putBoolean(0, random.nextBoolean());
+      tbb.putDouble(1, random.nextInt(3) - 1.5);
+      tbb.putFloat(2, random.nextInt(3) - 1.5f);
+      tbb.putInt(3, random.nextInt(3) - 1);
+      tbb.putLong(4, random.nextInt(3) - 1L);
+      tbb.putString(5, "s" + random.nextInt(3));
+      tbb.putDateTime(6, new DateTime(random.nextInt(3) * 1000L));
+      tbb.putBlob(7, ByteBuffer.wrap(new byte[] {(byte) random.nextInt(3)}));
+    }
+    return tbb.popAny();
+  }
+
+  private static void checkAgainstTupleCompare(
+      final TupleBatch tb, final int[] columns1, final int[] columns2, final boolean[] ascending)
+      throws DbException {
+    final KeyComparator comparator =
+        KeyComparator.compile(SCHEMA, columns1, SCHEMA, columns2, ascending);
+    for (int row1 = 0; row1 < tb.numTuples(); ++row1) {
+      for (int row2 = 0; row2 < tb.numTuples(); ++row2) {
+        assertEquals(
+            Integer.signum(
+                TupleUtils.tupleCompare(tb, columns1, row1, tb, columns2, row2, ascending)),
+            Integer.signum(comparator.compare(tb, row1, tb, row2)));
+      }
+    }
+  }
+
+  @Test
+  public void testAllTypes() throws DbException {
+    final TupleBatch tb = randomTuples();
+    final int[] columns = new int[] {0, 1, 2, 3, 4, 5, 6, 7};
+    checkAgainstTupleCompare(
+        tb, columns, columns, new boolean[] {true, true, true, true, true, true, true, true});
+    checkAgainstTupleCompare(
+        tb,
+        new int[] {7, 6, 5, 4, 3, 2, 1, 0},
+        new int[] {7, 6, 5, 4, 3, 2, 1, 0},
+        new boolean[] {false, true, false, true, false, true, false, true});
+  }
+
+  @Test
+  public void testDifferentColumns() throws DbException {
+    final Schema sameTypes =
+        new Schema(ImmutableList.of(Type.INT_TYPE, Type.INT_TYPE), ImmutableList.of("a", "b"));
+    final TupleBatchBuffer tbb = new TupleBatchBuffer(sameTypes);
+    tbb.putInt(0, 1);
+    tbb.putInt(1, 2);
+    final TupleBatch pair = tbb.popAny();
+    final KeyComparator comparator =
+        KeyComparator.compile(
+            sameTypes, new int[] {0}, sameTypes, new int[] {1}, new boolean[] {true});
+    /* a = 1 of the first tuple is compared with b = 2 of the second. */
+    assertEquals(-1, Integer.signum(comparator.compare(pair, 0, pair, 0)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMismatchedTypes() throws DbException {
+    KeyComparator.compile(SCHEMA, new int[] {3}, SCHEMA, new int[] {4}, new boolean[] {true});
+  }
+}